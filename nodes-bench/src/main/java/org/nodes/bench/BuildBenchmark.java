@@ -0,0 +1,91 @@
+package org.nodes.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.nodes.DTGraph;
+import org.nodes.Graph;
+import org.nodes.LightDGraph;
+import org.nodes.LightUGraph;
+import org.nodes.MapDTGraph;
+import org.nodes.bench.Families.Family;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time it takes to build a graph of each type from a list of 
+ * links.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BuildBenchmark
+{
+	@Param({"ER", "BA", "FRACTAL"})
+	public Family family;
+	
+	@Param({"1000", "10000", "100000"})
+	public int size;
+	
+	private int n;
+	private int[][] links;
+	
+	@Setup
+	public void setup()
+	{
+		Graph<String> graph = Families.undirected(family, size);
+		
+		n = graph.size();
+		links = Families.links(graph);
+	}
+	
+	@Benchmark
+	public LightDGraph<String> lightDGraph()
+	{
+		LightDGraph<String> graph = new LightDGraph<String>(n);
+		for(int i = 0; i < n; i++)
+			graph.add(null);
+		
+		for(int i = 0; i < links[0].length; i++)
+			graph.get(links[0][i]).connect(graph.get(links[1][i]));
+		
+		return graph;
+	}
+	
+	@Benchmark
+	public LightUGraph<String> lightUGraph()
+	{
+		LightUGraph<String> graph = new LightUGraph<String>(n);
+		for(int i = 0; i < n; i++)
+			graph.add(null);
+		
+		for(int i = 0; i < links[0].length; i++)
+			graph.get(links[0][i]).connect(graph.get(links[1][i]));
+		
+		return graph;
+	}
+	
+	@Benchmark
+	public DTGraph<String, String> mapDTGraph()
+	{
+		MapDTGraph<String, String> graph = new MapDTGraph<String, String>();
+		for(int i = 0; i < n; i++)
+			graph.add("x");
+		
+		for(int i = 0; i < links[0].length; i++)
+			graph.get(links[0][i]).connect(graph.get(links[1][i]));
+		
+		return graph;
+	}
+}
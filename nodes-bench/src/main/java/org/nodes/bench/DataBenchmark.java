@@ -0,0 +1,104 @@
+package org.nodes.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.nodes.DGraph;
+import org.nodes.Graph;
+import org.nodes.UGraph;
+import org.nodes.bench.Families.Family;
+import org.nodes.data.Data;
+import org.nodes.data.Dot;
+import org.nodes.data.GML;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the readers in org.nodes.data on files written from the random 
+ * graph families. 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataBenchmark
+{
+	@Param({"ER", "BA", "FRACTAL"})
+	public Family family;
+	
+	@Param({"10000", "100000"})
+	public int size;
+	
+	private File edgeList, gml, dot;
+	
+	@Setup
+	public void setup()
+		throws IOException
+	{
+		DGraph<String> graph = Families.directed(family, size);
+		
+		edgeList = File.createTempFile("nodes-bench", ".txt");
+		gml = File.createTempFile("nodes-bench", ".gml");
+		dot = File.createTempFile("nodes-bench", ".dot");
+		
+		Data.writeEdgeList(graph, edgeList);
+		GML.write(graph, gml);
+		Dot.write(graph, dot);
+	}
+	
+	@TearDown
+	public void tearDown()
+	{
+		edgeList.delete();
+		gml.delete();
+		dot.delete();
+	}
+	
+	@Benchmark
+	public DGraph<String> edgeListDirected()
+		throws IOException
+	{
+		return Data.edgeListDirectedUnlabeled(edgeList, false);
+	}
+	
+	@Benchmark
+	public UGraph<String> edgeListUndirected()
+		throws IOException
+	{
+		return Data.edgeListUndirectedUnlabeled(edgeList, false);
+	}
+	
+	@Benchmark
+	public DGraph<String> edgeListDirectedCSR()
+		throws IOException
+	{
+		return Data.edgeListDirectedCSR(edgeList);
+	}
+	
+	@Benchmark
+	public Graph<String> gml()
+		throws IOException
+	{
+		return GML.read(gml);
+	}
+	
+	@Benchmark
+	public Graph<String> dot()
+		throws IOException
+	{
+		return Dot.read(dot);
+	}
+}
@@ -0,0 +1,208 @@
+package org.nodes.bench;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.nodes.DGraph;
+import org.nodes.DTGraph;
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.LightDGraph;
+import org.nodes.LightUGraph;
+import org.nodes.Link;
+import org.nodes.MapDTGraph;
+import org.nodes.Node;
+import org.nodes.UGraph;
+import org.nodes.UTGraph;
+import org.nodes.random.FractalGenerator;
+import org.nodes.random.RandomGraphs;
+
+/**
+ * The random graph families that the benchmarks are parameterized over.
+ * 
+ * All graphs are generated from a fixed seed, so that the runs of a benchmark
+ * see the same graphs. 
+ */
+public class Families
+{
+	public static final long SEED = 42;
+	
+	/**
+	 * The mean degree of the generated graphs (approximately, for the 
+	 * fractal family)
+	 */
+	public static final int DEGREE = 6;
+	
+	public static enum Family
+	{
+		/**
+		 * Erdos-Renyi, with n * DEGREE/2 links. 
+		 */
+		ER, 
+		/**
+		 * Barabasi-Albert preferential attachment.
+		 */
+		BA, 
+		/**
+		 * Song et al's fractal model. The size grows by a factor of about 6 
+		 * per iteration, so we use the largest fractal graph with at most n 
+		 * nodes (the generator is too slow to overshoot the largest sizes).
+		 */
+		FRACTAL
+	}
+	
+	/**
+	 * Generates an undirected graph from the given family with (approximately) 
+	 * the given number of nodes.
+	 */
+	public static UGraph<String> undirected(Family family, int n)
+	{
+		Global.setSeed(SEED);
+		
+		switch(family)
+		{
+			case ER:
+				return er(n, n * DEGREE / 2);
+			case BA:
+				return LightUGraph.copy(RandomGraphs.preferentialAttachment(n, DEGREE / 2));
+			case FRACTAL:
+				return LightUGraph.copy(fractal(n));
+			default:
+				throw new IllegalArgumentException("Family "+family+" not recognized.");
+		}
+	}
+	
+	/**
+	 * Generates a directed graph by giving each link of an undirected graph 
+	 * from the given family a random direction.
+	 */
+	public static DGraph<String> directed(Family family, int n)
+	{
+		UGraph<String> graph = undirected(family, n);
+		
+		LightDGraph<String> result = new LightDGraph<String>(graph.size());
+		for(int i = 0; i < graph.size(); i++)
+			result.add(graph.get(i).label());
+		
+		for(Link<String> link : graph.links())
+		{
+			int a = link.first().index(), b = link.second().index();
+			
+			if(Global.random().nextBoolean())
+				result.get(a).connect(result.get(b));
+			else
+				result.get(b).connect(result.get(a));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Generates a directed graph with tags, as a MapDTGraph. All links get the 
+	 * same tag.
+	 */
+	public static DTGraph<String, String> directedTagged(Family family, int n)
+	{
+		DGraph<String> graph = directed(family, n);
+		
+		MapDTGraph<String, String> result = new MapDTGraph<String, String>();
+		for(int i = 0; i < graph.size(); i++)
+			result.add(graph.get(i).label());
+		
+		for(Link<String> link : graph.links())
+			result.get(link.first().index()).connect(result.get(link.second().index()), "x");
+		
+		return result;
+	}
+	
+	/**
+	 * Samples a uniform random simple graph with n nodes and m links. 
+	 * 
+	 * RandomGraphs.random(n, m) indexes the possible links with an int, which
+	 * overflows for the larger sizes we use, so we sample the links directly.  
+	 */
+	private static UGraph<String> er(int n, int m)
+	{
+		LightUGraph<String> graph = new LightUGraph<String>(n);
+		for(int i = 0; i < n; i++)
+			graph.add("x");
+		
+		Set<Long> links = new HashSet<Long>();
+		while(links.size() < m)
+		{
+			int i = Global.random().nextInt(n), j = Global.random().nextInt(n);
+			if(i == j)
+				continue;
+			
+			long key = Math.min(i, j) * (long) n + Math.max(i, j);
+			if(links.add(key))
+				graph.get(i).connect(graph.get(j));
+		}
+		
+		return graph;
+	}
+	
+	private static UTGraph<String, String> fractal(int n)
+	{
+		FractalGenerator gen = new FractalGenerator(2, 1, 0.5);
+		
+		// * Each link adds 2 * offspring new nodes
+		while(gen.graph().size() + 4 * gen.graph().numLinks() <= n)
+			gen.iterate();
+		
+		return gen.graph();
+	}
+	
+	/**
+	 * Returns the graph's links as two arrays of node indices. 
+	 */
+	public static int[][] links(Graph<?> graph)
+	{
+		int[][] result = new int[2][graph.numLinks()];
+		
+		int i = 0;
+		for(Link<?> link : graph.links())
+		{
+			result[0][i] = link.first().index();
+			result[1][i] = link.second().index();
+			i++;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Samples a connected set of k node indices, by growing a set from a 
+	 * random node with random neighbors of the set. May return fewer than k 
+	 * indices if the component of the starting node is too small.
+	 */
+	public static List<Integer> connectedSet(Graph<?> graph, int k, Random random)
+	{
+		List<Integer> nodes = new ArrayList<Integer>(k);
+		Set<Integer> set = new HashSet<Integer>();
+		List<Integer> candidates = new ArrayList<Integer>();
+		
+		int start = random.nextInt(graph.size());
+		nodes.add(start);
+		set.add(start);
+		for(Node<?> neighbor : graph.get(start).neighbors())
+			candidates.add(neighbor.index());
+		
+		while(nodes.size() < k && ! candidates.isEmpty())
+		{
+			int next = candidates.remove(random.nextInt(candidates.size()));
+			if(! set.add(next))
+				continue;
+			
+			nodes.add(next);
+			for(Node<?> neighbor : graph.get(next).neighbors())
+				if(! set.contains(neighbor.index()))
+					candidates.add(neighbor.index());
+		}
+		
+		return nodes;
+	}
+}
@@ -0,0 +1,41 @@
+package org.nodes.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON, so that runs can be 
+ * compared.
+ * 
+ * Accepts all of JMH's command line options. Without '-rf' and '-rff', the 
+ * results are written as JSON to jmh-result.json in the working directory. 
+ * For instance, to run only the traversal benchmarks on BA graphs:
+ * <pre>
+ * java -jar target/benchmarks.jar TraversalBenchmark -p family=BA -rff ba.json
+ * </pre>
+ */
+public class Main
+{
+	public static final String RESULT_FILE = "jmh-result.json";
+	
+	public static void main(String[] args)
+		throws RunnerException, CommandLineOptionException
+	{
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.parent(cmd);
+		
+		if(! cmd.getResultFormat().hasValue())
+			options.resultFormat(ResultFormatType.JSON);
+		if(! cmd.getResult().hasValue())
+			options.result(RESULT_FILE);
+		
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,83 @@
+package org.nodes.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.nodes.DGraph;
+import org.nodes.Subgraph;
+import org.nodes.UGraph;
+import org.nodes.algorithms.Nauty;
+import org.nodes.bench.Families.Family;
+import org.nodes.util.Functions.NaturalComparator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures canonical ordering with Nauty on motif-sized subgraphs of the 
+ * random graph families.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NautyBenchmark
+{
+	public static final int SIZE = 10000;
+	public static final int SAMPLES = 50;
+	
+	@Param({"ER", "BA", "FRACTAL"})
+	public Family family;
+	
+	@Param({"5", "10", "20"})
+	public int subgraphSize;
+	
+	private List<UGraph<String>> usubs;
+	private List<DGraph<String>> dsubs;
+	private NaturalComparator<String> comparator = new NaturalComparator<String>();
+	
+	@Setup
+	public void setup()
+	{
+		UGraph<String> ugraph = Families.undirected(family, SIZE);
+		DGraph<String> dgraph = Families.directed(family, SIZE);
+		
+		Random random = new Random(Families.SEED);
+		usubs = new ArrayList<UGraph<String>>(SAMPLES);
+		dsubs = new ArrayList<DGraph<String>>(SAMPLES);
+		for(int i = 0; i < SAMPLES; i++)
+		{
+			List<Integer> sample = Families.connectedSet(ugraph, subgraphSize, random);
+			
+			usubs.add(Subgraph.uSubgraphIndices(ugraph, sample));
+			dsubs.add(Subgraph.dSubgraphIndices(dgraph, sample));
+		}
+	}
+	
+	@Benchmark
+	public void orderUndirected(Blackhole bh)
+	{
+		for(UGraph<String> sub : usubs)
+			bh.consume(Nauty.order(sub, comparator));
+	}
+	
+	@Benchmark
+	public void orderDirected(Blackhole bh)
+	{
+		for(DGraph<String> sub : dsubs)
+			bh.consume(Nauty.order(sub, comparator));
+	}
+}
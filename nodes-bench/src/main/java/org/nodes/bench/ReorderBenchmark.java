@@ -0,0 +1,63 @@
+package org.nodes.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.nodes.DGraph;
+import org.nodes.Graphs;
+import org.nodes.UGraph;
+import org.nodes.bench.Families.Family;
+import org.nodes.util.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures Graphs.reorder with a random permutation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReorderBenchmark
+{
+	@Param({"ER", "BA", "FRACTAL"})
+	public Family family;
+	
+	@Param({"1000", "10000", "100000"})
+	public int size;
+	
+	private UGraph<String> ugraph;
+	private DGraph<String> dgraph;
+	private Order order;
+	
+	@Setup
+	public void setup()
+	{
+		ugraph = Families.undirected(family, size);
+		dgraph = Families.directed(family, size);
+		
+		order = Order.random(ugraph.size());
+	}
+	
+	@Benchmark
+	public UGraph<String> reorderUndirected()
+	{
+		return Graphs.reorder(ugraph, order);
+	}
+	
+	@Benchmark
+	public DGraph<String> reorderDirected()
+	{
+		return Graphs.reorder(dgraph, order);
+	}
+}
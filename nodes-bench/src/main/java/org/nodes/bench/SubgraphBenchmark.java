@@ -0,0 +1,65 @@
+package org.nodes.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.nodes.DTGraph;
+import org.nodes.Subgraph;
+import org.nodes.bench.Families.Family;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the extraction of induced subgraphs from a MapDTGraph, as done 
+ * when sampling motifs. 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SubgraphBenchmark
+{
+	public static final int SIZE = 10000;
+	public static final int SAMPLES = 100;
+	
+	@Param({"ER", "BA", "FRACTAL"})
+	public Family family;
+	
+	@Param({"3", "6", "10"})
+	public int subgraphSize;
+	
+	private DTGraph<String, String> graph;
+	private List<List<Integer>> samples;
+	
+	@Setup
+	public void setup()
+	{
+		graph = Families.directedTagged(family, SIZE);
+		
+		Random random = new Random(Families.SEED);
+		samples = new ArrayList<List<Integer>>(SAMPLES);
+		for(int i = 0; i < SAMPLES; i++)
+			samples.add(Families.connectedSet(graph, subgraphSize, random));
+	}
+	
+	@Benchmark
+	public void dtSubgraphIndices(Blackhole bh)
+	{
+		for(List<Integer> sample : samples)
+			bh.consume(Subgraph.dtSubgraphIndices(graph, sample));
+	}
+}
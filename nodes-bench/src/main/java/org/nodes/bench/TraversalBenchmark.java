@@ -0,0 +1,114 @@
+package org.nodes.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.nodes.DGraph;
+import org.nodes.DNode;
+import org.nodes.Link;
+import org.nodes.Node;
+import org.nodes.UGraph;
+import org.nodes.UNode;
+import org.nodes.bench.Families.Family;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures iteration over the neighbors of all nodes, over all links, and 
+ * calls to connected() for random pairs of nodes. 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TraversalBenchmark
+{
+	public static final int PAIRS = 10000;
+	
+	@Param({"ER", "BA", "FRACTAL"})
+	public Family family;
+	
+	@Param({"1000", "10000", "100000"})
+	public int size;
+	
+	private UGraph<String> ugraph;
+	private DGraph<String> dgraph;
+	
+	private int[] pairs;
+	
+	@Setup
+	public void setup()
+	{
+		ugraph = Families.undirected(family, size);
+		dgraph = Families.directed(family, size);
+		
+		Random random = new Random(Families.SEED);
+		pairs = new int[2 * PAIRS];
+		for(int i = 0; i < pairs.length; i++)
+			pairs[i] = random.nextInt(ugraph.size());
+	}
+	
+	@Benchmark
+	public void neighborsUndirected(Blackhole bh)
+	{
+		for(UNode<String> node : ugraph.nodes())
+			for(Node<String> neighbor : node.neighbors())
+				bh.consume(neighbor.index());
+	}
+	
+	@Benchmark
+	public void neighborsDirected(Blackhole bh)
+	{
+		for(DNode<String> node : dgraph.nodes())
+			for(DNode<String> neighbor : node.out())
+				bh.consume(neighbor.index());
+	}
+	
+	@Benchmark
+	public void linksUndirected(Blackhole bh)
+	{
+		for(Link<String> link : ugraph.links())
+			bh.consume(link.first().index() + link.second().index());
+	}
+	
+	@Benchmark
+	public void linksDirected(Blackhole bh)
+	{
+		for(Link<String> link : dgraph.links())
+			bh.consume(link.first().index() + link.second().index());
+	}
+	
+	@Benchmark
+	public int connectedUndirected()
+	{
+		int connected = 0;
+		for(int i = 0; i < PAIRS; i++)
+			if(ugraph.get(pairs[2 * i]).connected(ugraph.get(pairs[2 * i + 1])))
+				connected++;
+		
+		return connected;
+	}
+	
+	@Benchmark
+	public int connectedDirected()
+	{
+		int connected = 0;
+		for(int i = 0; i < PAIRS; i++)
+			if(dgraph.get(pairs[2 * i]).connected(dgraph.get(pairs[2 * i + 1])))
+				connected++;
+		
+		return connected;
+	}
+}
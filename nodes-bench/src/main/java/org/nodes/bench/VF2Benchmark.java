@@ -0,0 +1,80 @@
+package org.nodes.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.nodes.DGraph;
+import org.nodes.Global;
+import org.nodes.Graphs;
+import org.nodes.Subgraph;
+import org.nodes.UGraph;
+import org.nodes.algorithms.DVF2;
+import org.nodes.algorithms.UVF2;
+import org.nodes.bench.Families.Family;
+import org.nodes.util.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures VF2 isomorphism checks between a subgraph of a random graph and a 
+ * randomly permuted copy of it. 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VF2Benchmark
+{
+	public static final int SIZE = 10000;
+	
+	@Param({"ER", "BA", "FRACTAL"})
+	public Family family;
+	
+	@Param({"10", "30", "100"})
+	public int subgraphSize;
+	
+	private UGraph<String> u1, u2;
+	private DGraph<String> d1, d2;
+	
+	@Setup
+	public void setup()
+	{
+		UGraph<String> ugraph = Families.undirected(family, SIZE);
+		DGraph<String> dgraph = Families.directed(family, SIZE);
+		
+		List<Integer> sample = Families.connectedSet(ugraph, subgraphSize, new Random(Families.SEED));
+		
+		u1 = Subgraph.uSubgraphIndices(ugraph, sample);
+		d1 = Subgraph.dSubgraphIndices(dgraph, sample);
+		
+		Global.setSeed(Families.SEED);
+		Order order = Order.random(u1.size());
+		
+		u2 = Graphs.reorder(u1, order);
+		d2 = Graphs.reorder(d1, order);
+	}
+	
+	@Benchmark
+	public boolean uvf2()
+	{
+		return new UVF2<String>(u1, u2, true).matches();
+	}
+	
+	@Benchmark
+	public boolean dvf2()
+	{
+		return new DVF2<String>(d1, d2, true).matches();
+	}
+}
@@ -0,0 +1,931 @@
+package org.nodes;
+
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.nodes.util.FrequencyModel;
+import org.nodes.util.Functions;
+
+/**
+ * A frozen (ie. read-only) implementation of a directed graph, stored in
+ * compressed sparse row (CSR) format.
+ *
+ * The out-links of node i are stored in outTargets[outOffsets[i]] up to (not
+ * including) outTargets[outOffsets[i+1]]. The in-links are stored in the same
+ * way in a second pair of arrays. Each neighbour list is sorted. This means
+ * that each link costs two ints, as opposed to two boxed Integers plus list
+ * overhead in a {@link LightDGraph}.
+ *
+ * Since the graph cannot be modified, its node and link objects remain valid
+ * for the lifetime of the graph. All methods that would modify the graph throw
+ * an {@link UnsupportedOperationException}.
+ *
+ * CSR graphs are created by {@link #copy(Graph)} or {@link LightDGraph#freeze()}.
+ *
+ * @param <L>
+ */
+public class CSRDGraph<L> implements DGraph<L>, FastWalkable<L, DNode<L>>, NeighborIndices
+{
+	private List<L> labels;
+
+	private int[] outOffsets;
+	private int[] outTargets;
+
+	private int[] inOffsets;
+	private int[] inSources;
+
+	private Integer hash = null;
+
+	/**
+	 * Creates a graph directly from CSR arrays. The arrays are not copied. The
+	 * neighbour lists should be sorted.
+	 *
+	 * @param labels The node labels.
+	 * @param outOffsets An array of size n+1 such that the out-neighbours of
+	 * 	node i are stored from outOffsets[i] up to outOffsets[i+1].
+	 * @param outTargets The concatenated out-neighbour lists
+	 * @param inOffsets As outOffsets, for the in-neighbours
+	 * @param inSources The concatenated in-neighbour lists
+	 */
+	CSRDGraph(List<L> labels, int[] outOffsets, int[] outTargets, int[] inOffsets, int[] inSources)
+	{
+		if(outOffsets.length != labels.size() + 1 || inOffsets.length != labels.size() + 1)
+			throw new IllegalArgumentException("Offset arrays should have size n+1 ("+(labels.size()+1)+"). Sizes were "+outOffsets.length+" and "+inOffsets.length+".");
+		if(outTargets.length != inSources.length)
+			throw new IllegalArgumentException("Number of out-links ("+outTargets.length+") does not match number of in-links ("+inSources.length+").");
+
+		this.labels = labels;
+		this.outOffsets = outOffsets;
+		this.outTargets = outTargets;
+		this.inOffsets = inOffsets;
+		this.inSources = inSources;
+	}
+
+	/**
+	 * Creates a CSR graph from a list of links, given as parallel arrays of
+	 * from and to indices.
+	 *
+	 * @param labels
+	 * @param from
+	 * @param to
+	 * @param numLinks The number of links to take from the arrays.
+	 * @return
+	 */
+	public static <L> CSRDGraph<L> fromLinks(List<L> labels, int[] from, int[] to, int numLinks)
+	{
+		return fromLinks(labels, new int[][]{from}, new int[][]{to}, new int[]{numLinks});
+	}
+
+	/**
+	 * Creates a CSR graph from several lists of links, each given as parallel
+	 * arrays of from and to indices. This allows links collected by different
+	 * threads to be combined without first concatenating them.
+	 *
+	 * @param labels
+	 * @param from
+	 * @param to
+	 * @param numLinks For each part, the number of links to take from its
+	 * 	arrays.
+	 * @return
+	 */
+	public static <L> CSRDGraph<L> fromLinks(List<L> labels, int[][] from, int[][] to, int[] numLinks)
+	{
+		int n = labels.size();
+
+		int[] outOffsets = offsets(from, numLinks, n);
+		int[] inOffsets = offsets(to, numLinks, n);
+
+		int m = outOffsets[n];
+		int[] outTargets = new int[m];
+		int[] inSources = new int[m];
+
+		int[] outFill = Arrays.copyOf(outOffsets, n);
+		int[] inFill = Arrays.copyOf(inOffsets, n);
+
+		for(int p = 0; p < from.length; p++)
+			for(int l = 0; l < numLinks[p]; l++)
+			{
+				outTargets[outFill[from[p][l]]++] = to[p][l];
+				inSources[inFill[to[p][l]]++] = from[p][l];
+			}
+
+		sortRows(outOffsets, outTargets);
+		sortRows(inOffsets, inSources);
+
+		return new CSRDGraph<L>(new ArrayList<L>(labels), outOffsets, outTargets, inOffsets, inSources);
+	}
+
+	/**
+	 * Computes the offset array for a list of links, given the (from or to)
+	 * index of each link.
+	 */
+	static int[] offsets(int[][] indices, int[] numLinks, int n)
+	{
+		int[] offsets = new int[n + 1];
+		for(int p = 0; p < indices.length; p++)
+			for(int l = 0; l < numLinks[p]; l++)
+				offsets[indices[p][l] + 1]++;
+
+		for(int i = 0; i < n; i++)
+			offsets[i + 1] += offsets[i];
+
+		return offsets;
+	}
+
+	static void sortRows(int[] offsets, int[] values)
+	{
+		for(int i = 0; i < offsets.length - 1; i++)
+			Arrays.sort(values, offsets[i], offsets[i+1]);
+	}
+
+	/**
+	 * Creates a copy of the given graph as a CSRDGraph object.
+	 *
+	 * If the argument is undirectional, the link direction will be arbitrary.
+	 *
+	 * @param graph
+	 * @return
+	 */
+	public static <L> CSRDGraph<L> copy(Graph<L> graph)
+	{
+		if(graph instanceof LightDGraph<?>)
+			return ((LightDGraph<L>) graph).freeze();
+
+		List<L> labels = new ArrayList<L>(graph.size());
+		for(Node<L> node : graph.nodes())
+			labels.add(node.label());
+
+		int m = graph.numLinks();
+		int[] from = new int[m], to = new int[m];
+
+		int l = 0;
+		for(Link<L> link : graph.links())
+		{
+			from[l] = link.first().index();
+			to[l] = link.second().index();
+			l++;
+		}
+
+		return fromLinks(labels, from, to, l);
+	}
+
+	@Override
+	public int size()
+	{
+		return labels.size();
+	}
+
+	@Override
+	public int numLinks()
+	{
+		return outTargets.length;
+	}
+
+	/**
+	 * The out-degree of the node with the given index.
+	 */
+	public int outDegree(int index)
+	{
+		return outOffsets[index + 1] - outOffsets[index];
+	}
+
+	/**
+	 * The in-degree of the node with the given index.
+	 */
+	public int inDegree(int index)
+	{
+		return inOffsets[index + 1] - inOffsets[index];
+	}
+
+	/**
+	 * Returns the index of the j-th out-neighbour of node i.
+	 */
+	public int out(int i, int j)
+	{
+		return outTargets[outOffsets[i] + j];
+	}
+
+	/**
+	 * Returns the index of the j-th in-neighbour of node i.
+	 */
+	public int in(int i, int j)
+	{
+		return inSources[inOffsets[i] + j];
+	}
+
+	@Override
+	public DNode<L> node(L label)
+	{
+		int i = labels.indexOf(label);
+		if(i == -1)
+			throw new NoSuchElementException("Graph does not contain node with label "+label+"");
+
+		return new CSRDNode(i);
+	}
+
+	private class CSRDNode implements DNode<L>
+	{
+		private int index;
+
+		public CSRDNode(int index)
+		{
+			this.index = index;
+		}
+
+		@Override
+		public L label()
+		{
+			return labels.get(index);
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public boolean dead()
+		{
+			return false;
+		}
+
+		@Override
+		public int degree()
+		{
+			return inDegree() + outDegree();
+		}
+
+		@Override
+		public Collection<? extends DNode<L>> neighbors()
+		{
+			return new NodeList(merge(index));
+		}
+
+		@Override
+		public DNode<L> neighbor(L label)
+		{
+			for(int i = inOffsets[index]; i < inOffsets[index + 1]; i++)
+				if(Functions.equals(labels.get(inSources[i]), label))
+					return new CSRDNode(inSources[i]);
+			for(int i = outOffsets[index]; i < outOffsets[index + 1]; i++)
+				if(Functions.equals(labels.get(outTargets[i]), label))
+					return new CSRDNode(outTargets[i]);
+
+			return null;
+		}
+
+		@Override
+		public Collection<? extends DNode<L>> neighbors(L label)
+		{
+			int[] all = merge(index);
+
+			int n = 0;
+			for(int i : all)
+				if(Functions.equals(labels.get(i), label))
+					all[n++] = i;
+
+			return new NodeList(all, 0, n);
+		}
+
+		@Override
+		public Collection<? extends DNode<L>> out()
+		{
+			return new NodeList(outTargets, outOffsets[index], outOffsets[index + 1]);
+		}
+
+		@Override
+		public Collection<? extends DNode<L>> out(L label)
+		{
+			return filter(outTargets, outOffsets[index], outOffsets[index + 1], label);
+		}
+
+		@Override
+		public Collection<? extends DNode<L>> in()
+		{
+			return new NodeList(inSources, inOffsets[index], inOffsets[index + 1]);
+		}
+
+		@Override
+		public Collection<? extends DNode<L>> in(L label)
+		{
+			return filter(inSources, inOffsets[index], inOffsets[index + 1], label);
+		}
+
+		@Override
+		public DLink<L> connect(Node<L> to)
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public void disconnect(Node<L> other)
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public boolean connected(Node<L> other)
+		{
+			if(!(other instanceof DNode<?>))
+				return false;
+
+			if(other.graph() != CSRDGraph.this)
+				return false;
+
+			DNode<L> o = (DNode<L>) other;
+
+			return this.connectedTo(o) || o.connectedTo(this);
+		}
+
+		@Override
+		public boolean connectedTo(DNode<L> to)
+		{
+			if(to.graph() != CSRDGraph.this)
+				return false;
+
+			return Arrays.binarySearch(outTargets, outOffsets[index], outOffsets[index + 1], to.index()) >= 0;
+		}
+
+		@Override
+		public DGraph<L> graph()
+		{
+			return CSRDGraph.this;
+		}
+
+		@Override
+		public int index()
+		{
+			return index;
+		}
+
+		@Override
+		public int inDegree()
+		{
+			return CSRDGraph.this.inDegree(index);
+		}
+
+		@Override
+		public int outDegree()
+		{
+			return CSRDGraph.this.outDegree(index);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + 1237;
+			result = prime * result + index;
+			result = prime * result + ((label() == null) ? 0 : label().hashCode());
+			return result;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+
+			if (obj == null)
+				return false;
+
+			if (getClass() != obj.getClass())
+				return false;
+
+			CSRDNode other = (CSRDNode) obj;
+
+			if (graph() != other.graph())
+				return false;
+
+			return index == other.index;
+		}
+
+		public String toString()
+		{
+			return label() == null ? ("n"+index) : label().toString() + "_" +index;
+		}
+
+		@Override
+		public List<DLink<L>> links()
+		{
+			List<DLink<L>> list = new ArrayList<DLink<L>>(degree());
+
+			for(int i = outOffsets[index]; i < outOffsets[index + 1]; i++)
+				list.add(new CSRDLink(index, outTargets[i]));
+
+			for(int i = inOffsets[index]; i < inOffsets[index + 1]; i++)
+				if(inSources[i] != index) // no double reflexive links
+					list.add(new CSRDLink(inSources[i], index));
+
+			return list;
+		}
+
+		@Override
+		public List<DLink<L>> linksOut()
+		{
+			List<DLink<L>> list = new ArrayList<DLink<L>>(outDegree());
+			for(int i = outOffsets[index]; i < outOffsets[index + 1]; i++)
+				list.add(new CSRDLink(index, outTargets[i]));
+
+			return list;
+		}
+
+		@Override
+		public List<DLink<L>> linksIn()
+		{
+			List<DLink<L>> list = new ArrayList<DLink<L>>(inDegree());
+			for(int i = inOffsets[index]; i < inOffsets[index + 1]; i++)
+				list.add(new CSRDLink(inSources[i], index));
+
+			return list;
+		}
+
+		@Override
+		public Collection<? extends DLink<L>> links(Node<L> other)
+		{
+			List<DLink<L>> list = new ArrayList<DLink<L>>();
+
+			int o = other.index();
+			for(int i = outOffsets[index]; i < outOffsets[index + 1]; i++)
+				if(outTargets[i] == o)
+					list.add(new CSRDLink(index, o));
+
+			if(index != o)
+				for(int i = inOffsets[index]; i < inOffsets[index + 1]; i++)
+					if(inSources[i] == o)
+						list.add(new CSRDLink(o, index));
+
+			return list;
+		}
+
+		@Override
+		public Collection<? extends DLink<L>> linksOut(DNode<L> other)
+		{
+			List<DLink<L>> list = new ArrayList<DLink<L>>();
+
+			int o = other.index();
+			for(int i = outOffsets[index]; i < outOffsets[index + 1]; i++)
+				if(outTargets[i] == o)
+					list.add(new CSRDLink(index, o));
+
+			return list;
+		}
+
+		@Override
+		public Collection<? extends DLink<L>> linksIn(DNode<L> other)
+		{
+			List<DLink<L>> list = new ArrayList<DLink<L>>();
+
+			int o = other.index();
+			for(int i = inOffsets[index]; i < inOffsets[index + 1]; i++)
+				if(inSources[i] == o)
+					list.add(new CSRDLink(o, index));
+
+			return list;
+		}
+	}
+
+	/**
+	 * Merges the (sorted) in and out neighbour lists of the given node into a
+	 * sorted array without duplicates.
+	 */
+	private int[] merge(int index)
+	{
+		int a = inOffsets[index], aEnd = inOffsets[index + 1];
+		int b = outOffsets[index], bEnd = outOffsets[index + 1];
+
+		int[] result = new int[(aEnd - a) + (bEnd - b)];
+		int n = 0;
+
+		while(a < aEnd || b < bEnd)
+		{
+			int next;
+			if(b >= bEnd || (a < aEnd && inSources[a] <= outTargets[b]))
+				next = inSources[a++];
+			else
+				next = outTargets[b++];
+
+			if(n == 0 || result[n - 1] != next)
+				result[n++] = next;
+		}
+
+		return n == result.length ? result : Arrays.copyOf(result, n);
+	}
+
+	private NodeList filter(int[] values, int from, int to, L label)
+	{
+		int[] indices = new int[to - from];
+		int n = 0;
+
+		for(int i = from; i < to; i++)
+			if(Functions.equals(labels.get(values[i]), label))
+				indices[n++] = values[i];
+
+		return new NodeList(indices, 0, n);
+	}
+
+	private class CSRDLink implements DLink<L>
+	{
+		private int from, to;
+
+		public CSRDLink(int from, int to)
+		{
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Collection<? extends Node<L>> nodes()
+		{
+			return Arrays.asList(from(), to());
+		}
+
+		@Override
+		public Graph<L> graph()
+		{
+			return CSRDGraph.this;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public boolean dead()
+		{
+			return false;
+		}
+
+		@Override
+		public DNode<L> first()
+		{
+			return from();
+		}
+
+		@Override
+		public DNode<L> second()
+		{
+			return to();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + CSRDGraph.this.hashCode();
+			result = prime * result + from;
+			result = prime * result + to;
+			return result;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			CSRDLink other = (CSRDLink) obj;
+			if (graph() != other.graph())
+				return false;
+
+			return from == other.from && to == other.to;
+		}
+
+		public String toString()
+		{
+			return from() + " -> " + to();
+		}
+
+		@Override
+		public DNode<L> from()
+		{
+			return new CSRDNode(from);
+		}
+
+		@Override
+		public DNode<L> to()
+		{
+			return new CSRDNode(to);
+		}
+
+		@Override
+		public DNode<L> other(Node<L> current)
+		{
+			if(current.index() != from)
+				return from();
+			return to();
+		}
+	}
+
+	/**
+	 * A list of nodes, backed by a range of an int array of indices.
+	 */
+	private class NodeList extends AbstractList<DNode<L>>
+	{
+		private int[] indices;
+		private int from, to;
+
+		public NodeList(int[] indices)
+		{
+			this(indices, 0, indices.length);
+		}
+
+		public NodeList(int[] indices, int from, int to)
+		{
+			this.indices = indices;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public CSRDNode get(int index)
+		{
+			if(index < 0 || index >= size())
+				throw new IndexOutOfBoundsException("Index "+index+" out of bounds for size "+size()+".");
+
+			return new CSRDNode(indices[from + index]);
+		}
+
+		@Override
+		public int size()
+		{
+			return to - from;
+		}
+	}
+
+	/**
+	 * The nodes of the graph, as a list that creates node objects on demand.
+	 */
+	private class AllNodes extends AbstractList<DNode<L>>
+	{
+		@Override
+		public CSRDNode get(int index)
+		{
+			if(index < 0 || index >= size())
+				throw new IndexOutOfBoundsException("Index "+index+" out of bounds for size "+size()+".");
+
+			return new CSRDNode(index);
+		}
+
+		@Override
+		public int size()
+		{
+			return labels.size();
+		}
+	}
+
+	@Override
+	public Collection<? extends DNode<L>> nodes(L label)
+	{
+		List<DNode<L>> nodes = new ArrayList<DNode<L>>();
+		for(int i = 0; i < size(); i++)
+			if(Functions.equals(labels.get(i), label))
+				nodes.add(new CSRDNode(i));
+
+		return nodes;
+	}
+
+	@Override
+	public List<? extends DNode<L>> nodes()
+	{
+		return new AllNodes();
+	}
+
+	@Override
+	public Collection<? extends DLink<L>> links()
+	{
+		return new LinkCollection();
+	}
+
+	/**
+	 * A collection of all links in this graph.
+	 */
+	private class LinkCollection extends AbstractCollection<DLink<L>>
+	{
+		@Override
+		public Iterator<DLink<L>> iterator()
+		{
+			return new LinkIterator();
+		}
+
+		@Override
+		public int size()
+		{
+			return numLinks();
+		}
+
+		private class LinkIterator implements Iterator<DLink<L>>
+		{
+			// * the index of the next link in outTargets
+			private int next = 0;
+			// * the node that owns the next link
+			private int from = 0;
+
+			@Override
+			public boolean hasNext()
+			{
+				return next < outTargets.length;
+			}
+
+			@Override
+			public DLink<L> next()
+			{
+				if(! hasNext())
+					throw new NoSuchElementException();
+
+				while(outOffsets[from + 1] <= next)
+					from++;
+
+				return new CSRDLink(from, outTargets[next++]);
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException("Graph is read-only.");
+			}
+		}
+	}
+
+	@Override
+	public DNode<L> add(L label)
+	{
+		throw new UnsupportedOperationException("Graph is read-only.");
+	}
+
+	@Override
+	public Set<L> labels()
+	{
+		return new HashSet<L>(labels);
+	}
+
+	@Override
+	public boolean connected(L from, L to)
+	{
+		for(DNode<L> a : nodes(from))
+			for(DNode<L> b : nodes(to))
+				if(a.connected(b))
+					return true;
+
+		return false;
+	}
+
+	/**
+	 * The graph cannot be modified, so its state never changes.
+	 */
+	@Override
+	public long state()
+	{
+		return 0;
+	}
+
+	/**
+	 * Returns a representation of the graph in Dot language format.
+	 */
+	public String toString()
+	{
+		StringBuffer sb = new StringBuffer();
+		sb.append("digraph {");
+
+		Set<DNode<L>> nodes = new HashSet<DNode<L>>(nodes());
+
+		for(DLink<L> link : links())
+		{
+			if(sb.length() != 9)
+				sb.append("; ");
+
+			sb.append(link);
+
+			nodes.remove(link.first());
+			nodes.remove(link.second());
+		}
+
+		for(DNode<L> node : nodes)
+			sb.append("; " + node);
+
+		sb.append("}");
+
+		return sb.toString();
+	}
+
+	@Override
+	public int hashCode()
+	{
+		if(hash != null)
+			return hash;
+
+		int h = 1;
+		for(L label : labels)
+		    h = 31 * h + (label == null ? 0 : label.hashCode());
+
+		hash = h;
+		return h;
+	}
+
+	public boolean equals(Object other)
+	{
+		if(!(other instanceof DGraph<?>))
+			return false;
+
+		DGraph<?> oth = (DGraph<?>) other;
+		if(! oth.level().equals(level()))
+			return false;
+
+		if(size() != oth.size())
+			return false;
+
+		if(numLinks() != oth.numLinks())
+			return false;
+
+		if(labels().size() != oth.labels().size())
+			return false;
+
+		for(DNode<L> node : nodes())
+		{
+			DNode<?> othNode = oth.get(node.index());
+
+			if(! Functions.equals(node.label(), othNode.label()))
+				return false;
+
+			FrequencyModel<Integer> outs = new FrequencyModel<Integer>(),
+			                        othOuts = new FrequencyModel<Integer>();
+			for(DNode<L> neighbor : node.out())
+				outs.add(neighbor.index());
+
+			for(DNode<?> othNeighbor : othNode.out())
+				othOuts.add(othNeighbor.index());
+
+			if(! outs.equals(othOuts))
+				return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public DNode<L> get(int i)
+	{
+		return nodes().get(i);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Class<? extends DGraph<L>> level()
+	{
+		Object obj = DGraph.class;
+		return (Class<? extends DGraph<L>>) obj;
+	}
+
+	@Override
+	public List<DNode<L>> neighborsFast(Node<L> node)
+	{
+		if(node.graph() != this)
+			throw new IllegalArgumentException("Cannot call with node from another graph.");
+
+		int index = node.index();
+
+		return Functions.concat(
+				new NodeList(inSources, inOffsets[index], inOffsets[index + 1]),
+				new NodeList(outTargets, outOffsets[index], outOffsets[index + 1]));
+	}
+
+	@Override
+	public int numNeighbors(int node)
+	{
+		return outDegree(node) + inDegree(node);
+	}
+
+	@Override
+	public int neighbors(int node, int[] buffer)
+	{
+		int n = 0;
+		// * A self-loop is both an in- and an out-link: only the out-link is 
+		//   written
+		for(int p = inOffsets[node]; p < inOffsets[node + 1]; p++)
+			if(inSources[p] != node)
+				buffer[n++] = inSources[p];
+		
+		int out = outDegree(node);
+		System.arraycopy(outTargets, outOffsets[node], buffer, n, out);
+		
+		return n + out;
+	}
+}
@@ -0,0 +1,775 @@
+package org.nodes;
+
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.nodes.util.FrequencyModel;
+import org.nodes.util.Functions;
+
+/**
+ * A frozen (ie. read-only) implementation of an undirected graph, stored in
+ * compressed sparse row (CSR) format.
+ *
+ * The neighbours of node i are stored in targets[offsets[i]] up to (not
+ * including) targets[offsets[i+1]]. Each link is stored in the neighbour lists
+ * of both its nodes, except for self-loops, which are stored once. Each
+ * neighbour list is sorted.
+ *
+ * Since the graph cannot be modified, its node and link objects remain valid
+ * for the lifetime of the graph. All methods that would modify the graph throw
+ * an {@link UnsupportedOperationException}.
+ *
+ * CSR graphs are created by {@link #copy(Graph)} or {@link LightUGraph#freeze()}.
+ *
+ * @param <L>
+ */
+public class CSRUGraph<L> implements UGraph<L>, FastWalkable<L, UNode<L>>, NeighborIndices
+{
+	private List<L> labels;
+
+	private int[] offsets;
+	private int[] targets;
+
+	private int numLinks;
+
+	private Integer hash = null;
+
+	/**
+	 * Creates a graph directly from CSR arrays. The arrays are not copied. The
+	 * neighbour lists should be sorted.
+	 *
+	 * @param labels The node labels.
+	 * @param offsets An array of size n+1 such that the neighbours of node i
+	 * 	are stored from offsets[i] up to offsets[i+1].
+	 * @param targets The concatenated neighbour lists
+	 * @param numLinks The number of links in the graph
+	 */
+	CSRUGraph(List<L> labels, int[] offsets, int[] targets, int numLinks)
+	{
+		if(offsets.length != labels.size() + 1)
+			throw new IllegalArgumentException("Offset array should have size n+1 ("+(labels.size()+1)+"). Size was "+offsets.length+".");
+
+		this.labels = labels;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.numLinks = numLinks;
+	}
+
+	/**
+	 * Creates a CSR graph from a list of links, given as parallel arrays of
+	 * node indices.
+	 *
+	 * @param labels
+	 * @param first
+	 * @param second
+	 * @param numLinks The number of links to take from the arrays.
+	 * @return
+	 */
+	public static <L> CSRUGraph<L> fromLinks(List<L> labels, int[] first, int[] second, int numLinks)
+	{
+		return fromLinks(labels, new int[][]{first}, new int[][]{second}, new int[]{numLinks});
+	}
+
+	/**
+	 * Creates a CSR graph from several lists of links, each given as parallel
+	 * arrays of node indices. This allows links collected by different
+	 * threads to be combined without first concatenating them.
+	 *
+	 * @param labels
+	 * @param first
+	 * @param second
+	 * @param numLinks For each part, the number of links to take from its
+	 * 	arrays.
+	 * @return
+	 */
+	public static <L> CSRUGraph<L> fromLinks(List<L> labels, int[][] first, int[][] second, int[] numLinks)
+	{
+		int n = labels.size();
+
+		int[] offsets = new int[n + 1];
+		int total = 0;
+		for(int p = 0; p < first.length; p++)
+		{
+			total += numLinks[p];
+			for(int l = 0; l < numLinks[p]; l++)
+			{
+				offsets[first[p][l] + 1]++;
+				if(first[p][l] != second[p][l])
+					offsets[second[p][l] + 1]++;
+			}
+		}
+
+		for(int i = 0; i < n; i++)
+			offsets[i + 1] += offsets[i];
+
+		int[] targets = new int[offsets[n]];
+		int[] fill = Arrays.copyOf(offsets, n);
+
+		for(int p = 0; p < first.length; p++)
+			for(int l = 0; l < numLinks[p]; l++)
+			{
+				int a = first[p][l], b = second[p][l];
+
+				targets[fill[a]++] = b;
+				if(a != b)
+					targets[fill[b]++] = a;
+			}
+
+		CSRDGraph.sortRows(offsets, targets);
+
+		return new CSRUGraph<L>(new ArrayList<L>(labels), offsets, targets, total);
+	}
+
+	/**
+	 * Creates a copy of the given graph as a CSRUGraph object.
+	 *
+	 * If the argument is directed, the link direction is ignored.
+	 *
+	 * @param graph
+	 * @return
+	 */
+	public static <L> CSRUGraph<L> copy(Graph<L> graph)
+	{
+		if(graph instanceof LightUGraph<?>)
+			return ((LightUGraph<L>) graph).freeze();
+
+		List<L> labels = new ArrayList<L>(graph.size());
+		for(Node<L> node : graph.nodes())
+			labels.add(node.label());
+
+		int m = graph.numLinks();
+		int[] first = new int[m], second = new int[m];
+
+		int l = 0;
+		for(Link<L> link : graph.links())
+		{
+			first[l] = link.first().index();
+			second[l] = link.second().index();
+			l++;
+		}
+
+		return fromLinks(labels, first, second, l);
+	}
+
+	@Override
+	public int size()
+	{
+		return labels.size();
+	}
+
+	@Override
+	public int numLinks()
+	{
+		return numLinks;
+	}
+
+	/**
+	 * The degree of the node with the given index.
+	 */
+	public int degree(int index)
+	{
+		return offsets[index + 1] - offsets[index];
+	}
+
+	/**
+	 * Returns the index of the j-th neighbour of node i.
+	 */
+	public int neighbor(int i, int j)
+	{
+		return targets[offsets[i] + j];
+	}
+
+	@Override
+	public UNode<L> node(L label)
+	{
+		int i = labels.indexOf(label);
+		if(i == -1)
+			throw new NoSuchElementException("Graph does not contain node with label "+label+"");
+
+		return new CSRUNode(i);
+	}
+
+	private class CSRUNode implements UNode<L>
+	{
+		private int index;
+
+		public CSRUNode(int index)
+		{
+			this.index = index;
+		}
+
+		@Override
+		public L label()
+		{
+			return labels.get(index);
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public boolean dead()
+		{
+			return false;
+		}
+
+		@Override
+		public int degree()
+		{
+			return CSRUGraph.this.degree(index);
+		}
+
+		@Override
+		public Collection<? extends UNode<L>> neighbors()
+		{
+			int from = offsets[index], to = offsets[index + 1];
+
+			int[] indices = new int[to - from];
+			int n = 0;
+			for(int i = from; i < to; i++)
+				if(n == 0 || indices[n - 1] != targets[i])
+					indices[n++] = targets[i];
+
+			return new NodeList(indices, 0, n);
+		}
+
+		@Override
+		public UNode<L> neighbor(L label)
+		{
+			for(int i = offsets[index]; i < offsets[index + 1]; i++)
+				if(Functions.equals(labels.get(targets[i]), label))
+					return new CSRUNode(targets[i]);
+
+			return null;
+		}
+
+		@Override
+		public Collection<? extends UNode<L>> neighbors(L label)
+		{
+			int from = offsets[index], to = offsets[index + 1];
+
+			int[] indices = new int[to - from];
+			int n = 0;
+			for(int i = from; i < to; i++)
+				if(Functions.equals(labels.get(targets[i]), label))
+					if(n == 0 || indices[n - 1] != targets[i])
+						indices[n++] = targets[i];
+
+			return new NodeList(indices, 0, n);
+		}
+
+		@Override
+		public ULink<L> connect(Node<L> to)
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public void disconnect(Node<L> other)
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public boolean connected(Node<L> other)
+		{
+			if(other.graph() != CSRUGraph.this)
+				return false;
+
+			return Arrays.binarySearch(targets, offsets[index], offsets[index + 1], other.index()) >= 0;
+		}
+
+		@Override
+		public UGraph<L> graph()
+		{
+			return CSRUGraph.this;
+		}
+
+		@Override
+		public int index()
+		{
+			return index;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + 1237;
+			result = prime * result + index;
+			result = prime * result + ((label() == null) ? 0 : label().hashCode());
+			return result;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+
+			if (obj == null)
+				return false;
+
+			if (getClass() != obj.getClass())
+				return false;
+
+			CSRUNode other = (CSRUNode) obj;
+
+			if (graph() != other.graph())
+				return false;
+
+			return index == other.index;
+		}
+
+		public String toString()
+		{
+			return label() == null ? ("n"+index) : label().toString();
+		}
+
+		@Override
+		public List<ULink<L>> links()
+		{
+			List<ULink<L>> list = new ArrayList<ULink<L>>(degree());
+			for(int i = offsets[index]; i < offsets[index + 1]; i++)
+				list.add(new CSRULink(index, targets[i]));
+
+			return list;
+		}
+
+		@Override
+		public Collection<? extends ULink<L>> links(Node<L> other)
+		{
+			List<ULink<L>> list = new ArrayList<ULink<L>>();
+
+			int o = other.index();
+			for(int i = offsets[index]; i < offsets[index + 1]; i++)
+				if(targets[i] == o)
+					list.add(new CSRULink(index, o));
+
+			return list;
+		}
+	}
+
+	private class CSRULink implements ULink<L>
+	{
+		private int first, second;
+
+		public CSRULink(int first, int second)
+		{
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public Collection<? extends UNode<L>> nodes()
+		{
+			return Arrays.asList(first(), second());
+		}
+
+		@Override
+		public Graph<L> graph()
+		{
+			return CSRUGraph.this;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public boolean dead()
+		{
+			return false;
+		}
+
+		@Override
+		public UNode<L> first()
+		{
+			return new CSRUNode(first);
+		}
+
+		@Override
+		public UNode<L> second()
+		{
+			return new CSRUNode(second);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + CSRUGraph.this.hashCode();
+			result = prime * result + Math.min(first, second);
+			result = prime * result + Math.max(first, second);
+			return result;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			CSRULink other = (CSRULink) obj;
+			if (graph() != other.graph())
+				return false;
+
+			return (first == other.first && second == other.second) ||
+					(first == other.second && second == other.first);
+		}
+
+		public String toString()
+		{
+			return first() + " -- " + second();
+		}
+
+		@Override
+		public UNode<L> other(Node<L> current)
+		{
+			if(current.index() != first)
+				return first();
+			return second();
+		}
+	}
+
+	/**
+	 * A list of nodes, backed by a range of an int array of indices.
+	 */
+	private class NodeList extends AbstractList<UNode<L>>
+	{
+		private int[] indices;
+		private int from, to;
+
+		public NodeList(int[] indices, int from, int to)
+		{
+			this.indices = indices;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public CSRUNode get(int index)
+		{
+			if(index < 0 || index >= size())
+				throw new IndexOutOfBoundsException("Index "+index+" out of bounds for size "+size()+".");
+
+			return new CSRUNode(indices[from + index]);
+		}
+
+		@Override
+		public int size()
+		{
+			return to - from;
+		}
+	}
+
+	/**
+	 * The nodes of the graph, as a list that creates node objects on demand.
+	 */
+	private class AllNodes extends AbstractList<UNode<L>>
+	{
+		@Override
+		public CSRUNode get(int index)
+		{
+			if(index < 0 || index >= size())
+				throw new IndexOutOfBoundsException("Index "+index+" out of bounds for size "+size()+".");
+
+			return new CSRUNode(index);
+		}
+
+		@Override
+		public int size()
+		{
+			return labels.size();
+		}
+	}
+
+	@Override
+	public Collection<? extends UNode<L>> nodes(L label)
+	{
+		List<UNode<L>> nodes = new ArrayList<UNode<L>>();
+		for(int i = 0; i < size(); i++)
+			if(Functions.equals(labels.get(i), label))
+				nodes.add(new CSRUNode(i));
+
+		return nodes;
+	}
+
+	@Override
+	public List<? extends UNode<L>> nodes()
+	{
+		return new AllNodes();
+	}
+
+	@Override
+	public Collection<? extends ULink<L>> links()
+	{
+		return new LinkCollection();
+	}
+
+	/**
+	 * A collection of all links in this graph. Each link is returned once, from
+	 * the neighbour list of its lowest-indexed node.
+	 */
+	private class LinkCollection extends AbstractCollection<ULink<L>>
+	{
+		@Override
+		public Iterator<ULink<L>> iterator()
+		{
+			return new LinkIterator();
+		}
+
+		@Override
+		public int size()
+		{
+			return numLinks;
+		}
+
+		private class LinkIterator implements Iterator<ULink<L>>
+		{
+			// * the index of the next candidate in targets
+			private int next = 0;
+			// * the node that owns the next candidate
+			private int from = 0;
+
+			public LinkIterator()
+			{
+				advance();
+			}
+
+			/**
+			 * Moves 'next' to the next link that should be returned.
+			 */
+			private void advance()
+			{
+				while(next < targets.length)
+				{
+					while(offsets[from + 1] <= next)
+						from++;
+
+					if(targets[next] >= from)
+						return;
+
+					next++;
+				}
+			}
+
+			@Override
+			public boolean hasNext()
+			{
+				return next < targets.length;
+			}
+
+			@Override
+			public ULink<L> next()
+			{
+				if(! hasNext())
+					throw new NoSuchElementException();
+
+				ULink<L> link = new CSRULink(from, targets[next]);
+
+				next++;
+				advance();
+
+				return link;
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException("Graph is read-only.");
+			}
+		}
+	}
+
+	@Override
+	public UNode<L> add(L label)
+	{
+		throw new UnsupportedOperationException("Graph is read-only.");
+	}
+
+	@Override
+	public Set<L> labels()
+	{
+		return new HashSet<L>(labels);
+	}
+
+	@Override
+	public boolean connected(L from, L to)
+	{
+		for(UNode<L> a : nodes(from))
+			for(UNode<L> b : nodes(to))
+				if(a.connected(b))
+					return true;
+
+		return false;
+	}
+
+	/**
+	 * The graph cannot be modified, so its state never changes.
+	 */
+	@Override
+	public long state()
+	{
+		return 0;
+	}
+
+	/**
+	 * Returns a representation of the graph in Dot language format.
+	 */
+	public String toString()
+	{
+		StringBuffer sb = new StringBuffer();
+		sb.append("graph {");
+
+		Set<UNode<L>> nodes = new HashSet<UNode<L>>(nodes());
+
+		int i = 0;
+		for(ULink<L> link : links())
+		{
+			if(i++ != 0)
+				sb.append(";");
+
+			sb.append(link);
+
+			nodes.remove(link.first());
+			nodes.remove(link.second());
+		}
+
+		for(UNode<L> node : nodes)
+		{
+			if(i++ != 0)
+				sb.append(";");
+
+			sb.append(node);
+		}
+
+		sb.append("}");
+
+		return sb.toString();
+	}
+
+	@Override
+	public int hashCode()
+	{
+		if(hash != null)
+			return hash;
+
+		int h = 1;
+		for(L label : labels)
+		    h = 31 * h + (label == null ? 0 : label.hashCode());
+
+		// * structure (the neighbour lists are already sorted)
+		for(UNode<L> node : nodes())
+		{
+			List<Integer> nbIndices = new ArrayList<Integer>(node.degree());
+			for(UNode<L> neighbor : node.neighbors())
+				nbIndices.add(neighbor.index());
+
+			h = 31 * h + nbIndices.hashCode();
+		}
+
+		hash = h;
+		return h;
+	}
+
+	public boolean equals(Object other)
+	{
+		if(!(other instanceof UGraph<?>))
+			return false;
+
+		UGraph<?> oth = (UGraph<?>) other;
+		if(! oth.level().equals(level()))
+			return false;
+
+		if(size() != oth.size())
+			return false;
+
+		if(numLinks() != oth.numLinks())
+			return false;
+
+		if(labels().size() != oth.labels().size())
+			return false;
+
+		for(UNode<L> node : nodes())
+		{
+			UNode<?> othNode = oth.get(node.index());
+
+			if(! Functions.equals(node.label(), othNode.label()))
+				return false;
+
+			FrequencyModel<Integer> myNeighbors = new FrequencyModel<Integer>(),
+			                        hisNeighbors = new FrequencyModel<Integer>();
+			for(UNode<L> myNeighbor : node.neighbors())
+				myNeighbors.add(myNeighbor.index());
+
+			for(UNode<?> hisNeighbor : othNode.neighbors())
+				hisNeighbors.add(hisNeighbor.index());
+
+			if(! myNeighbors.equals(hisNeighbors))
+				return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public UNode<L> get(int i)
+	{
+		return nodes().get(i);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Class<? extends UGraph<L>> level()
+	{
+		Object obj = UGraph.class;
+		return (Class<? extends UGraph<L>>) obj;
+	}
+
+	@Override
+	public List<UNode<L>> neighborsFast(Node<L> node)
+	{
+		if(node.graph() != this)
+			throw new IllegalArgumentException("Cannot call with node from another graph.");
+
+		int index = node.index();
+
+		return new NodeList(targets, offsets[index], offsets[index + 1]);
+	}
+
+	@Override
+	public int numNeighbors(int node)
+	{
+		return degree(node);
+	}
+
+	@Override
+	public int neighbors(int node, int[] buffer)
+	{
+		int n = degree(node);
+		System.arraycopy(targets, offsets[node], buffer, 0, n);
+		
+		return n;
+	}
+}
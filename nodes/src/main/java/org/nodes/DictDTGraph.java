@@ -0,0 +1,1179 @@
+package org.nodes;
+
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.nodes.util.FrequencyModel;
+import org.nodes.util.Functions;
+import org.nodes.util.SymbolTable;
+
+/**
+ * A directed, tagged graph that stores its labels and tags as integer ids into
+ * symbol tables. Labels and tags are decoded on access.
+ *
+ * Every link is stored as two pairs of ints (the neighbor and the tag id), once
+ * in the out-list of its source and once in the in-list of its target. Every
+ * distinct label and tag object is stored only once, in the symbol table, which
+ * may be shared between graphs. This makes the graph much smaller than a
+ * MapDTGraph or LightDTGraph for data with many repeated labels or tags, like
+ * RDF, and it makes filtering links by tag an integer comparison.
+ *
+ * Like the LightDTGraph, node removal changes the indices of other nodes, so
+ * that all existing node and link objects become invalid.
+ *
+ * @param <L>
+ * @param <T>
+ */
+public class DictDTGraph<L, T> implements DTGraph<L, T>, NeighborIndices
+{
+	private static final int[] EMPTY = new int[0];
+
+	private SymbolTable<L> labelTable;
+	private SymbolTable<T> tagTable;
+
+	private int size = 0;
+	private int[] labels;
+
+	// * Per node, the neighbors and tag ids, interleaved: {node, tag, node, tag, ...}
+	private int[][] out, in;
+	// * The number of links in each list (half the number of ints used)
+	private int[] outDegrees, inDegrees;
+
+	// * For each label id, the index of a node with that label (or -1)
+	private int[] labelNodes = EMPTY;
+	private boolean labelNodesValid = true;
+
+	private int numLinks = 0;
+	private long modCount = 0;
+
+	// * changes for any edit which causes the node indices to change
+	//   (currently just removal). If this happens, all existing Node and Link
+	//   objects lose persistence
+	private long nodeModCount = 0;
+
+	public DictDTGraph()
+	{
+		this(16);
+	}
+
+	public DictDTGraph(int capacity)
+	{
+		this(new SymbolTable<L>(), new SymbolTable<T>(), capacity);
+	}
+
+	/**
+	 * Creates a graph that uses the given symbol tables. The tables may be
+	 * shared with other graphs.
+	 */
+	public DictDTGraph(SymbolTable<L> labelTable, SymbolTable<T> tagTable, int capacity)
+	{
+		this.labelTable = labelTable;
+		this.tagTable = tagTable;
+
+		capacity = Math.max(capacity, 1);
+
+		labels = new int[capacity];
+		out = new int[capacity][];
+		in = new int[capacity][];
+		outDegrees = new int[capacity];
+		inDegrees = new int[capacity];
+	}
+
+	public SymbolTable<L> labelTable()
+	{
+		return labelTable;
+	}
+
+	public SymbolTable<T> tagTable()
+	{
+		return tagTable;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public int numLinks()
+	{
+		return numLinks;
+	}
+
+	@Override
+	public DTNode<L, T> node(L label)
+	{
+		int id = labelTable.find(label);
+		if(id < 0)
+			return null;
+
+		if(! labelNodesValid)
+		{
+			labelNodes = EMPTY;
+			for(int i = 0; i < size; i++)
+				index(labels[i], i);
+
+			labelNodesValid = true;
+		}
+
+		if(id >= labelNodes.length || labelNodes[id] < 0)
+			return null;
+
+		return new DictDTNode(labelNodes[id]);
+	}
+
+	/**
+	 * Records that the given node has the given label id, if no other node
+	 * has been recorded for it.
+	 */
+	private void index(int labelId, int node)
+	{
+		if(labelId >= labelNodes.length)
+		{
+			int old = labelNodes.length;
+			labelNodes = Arrays.copyOf(labelNodes, Math.max(labelId + 1, old * 2));
+			Arrays.fill(labelNodes, old, labelNodes.length, -1);
+		}
+
+		if(labelNodes[labelId] < 0)
+			labelNodes[labelId] = node;
+	}
+
+	@Override
+	public Collection<? extends DTNode<L, T>> nodes(L label)
+	{
+		int id = labelTable.find(label);
+
+		List<Integer> indices = new ArrayList<Integer>();
+		if(id < 0)
+			return new NodeList(indices);
+
+		for(int i = 0; i < size; i++)
+			if(labels[i] == id)
+				indices.add(i);
+
+		return new NodeList(indices);
+	}
+
+	@Override
+	public List<? extends DTNode<L, T>> nodes()
+	{
+		return new AbstractList<DTNode<L, T>>()
+		{
+			@Override
+			public DTNode<L, T> get(int index)
+			{
+				return DictDTGraph.this.get(index);
+			}
+
+			@Override
+			public int size()
+			{
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public DTNode<L, T> get(int i)
+	{
+		if(i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("Index "+i+" is out of bounds for graph of size "+size+".");
+
+		return new DictDTNode(i);
+	}
+
+	@Override
+	public Collection<? extends DTLink<L, T>> links()
+	{
+		return new LinkCollection();
+	}
+
+	@Override
+	public DTNode<L, T> add(L label)
+	{
+		if(size == labels.length)
+		{
+			int capacity = labels.length * 2;
+
+			labels = Arrays.copyOf(labels, capacity);
+			out = Arrays.copyOf(out, capacity);
+			in = Arrays.copyOf(in, capacity);
+			outDegrees = Arrays.copyOf(outDegrees, capacity);
+			inDegrees = Arrays.copyOf(inDegrees, capacity);
+		}
+
+		int id = labelTable.id(label);
+
+		labels[size] = id;
+		out[size] = EMPTY;
+		in[size] = EMPTY;
+
+		if(labelNodesValid)
+			index(id, size);
+
+		size++;
+		modCount++;
+
+		return new DictDTNode(size - 1);
+	}
+
+	@Override
+	public Set<L> labels()
+	{
+		Set<L> set = new HashSet<L>();
+		for(int i = 0; i < size; i++)
+			set.add(labelTable.get(labels[i]));
+
+		return set;
+	}
+
+	@Override
+	public Set<T> tags()
+	{
+		boolean[] seen = new boolean[tagTable.size()];
+		Set<T> set = new HashSet<T>();
+
+		for(int i = 0; i < size; i++)
+			for(int j = 0; j < outDegrees[i]; j++)
+			{
+				int tag = out[i][2 * j + 1];
+				if(! seen[tag])
+				{
+					seen[tag] = true;
+					set.add(tagTable.get(tag));
+				}
+			}
+
+		return set;
+	}
+
+	@Override
+	public boolean connected(L from, L to)
+	{
+		for(DTNode<L,T> a : nodes(from))
+			for(DTNode<L,T> b : nodes(to))
+				if(a.connected(b))
+					return true;
+
+		return false;
+	}
+
+	@Override
+	public long state()
+	{
+		return modCount;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Class<? extends DTGraph<?, ?>> level()
+	{
+		Object obj = DTGraph.class;
+		return (Class<? extends DTGraph<?, ?>>) obj;
+	}
+
+	/**
+	 * Appends a (node, tag) pair to the given list of the given node.
+	 */
+	private static int[] append(int[] list, int degree, int node, int tag)
+	{
+		if(2 * degree + 2 > list.length)
+			list = Arrays.copyOf(list, Math.max(4, list.length * 2));
+
+		list[2 * degree] = node;
+		list[2 * degree + 1] = tag;
+
+		return list;
+	}
+
+	/**
+	 * Removes the first (node, tag) pair in the list that matches. A tag
+	 * of -1 matches any tag.
+	 *
+	 * @return Whether a pair was removed.
+	 */
+	private static boolean removeFirst(int[] list, int degree, int node, int tag)
+	{
+		for(int i = 0; i < degree; i++)
+			if(list[2 * i] == node && (tag < 0 || list[2 * i + 1] == tag))
+			{
+				System.arraycopy(list, 2 * i + 2, list, 2 * i, 2 * (degree - i - 1));
+				return true;
+			}
+
+		return false;
+	}
+
+	/**
+	 * Removes all pairs with the given node from the list.
+	 *
+	 * @return The new degree
+	 */
+	private static int removeAll(int[] list, int degree, int node)
+	{
+		int j = 0;
+		for(int i = 0; i < degree; i++)
+			if(list[2 * i] != node)
+			{
+				list[2 * j] = list[2 * i];
+				list[2 * j + 1] = list[2 * i + 1];
+				j++;
+			}
+
+		return j;
+	}
+
+	/**
+	 * Removes all pairs with the given node from the list, and decrements all
+	 * node indices above it.
+	 *
+	 * @return The new degree
+	 */
+	private static int removeAndShift(int[] list, int degree, int node)
+	{
+		int j = 0;
+		for(int i = 0; i < degree; i++)
+		{
+			int other = list[2 * i];
+			if(other != node)
+			{
+				list[2 * j] = other > node ? other - 1 : other;
+				list[2 * j + 1] = list[2 * i + 1];
+				j++;
+			}
+		}
+
+		return j;
+	}
+
+	private void connect(int from, int to, int tag)
+	{
+		out[from] = append(out[from], outDegrees[from], to, tag);
+		outDegrees[from]++;
+
+		in[to] = append(in[to], inDegrees[to], from, tag);
+		inDegrees[to]++;
+
+		numLinks++;
+		modCount++;
+	}
+
+	private class DictDTNode implements DTNode<L, T>
+	{
+		private int index;
+		// The modCount of the graph for which this node is safe to use
+		private final long nodeModState = nodeModCount;
+		private boolean dead = false;
+
+		public DictDTNode(int index)
+		{
+			this.index = index;
+		}
+
+		private void check()
+		{
+			if(dead)
+				throw new IllegalStateException("Node is dead (index was "+index+")");
+
+			if(nodeModCount != nodeModState)
+				throw new IllegalStateException("Graph was modified since node creation.");
+		}
+
+		@Override
+		public L label()
+		{
+			check();
+			return labelTable.get(labels[index]);
+		}
+
+		/**
+		 * Removes this node from the graph. This is an expensive operation,
+		 * since the indices of all links need to be updated.
+		 */
+		@Override
+		public void remove()
+		{
+			check();
+
+			numLinks -= outDegrees[index] + inDegrees[index];
+
+			// * Self-loops were counted twice
+			for(int i = 0; i < outDegrees[index]; i++)
+				if(out[index][2 * i] == index)
+					numLinks++;
+
+			for(int i = 0; i < size; i++)
+				if(i != index)
+				{
+					outDegrees[i] = removeAndShift(out[i], outDegrees[i], index);
+					inDegrees[i] = removeAndShift(in[i], inDegrees[i], index);
+				}
+
+			int tail = size - index - 1;
+			System.arraycopy(labels, index + 1, labels, index, tail);
+			System.arraycopy(out, index + 1, out, index, tail);
+			System.arraycopy(in, index + 1, in, index, tail);
+			System.arraycopy(outDegrees, index + 1, outDegrees, index, tail);
+			System.arraycopy(inDegrees, index + 1, inDegrees, index, tail);
+
+			size--;
+			out[size] = null;
+			in[size] = null;
+
+			labelNodesValid = false;
+
+			dead = true;
+			modCount++;
+			nodeModCount++;
+		}
+
+		@Override
+		public boolean dead()
+		{
+			return dead;
+		}
+
+		@Override
+		public int degree()
+		{
+			check();
+			return inDegree() + outDegree();
+		}
+
+		@Override
+		public int inDegree()
+		{
+			check();
+			return inDegrees[index];
+		}
+
+		@Override
+		public int outDegree()
+		{
+			check();
+			return outDegrees[index];
+		}
+
+		/**
+		 * Collects the nodes from the given list, optionally only those with
+		 * the given label id or tag id. Ids of -1 match nothing, and ids of -2
+		 * match everything.
+		 */
+		private List<Integer> collect(int[] list, int degree, int labelId, int tagId, List<Integer> indices)
+		{
+			for(int i = 0; i < degree; i++)
+			{
+				int node = list[2 * i];
+
+				if(labelId != -2 && labels[node] != labelId)
+					continue;
+				if(tagId != -2 && list[2 * i + 1] != tagId)
+					continue;
+
+				indices.add(node);
+			}
+
+			return indices;
+		}
+
+		@Override
+		public Collection<? extends DTNode<L, T>> neighbors()
+		{
+			check();
+			List<Integer> indices = new ArrayList<Integer>(degree());
+
+			collect(in[index], inDegrees[index], -2, -2, indices);
+			collect(out[index], outDegrees[index], -2, -2, indices);
+
+			return new NodeList(indices);
+		}
+
+		@Override
+		public DTNode<L, T> neighbor(L label)
+		{
+			check();
+			Collection<? extends DTNode<L, T>> neighbors = neighbors(label);
+
+			return neighbors.isEmpty() ? null : neighbors.iterator().next();
+		}
+
+		@Override
+		public Collection<? extends DTNode<L, T>> neighbors(L label)
+		{
+			check();
+			int id = labelTable.find(label);
+
+			List<Integer> indices = new ArrayList<Integer>();
+
+			collect(in[index], inDegrees[index], id, -2, indices);
+			collect(out[index], outDegrees[index], id, -2, indices);
+
+			return new NodeList(indices);
+		}
+
+		@Override
+		public Collection<? extends DTNode<L, T>> out()
+		{
+			check();
+			return new NodeList(collect(out[index], outDegrees[index], -2, -2,
+					new ArrayList<Integer>(outDegrees[index])));
+		}
+
+		@Override
+		public Collection<? extends DTNode<L, T>> out(L label)
+		{
+			check();
+			return new NodeList(collect(out[index], outDegrees[index], labelTable.find(label), -2,
+					new ArrayList<Integer>()));
+		}
+
+		@Override
+		public Collection<? extends DTNode<L, T>> in()
+		{
+			check();
+			return new NodeList(collect(in[index], inDegrees[index], -2, -2,
+					new ArrayList<Integer>(inDegrees[index])));
+		}
+
+		@Override
+		public Collection<? extends DTNode<L, T>> in(L label)
+		{
+			check();
+			return new NodeList(collect(in[index], inDegrees[index], labelTable.find(label), -2,
+					new ArrayList<Integer>()));
+		}
+
+		@Override
+		public Collection<? extends DTNode<L, T>> toTag(T tag)
+		{
+			check();
+			return new NodeList(collect(out[index], outDegrees[index], -2, tagTable.find(tag),
+					new ArrayList<Integer>()));
+		}
+
+		@Override
+		public Collection<? extends DTNode<L, T>> fromTag(T tag)
+		{
+			check();
+			return new NodeList(collect(in[index], inDegrees[index], -2, tagTable.find(tag),
+					new ArrayList<Integer>()));
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public DTLink<L, T> connect(Node<L> to)
+		{
+			return connect((TNode<L, T>) to, null);
+		}
+
+		@Override
+		public DTLink<L, T> connect(TNode<L, T> other, T tag)
+		{
+			check();
+
+			int tagId = tagTable.id(tag);
+			DictDTGraph.this.connect(index, other.index(), tagId);
+
+			return new DictDTLink(index, other.index(), tagId);
+		}
+
+		@Override
+		public void disconnect(Node<L> other)
+		{
+			check();
+			int mine = index, his = other.index();
+
+			int before = outDegrees[mine] + outDegrees[his];
+
+			outDegrees[mine] = removeAll(out[mine], outDegrees[mine], his);
+			inDegrees[his] = removeAll(in[his], inDegrees[his], mine);
+
+			if(mine != his)
+			{
+				outDegrees[his] = removeAll(out[his], outDegrees[his], mine);
+				inDegrees[mine] = removeAll(in[mine], inDegrees[mine], his);
+
+				numLinks -= before - outDegrees[mine] - outDegrees[his];
+			} else
+				numLinks -= (before / 2) - outDegrees[mine];
+
+			modCount++;
+		}
+
+		@Override
+		public boolean connected(Node<L> other)
+		{
+			if(!(other instanceof DNode<?>))
+				return false;
+
+			DNode<L> o = (DNode<L>) other;
+
+			return this.connectedTo(o) || o.connectedTo(this);
+		}
+
+		@Override
+		public boolean connected(TNode<L, T> other, T tag)
+		{
+			if(!(other instanceof DTNode<?,?>))
+				return false;
+
+			DTNode<L,T> o = (DTNode<L,T>) other;
+
+			return this.connectedTo(o, tag) || o.connectedTo(this, tag);
+		}
+
+		@Override
+		public boolean connectedTo(DNode<L> to)
+		{
+			check();
+			int his = to.index();
+
+			int[] list = out[index];
+			for(int i = 0; i < outDegrees[index]; i++)
+				if(list[2 * i] == his)
+					return true;
+
+			return false;
+		}
+
+		@Override
+		public boolean connectedTo(TNode<L, T> other, T tag)
+		{
+			check();
+			int his = other.index();
+			int tagId = tagTable.find(tag);
+			if(tagId < 0)
+				return false;
+
+			int[] list = out[index];
+			for(int i = 0; i < outDegrees[index]; i++)
+				if(list[2 * i] == his && list[2 * i + 1] == tagId)
+					return true;
+
+			return false;
+		}
+
+		@Override
+		public DTGraph<L, T> graph()
+		{
+			return DictDTGraph.this;
+		}
+
+		@Override
+		public int index()
+		{
+			return index;
+		}
+
+		@Override
+		public List<DTLink<L, T>> links()
+		{
+			check();
+			List<DTLink<L, T>> list = new ArrayList<DTLink<L, T>>(degree());
+
+			int[] nb = out[index];
+			for(int i = 0; i < outDegrees[index]; i++)
+				list.add(new DictDTLink(index, nb[2 * i], nb[2 * i + 1]));
+
+			nb = in[index];
+			for(int i = 0; i < inDegrees[index]; i++)
+				if(nb[2 * i] != index) // No double reflexive links
+					list.add(new DictDTLink(nb[2 * i], index, nb[2 * i + 1]));
+
+			return list;
+		}
+
+		@Override
+		public List<DTLink<L, T>> linksOut()
+		{
+			check();
+			List<DTLink<L, T>> list = new ArrayList<DTLink<L, T>>(outDegree());
+
+			int[] nb = out[index];
+			for(int i = 0; i < outDegrees[index]; i++)
+				list.add(new DictDTLink(index, nb[2 * i], nb[2 * i + 1]));
+
+			return list;
+		}
+
+		@Override
+		public List<DTLink<L, T>> linksIn()
+		{
+			check();
+			List<DTLink<L, T>> list = new ArrayList<DTLink<L, T>>(inDegree());
+
+			int[] nb = in[index];
+			for(int i = 0; i < inDegrees[index]; i++)
+				list.add(new DictDTLink(nb[2 * i], index, nb[2 * i + 1]));
+
+			return list;
+		}
+
+		@Override
+		public Collection<? extends DTLink<L, T>> links(Node<L> other)
+		{
+			check();
+			List<DTLink<L, T>> list = new ArrayList<DTLink<L, T>>();
+			int o = other.index();
+
+			int[] nb = out[index];
+			for(int i = 0; i < outDegrees[index]; i++)
+				if(nb[2 * i] == o)
+					list.add(new DictDTLink(index, o, nb[2 * i + 1]));
+
+			if(o != index) // no double reflexive
+			{
+				nb = in[index];
+				for(int i = 0; i < inDegrees[index]; i++)
+					if(nb[2 * i] == o)
+						list.add(new DictDTLink(o, index, nb[2 * i + 1]));
+			}
+
+			return list;
+		}
+
+		@Override
+		public Collection<? extends DTLink<L, T>> linksOut(DNode<L> other)
+		{
+			check();
+			List<DTLink<L, T>> list = new ArrayList<DTLink<L, T>>();
+			int o = other.index();
+
+			int[] nb = out[index];
+			for(int i = 0; i < outDegrees[index]; i++)
+				if(nb[2 * i] == o)
+					list.add(new DictDTLink(index, o, nb[2 * i + 1]));
+
+			return list;
+		}
+
+		@Override
+		public Collection<? extends DTLink<L, T>> linksIn(DNode<L> other)
+		{
+			check();
+			List<DTLink<L, T>> list = new ArrayList<DTLink<L, T>>();
+			int o = other.index();
+
+			int[] nb = in[index];
+			for(int i = 0; i < inDegrees[index]; i++)
+				if(nb[2 * i] == o)
+					list.add(new DictDTLink(o, index, nb[2 * i + 1]));
+
+			return list;
+		}
+
+		@Override
+		public TLink<L, T> link(TNode<L, T> other)
+		{
+			Collection<? extends DTLink<L, T>> links = links(other);
+
+			return links.isEmpty() ? null : links.iterator().next();
+		}
+
+		@Override
+		public Collection<T> tags()
+		{
+			check();
+			List<T> tags = new ArrayList<T>(degree());
+
+			for(int i = 0; i < outDegrees[index]; i++)
+				tags.add(tagTable.get(out[index][2 * i + 1]));
+			for(int i = 0; i < inDegrees[index]; i++)
+				tags.add(tagTable.get(in[index][2 * i + 1]));
+
+			return tags;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + System.identityHashCode(DictDTGraph.this);
+			result = prime * result + (dead ? 1231 : 1237);
+			result = prime * result + index;
+			return result;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			DictDTNode other = (DictDTNode) obj;
+			if (graph() != other.graph())
+				return false;
+			if (dead != other.dead)
+				return false;
+			return index == other.index;
+		}
+
+		public String toString()
+		{
+			L label = label();
+			return label == null ? ("n"+index()) : label.toString() + "_" +index();
+		}
+	}
+
+	private class DictDTLink implements DTLink<L, T>
+	{
+		private int from, to, tag;
+		private long nodeModState = nodeModCount;
+		private boolean dead = false;
+
+		public DictDTLink(int from, int to, int tag)
+		{
+			this.from = from;
+			this.to = to;
+			this.tag = tag;
+		}
+
+		private void check()
+		{
+			if(dead)
+				throw new IllegalStateException("Link object is dead");
+
+			if(nodeModCount != nodeModState)
+				throw new IllegalStateException("Graph was modified since node creation.");
+		}
+
+		@Override
+		public T tag()
+		{
+			check();
+			return tagTable.get(tag);
+		}
+
+		@Override
+		public Collection<? extends DTNode<L, T>> nodes()
+		{
+			check();
+			return Arrays.asList(from(), to());
+		}
+
+		@Override
+		public DTGraph<L, T> graph()
+		{
+			return DictDTGraph.this;
+		}
+
+		@Override
+		public void remove()
+		{
+			check();
+
+			if(removeFirst(out[from], outDegrees[from], to, tag))
+			{
+				outDegrees[from]--;
+
+				removeFirst(in[to], inDegrees[to], from, tag);
+				inDegrees[to]--;
+
+				numLinks--;
+				modCount++;
+			}
+
+			dead = true;
+		}
+
+		@Override
+		public boolean dead()
+		{
+			return dead;
+		}
+
+		@Override
+		public DTNode<L, T> first()
+		{
+			return from();
+		}
+
+		@Override
+		public DTNode<L, T> second()
+		{
+			return to();
+		}
+
+		@Override
+		public DTNode<L, T> from()
+		{
+			check();
+			return new DictDTNode(from);
+		}
+
+		@Override
+		public DTNode<L, T> to()
+		{
+			check();
+			return new DictDTNode(to);
+		}
+
+		@Override
+		public DTNode<L, T> other(Node<L> current)
+		{
+			if(current.index() != from)
+				return from();
+			return to();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + System.identityHashCode(DictDTGraph.this);
+			result = prime * result + (dead ? 1231 : 1237);
+			result = prime * result + from;
+			result = prime * result + to;
+			result = prime * result + tag;
+			return result;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			DictDTLink other = (DictDTLink) obj;
+			if (graph() != other.graph())
+				return false;
+			if (dead != other.dead)
+				return false;
+			return from == other.from && to == other.to && tag == other.tag;
+		}
+
+		public String toString()
+		{
+			check();
+			return from() + " -> " + to() + ((tag()==null) ? "" : " [label=" + tag() + "]");
+		}
+	}
+
+	private class NodeList extends AbstractList<DTNode<L,T>>
+	{
+		private List<Integer> indices;
+
+		public NodeList(List<Integer> indices)
+		{
+			this.indices = indices;
+		}
+
+		@Override
+		public DictDTNode get(int index)
+		{
+			return new DictDTNode(indices.get(index));
+		}
+
+		@Override
+		public int size()
+		{
+			return indices.size();
+		}
+	}
+
+	private class LinkCollection extends AbstractCollection<DTLink<L,T>>
+	{
+		@Override
+		public Iterator<DTLink<L,T>> iterator()
+		{
+			return new LinkIterator();
+		}
+
+		@Override
+		public int size()
+		{
+			return numLinks;
+		}
+
+		private class LinkIterator implements Iterator<DTLink<L,T>>
+		{
+			private long graphState = state();
+			private int node = 0, i = 0;
+
+			private void check()
+			{
+				if(graphState != state())
+					throw new ConcurrentModificationException("Graph has been modified.");
+			}
+
+			@Override
+			public boolean hasNext()
+			{
+				check();
+				while(node < size && i >= outDegrees[node])
+				{
+					node++;
+					i = 0;
+				}
+
+				return node < size;
+			}
+
+			@Override
+			public DTLink<L,T> next()
+			{
+				if(! hasNext())
+					throw new NoSuchElementException();
+
+				DTLink<L, T> link = new DictDTLink(node, out[node][2 * i], out[node][2 * i + 1]);
+				i++;
+
+				return link;
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException("Method not supported");
+			}
+		}
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int hash = 1;
+		for(int i = 0; i < size; i++)
+		{
+			L label = labelTable.get(labels[i]);
+			hash = 31 * hash + (label == null ? 0 : label.hashCode());
+		}
+
+		return hash;
+	}
+
+	public boolean equals(Object other)
+	{
+		if(!(other instanceof DTGraph<?,?>))
+			return false;
+
+		DTGraph<?, ?> oth = (DTGraph<?, ?>) other;
+		if(! oth.level().equals(level()))
+			return false;
+
+		if(size() != oth.size())
+			return false;
+
+		if(numLinks() != oth.numLinks())
+			return false;
+
+		if(labels().size() != oth.labels().size())
+			return false;
+
+		for(DTNode<L,T> node : nodes())
+		{
+			DTNode<?, ?> othNode = oth.get(node.index());
+
+			if(! Functions.equals(node.label(), othNode.label()))
+				return false;
+
+			// * Compare the out-links as a multiset of (neighbor, tag) pairs
+			FrequencyModel<List<Object>> outs = new FrequencyModel<List<Object>>(),
+					othOuts = new FrequencyModel<List<Object>>();
+
+			for(DTLink<L, T> link : node.linksOut())
+				outs.add(Arrays.<Object>asList(link.to().index(), link.tag()));
+
+			for(DTLink<?, ?> link : othNode.linksOut())
+				othOuts.add(Arrays.<Object>asList(link.to().index(), link.tag()));
+
+			if(! outs.equals(othOuts))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a representation of the graph in Dot language format.
+	 */
+	public String toString()
+	{
+		StringBuffer sb = new StringBuffer();
+		sb.append("digraph {");
+
+		boolean first = true;
+		for(DTLink<L, T> link : links())
+		{
+			if(first)
+				first = false;
+			else
+				sb.append("; ");
+
+			sb.append(link);
+		}
+
+		for(int i = 0; i < size; i++)
+			if(outDegrees[i] + inDegrees[i] == 0)
+			{
+				if(first)
+					first = false;
+				else
+					sb.append("; ");
+
+				sb.append(get(i));
+			}
+
+		sb.append("}");
+
+		return sb.toString();
+	}
+
+	/**
+	 * Copies the given graph into a dictionary-encoded graph with fresh symbol
+	 * tables.
+	 */
+	public static <L, T> DictDTGraph<L, T> copy(DTGraph<L, T> graph)
+	{
+		DictDTGraph<L, T> copy = new DictDTGraph<L, T>(graph.size());
+
+		for(DTNode<L, T> node : graph.nodes())
+			copy.add(node.label());
+
+		for(DTLink<L, T> link : graph.links())
+			copy.connect(link.from().index(), link.to().index(), copy.tagTable.id(link.tag()));
+
+		return copy;
+	}
+
+	@Override
+	public int numNeighbors(int node)
+	{
+		return inDegrees[node] + outDegrees[node];
+	}
+
+	@Override
+	public int neighbors(int node, int[] buffer)
+	{
+		int n = 0;
+		// * A self-loop is both an in- and an out-link: only the out-link is 
+		//   written
+		for(int i = 0; i < inDegrees[node]; i++)
+			if(in[node][2 * i] != node)
+				buffer[n++] = in[node][2 * i];
+		for(int i = 0; i < outDegrees[node]; i++)
+			buffer[n++] = out[node][2 * i];
+		
+		return n;
+	}
+}
@@ -4,6 +4,13 @@ import java.io.File;
 import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -69,6 +76,189 @@ public class Global
 		random = new Random(seed);
 	}
 	
+	private static int numThreads = Runtime.getRuntime().availableProcessors();
+	private static ExecutorService executor = null;
+	
+	/**
+	 * The number of threads used by multithreaded algorithms. Defaults to the 
+	 * number of available processors.
+	 */
+	public static int numThreads()
+	{
+		return numThreads;
+	}
+	
+	/**
+	 * Sets the number of threads used by multithreaded algorithms. If the 
+	 * global executor has already been created, it is shut down and replaced. 
+	 */
+	public static synchronized void setNumThreads(int numThreads)
+	{
+		if(numThreads < 1)
+			throw new IllegalArgumentException("Number of threads ("+numThreads+") must be positive.");
+		
+		Global.numThreads = numThreads;
+		
+		if(executor != null)
+		{
+			executor.shutdown();
+			executor = null;
+		}
+	}
+	
+	/**
+	 * A single thread pool that all classes are supposed to use for 
+	 * multithreaded work, so that threads are not created on every call. 
+	 * 
+	 * The pool has a fixed number of (daemon) threads. Tasks submitted to this 
+	 * executor should not wait for other tasks submitted to it, since all 
+	 * threads may be occupied by waiting tasks.
+	 * 
+	 * @return
+	 */
+	public static synchronized ExecutorService executor()
+	{
+		if(executor == null)
+			executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory()
+			{
+				private AtomicInteger created = new AtomicInteger();
+				
+				@Override
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Worker(runnable, "nodes-worker-" + created.getAndIncrement());
+					thread.setDaemon(true);
+					
+					return thread;
+				}
+			});
+		
+		return executor;
+	}
+	
+	/**
+	 * Whether the current thread belongs to the global executor. Code that may
+	 * run inside a task, and would otherwise submit tasks and wait for them,
+	 * should do the work on the current thread instead.
+	 */
+	public static boolean inExecutor()
+	{
+		return Thread.currentThread() instanceof Worker;
+	}
+	
+	/**
+	 * Runs the given tasks on the global executor, and returns their results 
+	 * in the order of the tasks.
+	 * 
+	 * The tasks are run on the current thread, in order, if numThreads is 1, 
+	 * if there is only one task, or if the current thread belongs to the 
+	 * global executor (since a task can't wait for other tasks). Otherwise, 
+	 * at most numThreads workers are submitted to the executor, which take 
+	 * the tasks in order. If a task fails, the remaining tasks are cancelled 
+	 * and its exception is rethrown (wrapped in a RuntimeException if it is 
+	 * checked).
+	 * 
+	 * @param numThreads The maximum number of tasks that run at the same 
+	 * 	time. The global executor may run fewer, if numThreads is larger than 
+	 * 	{@link #numThreads()}.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> List<T> invokeAll(final List<? extends Callable<T>> tasks, int numThreads)
+	{
+		if(numThreads < 1)
+			throw new IllegalArgumentException("Number of threads ("+numThreads+") must be positive.");
+		
+		final int numTasks = tasks.size();
+		List<T> results = new ArrayList<T>(numTasks);
+		
+		if(numThreads == 1 || numTasks <= 1 || inExecutor())
+		{
+			try
+			{
+				for(Callable<T> task : tasks)
+					results.add(task.call());
+			} catch(RuntimeException e)
+			{
+				throw e;
+			} catch(Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+			
+			return results;
+		}
+		
+		// * The results are written by the workers, and read after their 
+		//   futures have returned
+		final Object[] values = new Object[numTasks];
+		final AtomicInteger next = new AtomicInteger();
+		
+		int numWorkers = Math.min(numThreads, numTasks);
+		List<Future<Object>> futures = new ArrayList<Future<Object>>(numWorkers);
+		for(int w = 0; w < numWorkers; w++)
+			futures.add(executor().submit(new Callable<Object>()
+			{
+				@Override
+				public Object call() throws Exception
+				{
+					for(int i = next.getAndIncrement(); i < numTasks; i = next.getAndIncrement())
+					{
+						if(Thread.interrupted())
+							throw new InterruptedException();
+						
+						try
+						{
+							values[i] = tasks.get(i).call();
+						} catch(Exception e)
+						{
+							// * Stop the other workers from taking new tasks
+							next.set(numTasks);
+							throw e;
+						}
+					}
+					
+					return null;
+				}
+			}));
+		
+		try
+		{
+			for(Future<Object> future : futures)
+				future.get();
+		} catch (InterruptedException e)
+		{
+			cancel(futures);
+			throw new RuntimeException(e);
+		} catch (ExecutionException e)
+		{
+			cancel(futures);
+			
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			
+			throw new RuntimeException(e.getCause());
+		}
+		
+		for(Object value : values)
+			results.add((T) value);
+		
+		return results;
+	}
+	
+	private static void cancel(List<? extends Future<?>> futures)
+	{
+		for(Future<?> future : futures)
+			future.cancel(true);
+	}
+	
+	private static class Worker extends Thread
+	{
+		public Worker(Runnable runnable, String name)
+		{
+			super(runnable, name);
+		}
+	}
+	
 	/**
 	 * Shorthand for the global logger
 	 * @return
@@ -652,6 +652,15 @@ public class Graphs
 		return out;
 	}	
 	
+	/**
+	 * Reorders the graph by a permutation given as an int array: the node at
+	 * index i in the graph gets index newIndices[i] in the result.
+	 */
+	public static <L> Graph<L> reorder(Graph<L> graph, int[] newIndices)
+	{
+		return reorder(graph, new Order(newIndices));
+	}
+	
 	public static <L> Graph<L> reorder(Graph<L> graph, Order order)
 	{
 		if(graph instanceof DGraph<?>)
@@ -36,7 +36,7 @@ import org.nodes.util.Series;
  *
  * @param <L>
  */
-public class LightDGraph<L> implements DGraph<L>, FastWalkable<L, DNode<L>>
+public class LightDGraph<L> implements DGraph<L>, FastWalkable<L, DNode<L>>, NeighborIndices
 {
 	// * the initial capacity reserved for neighbors
 	public static final int NEIGHBOR_CAPACITY = 5;
@@ -903,6 +903,49 @@ public class LightDGraph<L> implements DGraph<L>, FastWalkable<L, DNode<L>>
 		sorted = true;
 	}
 	
+	/**
+	 * Returns a frozen copy of this graph in compressed sparse row format. 
+	 * The neighbour lists of this graph are sorted as a side effect.
+	 * 
+	 * The returned graph is read-only, and stores each link as two ints, 
+	 * which makes it much more memory efficient for large graphs that only 
+	 * need to be analysed.
+	 * 
+	 * @return
+	 */
+	public CSRDGraph<L> freeze()
+	{
+		sort();
+		
+		return new CSRDGraph<L>(new ArrayList<L>(labels), 
+				toCSROffsets(out), toCSRValues(out), 
+				toCSROffsets(in), toCSRValues(in));
+	}
+	
+	static int[] toCSROffsets(List<List<Integer>> lists)
+	{
+		int[] offsets = new int[lists.size() + 1];
+		for(int i : Series.series(lists.size()))
+			offsets[i + 1] = offsets[i] + lists.get(i).size();
+		
+		return offsets;
+	}
+	
+	static int[] toCSRValues(List<List<Integer>> lists)
+	{
+		int total = 0;
+		for(List<Integer> list : lists)
+			total += list.size();
+		
+		int[] values = new int[total];
+		int v = 0;
+		for(List<Integer> list : lists)
+			for(int value : list)
+				values[v++] = value;
+		
+		return values;
+	}
+	
 	
 	
 	/**
@@ -1012,4 +1055,25 @@ public class LightDGraph<L> implements DGraph<L>, FastWalkable<L, DNode<L>>
 		
 		return new NodeList(indices);
 	}
+
+	@Override
+	public int numNeighbors(int node)
+	{
+		return in.get(node).size() + out.get(node).size();
+	}
+
+	@Override
+	public int neighbors(int node, int[] buffer)
+	{
+		int n = 0;
+		// * A self-loop is both an in- and an out-link: only the out-link is 
+		//   written
+		for(int i : in.get(node))
+			if(i != node)
+				buffer[n++] = i;
+		for(int i : out.get(node))
+			buffer[n++] = i;
+		
+		return n;
+	}
 }
@@ -19,7 +19,7 @@ import org.nodes.util.Functions;
 import org.nodes.util.Pair;
 import org.nodes.util.Series;
 
-public class LightDTGraph<L,T> implements DTGraph<L, T> {
+public class LightDTGraph<L,T> implements DTGraph<L, T>, NeighborIndices {
 	// * the initial capacity reserved for neighbors
 	public static final int NEIGHBOR_CAPACITY = 5;
 
@@ -1114,4 +1114,25 @@ public class LightDTGraph<L,T> implements DTGraph<L, T> {
 		return sb.toString();
 	}
 	
+
+	@Override
+	public int numNeighbors(int node)
+	{
+		return in.get(node).size() + out.get(node).size();
+	}
+
+	@Override
+	public int neighbors(int node, int[] buffer)
+	{
+		int n = 0;
+		// * A self-loop is both an in- and an out-link: only the out-link is 
+		//   written
+		for(int i : in.get(node))
+			if(i != node)
+				buffer[n++] = i;
+		for(int i : out.get(node))
+			buffer[n++] = i;
+		
+		return n;
+	}
 }
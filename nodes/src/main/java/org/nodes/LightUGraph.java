@@ -38,7 +38,7 @@ import org.nodes.util.Series;
  *
  * @param <L>
  */
-public class LightUGraph<L> implements UGraph<L>, FastWalkable<L, UNode<L>>
+public class LightUGraph<L> implements UGraph<L>, FastWalkable<L, UNode<L>>, NeighborIndices
 {
 	// * the initial capacity reserved for neighbors
 	public static final int NEIGHBOR_CAPACITY = 5;
@@ -718,6 +718,26 @@ public class LightUGraph<L> implements UGraph<L>, FastWalkable<L, UNode<L>>
 		sorted = true;
 	}
 	
+	/**
+	 * Returns a frozen copy of this graph in compressed sparse row format. 
+	 * The neighbour lists of this graph are sorted as a side effect.
+	 * 
+	 * The returned graph is read-only, and stores each link as two ints, 
+	 * which makes it much more memory efficient for large graphs that only 
+	 * need to be analysed.
+	 * 
+	 * @return
+	 */
+	public CSRUGraph<L> freeze()
+	{
+		sort();
+		
+		return new CSRUGraph<L>(new ArrayList<L>(labels), 
+				LightDGraph.toCSROffsets(neighbors), 
+				LightDGraph.toCSRValues(neighbors), 
+				numLinks);
+	}
+	
 	
 	
 	/**
@@ -860,4 +880,20 @@ public class LightUGraph<L> implements UGraph<L>, FastWalkable<L, UNode<L>>
 		
 		return new NodeList(indices);
 	}
+
+	@Override
+	public int numNeighbors(int node)
+	{
+		return neighbors.get(node).size();
+	}
+
+	@Override
+	public int neighbors(int node, int[] buffer)
+	{
+		int n = 0;
+		for(int i : neighbors.get(node))
+			buffer[n++] = i;
+		
+		return n;
+	}
 }
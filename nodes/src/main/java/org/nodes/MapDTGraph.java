@@ -48,7 +48,7 @@ import org.nodes.util.Series;
  *
  * @param <L>
  */
-public class MapDTGraph<L, T> implements DTGraph<L, T>, HasPersistentNodes, HasPersistentLinks
+public class MapDTGraph<L, T> implements DTGraph<L, T>, HasPersistentNodes, HasPersistentLinks, NeighborIndices
 {
 	protected List<MapDTNode> nodeList = new ArrayList<MapDTNode>();
 	protected Map<L, Set<MapDTNode>> nodes = new LinkedHashMap<L, Set<MapDTNode>>();
@@ -217,7 +217,7 @@ public class MapDTGraph<L, T> implements DTGraph<L, T>, HasPersistentNodes, HasP
 		{
 			checkDead();
 			
-			if(this.graph().hashCode() != other.graph().hashCode())
+			if(this.graph() != other.graph())
 				throw new IllegalArgumentException("Can only connect to nodes from the same graph (arguments: this="+this+", other="+other+")");
 			
 			// * This graph can only contain MapDTNodes, so this is a safe cast
@@ -1071,15 +1071,17 @@ public class MapDTGraph<L, T> implements DTGraph<L, T>, HasPersistentNodes, HasP
 		if(hashMod != null && hashMod == modCount)
 			return hash;
 		
-		hash = 1;
+		// * Computed in a local, so that threads sharing this graph don't
+		//   interfere
+		int h = 1;
 		
 		// * labels
 		for(DTNode<L, T> node : nodes())
-		    hash = 31 * hash + node.hashCode();
+		    h = 31 * h + node.hashCode();
 
 		// * tags 
 		for(DTLink<L, T> link : links())
-			hash = 31 * hash + link.hashCode();
+			h = 31 * h + link.hashCode();
 		
 		// * structure
 		for(DTNode<L, T> node : nodes())
@@ -1089,17 +1091,18 @@ public class MapDTGraph<L, T> implements DTGraph<L, T>, HasPersistentNodes, HasP
 				nbIndices.add(neighbor.index());
 			
 			Collections.sort(nbIndices);
-			hash = 31 * hash + nbIndices.hashCode();
+			h = 31 * h + nbIndices.hashCode();
 			
 			nbIndices = new ArrayList<Integer>(node.inDegree());
 			for(DTNode<L, T> neighbor : node.in())
 				nbIndices.add(neighbor.index());
 			
 			Collections.sort(nbIndices);
-			hash = 31 * hash + nbIndices.hashCode();
+			h = 31 * h + nbIndices.hashCode();
 		}
 		
-		return hash;
+		hash = h;
+		return h;
 	}
 	
 	@Override
@@ -1178,4 +1181,28 @@ public class MapDTGraph<L, T> implements DTGraph<L, T>, HasPersistentNodes, HasP
 		Object obj = DTGraph.class;
 		return (Class<? extends DTGraph<L, T>>) obj;
 	}
+
+	@Override
+	public int numNeighbors(int node)
+	{
+		MapDTNode n = nodeList.get(node);
+		return n.neighborsFrom.size() + n.neighborsTo.size();
+	}
+
+	@Override
+	public int neighbors(int node, int[] buffer)
+	{
+		MapDTNode n = nodeList.get(node);
+		
+		int i = 0;
+		// * A self-loop is both an in- and an out-link: only the out-link is 
+		//   written
+		for(MapDTNode neighbor : n.neighborsFrom)
+			if(neighbor.index != node)
+				buffer[i++] = neighbor.index;
+		for(MapDTNode neighbor : n.neighborsTo)
+			buffer[i++] = neighbor.index;
+		
+		return i;
+	}
 }
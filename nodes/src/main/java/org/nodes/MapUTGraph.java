@@ -47,7 +47,7 @@ import org.nodes.util.Series;
  *
  * @param <L>
  */
-public class MapUTGraph<L, T> implements UTGraph<L, T>, HasPersistentNodes, HasPersistentLinks
+public class MapUTGraph<L, T> implements UTGraph<L, T>, HasPersistentNodes, HasPersistentLinks, NeighborIndices
 {
 	protected List<MapUTNode> nodeList = new ArrayList<MapUTNode>();
 	protected Map<L, Set<MapUTNode>> nodes = new LinkedHashMap<L, Set<MapUTNode>>();
@@ -197,7 +197,7 @@ public class MapUTGraph<L, T> implements UTGraph<L, T>, HasPersistentNodes, HasP
 		{
 			checkDead();
 			
-			if(this.graph().hashCode() != other.graph().hashCode())
+			if(this.graph() != other.graph())
 				throw new IllegalArgumentException("Can only connect to nodes from the same graph (arguments: this="+this+", other="+other+")");
 			
 			// * This graph can only contain MapDTNodes, so this is a safe cast
@@ -826,14 +826,16 @@ public class MapUTGraph<L, T> implements UTGraph<L, T>, HasPersistentNodes, HasP
 		if(hashMod != null && hashMod == modCount)
 			return hash;
 		
-		hash = 1;
+		// * Computed in a local, so that threads sharing this graph don't
+		//   interfere
+		int h = 1;
 		
 		for(UTNode<L, T> node : nodes())
-		    hash = 31 * hash + (node == null ? 0 : node.hashCode());
+		    h = 31 * h + (node == null ? 0 : node.hashCode());
 		
 		// * tags 
 		for(UTLink<L, T> link : links())
-			hash = 31 * hash + link.hashCode();
+			h = 31 * h + link.hashCode();
 		
 		// * structure
 		for(UTNode<L, T> node : nodes())
@@ -843,10 +845,11 @@ public class MapUTGraph<L, T> implements UTGraph<L, T>, HasPersistentNodes, HasP
 				nbIndices.add(neighbor.index());
 			
 			Collections.sort(nbIndices);
-			hash = 31 * hash + nbIndices.hashCode();
+			h = 31 * h + nbIndices.hashCode();
 		}
 		
-		return hash;
+		hash = h;
+		return h;
 	}
 	
 	@Override
@@ -932,4 +935,20 @@ public class MapUTGraph<L, T> implements UTGraph<L, T>, HasPersistentNodes, HasP
 		Object obj = UTGraph.class;
 		return (Class<? extends UTGraph<L, T>>) obj;
 	}
+
+	@Override
+	public int numNeighbors(int node)
+	{
+		return nodeList.get(node).neighbors.size();
+	}
+
+	@Override
+	public int neighbors(int node, int[] buffer)
+	{
+		int i = 0;
+		for(MapUTNode neighbor : nodeList.get(node).neighbors)
+			buffer[i++] = neighbor.index;
+		
+		return i;
+	}
 }
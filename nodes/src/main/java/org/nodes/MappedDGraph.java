@@ -0,0 +1,873 @@
+package org.nodes;
+
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.nodes.util.FrequencyModel;
+import org.nodes.util.Functions;
+import org.nodes.util.MappedArrays.Ints;
+import org.nodes.util.MappedArrays.Longs;
+
+/**
+ * A read-only directed graph, served directly from a memory-mapped file in
+ * the binary format of {@link org.nodes.data.GraphFile}.
+ *
+ * The structure is stored in compressed sparse row format, as in
+ * {@link CSRDGraph}, but the arrays are not loaded into the heap: all methods
+ * read from the mapped buffers, so opening a graph costs almost nothing, and
+ * several JVMs on the same machine share the same pages.
+ *
+ * Labels are stored as indices into a dictionary of distinct labels. Nodes
+ * without a label have label null.
+ */
+public class MappedDGraph implements DGraph<String>, FastWalkable<String, DNode<String>>, NeighborIndices
+{
+	private int size;
+
+	private Longs outOffsets;
+	private Ints outTargets;
+
+	private Longs inOffsets;
+	private Ints inSources;
+
+	// * may be null, if the graph has no labels
+	private Ints labelIds;
+	private List<String> dictionary;
+
+	private Integer hash = null;
+
+	/**
+	 * Creates a graph from mapped arrays. Clients should use
+	 * {@link org.nodes.data.GraphFile#readDirected(java.io.File)} instead.
+	 *
+	 * @param outOffsets An array of size n+1 such that the out-neighbours of
+	 * 	node i are stored from outOffsets[i] up to outOffsets[i+1].
+	 * @param outTargets The concatenated (sorted) out-neighbour lists
+	 * @param inOffsets As outOffsets, for the in-neighbours
+	 * @param inSources The concatenated (sorted) in-neighbour lists
+	 * @param labelIds For each node, the index of its label in the dictionary
+	 * 	or -1 if its label is null. If this argument is null, all labels are
+	 * 	null.
+	 * @param dictionary The distinct labels.
+	 */
+	public MappedDGraph(
+			Longs outOffsets, Ints outTargets, Longs inOffsets, Ints inSources,
+			Ints labelIds, List<String> dictionary)
+	{
+		if(outOffsets.length() != inOffsets.length())
+			throw new IllegalArgumentException("Offset arrays should have the same length. Lengths were "+outOffsets.length()+" and "+inOffsets.length()+".");
+		if(outTargets.length() != inSources.length())
+			throw new IllegalArgumentException("Number of out-links ("+outTargets.length()+") does not match number of in-links ("+inSources.length()+").");
+		if(outTargets.length() > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Number of links ("+outTargets.length()+") cannot be larger than Integer.MAX_VALUE.");
+
+		this.size = (int)(outOffsets.length() - 1);
+
+		if(labelIds != null && labelIds.length() != size)
+			throw new IllegalArgumentException("Number of label ids ("+labelIds.length()+") does not match the number of nodes ("+size+").");
+
+		this.outOffsets = outOffsets;
+		this.outTargets = outTargets;
+		this.inOffsets = inOffsets;
+		this.inSources = inSources;
+		this.labelIds = labelIds;
+		this.dictionary = dictionary;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public int numLinks()
+	{
+		return (int) outTargets.length();
+	}
+
+	public int outDegree(int index)
+	{
+		return (int)(outOffsets.get(index + 1) - outOffsets.get(index));
+	}
+
+	public int inDegree(int index)
+	{
+		return (int)(inOffsets.get(index + 1) - inOffsets.get(index));
+	}
+
+	/**
+	 * Returns the index of the j-th out-neighbour of node i.
+	 */
+	public int out(int i, int j)
+	{
+		return outTargets.get(outOffsets.get(i) + j);
+	}
+
+	/**
+	 * Returns the index of the j-th in-neighbour of node i.
+	 */
+	public int in(int i, int j)
+	{
+		return inSources.get(inOffsets.get(i) + j);
+	}
+
+	private String labelOf(int index)
+	{
+		if(labelIds == null)
+			return null;
+
+		int id = labelIds.get(index);
+		return id < 0 ? null : dictionary.get(id);
+	}
+
+	@Override
+	public DNode<String> node(String label)
+	{
+		for(int i = 0; i < size; i++)
+			if(Functions.equals(labelOf(i), label))
+				return new MappedDNode(i);
+
+		throw new NoSuchElementException("Graph does not contain node with label "+label+"");
+	}
+
+	private class MappedDNode implements DNode<String>
+	{
+		private int index;
+
+		public MappedDNode(int index)
+		{
+			this.index = index;
+		}
+
+		@Override
+		public String label()
+		{
+			return MappedDGraph.this.labelOf(index);
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public boolean dead()
+		{
+			return false;
+		}
+
+		@Override
+		public int degree()
+		{
+			return inDegree() + outDegree();
+		}
+
+		@Override
+		public Collection<? extends DNode<String>> neighbors()
+		{
+			return new NodeList(merge(index));
+		}
+
+		@Override
+		public DNode<String> neighbor(String label)
+		{
+			for(long i = inOffsets.get(index); i < inOffsets.get(index + 1); i++)
+				if(Functions.equals(labelOf(inSources.get(i)), label))
+					return new MappedDNode(inSources.get(i));
+			for(long i = outOffsets.get(index); i < outOffsets.get(index + 1); i++)
+				if(Functions.equals(labelOf(outTargets.get(i)), label))
+					return new MappedDNode(outTargets.get(i));
+
+			return null;
+		}
+
+		@Override
+		public Collection<? extends DNode<String>> neighbors(String label)
+		{
+			int[] all = merge(index);
+
+			int n = 0;
+			for(int i : all)
+				if(Functions.equals(labelOf(i), label))
+					all[n++] = i;
+
+			return new NodeList(Arrays.copyOf(all, n));
+		}
+
+		@Override
+		public Collection<? extends DNode<String>> out()
+		{
+			return new RangeList(outTargets, outOffsets.get(index), outOffsets.get(index + 1));
+		}
+
+		@Override
+		public Collection<? extends DNode<String>> out(String label)
+		{
+			return filter(outTargets, outOffsets.get(index), outOffsets.get(index + 1), label);
+		}
+
+		@Override
+		public Collection<? extends DNode<String>> in()
+		{
+			return new RangeList(inSources, inOffsets.get(index), inOffsets.get(index + 1));
+		}
+
+		@Override
+		public Collection<? extends DNode<String>> in(String label)
+		{
+			return filter(inSources, inOffsets.get(index), inOffsets.get(index + 1), label);
+		}
+
+		@Override
+		public DLink<String> connect(Node<String> to)
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public void disconnect(Node<String> other)
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public boolean connected(Node<String> other)
+		{
+			if(!(other instanceof DNode<?>))
+				return false;
+
+			if(other.graph() != MappedDGraph.this)
+				return false;
+
+			DNode<String> o = (DNode<String>) other;
+
+			return this.connectedTo(o) || o.connectedTo(this);
+		}
+
+		@Override
+		public boolean connectedTo(DNode<String> to)
+		{
+			if(to.graph() != MappedDGraph.this)
+				return false;
+
+			return outTargets.contains(outOffsets.get(index), outOffsets.get(index + 1), to.index());
+		}
+
+		@Override
+		public DGraph<String> graph()
+		{
+			return MappedDGraph.this;
+		}
+
+		@Override
+		public int index()
+		{
+			return index;
+		}
+
+		@Override
+		public int inDegree()
+		{
+			return MappedDGraph.this.inDegree(index);
+		}
+
+		@Override
+		public int outDegree()
+		{
+			return MappedDGraph.this.outDegree(index);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + 1237;
+			result = prime * result + index;
+			result = prime * result + ((label() == null) ? 0 : label().hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+
+			if (obj == null)
+				return false;
+
+			if (getClass() != obj.getClass())
+				return false;
+
+			MappedDNode other = (MappedDNode) obj;
+
+			if (graph() != other.graph())
+				return false;
+
+			return index == other.index;
+		}
+
+		public String toString()
+		{
+			return label() == null ? ("n"+index) : label() + "_" +index;
+		}
+
+		@Override
+		public List<DLink<String>> links()
+		{
+			List<DLink<String>> list = new ArrayList<DLink<String>>(degree());
+
+			for(long i = outOffsets.get(index); i < outOffsets.get(index + 1); i++)
+				list.add(new MappedDLink(index, outTargets.get(i)));
+
+			for(long i = inOffsets.get(index); i < inOffsets.get(index + 1); i++)
+				if(inSources.get(i) != index) // no double reflexive links
+					list.add(new MappedDLink(inSources.get(i), index));
+
+			return list;
+		}
+
+		@Override
+		public List<DLink<String>> linksOut()
+		{
+			List<DLink<String>> list = new ArrayList<DLink<String>>(outDegree());
+			for(long i = outOffsets.get(index); i < outOffsets.get(index + 1); i++)
+				list.add(new MappedDLink(index, outTargets.get(i)));
+
+			return list;
+		}
+
+		@Override
+		public List<DLink<String>> linksIn()
+		{
+			List<DLink<String>> list = new ArrayList<DLink<String>>(inDegree());
+			for(long i = inOffsets.get(index); i < inOffsets.get(index + 1); i++)
+				list.add(new MappedDLink(inSources.get(i), index));
+
+			return list;
+		}
+
+		@Override
+		public Collection<? extends DLink<String>> links(Node<String> other)
+		{
+			List<DLink<String>> list = new ArrayList<DLink<String>>();
+
+			int o = other.index();
+			for(long i = outOffsets.get(index); i < outOffsets.get(index + 1); i++)
+				if(outTargets.get(i) == o)
+					list.add(new MappedDLink(index, o));
+
+			if(index != o)
+				for(long i = inOffsets.get(index); i < inOffsets.get(index + 1); i++)
+					if(inSources.get(i) == o)
+						list.add(new MappedDLink(o, index));
+
+			return list;
+		}
+
+		@Override
+		public Collection<? extends DLink<String>> linksOut(DNode<String> other)
+		{
+			List<DLink<String>> list = new ArrayList<DLink<String>>();
+
+			int o = other.index();
+			for(long i = outOffsets.get(index); i < outOffsets.get(index + 1); i++)
+				if(outTargets.get(i) == o)
+					list.add(new MappedDLink(index, o));
+
+			return list;
+		}
+
+		@Override
+		public Collection<? extends DLink<String>> linksIn(DNode<String> other)
+		{
+			List<DLink<String>> list = new ArrayList<DLink<String>>();
+
+			int o = other.index();
+			for(long i = inOffsets.get(index); i < inOffsets.get(index + 1); i++)
+				if(inSources.get(i) == o)
+					list.add(new MappedDLink(o, index));
+
+			return list;
+		}
+	}
+
+	/**
+	 * Merges the (sorted) in and out neighbour lists of the given node into a
+	 * sorted array without duplicates.
+	 */
+	private int[] merge(int index)
+	{
+		long a = inOffsets.get(index), aEnd = inOffsets.get(index + 1);
+		long b = outOffsets.get(index), bEnd = outOffsets.get(index + 1);
+
+		int[] result = new int[(int)((aEnd - a) + (bEnd - b))];
+		int n = 0;
+
+		while(a < aEnd || b < bEnd)
+		{
+			int next;
+			if(b >= bEnd || (a < aEnd && inSources.get(a) <= outTargets.get(b)))
+				next = inSources.get(a++);
+			else
+				next = outTargets.get(b++);
+
+			if(n == 0 || result[n - 1] != next)
+				result[n++] = next;
+		}
+
+		return n == result.length ? result : Arrays.copyOf(result, n);
+	}
+
+	private NodeList filter(Ints values, long from, long to, String label)
+	{
+		int[] indices = new int[(int)(to - from)];
+		int n = 0;
+
+		for(long i = from; i < to; i++)
+			if(Functions.equals(labelOf(values.get(i)), label))
+				indices[n++] = values.get(i);
+
+		return new NodeList(Arrays.copyOf(indices, n));
+	}
+
+	private class MappedDLink implements DLink<String>
+	{
+		private int from, to;
+
+		public MappedDLink(int from, int to)
+		{
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Collection<? extends Node<String>> nodes()
+		{
+			return Arrays.asList(from(), to());
+		}
+
+		@Override
+		public Graph<String> graph()
+		{
+			return MappedDGraph.this;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public boolean dead()
+		{
+			return false;
+		}
+
+		@Override
+		public DNode<String> first()
+		{
+			return from();
+		}
+
+		@Override
+		public DNode<String> second()
+		{
+			return to();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + MappedDGraph.this.hashCode();
+			result = prime * result + from;
+			result = prime * result + to;
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			MappedDLink other = (MappedDLink) obj;
+			if (graph() != other.graph())
+				return false;
+
+			return from == other.from && to == other.to;
+		}
+
+		public String toString()
+		{
+			return from() + " -> " + to();
+		}
+
+		@Override
+		public DNode<String> from()
+		{
+			return new MappedDNode(from);
+		}
+
+		@Override
+		public DNode<String> to()
+		{
+			return new MappedDNode(to);
+		}
+
+		@Override
+		public DNode<String> other(Node<String> current)
+		{
+			if(current.index() != from)
+				return from();
+			return to();
+		}
+	}
+
+	/**
+	 * A list of nodes, backed by an int array of indices.
+	 */
+	private class NodeList extends AbstractList<DNode<String>>
+	{
+		private int[] indices;
+
+		public NodeList(int[] indices)
+		{
+			this.indices = indices;
+		}
+
+		@Override
+		public MappedDNode get(int index)
+		{
+			return new MappedDNode(indices[index]);
+		}
+
+		@Override
+		public int size()
+		{
+			return indices.length;
+		}
+	}
+
+	/**
+	 * A list of nodes, backed directly by a range of a mapped array.
+	 */
+	private class RangeList extends AbstractList<DNode<String>>
+	{
+		private Ints values;
+		private long from;
+		private int size;
+
+		public RangeList(Ints values, long from, long to)
+		{
+			this.values = values;
+			this.from = from;
+			this.size = (int)(to - from);
+		}
+
+		@Override
+		public MappedDNode get(int index)
+		{
+			if(index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index "+index+" out of bounds for size "+size+".");
+
+			return new MappedDNode(values.get(from + index));
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+
+	/**
+	 * The nodes of the graph, as a list that creates node objects on demand.
+	 */
+	private class AllNodes extends AbstractList<DNode<String>>
+	{
+		@Override
+		public MappedDNode get(int index)
+		{
+			if(index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index "+index+" out of bounds for size "+size+".");
+
+			return new MappedDNode(index);
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+
+	@Override
+	public Collection<? extends DNode<String>> nodes(String label)
+	{
+		List<DNode<String>> nodes = new ArrayList<DNode<String>>();
+		for(int i = 0; i < size; i++)
+			if(Functions.equals(labelOf(i), label))
+				nodes.add(new MappedDNode(i));
+
+		return nodes;
+	}
+
+	@Override
+	public List<? extends DNode<String>> nodes()
+	{
+		return new AllNodes();
+	}
+
+	@Override
+	public Collection<? extends DLink<String>> links()
+	{
+		return new LinkCollection();
+	}
+
+	/**
+	 * A collection of all links in this graph.
+	 */
+	private class LinkCollection extends AbstractCollection<DLink<String>>
+	{
+		@Override
+		public Iterator<DLink<String>> iterator()
+		{
+			return new LinkIterator();
+		}
+
+		@Override
+		public int size()
+		{
+			return numLinks();
+		}
+
+		private class LinkIterator implements Iterator<DLink<String>>
+		{
+			// * the index of the next link in outTargets
+			private long next = 0;
+			// * the node that owns the next link
+			private int from = 0;
+
+			@Override
+			public boolean hasNext()
+			{
+				return next < outTargets.length();
+			}
+
+			@Override
+			public DLink<String> next()
+			{
+				if(! hasNext())
+					throw new NoSuchElementException();
+
+				while(outOffsets.get(from + 1) <= next)
+					from++;
+
+				return new MappedDLink(from, outTargets.get(next++));
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException("Graph is read-only.");
+			}
+		}
+	}
+
+	@Override
+	public DNode<String> add(String label)
+	{
+		throw new UnsupportedOperationException("Graph is read-only.");
+	}
+
+	@Override
+	public Set<String> labels()
+	{
+		Set<String> labels = new HashSet<String>(dictionary);
+
+		if(labelIds == null)
+			labels.add(null);
+		else
+			for(int i = 0; i < size; i++)
+				if(labelIds.get(i) < 0)
+				{
+					labels.add(null);
+					break;
+				}
+
+		return labels;
+	}
+
+	@Override
+	public boolean connected(String from, String to)
+	{
+		for(DNode<String> a : nodes(from))
+			for(DNode<String> b : nodes(to))
+				if(a.connected(b))
+					return true;
+
+		return false;
+	}
+
+	/**
+	 * The graph cannot be modified, so its state never changes.
+	 */
+	@Override
+	public long state()
+	{
+		return 0;
+	}
+
+	/**
+	 * Returns a representation of the graph in Dot language format.
+	 */
+	public String toString()
+	{
+		StringBuffer sb = new StringBuffer();
+		sb.append("digraph {");
+
+		Set<DNode<String>> nodes = new HashSet<DNode<String>>(nodes());
+
+		for(DLink<String> link : links())
+		{
+			if(sb.length() != 9)
+				sb.append("; ");
+
+			sb.append(link);
+
+			nodes.remove(link.first());
+			nodes.remove(link.second());
+		}
+
+		for(DNode<String> node : nodes)
+			sb.append("; " + node);
+
+		sb.append("}");
+
+		return sb.toString();
+	}
+
+	@Override
+	public int hashCode()
+	{
+		if(hash != null)
+			return hash;
+
+		int h = 1;
+		for(int i = 0; i < size; i++)
+		{
+			String label = labelOf(i);
+		    h = 31 * h + (label == null ? 0 : label.hashCode());
+		}
+
+		hash = h;
+		return h;
+	}
+
+	public boolean equals(Object other)
+	{
+		if(!(other instanceof DGraph<?>))
+			return false;
+
+		DGraph<?> oth = (DGraph<?>) other;
+		if(! oth.level().equals(level()))
+			return false;
+
+		if(size() != oth.size())
+			return false;
+
+		if(numLinks() != oth.numLinks())
+			return false;
+
+		if(labels().size() != oth.labels().size())
+			return false;
+
+		for(DNode<String> node : nodes())
+		{
+			DNode<?> othNode = oth.get(node.index());
+
+			if(! Functions.equals(node.label(), othNode.label()))
+				return false;
+
+			FrequencyModel<Integer> outs = new FrequencyModel<Integer>(),
+			                        othOuts = new FrequencyModel<Integer>();
+			for(DNode<String> neighbor : node.out())
+				outs.add(neighbor.index());
+
+			for(DNode<?> othNeighbor : othNode.out())
+				othOuts.add(othNeighbor.index());
+
+			if(! outs.equals(othOuts))
+				return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public DNode<String> get(int i)
+	{
+		return nodes().get(i);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Class<? extends DGraph<String>> level()
+	{
+		Object obj = DGraph.class;
+		return (Class<? extends DGraph<String>>) obj;
+	}
+
+	@Override
+	public List<DNode<String>> neighborsFast(Node<String> node)
+	{
+		if(node.graph() != this)
+			throw new IllegalArgumentException("Cannot call with node from another graph.");
+
+		int index = node.index();
+
+		return Functions.concat(
+				new RangeList(inSources, inOffsets.get(index), inOffsets.get(index + 1)),
+				new RangeList(outTargets, outOffsets.get(index), outOffsets.get(index + 1)));
+	}
+
+	@Override
+	public int numNeighbors(int node)
+	{
+		return (int) (outOffsets.get(node + 1) - outOffsets.get(node) 
+				+ inOffsets.get(node + 1) - inOffsets.get(node));
+	}
+
+	@Override
+	public int neighbors(int node, int[] buffer)
+	{
+		int n = 0;
+		// * A self-loop is both an in- and an out-link: only the out-link is 
+		//   written
+		for(long i = inOffsets.get(node); i < inOffsets.get(node + 1); i++)
+			if(inSources.get(i) != node)
+				buffer[n++] = inSources.get(i);
+		for(long i = outOffsets.get(node); i < outOffsets.get(node + 1); i++)
+			buffer[n++] = outTargets.get(i);
+		
+		return n;
+	}
+}
@@ -0,0 +1,731 @@
+package org.nodes;
+
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.nodes.util.FrequencyModel;
+import org.nodes.util.Functions;
+import org.nodes.util.MappedArrays.Ints;
+import org.nodes.util.MappedArrays.Longs;
+
+/**
+ * A read-only undirected graph, served directly from a memory-mapped file in
+ * the binary format of {@link org.nodes.data.GraphFile}.
+ *
+ * The structure is stored in compressed sparse row format, as in
+ * {@link CSRUGraph}, but the arrays are not loaded into the heap: all methods
+ * read from the mapped buffers, so opening a graph costs almost nothing, and
+ * several JVMs on the same machine share the same pages.
+ *
+ * Labels are stored as indices into a dictionary of distinct labels. Nodes
+ * without a label have label null.
+ */
+public class MappedUGraph implements UGraph<String>, FastWalkable<String, UNode<String>>, NeighborIndices
+{
+	private int size;
+	private int numLinks;
+
+	private Longs offsets;
+	private Ints targets;
+
+	// * may be null, if the graph has no labels
+	private Ints labelIds;
+	private List<String> dictionary;
+
+	private Integer hash = null;
+
+	/**
+	 * Creates a graph from mapped arrays. Clients should use
+	 * {@link org.nodes.data.GraphFile#readUndirected(java.io.File)} instead.
+	 *
+	 * @param offsets An array of size n+1 such that the neighbours of node i
+	 * 	are stored from offsets[i] up to offsets[i+1].
+	 * @param targets The concatenated (sorted) neighbour lists. Each link
+	 * 	occurs in the lists of both its nodes, except self-loops, which occur
+	 * 	once.
+	 * @param numLinks The number of links in the graph
+	 * @param labelIds For each node, the index of its label in the dictionary
+	 * 	or -1 if its label is null. If this argument is null, all labels are
+	 * 	null.
+	 * @param dictionary The distinct labels.
+	 */
+	public MappedUGraph(Longs offsets, Ints targets, int numLinks, Ints labelIds, List<String> dictionary)
+	{
+		this.size = (int)(offsets.length() - 1);
+
+		if(labelIds != null && labelIds.length() != size)
+			throw new IllegalArgumentException("Number of label ids ("+labelIds.length()+") does not match the number of nodes ("+size+").");
+
+		this.offsets = offsets;
+		this.targets = targets;
+		this.numLinks = numLinks;
+		this.labelIds = labelIds;
+		this.dictionary = dictionary;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public int numLinks()
+	{
+		return numLinks;
+	}
+
+	public int degree(int index)
+	{
+		return (int)(offsets.get(index + 1) - offsets.get(index));
+	}
+
+	/**
+	 * Returns the index of the j-th neighbour of node i.
+	 */
+	public int neighbor(int i, int j)
+	{
+		return targets.get(offsets.get(i) + j);
+	}
+
+	private String labelOf(int index)
+	{
+		if(labelIds == null)
+			return null;
+
+		int id = labelIds.get(index);
+		return id < 0 ? null : dictionary.get(id);
+	}
+
+	@Override
+	public UNode<String> node(String label)
+	{
+		for(int i = 0; i < size; i++)
+			if(Functions.equals(labelOf(i), label))
+				return new MappedUNode(i);
+
+		throw new NoSuchElementException("Graph does not contain node with label "+label+"");
+	}
+
+	private class MappedUNode implements UNode<String>
+	{
+		private int index;
+
+		public MappedUNode(int index)
+		{
+			this.index = index;
+		}
+
+		@Override
+		public String label()
+		{
+			return MappedUGraph.this.labelOf(index);
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public boolean dead()
+		{
+			return false;
+		}
+
+		@Override
+		public int degree()
+		{
+			return MappedUGraph.this.degree(index);
+		}
+
+		@Override
+		public Collection<? extends UNode<String>> neighbors()
+		{
+			long from = offsets.get(index), to = offsets.get(index + 1);
+
+			int[] indices = new int[(int)(to - from)];
+			int n = 0;
+			for(long i = from; i < to; i++)
+				if(n == 0 || indices[n - 1] != targets.get(i))
+					indices[n++] = targets.get(i);
+
+			return new NodeList(Arrays.copyOf(indices, n));
+		}
+
+		@Override
+		public UNode<String> neighbor(String label)
+		{
+			for(long i = offsets.get(index); i < offsets.get(index + 1); i++)
+				if(Functions.equals(labelOf(targets.get(i)), label))
+					return new MappedUNode(targets.get(i));
+
+			return null;
+		}
+
+		@Override
+		public Collection<? extends UNode<String>> neighbors(String label)
+		{
+			long from = offsets.get(index), to = offsets.get(index + 1);
+
+			int[] indices = new int[(int)(to - from)];
+			int n = 0;
+			for(long i = from; i < to; i++)
+				if(Functions.equals(labelOf(targets.get(i)), label))
+					if(n == 0 || indices[n - 1] != targets.get(i))
+						indices[n++] = targets.get(i);
+
+			return new NodeList(Arrays.copyOf(indices, n));
+		}
+
+		@Override
+		public ULink<String> connect(Node<String> to)
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public void disconnect(Node<String> other)
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public boolean connected(Node<String> other)
+		{
+			if(other.graph() != MappedUGraph.this)
+				return false;
+
+			return targets.contains(offsets.get(index), offsets.get(index + 1), other.index());
+		}
+
+		@Override
+		public UGraph<String> graph()
+		{
+			return MappedUGraph.this;
+		}
+
+		@Override
+		public int index()
+		{
+			return index;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + 1237;
+			result = prime * result + index;
+			result = prime * result + ((label() == null) ? 0 : label().hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+
+			if (obj == null)
+				return false;
+
+			if (getClass() != obj.getClass())
+				return false;
+
+			MappedUNode other = (MappedUNode) obj;
+
+			if (graph() != other.graph())
+				return false;
+
+			return index == other.index;
+		}
+
+		public String toString()
+		{
+			return label() == null ? ("n"+index) : label();
+		}
+
+		@Override
+		public List<ULink<String>> links()
+		{
+			List<ULink<String>> list = new ArrayList<ULink<String>>(degree());
+			for(long i = offsets.get(index); i < offsets.get(index + 1); i++)
+				list.add(new MappedULink(index, targets.get(i)));
+
+			return list;
+		}
+
+		@Override
+		public Collection<? extends ULink<String>> links(Node<String> other)
+		{
+			List<ULink<String>> list = new ArrayList<ULink<String>>();
+
+			int o = other.index();
+			for(long i = offsets.get(index); i < offsets.get(index + 1); i++)
+				if(targets.get(i) == o)
+					list.add(new MappedULink(index, o));
+
+			return list;
+		}
+	}
+
+	private class MappedULink implements ULink<String>
+	{
+		private int first, second;
+
+		public MappedULink(int first, int second)
+		{
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public Collection<? extends UNode<String>> nodes()
+		{
+			return Arrays.asList(first(), second());
+		}
+
+		@Override
+		public Graph<String> graph()
+		{
+			return MappedUGraph.this;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("Graph is read-only.");
+		}
+
+		@Override
+		public boolean dead()
+		{
+			return false;
+		}
+
+		@Override
+		public UNode<String> first()
+		{
+			return new MappedUNode(first);
+		}
+
+		@Override
+		public UNode<String> second()
+		{
+			return new MappedUNode(second);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + MappedUGraph.this.hashCode();
+			result = prime * result + Math.min(first, second);
+			result = prime * result + Math.max(first, second);
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			MappedULink other = (MappedULink) obj;
+			if (graph() != other.graph())
+				return false;
+
+			return (first == other.first && second == other.second) ||
+					(first == other.second && second == other.first);
+		}
+
+		public String toString()
+		{
+			return first() + " -- " + second();
+		}
+
+		@Override
+		public UNode<String> other(Node<String> current)
+		{
+			if(current.index() != first)
+				return first();
+			return second();
+		}
+	}
+
+	/**
+	 * A list of nodes, backed by an int array of indices.
+	 */
+	private class NodeList extends AbstractList<UNode<String>>
+	{
+		private int[] indices;
+
+		public NodeList(int[] indices)
+		{
+			this.indices = indices;
+		}
+
+		@Override
+		public MappedUNode get(int index)
+		{
+			return new MappedUNode(indices[index]);
+		}
+
+		@Override
+		public int size()
+		{
+			return indices.length;
+		}
+	}
+
+	/**
+	 * A list of nodes, backed directly by a range of a mapped array.
+	 */
+	private class RangeList extends AbstractList<UNode<String>>
+	{
+		private long from;
+		private int size;
+
+		public RangeList(long from, long to)
+		{
+			this.from = from;
+			this.size = (int)(to - from);
+		}
+
+		@Override
+		public MappedUNode get(int index)
+		{
+			if(index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index "+index+" out of bounds for size "+size+".");
+
+			return new MappedUNode(targets.get(from + index));
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+
+	/**
+	 * The nodes of the graph, as a list that creates node objects on demand.
+	 */
+	private class AllNodes extends AbstractList<UNode<String>>
+	{
+		@Override
+		public MappedUNode get(int index)
+		{
+			if(index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index "+index+" out of bounds for size "+size+".");
+
+			return new MappedUNode(index);
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+
+	@Override
+	public Collection<? extends UNode<String>> nodes(String label)
+	{
+		List<UNode<String>> nodes = new ArrayList<UNode<String>>();
+		for(int i = 0; i < size; i++)
+			if(Functions.equals(labelOf(i), label))
+				nodes.add(new MappedUNode(i));
+
+		return nodes;
+	}
+
+	@Override
+	public List<? extends UNode<String>> nodes()
+	{
+		return new AllNodes();
+	}
+
+	@Override
+	public Collection<? extends ULink<String>> links()
+	{
+		return new LinkCollection();
+	}
+
+	/**
+	 * A collection of all links in this graph. Each link is returned once, from
+	 * the neighbour list of its lowest-indexed node.
+	 */
+	private class LinkCollection extends AbstractCollection<ULink<String>>
+	{
+		@Override
+		public Iterator<ULink<String>> iterator()
+		{
+			return new LinkIterator();
+		}
+
+		@Override
+		public int size()
+		{
+			return numLinks;
+		}
+
+		private class LinkIterator implements Iterator<ULink<String>>
+		{
+			// * the index of the next candidate in targets
+			private long next = 0;
+			// * the node that owns the next candidate
+			private int from = 0;
+
+			public LinkIterator()
+			{
+				advance();
+			}
+
+			/**
+			 * Moves 'next' to the next link that should be returned.
+			 */
+			private void advance()
+			{
+				while(next < targets.length())
+				{
+					while(offsets.get(from + 1) <= next)
+						from++;
+
+					if(targets.get(next) >= from)
+						return;
+
+					next++;
+				}
+			}
+
+			@Override
+			public boolean hasNext()
+			{
+				return next < targets.length();
+			}
+
+			@Override
+			public ULink<String> next()
+			{
+				if(! hasNext())
+					throw new NoSuchElementException();
+
+				ULink<String> link = new MappedULink(from, targets.get(next));
+
+				next++;
+				advance();
+
+				return link;
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException("Graph is read-only.");
+			}
+		}
+	}
+
+	@Override
+	public UNode<String> add(String label)
+	{
+		throw new UnsupportedOperationException("Graph is read-only.");
+	}
+
+	@Override
+	public Set<String> labels()
+	{
+		Set<String> labels = new HashSet<String>(dictionary);
+
+		if(labelIds == null)
+			labels.add(null);
+		else
+			for(int i = 0; i < size; i++)
+				if(labelIds.get(i) < 0)
+				{
+					labels.add(null);
+					break;
+				}
+
+		return labels;
+	}
+
+	@Override
+	public boolean connected(String from, String to)
+	{
+		for(UNode<String> a : nodes(from))
+			for(UNode<String> b : nodes(to))
+				if(a.connected(b))
+					return true;
+
+		return false;
+	}
+
+	/**
+	 * The graph cannot be modified, so its state never changes.
+	 */
+	@Override
+	public long state()
+	{
+		return 0;
+	}
+
+	/**
+	 * Returns a representation of the graph in Dot language format.
+	 */
+	public String toString()
+	{
+		StringBuffer sb = new StringBuffer();
+		sb.append("graph {");
+
+		Set<UNode<String>> nodes = new HashSet<UNode<String>>(nodes());
+
+		int i = 0;
+		for(ULink<String> link : links())
+		{
+			if(i++ != 0)
+				sb.append(";");
+
+			sb.append(link);
+
+			nodes.remove(link.first());
+			nodes.remove(link.second());
+		}
+
+		for(UNode<String> node : nodes)
+		{
+			if(i++ != 0)
+				sb.append(";");
+
+			sb.append(node);
+		}
+
+		sb.append("}");
+
+		return sb.toString();
+	}
+
+	@Override
+	public int hashCode()
+	{
+		if(hash != null)
+			return hash;
+
+		int h = 1;
+		for(int i = 0; i < size; i++)
+		{
+			String label = labelOf(i);
+		    h = 31 * h + (label == null ? 0 : label.hashCode());
+		}
+
+		// * structure (the neighbour lists are already sorted)
+		for(UNode<String> node : nodes())
+		{
+			List<Integer> nbIndices = new ArrayList<Integer>(node.degree());
+			for(UNode<String> neighbor : node.neighbors())
+				nbIndices.add(neighbor.index());
+
+			h = 31 * h + nbIndices.hashCode();
+		}
+
+		hash = h;
+		return h;
+	}
+
+	public boolean equals(Object other)
+	{
+		if(!(other instanceof UGraph<?>))
+			return false;
+
+		UGraph<?> oth = (UGraph<?>) other;
+		if(! oth.level().equals(level()))
+			return false;
+
+		if(size() != oth.size())
+			return false;
+
+		if(numLinks() != oth.numLinks())
+			return false;
+
+		if(labels().size() != oth.labels().size())
+			return false;
+
+		for(UNode<String> node : nodes())
+		{
+			UNode<?> othNode = oth.get(node.index());
+
+			if(! Functions.equals(node.label(), othNode.label()))
+				return false;
+
+			FrequencyModel<Integer> myNeighbors = new FrequencyModel<Integer>(),
+			                        hisNeighbors = new FrequencyModel<Integer>();
+			for(UNode<String> myNeighbor : node.neighbors())
+				myNeighbors.add(myNeighbor.index());
+
+			for(UNode<?> hisNeighbor : othNode.neighbors())
+				hisNeighbors.add(hisNeighbor.index());
+
+			if(! myNeighbors.equals(hisNeighbors))
+				return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public UNode<String> get(int i)
+	{
+		return nodes().get(i);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Class<? extends UGraph<String>> level()
+	{
+		Object obj = UGraph.class;
+		return (Class<? extends UGraph<String>>) obj;
+	}
+
+	@Override
+	public List<UNode<String>> neighborsFast(Node<String> node)
+	{
+		if(node.graph() != this)
+			throw new IllegalArgumentException("Cannot call with node from another graph.");
+
+		int index = node.index();
+
+		return new RangeList(offsets.get(index), offsets.get(index + 1));
+	}
+
+	@Override
+	public int numNeighbors(int node)
+	{
+		return (int) (offsets.get(node + 1) - offsets.get(node));
+	}
+
+	@Override
+	public int neighbors(int node, int[] buffer)
+	{
+		int n = 0;
+		for(long i = offsets.get(node); i < offsets.get(node + 1); i++)
+			buffer[n++] = targets.get(i);
+		
+		return n;
+	}
+}
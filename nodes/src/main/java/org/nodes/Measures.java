@@ -46,15 +46,44 @@ public class Measures
 	{
 		long numPaths = 0, numClosed = 0;
 		
-		for(Node<L> one : graph.nodes())
-			for(Node<L> two : one.neighbors())
-				for(Node<L> three : two.neighbors())
-					if(!three.equals(one))
-					{
-						numPaths ++;
-						if(one.connected(three))
-							numClosed++;
-					}
+		int n = graph.size();
+		NeighborCursor ones = new NeighborCursor(graph), 
+		               twos = new NeighborCursor(graph);
+		
+		// * neighborOf[i] == one + 1 iff i is a neighbor of the current node one
+		int[] neighborOf = new int[n];
+		// * Marks the neighbors of the current node two, to skip repeats
+		int[] seen = new int[n];
+		int stamp = 0;
+		
+		for(int one = 0; one < n; one++)
+		{
+			int numOnes = ones.load(one);
+			for(int i = 0; i < numOnes; i++)
+				neighborOf[ones.get(i)] = one + 1;
+			
+			for(int i = 0; i < numOnes; i++)
+			{
+				int two = ones.get(i);
+				if(neighborOf[two] != one + 1)
+					continue; // * repeat, already visited
+				neighborOf[two] = - (one + 1);
+				
+				stamp++;
+				int numTwos = twos.load(two);
+				for(int j = 0; j < numTwos; j++)
+				{
+					int three = twos.get(j);
+					if(three == one || seen[three] == stamp)
+						continue;
+					seen[three] = stamp;
+					
+					numPaths ++;
+					if(Math.abs(neighborOf[three]) == one + 1)
+						numClosed++;
+				}
+			}
+		}
 	
 		return numClosed / (double) numPaths;
 	}	
@@ -0,0 +1,120 @@
+package org.nodes;
+
+import java.util.Arrays;
+
+/**
+ * Reads the indices of the neighbors of one node at a time into a reusable 
+ * buffer. If the graph implements {@link NeighborIndices}, no objects are 
+ * created per node, otherwise the cursor falls back to Node.neighbors().
+ * 
+ * <pre>
+ * NeighborCursor cursor = new NeighborCursor(graph);
+ * int n = cursor.load(node);
+ * for(int i = 0; i &lt; n; i++)
+ * 	... cursor.get(i) ...
+ * </pre>
+ * 
+ * Since the buffer is reused, nested traversals need one cursor per level. 
+ * Not thread-safe.
+ */
+public class NeighborCursor
+{
+	private Graph<?> graph;
+	private NeighborIndices fast;
+	
+	private int[] buffer = new int[16];
+	private int size = 0;
+	
+	public NeighborCursor(Graph<?> graph)
+	{
+		this.graph = graph;
+		this.fast = graph instanceof NeighborIndices ? (NeighborIndices) graph : null;
+	}
+	
+	/**
+	 * Loads the neighbors of the given node, replacing those of the previous 
+	 * node. The neighbors follow the contract of {@link NeighborIndices}: 
+	 * they may contain duplicates. 
+	 * 
+	 * @return The number of neighbors loaded.
+	 */
+	public int load(int node)
+	{
+		if(fast != null)
+		{
+			int n = fast.numNeighbors(node);
+			if(n > buffer.length)
+				buffer = new int[Math.max(n, buffer.length * 2)];
+			
+			size = fast.neighbors(node, buffer);
+		} else 
+		{
+			size = 0;
+			for(Node<?> neighbor : graph.get(node).neighbors())
+			{
+				if(size == buffer.length)
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				
+				buffer[size++] = neighbor.index();
+			}
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * The i-th neighbor index of the current node.
+	 */
+	public int get(int i)
+	{
+		if(i >= size)
+			throw new IndexOutOfBoundsException("Index "+i+" out of bounds for "+size+" neighbors.");
+		
+		return buffer[i];
+	}
+	
+	/**
+	 * The number of neighbors of the current node.
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	public Graph<?> graph()
+	{
+		return graph;
+	}
+	
+	/**
+	 * Reads the distinct neighbors of each node in the graph into sorted int 
+	 * arrays. For directed graphs, these are the neighbors in either 
+	 * direction. 
+	 */
+	public static int[][] distinctNeighbors(Graph<?> graph)
+	{
+		int n = graph.size();
+		int[][] neighbors = new int[n][];
+		
+		NeighborCursor cursor = new NeighborCursor(graph);
+		for(int node = 0; node < n; node++)
+		{
+			int num = cursor.load(node);
+			
+			int[] list = new int[num];
+			for(int i = 0; i < num; i++)
+				list[i] = cursor.get(i);
+			
+			Arrays.sort(list);
+			
+			int unique = 0;
+			for(int i = 0; i < num; i++)
+				if(unique == 0 || list[i] != list[unique - 1])
+					list[unique++] = list[i];
+			
+			neighbors[node] = unique == num ? list : Arrays.copyOf(list, unique);
+		}
+		
+		return neighbors;
+	}
+}
@@ -0,0 +1,30 @@
+package org.nodes;
+
+/**
+ * A graph that can write the indices of the neighbors of a node into an int 
+ * array supplied by the caller, without creating node objects or collections.
+ * 
+ * The indices are written in no particular order. Every neighbor appears at 
+ * least once, but a neighbor may be repeated, at most once for every link 
+ * between the two nodes (in either direction, for a directed graph). Use 
+ * {@link NeighborCursor} to traverse any graph in this way.
+ */
+public interface NeighborIndices
+{
+	/**
+	 * An upper bound on the number of indices that 
+	 * {@link #neighbors(int, int[])} writes for the given node, used to size 
+	 * the buffer. This may count a self-loop in a directed graph twice, once 
+	 * as an in-link and once as an out-link, where neighbors() writes it once.
+	 */
+	public int numNeighbors(int node);
+	
+	/**
+	 * Writes the indices of the neighbors of the given node into the buffer,
+	 * starting at position 0.
+	 * 
+	 * @param buffer An array of at least length numNeighbors(node). 
+	 * @return The number of indices written.
+	 */
+	public int neighbors(int node, int[] buffer);
+}
@@ -0,0 +1,372 @@
+package org.nodes.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.NeighborCursor;
+import org.nodes.Node;
+import org.nodes.util.Distance;
+
+/**
+ * All-pairs shortest path lengths for unweighted graphs, computed with one
+ * breadth-first search per node.
+ *
+ * This gives the same distances as {@link FloydWarshall}, in O(nm) time
+ * instead of O(n^3). The neighbors of all nodes are read once into int arrays,
+ * after which the searches are divided over the threads of the global
+ * executor by blocks of source nodes. Each thread writes only its own rows.
+ *
+ * The matrix takes n^2 shorts, or n^2 bytes in compact mode (which supports
+ * distances up to {@link #MAX_COMPACT}). If only aggregates are needed, use
+ * {@link #statistics(Graph, int)}, which never holds more than one row per
+ * thread.
+ *
+ * As in FloydWarshall, links in directed graphs are followed in either
+ * direction, and unreachable pairs have distance {@link Short#MAX_VALUE} in
+ * {@link #distance(int, int)}.
+ *
+ * @param <L>
+ */
+public class AllPairsBFS<L> implements Distance<Node<L>>
+{
+	private static final long serialVersionUID = 6455994348672810227L;
+
+	/**
+	 * The number of tasks per thread.
+	 */
+	public static final int TASKS_PER_THREAD = 4;
+
+	/**
+	 * The largest distance that can be stored in compact mode.
+	 */
+	public static final int MAX_COMPACT = 254;
+
+	private static final byte UNREACHABLE = (byte) 0xFF;
+
+	private int n;
+
+	// * One of these is used
+	private short[][] distances;
+	private byte[][] compact;
+
+	public AllPairsBFS(Graph<L> graph)
+	{
+		this(graph, false, Global.numThreads());
+	}
+
+	/**
+	 * @param graph An unweighted graph.
+	 * @param compact Whether to store the distances as bytes.
+	 * @param numThreads The maximum number of threads to use.
+	 * @throws IllegalStateException If a distance is too large to be stored.
+	 */
+	public AllPairsBFS(Graph<L> graph, boolean compact, int numThreads)
+	{
+		n = graph.size();
+
+		if(compact)
+			this.compact = new byte[n][];
+		else
+			this.distances = new short[n][];
+
+		final int[][] neighbors = NeighborCursor.distinctNeighbors(graph);
+
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for(final int[] block : blocks(n, numThreads))
+			tasks.add(new Callable<Object>()
+			{
+				@Override
+				public Object call()
+				{
+					BFS bfs = new BFS(neighbors);
+					for(int source = block[0]; source < block[1]; source++)
+						fill(source, bfs);
+
+					return null;
+				}
+			});
+
+		Global.invokeAll(tasks, numThreads);
+	}
+
+	private void fill(int source, BFS bfs)
+	{
+		int reached = bfs.search(source);
+
+		if(compact != null)
+		{
+			byte[] row = new byte[n];
+			Arrays.fill(row, UNREACHABLE);
+
+			for(int k = 0; k < reached; k++)
+			{
+				int node = bfs.node(k);
+				int d = bfs.distance(node);
+				if(d > MAX_COMPACT)
+					throw new IllegalStateException("Distance ("+d+") too large for compact storage. Use short storage.");
+
+				row[node] = (byte) d;
+			}
+
+			compact[source] = row;
+		} else
+		{
+			short[] row = new short[n];
+			Arrays.fill(row, Short.MAX_VALUE);
+
+			for(int k = 0; k < reached; k++)
+			{
+				int node = bfs.node(k);
+				int d = bfs.distance(node);
+				if(d >= Short.MAX_VALUE)
+					throw new IllegalStateException("Distance ("+d+") too large to be stored.");
+
+				row[node] = (short) d;
+			}
+
+			distances[source] = row;
+		}
+	}
+
+	/**
+	 * The distance between nodes i and j, or Short.MAX_VALUE if j can't be
+	 * reached from i.
+	 */
+	public int distance(int i, int j)
+	{
+		if(compact != null)
+		{
+			byte d = compact[i][j];
+			return d == UNREACHABLE ? Short.MAX_VALUE : d & 0xFF;
+		}
+
+		return distances[i][j];
+	}
+
+	/**
+	 * The mean of {@link #distance(int, int)} over all n^2 pairs, as in
+	 * FloydWarshall. For the mean over the connected pairs, use
+	 * {@link #statistics(Graph, int)}.
+	 */
+	public double meanDistance()
+	{
+		double sum = 0.0;
+		for(int i = 0; i < n; i++)
+			for(int j = 0; j < n; j++)
+				sum += distance(i, j);
+
+		return sum / ((double) n * n);
+	}
+
+	/**
+	 * The largest value of {@link #distance(int, int)}, as in FloydWarshall.
+	 * This is Short.MAX_VALUE if the graph is not connected.
+	 */
+	public double diameter()
+	{
+		double diameter = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < n; i++)
+			for(int j = 0; j < n; j++)
+				diameter = Math.max(diameter, distance(i, j));
+
+		return diameter;
+	}
+
+	@Override
+	public double distance(Node<L> a, Node<L> b)
+	{
+		int d = distance(a.index(), b.index());
+
+		if(d >= Short.MAX_VALUE)
+			return Double.POSITIVE_INFINITY;
+		return d;
+	}
+
+	/**
+	 * Returns the distance matrix
+	 */
+	public RealMatrix matrix()
+	{
+		RealMatrix mat = new Array2DRowRealMatrix(n, n);
+		for(int i = 0; i < n; i++)
+			for(int j = 0; j < n; j++)
+				mat.setEntry(i, j, distance(i, j));
+
+		return mat;
+	}
+
+	/**
+	 * Computes the distribution of the distances between all pairs of nodes,
+	 * without storing the distance matrix, using Global.numThreads() threads.
+	 */
+	public static Statistics statistics(Graph<?> graph)
+	{
+		return statistics(graph, Global.numThreads());
+	}
+
+	/**
+	 * Computes the distribution of the distances between all pairs of nodes,
+	 * without storing the distance matrix. Each thread searches from a block
+	 * of source nodes and counts the distances it finds in its own histogram.
+	 */
+	public static Statistics statistics(Graph<?> graph, int numThreads)
+	{
+		int n = graph.size();
+		final int[][] neighbors = NeighborCursor.distinctNeighbors(graph);
+
+		List<Callable<Statistics>> tasks = new ArrayList<Callable<Statistics>>();
+		for(final int[] block : blocks(n, numThreads))
+			tasks.add(new Callable<Statistics>()
+			{
+				@Override
+				public Statistics call()
+				{
+					Statistics statistics = new Statistics();
+
+					BFS bfs = new BFS(neighbors);
+					for(int source = block[0]; source < block[1]; source++)
+					{
+						int reached = bfs.search(source);
+						for(int k = 1; k < reached; k++)
+							statistics.add(bfs.distance(bfs.node(k)));
+					}
+
+					return statistics;
+				}
+			});
+
+		Statistics result = new Statistics();
+		for(Statistics statistics : Global.invokeAll(tasks, numThreads))
+			result.add(statistics);
+
+		result.pairs = (long) n * (n - 1);
+
+		return result;
+	}
+
+	/**
+	 * The distribution of the distances between the ordered pairs of distinct
+	 * nodes in a graph.
+	 */
+	public static class Statistics
+	{
+		private long[] histogram = new long[16];
+		private int diameter = 0;
+		private long reachable = 0;
+		private long sum = 0;
+		private long pairs = 0;
+
+		private Statistics()
+		{
+		}
+
+		private void add(int distance)
+		{
+			if(distance >= histogram.length)
+				histogram = Arrays.copyOf(histogram, Math.max(distance + 1, histogram.length * 2));
+
+			histogram[distance]++;
+			diameter = Math.max(diameter, distance);
+			reachable++;
+			sum += distance;
+		}
+
+		private void add(Statistics other)
+		{
+			for(int d = 0; d <= other.diameter; d++)
+				if(other.histogram[d] > 0)
+				{
+					if(d >= histogram.length)
+						histogram = Arrays.copyOf(histogram, Math.max(other.diameter + 1, histogram.length * 2));
+
+					histogram[d] += other.histogram[d];
+				}
+
+			diameter = Math.max(diameter, other.diameter);
+			reachable += other.reachable;
+			sum += other.sum;
+		}
+
+		/**
+		 * For each distance d from 0 to the diameter, the number of ordered
+		 * pairs of distinct nodes at distance d.
+		 */
+		public long[] histogram()
+		{
+			return Arrays.copyOf(histogram, diameter + 1);
+		}
+
+		/**
+		 * The number of ordered pairs of distinct nodes at the given distance.
+		 */
+		public long count(int distance)
+		{
+			return distance < histogram.length ? histogram[distance] : 0;
+		}
+
+		/**
+		 * The mean distance between the ordered pairs of distinct nodes that
+		 * are connected by a path, or NaN if there are none.
+		 */
+		public double meanDistance()
+		{
+			return sum / (double) reachable;
+		}
+
+		/**
+		 * The largest distance between two nodes connected by a path.
+		 */
+		public int diameter()
+		{
+			return diameter;
+		}
+
+		/**
+		 * The number of ordered pairs of distinct nodes that are connected by
+		 * a path.
+		 */
+		public long reachable()
+		{
+			return reachable;
+		}
+
+		/**
+		 * The number of ordered pairs of distinct nodes that are not
+		 * connected by a path.
+		 */
+		public long unreachable()
+		{
+			return pairs - reachable;
+		}
+
+		/**
+		 * Whether every node can be reached from every other node.
+		 */
+		public boolean connected()
+		{
+			return reachable == pairs;
+		}
+	}
+
+	/**
+	 * Divides the nodes into contiguous blocks, as {from, to} pairs.
+	 */
+	private static List<int[]> blocks(int n, int numThreads)
+	{
+		int numBlocks = Math.max(1, Math.min(n, numThreads * TASKS_PER_THREAD));
+
+		List<int[]> blocks = new ArrayList<int[]>(numBlocks);
+		for(int b = 0; b < numBlocks; b++)
+			blocks.add(new int[]{
+					(int)((long) n * b / numBlocks),
+					(int)((long) n * (b + 1) / numBlocks)});
+
+		return blocks;
+	}
+}
@@ -0,0 +1,157 @@
+package org.nodes.algorithms;
+
+import java.util.Arrays;
+
+import org.nodes.Graph;
+import org.nodes.NeighborCursor;
+
+/**
+ * A reusable breadth-first search over a primitive snapshot of the neighbors
+ * of each node.
+ *
+ * The queue and the distances are int arrays that are allocated once. Instead
+ * of clearing the distances before each search, every search gets a new
+ * stamp, and a node counts as reached only if its stamp is current. This
+ * makes a search cost proportional to the part of the graph it reaches, which
+ * matters for many small bounded searches.
+ *
+ * For directed graphs, the search follows links in either direction.
+ *
+ * The neighbor arrays may be shared between searches, but a search itself is
+ * not thread-safe: use one per thread.
+ */
+public class BFS
+{
+	private int[][] neighbors;
+
+	// * The reached nodes, in order of nondecreasing distance
+	private int[] queue;
+	private int size = 0;
+
+	// * distances[i] is valid if stamps[i] == stamp
+	private int[] distances;
+	private int[] stamps;
+	private int stamp = 0;
+
+	public BFS(Graph<?> graph)
+	{
+		this(NeighborCursor.distinctNeighbors(graph));
+	}
+
+	/**
+	 * @param neighbors For each node, the indices of its neighbors, as created
+	 * 	by {@link NeighborCursor#distinctNeighbors(Graph)}. Duplicates are
+	 * 	allowed. The arrays are not copied.
+	 */
+	public BFS(int[][] neighbors)
+	{
+		this.neighbors = neighbors;
+
+		int n = neighbors.length;
+		queue = new int[n];
+		distances = new int[n];
+		stamps = new int[n];
+	}
+
+	/**
+	 * Searches from the given node, for all nodes at at most the given
+	 * distance.
+	 *
+	 * @param maxDistance The largest distance to search (inclusive). If
+	 * 	negative, the search is not bounded.
+	 * @return The number of nodes reached, including the source.
+	 */
+	public int search(int source, int maxDistance)
+	{
+		next();
+
+		size = 0;
+		queue[size++] = source;
+		stamps[source] = stamp;
+		distances[source] = 0;
+
+		int head = 0;
+		while(head < size)
+		{
+			int node = queue[head++];
+			int d = distances[node] + 1;
+
+			if(maxDistance >= 0 && d > maxDistance)
+				break;
+
+			for(int neighbor : neighbors[node])
+				if(stamps[neighbor] != stamp)
+				{
+					stamps[neighbor] = stamp;
+					distances[neighbor] = d;
+					queue[size++] = neighbor;
+				}
+		}
+
+		return size;
+	}
+
+	/**
+	 * Searches from the given node without a bound.
+	 */
+	public int search(int source)
+	{
+		return search(source, -1);
+	}
+
+	private void next()
+	{
+		if(stamp == Integer.MAX_VALUE)
+		{
+			Arrays.fill(stamps, 0);
+			stamp = 0;
+		}
+
+		stamp++;
+	}
+
+	/**
+	 * The number of nodes reached by the last search.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * The k-th node reached by the last search. The nodes are in order of
+	 * nondecreasing distance, starting with the source.
+	 */
+	public int node(int k)
+	{
+		if(k >= size)
+			throw new IndexOutOfBoundsException("Index "+k+" out of bounds for "+size+" nodes reached.");
+
+		return queue[k];
+	}
+
+	/**
+	 * Whether the last search reached the given node.
+	 */
+	public boolean reached(int node)
+	{
+		return stamps[node] == stamp;
+	}
+
+	/**
+	 * The distance of the given node to the source of the last search, or -1
+	 * if the search did not reach it.
+	 */
+	public int distance(int node)
+	{
+		return stamps[node] == stamp ? distances[node] : -1;
+	}
+
+	/**
+	 * The neighbor arrays this search runs over.
+	 */
+	public int[][] neighbors()
+	{
+		return neighbors;
+	}
+}
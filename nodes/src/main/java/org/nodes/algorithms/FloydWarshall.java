@@ -16,6 +16,10 @@ import org.nodes.util.Series;
 import org.nodes.util.Distance;
 
 /**
+ * All-pairs shortest path lengths by the Floyd-Warshall algorithm. For
+ * unweighted graphs, {@link AllPairsBFS} gives the same distances much
+ * faster.
+ * 
  * TODO: Check graph modcount
  * @author Peter
  *
@@ -4,19 +4,15 @@ import static org.nodes.util.Series.series;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Deque;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.nodes.DGraph;
-import org.nodes.DNode;
 import org.nodes.DTGraph;
 import org.nodes.Graph;
 import org.nodes.Graphs;
@@ -24,21 +20,22 @@ import org.nodes.Link;
 import org.nodes.Node;
 import org.nodes.TGraph;
 import org.nodes.TLink;
-import org.nodes.TNode;
 import org.nodes.UGraph;
-import org.nodes.UNode;
 import org.nodes.UTGraph;
 import org.nodes.util.Functions;
 import org.nodes.util.Order;
-import org.nodes.util.Series;
 
 /**
  * This is a general implementation of the nauty algorithm, originally by
  * McKay.
  * 
- * TODO: Implement automorphism pruning
- * TODO: Implement a separate refine for directed graphs. It should separate by
- * in and out degree. Behavior is still correct, but slower.
+ * The search works on partitions stored as int arrays, refines after every 
+ * individualization, prunes subtrees by the automorphisms it finds and 
+ * compares leaves by integer certificates. The refinement separates nodes by
+ * in- and out-degree in directed graphs, and by tag in tagged graphs.
+ * 
+ * The list-based partition methods (refine, shattering, etc.) are kept as 
+ * utilities. 
  * 
  * @author Peter
  *
@@ -86,93 +83,633 @@ public class Nauty
 	 * @param tagged
 	 * @return
 	 */
-	@SuppressWarnings("unchecked")
 	private static <L> Order order(Graph<L> graph, Comparator<L> comp,  boolean directed, boolean tagged)
 	{
-		// * Start with the unit partition
-		List<List<Node<L>>> partition = partition(graph, comp);
+		Search search = new Search(graph, directed, tagged);
 		
-		List<Object> tags = null;
-		if(tagged)
-			tags = new ArrayList<Object>( ((TGraph<Object, Object>)graph).tags() );
-
-		// * The equitable refinement procedure.
-		partition = tagged ? refine(partition, tags) : refine(partition);
+		// * Start with the unit partition, and refine it
+		Partition partition = Partition.fromCells(graph.size(), partition(graph, comp));
+		search.refine(partition, partition.cellStarts());
 	
-		// * Start the search for the maximal isomorph
-		Search<L> search = new Search<L>(partition, directed);
-		search.search();
+		// * Search for the maximal isomorph
+		search.search(partition, 0);
 		
 		List<Integer> order = new ArrayList<Integer>(graph.size());
-		List<List<Node<L>>> max = search.max();
+		for(int node : search.max())
+			order.add(node);
+		
+		assert(order.size() == graph.size());
 		
-		for(List<Node<L>> cell : max)
+		return new Order(order).inverse();
+	}
+	
+	/**
+	 * An ordered partition of the nodes 0 to n-1, stored as int arrays. The 
+	 * nodes are listed cell by cell, and each cell is a range of positions.
+	 */
+	private static class Partition
+	{
+		// * The node at each position
+		int[] lab;
+		// * The position of each node
+		int[] inv;
+		// * The start of the cell containing each position
+		int[] start;
+		// * For the first position of each cell, the end of the cell (exclusive) 
+		int[] end;
+		
+		public Partition(int n)
 		{
-			assert(cell.size() == 1);
+			lab = new int[n];
+			inv = new int[n];
+			start = new int[n];
+			end = new int[n];
+		}
+		
+		public static <L> Partition fromCells(int n, List<List<Node<L>>> cells)
+		{
+			Partition partition = new Partition(n);
+			
+			int position = 0;
+			for(List<Node<L>> cell : cells)
+			{
+				int cellStart = position;
+				for(Node<L> node : cell)
+				{
+					partition.lab[position] = node.index();
+					partition.inv[node.index()] = position;
+					partition.start[position] = cellStart;
+					position++;
+				}
+				
+				partition.end[cellStart] = position;
+			}
 			
-			Node<L> node = cell.get(0);
-			order.add(node.index());
+			return partition;
 		}
 		
-		assert(order.size() == graph.size());
+		public Partition copy()
+		{
+			Partition copy = new Partition(lab.length);
+			
+			System.arraycopy(lab, 0, copy.lab, 0, lab.length);
+			System.arraycopy(inv, 0, copy.inv, 0, inv.length);
+			System.arraycopy(start, 0, copy.start, 0, start.length);
+			System.arraycopy(end, 0, copy.end, 0, end.length);
+			
+			return copy;
+		}
 		
-		return new Order(order).inverse();
+		public List<Integer> cellStarts()
+		{
+			List<Integer> starts = new ArrayList<Integer>();
+			for(int s = 0; s < lab.length; s = end[s])
+				starts.add(s);
+			
+			return starts;
+		}
+		
+		/**
+		 * @return The start of the first cell with more than one node, or -1 
+		 * 	if the partition is discrete.
+		 */
+		public int firstNonSingleton()
+		{
+			for(int s = 0; s < lab.length; s = end[s])
+				if(end[s] - s > 1)
+					return s;
+			
+			return -1;
+		}
+		
+		/**
+		 * Splits the given node from its cell, into a singleton cell placed 
+		 * before the rest. 
+		 * 
+		 * @return The position of the new singleton cell.
+		 */
+		public int individualize(int node)
+		{
+			int s = start[inv[node]];
+			int e = end[s];
+			
+			// * Swap the node to the front of its cell
+			int other = lab[s];
+			int position = inv[node];
+			
+			lab[s] = node;
+			inv[node] = s;
+			lab[position] = other;
+			inv[other] = position;
+			
+			end[s] = s + 1;
+			end[s + 1] = e;
+			for(int p = s + 1; p < e; p++)
+				start[p] = s + 1;
+			
+			return s;
+		}
 	}
 	
 	/**
-	 * This object encapsulates the information in a single search.
+	 * This object encapsulates the information in a single search: the 
+	 * structure of the graph as int arrays, the best leaf found so far and the
+	 * automorphisms found so far.
+	 * 
+	 * Every end of a link is stored with a code, which encodes the tag of the 
+	 * link and, for directed graphs, its direction. The refinement separates 
+	 * nodes by their number of links of each code into a cell. The leaves of 
+	 * the search are compared by certificates: for each position in order, 
+	 * the sorted link ends of its node, each packed into a single int 
+	 * (position * numCodes + code).
 	 * 
-	 * @author Peter
-	 *
+	 * Subtrees are pruned if they are the image of an already explored sibling
+	 * under an automorphism found earlier that fixes the current path, or if a
+	 * leaf inside them turns out to be equivalent to the first or maximal leaf.
 	 */
-	private static class Search<T>
+	private static class Search
 	{
-		private Deque<SNode<T>> buffer = new LinkedList<SNode<T>>();
-		private boolean directed;
+		private int n;
+		private int numCodes;
+		
+		// * For each node, the other end of each of its links, and the codes  
+		private int[][] neighbors;
+		private int[][] codes;
+		
+		// * Scratch space for the refinement
+		private int[] counts;
+		private boolean[] touched;
+		private int[] touchedNodes;
+		private int[] queue;
+		private boolean[] queued;
+		// * The starts of the cells with touched nodes, and whether each cell
+		//   has been recorded
+		private int[] touchedCells;
+		private boolean[] cellTouched;
+		private Comparator<Integer> countComparator = new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer a, Integer b)
+			{
+				return compareCounts(a, b);
+			}
+		};
 		
-		private SNode<T> max = null;
-		private String maxString;
+		private int[] first = null, firstCertificate;
+		private int[] max = null, maxCertificate;
+		// * The paths to the first and maximal leaves
+		private int[] firstPath, maxPath;
+		
+		private List<int[]> automorphisms = new ArrayList<int[]>();
+		// * The nodes individualized along the current path
+		private int[] path;
 
-		public Search(List<List<Node<T>>> initial, boolean directed)
+		@SuppressWarnings("unchecked")
+		public Search(Graph<?> graph, boolean directed, boolean tagged)
 		{
-			// ** Set up the search stack
-			buffer.add(new SNode<T>(initial));
-			this.directed = directed;
-
+			n = graph.size();
+			
+			Map<Object, Integer> tagCodes = new HashMap<Object, Integer>();
+			if(tagged)
+				for(Object tag : sortedTags( ((TGraph<?, Object>)graph).tags() ))
+					tagCodes.put(tag, tagCodes.size());
+			
+			int numTags = tagged ? Math.max(1, tagCodes.size()) : 1;
+			numCodes = directed ? 2 * numTags : numTags;
+			
+			int[] degrees = new int[n];
+			for(Link<?> link : graph.links())
+			{
+				degrees[link.first().index()]++;
+				if(directed || link.first().index() != link.second().index())
+					degrees[link.second().index()]++;
+			}
+			
+			neighbors = new int[n][];
+			codes = new int[n][];
+			for(int i = 0; i < n; i++)
+			{
+				neighbors[i] = new int[degrees[i]];
+				codes[i] = new int[degrees[i]];
+			}
+			
+			Arrays.fill(degrees, 0);
+			for(Link<?> link : graph.links())
+			{
+				int tag = tagged ? tagCodes.get(((TLink<?, Object>) link).tag()) : 0; 
+				int a = link.first().index(), b = link.second().index();
+				
+				int d = degrees[a]++;
+				neighbors[a][d] = b;
+				codes[a][d] = directed ? 2 * tag : tag;
+				
+				if(directed || a != b)
+				{
+					d = degrees[b]++;
+					neighbors[b][d] = a;
+					codes[b][d] = directed ? 2 * tag + 1 : tag;
+				}
+			}
+			
+			counts = new int[n * numCodes];
+			touched = new boolean[n];
+			touchedNodes = new int[n];
+			queue = new int[n];
+			queued = new boolean[n];
+			touchedCells = new int[n];
+			cellTouched = new boolean[n];
+			path = new int[n];
+		}
+		
+		/**
+		 * Refines the given partition to the coarsest equitable refinement, 
+		 * starting with the given cells as splitters. 
+		 */
+		public void refine(Partition partition, List<Integer> splitters)
+		{
+			int head = 0, size = 0;
+			
+			for(int s : splitters)
+			{
+				queue[(head + size++) % n] = s;
+				queued[s] = true;
+			}
+			
+			int numTouchedNodes = 0, numTouchedCells = 0;
+			
+			while(size > 0)
+			{
+				int w = queue[head];
+				head = (head + 1) % n;
+				size--;
+				queued[w] = false;
+				
+				// * Count the links of each code from each node to the splitter
+				for(int p = w; p < partition.end[w]; p++)
+				{
+					int u = partition.lab[p];
+					for(int i = 0; i < neighbors[u].length; i++)
+					{
+						int v = neighbors[u][i];
+						counts[v * numCodes + codes[u][i]]++;
+						
+						if(! touched[v])
+						{
+							touched[v] = true;
+							touchedNodes[numTouchedNodes++] = v;
+							
+							int cell = partition.start[partition.inv[v]];
+							if(! cellTouched[cell])
+							{
+								cellTouched[cell] = true;
+								touchedCells[numTouchedCells++] = cell;
+							}
+						}
+					}
+				}
+				
+				// * Split the cells, in order of their start
+				Arrays.sort(touchedCells, 0, numTouchedCells);
+				for(int c = 0; c < numTouchedCells; c++)
+				{
+					int s = touchedCells[c];
+					cellTouched[s] = false;
+					
+					int e = partition.end[s];
+					if(e - s == 1)
+						continue;
+					
+					List<Integer> fragments = split(partition, s, e);
+					if(fragments.size() == 1)
+						continue;
+					
+					for(int fragment : fragments)
+						if(! queued[fragment])
+						{
+							queue[(head + size++) % n] = fragment;
+							queued[fragment] = true;
+						}
+				}
+				
+				for(int t = 0; t < numTouchedNodes; t++)
+				{
+					int v = touchedNodes[t];
+					touched[v] = false;
+					Arrays.fill(counts, v * numCodes, (v + 1) * numCodes, 0);
+				}
+				
+				numTouchedNodes = 0;
+				numTouchedCells = 0;
+			}
+		}
+		
+		/**
+		 * Sorts the cell between s and e by the current counts, and splits it
+		 * into fragments of equal counts.
+		 * 
+		 * @return The starts of the fragments.
+		 */
+		private List<Integer> split(Partition partition, int s, int e)
+		{
+			Integer[] cell = new Integer[e - s];
+			for(int p = s; p < e; p++)
+				cell[p - s] = partition.lab[p];
+			
+			Arrays.sort(cell, countComparator);
+			
+			List<Integer> fragments = new ArrayList<Integer>();
+			int fragment = s;
+			fragments.add(s);
+			
+			for(int p = s; p < e; p++)
+			{
+				int node = cell[p - s];
+				partition.lab[p] = node;
+				partition.inv[node] = p;
+				
+				if(p > s && compareCounts(cell[p - s - 1], node) != 0)
+				{
+					partition.end[fragment] = p;
+					fragment = p;
+					fragments.add(p);
+				}
+				
+				partition.start[p] = fragment;
+			}
+			
+			partition.end[fragment] = e;
+			
+			return fragments;
+		}
+		
+		private int compareCounts(int a, int b)
+		{
+			for(int c = 0; c < numCodes; c++)
+			{
+				int comparison = Integer.compare(counts[a * numCodes + c], counts[b * numCodes + c]);
+				if(comparison != 0)
+					return comparison;
+			}
+			
+			return 0;
+		}
+		
+		/**
+		 * @return The depth to backtrack to. If this is smaller than the depth 
+		 * 	of the caller, the caller should return immediately.
+		 */
+		public int search(Partition partition, int depth)
+		{
+			int s = partition.firstNonSingleton();
+			
+			if(s == -1)
+				return observe(partition.lab, depth);
+			
+			int[] cell = Arrays.copyOfRange(partition.lab, s, partition.end[s]);
+			
+			List<Integer> explored = new ArrayList<Integer>(cell.length);
+			Orbits orbits = new Orbits(depth);
+			
+			for(int node : cell)
+			{
+				if(! explored.isEmpty() && orbits.equivalent(node, explored))
+					continue;
+				
+				Partition child = partition.copy();
+				int singleton = child.individualize(node);
+				refine(child, Arrays.asList(singleton));
+				
+				path[depth] = node;
+				int target = search(child, depth + 1);
+				
+				if(target < depth)
+					return target;
+				
+				explored.add(node);
+			}
+			
+			return depth;
 		}
 		
-		public void search()
+		/**
+		 * The orbits of the nodes under the automorphisms that fix the current
+		 * path up to some depth. The automorphisms are added as they are 
+		 * found.
+		 */
+		private class Orbits
 		{
-			while(! buffer.isEmpty())
+			private int depth;
+			private int[] parents = null;
+			// * The number of automorphisms processed so far
+			private int processed = 0;
+			
+			public Orbits(int depth)
 			{
-				SNode<T> current = buffer.poll();
+				this.depth = depth;
+			}
+			
+			/**
+			 * Whether the node is in the same orbit as one of the given nodes.
+			 */
+			public boolean equivalent(int node, List<Integer> others)
+			{
+				for(; processed < automorphisms.size(); processed++)
+				{
+					int[] automorphism = automorphisms.get(processed);
+					
+					boolean fixes = true;
+					for(int i = 0; i < depth && fixes; i++)
+						if(automorphism[path[i]] != path[i])
+							fixes = false;
+					
+					if(! fixes)
+						continue;
+					
+					if(parents == null)
+					{
+						parents = new int[n];
+						for(int i = 0; i < n; i++)
+							parents[i] = i;
+					}
+					
+					for(int i = 0; i < n; i++)
+						union(parents, i, automorphism[i]);
+				}
 				
-				List<SNode<T>> children = current.children();
-				if(children.isEmpty())
-					observe(current);
+				if(parents == null)
+					return false;
 				
-				for(SNode<T> child : children)
-					buffer.addFirst(child);
+				int root = find(parents, node);
+				for(int other : others)
+					if(find(parents, other) == root)
+						return true;
+				
+				return false;
+			}
+		}
+		
+		private static int find(int[] parents, int node)
+		{
+			while(parents[node] != node)
+			{
+				parents[node] = parents[parents[node]];
+				node = parents[node];
+			}
+			
+			return node;
+		}
+		
+		private static void union(int[] parents, int a, int b)
+		{
+			a = find(parents, a);
+			b = find(parents, b);
+			
+			if(a != b)
+				parents[Math.max(a, b)] = Math.min(a, b);
+		}
+		
+		/**
+		 * Compares a leaf to the first and maximal leaves found so far.
+		 * 
+		 * If the leaf is equivalent to one of these, the whole subtree below
+		 * the point where its path leaves the path of that leaf is the image 
+		 * of an explored subtree, so the search backtracks to there.
+		 * 
+		 * @return The depth to backtrack to.
+		 */
+		private int observe(int[] lab, int depth)
+		{
+			lab = lab.clone();
+			int[] certificate = certificate(lab);
+			
+			if(first == null)
+			{
+				first = max = lab;
+				firstCertificate = maxCertificate = certificate;
+				firstPath = maxPath = Arrays.copyOf(path, depth);
+				return depth;
+			}
+			
+			if(compare(certificate, firstCertificate) == 0)
+			{
+				automorphism(first, lab);
+				return commonPrefix(firstPath, depth);
 			}
+			
+			int comparison = compare(certificate, maxCertificate);
+			
+			if(comparison == 0)
+			{
+				automorphism(max, lab);
+				return commonPrefix(maxPath, depth);
+			}
+			
+			if(comparison > 0)
+			{
+				max = lab;
+				maxCertificate = certificate;
+				maxPath = Arrays.copyOf(path, depth);
+			}
+			
+			return depth;
+		}
+		
+		private int commonPrefix(int[] other, int depth)
+		{
+			int i = 0;
+			while(i < depth && i < other.length && path[i] == other[i])
+				i++;
+			
+			return i;
 		}
 		
-		private void observe(SNode<T> node)
+		/**
+		 * Records the automorphism that maps one leaf to the other.
+		 */
+		private void automorphism(int[] from, int[] to)
 		{
-			String nodeString = Nauty.toString(node.partition(), directed);
+			int[] automorphism = new int[n];
+			for(int p = 0; p < n; p++)
+				automorphism[from[p]] = to[p];
 			
-			if(max == null || nodeString.compareTo(maxString) > 0)
+			automorphisms.add(automorphism);
+		}
+		
+		private int[] certificate(int[] lab)
+		{
+			int[] inv = new int[n];
+			int length = n;
+			for(int p = 0; p < n; p++)
 			{
-				max = node;
-				maxString = nodeString;
+				inv[lab[p]] = p;
+				length += neighbors[lab[p]].length;
 			}
+			
+			int[] certificate = new int[length];
+			int c = 0;
+			
+			for(int p = 0; p < n; p++)
+			{
+				int u = lab[p];
+				int degree = neighbors[u].length;
+				
+				certificate[c++] = degree;
+				for(int i = 0; i < degree; i++)
+					certificate[c + i] = inv[neighbors[u][i]] * numCodes + codes[u][i];
+				
+				Arrays.sort(certificate, c, c + degree);
+				c += degree;
+			}
+			
+			return certificate;
+		}
+		
+		private static int compare(int[] a, int[] b)
+		{
+			int length = Math.min(a.length, b.length);
+			for(int i = 0; i < length; i++)
+				if(a[i] != b[i])
+					return Integer.compare(a[i], b[i]);
+			
+			return Integer.compare(a.length, b.length);
 		}
 		
-		public List<List<Node<T>>> max()
+		/**
+		 * The nodes in the order of the maximal leaf.
+		 */
+		public int[] max()
 		{
-			return max.partition();
+			return max;
 		}
 	}
 	
+	/**
+	 * Orders the tags independently of the graph: by their natural order if 
+	 * they're comparable, or by their string representation otherwise.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static List<Object> sortedTags(Collection<?> tags)
+	{
+		List<Object> sorted = new ArrayList<Object>(tags);
+		
+		Collections.sort(sorted, new Comparator<Object>()
+		{
+			@Override
+			public int compare(Object a, Object b)
+			{
+				if(a == null || b == null)
+					return a == null ? (b == null ? 0 : -1) : 1;
+				
+				if(a instanceof Comparable && a.getClass().equals(b.getClass()))
+					return ((Comparable) a).compareTo(b);
+				
+				return a.toString().compareTo(b.toString());
+			}
+		});
+		
+		return sorted;
+	}
+	
 	public static <L> List<List<Node<L>>> partition(Graph<L> graph, Comparator<L> comp)
 	{
 		Map<L, List<Node<L>>> byLabel = new LinkedHashMap<L, List<Node<L>>>();
@@ -404,99 +941,6 @@ public class Nauty
 		return sum;
 	}
 	
-	private static class SNode<T> 
-	{
-		private List<List<Node<T>>> partition;
-
-		public SNode(List<List<Node<T>>> partition)
-		{
-			super();
-			this.partition = partition;
-		}
-		
-		public List<List<Node<T>>> partition()
-		{
-			return partition;
-		}
-
-		public List<SNode<T>> children()
-		{
-			List<SNode<T>> children = new ArrayList<SNode<T>>(partition.size() + 1);
-			
-			for(int cellIndex : series(partition.size()))
-			{
-				List<Node<T>> cell = partition.get(cellIndex);
-				if(cell.size() > 1)
-					for(int nodeIndex : series(cell.size()))
-					{
-						List<Node<T>> rest = new ArrayList<Node<T>>(cell);
-						List<Node<T>> single = Arrays.asList(rest.remove(nodeIndex));
-						
-						// * Careful... We're shallow copying the cells. We must 
-						//   make sure never to modify a cell.
-						List<List<Node<T>>> newPartition = new ArrayList<List<Node<T>>>(partition);
-						
-						newPartition.remove(cellIndex);
-						newPartition.add(cellIndex, single);
-						newPartition.add(cellIndex + 1, rest);
-						
-						children.add(new SNode<T>(newPartition));
-					}
-			}
-			
-			return children;
-		}
-	}
-	
-	/**
-	 * Converts a trivial partition to a string representing the graph's 
-	 * structure (without labels) in a particular format.
-	 *  
-	 * @param partition
-	 * @return
-	 */
-	private static <T> String toString(List<List<Node<T>>> partition, boolean directed)
-	{		
-//System.out.println(partition);
-		
-		StringBuffer buffer = new StringBuffer();
-				
-		int[] order = new int[partition.size()];
-		int i = 0;
-		for(List<Node<T>> cell : partition)
-		{
-			order[cell.get(0).index()] = i;
-			i++;
-		}
-		
-		int myIndex = 0; 
-		for(List<Node<T>> cell : partition)
-		{
-			assert(cell.size() == 1);
-			Node<T> current = cell.get(0);
-			
-			List<Integer> neighbors = new ArrayList<Integer>(current.neighbors().size());
-			for(Node<T> neighbor : current.neighbors())
-			{
-				int rawIndex = neighbor.index(); // index in the original graph
-				int neighborIndex = order[rawIndex]; // index in the re-ordered graph
-				
-				if( (! directed) || ((DNode<T>)current).connectedTo((DNode<T>)neighbor))
-					neighbors.add(neighborIndex);
-			}
-			
-			Collections.sort(neighbors);
-			for(int neighborIndex : neighbors)
-				buffer.append(neighborIndex).append(' ');
-			
-			buffer.append(',');
-			
-			myIndex++;
-		}
-		
-		return buffer.toString();
-	}
-	
 	public static <L extends Comparable<L>> Graph<L> canonize(Graph<L> graph)
 	{
 		Order order = Nauty.order(graph, new Functions.NaturalComparator<L>());		
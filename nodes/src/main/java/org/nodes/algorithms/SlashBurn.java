@@ -4,60 +4,98 @@ import static org.nodes.util.Series.series;
 import static org.nodes.util.Functions.Dir;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import org.nodes.DTGraph;
 import org.nodes.DTLink;
 import org.nodes.DTNode;
 import org.nodes.Global;
-import org.nodes.DegreeComparator;
-import org.nodes.DegreeIndexComparator;
 import org.nodes.Graph;
+import org.nodes.NeighborCursor;
 import org.nodes.Node;
-import org.nodes.clustering.ConnectionClusterer.ConnectionClustering;
-import org.nodes.random.RandomGraphs;
 import org.nodes.util.FrequencyModel;
 import org.nodes.util.BitString;
-import org.nodes.util.Functions;
 import org.nodes.util.MaxObserver;
 import org.nodes.util.Order;
 import org.nodes.util.Pair;
-import org.nodes.util.Series;
 
 /**
  * An implementation of the Slash-and-burn algorithm of Kang and Faloutsos.
+ *
+ * Each iteration removes the k hubs with the highest centrality from the
+ * giant connected component (GCC), and moves the smaller components that
+ * this splits off (the spokes) to the tail of the order. The hubs go to the
+ * head.
+ *
+ * The neighbors of all nodes are read into int arrays once. By default, the
+ * centrality of a node is its live degree: the number of its distinct
+ * neighbors that have not been removed yet. The live degrees are kept in an
+ * int array, with an indexed max-heap that is updated as nodes are removed,
+ * so the hubs are found without sorting. With a custom comparator, the hubs
+ * are found by scanning the GCC.
+ *
+ * The components are found with a concurrent union-find over the links of
+ * the GCC, divided over the threads of the global executor. Each component
+ * is identified by its smallest node, so the result does not depend on the
+ * number of threads.
+ *
  * @author Peter
  *
  * @param <N>
  */
 public class SlashBurn<N>
 {
+	/**
+	 * The smallest GCC for which the components are found in parallel.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 14;
+	
 	private Graph<N> graph;
+	private int n;
+	private int k, iterations = 0, lastGCCSize = -1;
+	private int numThreads;
+	
+	// * The distinct neighbors of each node
+	private int[][] neighbors;
 	
-	// Bitmask. If index i is false, the node has been moved to the order list already
+	// * Whether a node has not been moved to the head or the tail yet, as an 
+	//   array for the searches and as the bitmask returned by mask()
+	private boolean[] alive;
 	private BitString mask;
-	private List<Integer> head, tail;
-	private int k, iterations = 0, lastGCCSize = -1;
 	
-	private ConnectionClustering<N> clust = null;
-	private ClusterSizeComparator comp = new ClusterSizeComparator();
+	// * The new index of each node moved to the head or tail. The head is
+	//   filled from the front, the tail from the back.
+	private int[] permutation;
+	private int headSize = 0, tailSize = 0;
+	
+	// * The members of the GCC, sorted
+	private int[] gcc;
+	
+	// * The live degrees, with a heap over the nodes of the GCC. Null if a
+	//   comparator is used.
+	private int[] degrees = null;
+	private Heap heap = null;
 	
-	private List<List<Integer>> islands = null;
-
 	private Comparator<Node<N>> centralityComparator;
-
+	
+	// * The union-find parents, and buffers for grouping the components
+	private AtomicIntegerArray parents;
+	private int[] componentOf;
+	
+	private List<List<Integer>> islands = null;
+	
 	public SlashBurn(Graph<N> graph, int k)
 	{
-		this(graph, k, new DegreeComparator<N>());
+		this(graph, k, null, null, Global.numThreads());
 	}
 	
 	public SlashBurn(Graph<N> graph, int k, List<List<Integer>> islands)
 	{
-		this(graph, k, new DegreeComparator<N>(), islands);
+		this(graph, k, null, islands, Global.numThreads());
 	}
 	
 	public SlashBurn(Graph<N> graph, int k, Comparator<Node<N>> centralityComparator)
@@ -65,34 +103,64 @@ public class SlashBurn<N>
 		this(graph, k, centralityComparator, null);
 	}
 	
+	public SlashBurn(Graph<N> graph, int k, Comparator<Node<N>> centralityComparator, List<List<Integer>> islands)
+	{
+		this(graph, k, centralityComparator, islands, Global.numThreads());
+	}
+	
 	/**
-	 * 
+	 *
 	 * @param graph
 	 * @param k
-	 * @param centralityComparator
+	 * @param centralityComparator The comparator that determines the hubs, or
+	 * 	null to use the live degree.
 	 * @param islands A list to which the islands (non-greatest component clusters) are added
+	 * @param numThreads The maximum number of threads to use.
 	 */
-	public SlashBurn(Graph<N> graph, int k, Comparator<Node<N>> centralityComparator, List<List<Integer>> islands)
+	public SlashBurn(Graph<N> graph, int k, Comparator<Node<N>> centralityComparator, List<List<Integer>> islands, int numThreads)
 	{
 		this.graph = graph;
-		this.mask = BitString.ones(graph.size());
-		
-		this.head = new ArrayList<Integer>((int) ((graph.size()+1) * (1.0/1024.0)));
-		this.tail = new LinkedList<Integer>();
+		this.n = graph.size();
 		
 		this.k = k;
 		this.centralityComparator = centralityComparator;
-		
 		this.islands = islands;
+		this.numThreads = numThreads;
+		
+		neighbors = NeighborCursor.distinctNeighbors(graph);
+		
+		alive = new boolean[n];
+		Arrays.fill(alive, true);
+		mask = BitString.ones(n);
 		
-		clust = new ConnectionClustering<N>(graph, mask);
-		lastGCCSize = clust.clusterSize(clust.largestClusterIndex());
-		check();
+		permutation = new int[n];
+		parents = new AtomicIntegerArray(n);
+		componentOf = new int[n];
+		Arrays.fill(componentOf, -1);
 		
-		// * Add the non-GCC nodes to the tail list
-		prependNonGCCClusters(tail);
+		if(centralityComparator == null)
+		{
+			degrees = new int[n];
+			for(int node = 0; node < n; node++)
+				for(int neighbor : neighbors[node])
+					if(neighbor != node)
+						degrees[node]++;
+			
+			heap = new Heap(degrees);
+		}
+		
+		// * Find the GCC, and move the other components to the tail
+		int[] all = new int[n];
+		for(int i = 0; i < n; i++)
+			all[i] = i;
+		
+		burn(all);
 	}
 	
+	/**
+	 * Bitmask of the nodes that have not been moved to the head or the tail. 
+	 * This is a live view: it changes as the algorithm iterates.
+	 */
 	public BitString mask()
 	{
 		return mask;
@@ -101,114 +169,287 @@ public class SlashBurn<N>
 	@Deprecated
 	public List<Integer> orderInts()
 	{
-
-		List<Integer> fin = new ArrayList<Integer>(graph.size());
-		
-		for(int i : Series.series(graph.size()))
-			fin.add(null);
-
-		int c = 0;
-		for(int nodeIndex : head)
-			fin.set(nodeIndex, c++);
-			
-		for(int nodeIndex : Series.series(graph.size()))
-			if(mask.get(nodeIndex))
-				fin.set(nodeIndex, c++);
-
-		for(int nodeIndex : tail)
-			fin.set(nodeIndex, c++);
+		List<Integer> fin = new ArrayList<Integer>(n);
+		for(int index : permutation())
+			fin.add(index);
 		
 		return fin;
 	}
 	
 	public Order order()
 	{
-		List<Integer> fin = new ArrayList<Integer>(graph.size());
+		return new Order(permutation());
+	}
+	
+	/**
+	 * The order as an int array: the node with index i gets index
+	 * permutation()[i]. The hubs come first, in the order they were found,
+	 * then the remaining GCC in order of index, then the spokes.
+	 */
+	public int[] permutation()
+	{
+		int[] result = permutation.clone();
 		
-		for(int i : Series.series(graph.size()))
-			fin.add(null);
-
-		int c = 0;
-		for(int nodeIndex : head)
-			fin.set(nodeIndex, c++);
-			
-		for(int nodeIndex : Series.series(graph.size()))
-			if(mask.get(nodeIndex))
-				fin.set(nodeIndex, c++);
-
-		for(int nodeIndex : tail)
-			fin.set(nodeIndex, c++);
+		int c = headSize;
+		for(int node : gcc)
+			result[node] = c++;
 		
-		return new Order(fin);
+		return result;
 	}
 	
 	public int headSize()
 	{
-		return head.size();
+		return headSize;
 	}
 	
 	public int tailSize()
 	{
-		return tail.size();
+		return tailSize;
 	}
 	
 	public void iterate()
-	{		
+	{
+		int numHubs = Math.min(k, gcc.length);
+		int[] hubs = new int[numHubs];
+		
 		// * Find the hubs
-		MaxObserver<Node<N>> observer = new MaxObserver<Node<N>>(k, centralityComparator);	
-		for(int i : clust.largestCluster())
-			observer.observe(graph.nodes().get(i));
+		if(heap != null)
+		{
+			for(int h = 0; h < numHubs; h++)
+				hubs[h] = heap.pop();
+		} else
+		{
+			MaxObserver<Node<N>> observer = new MaxObserver<Node<N>>(k, centralityComparator);
+			for(int i : gcc)
+				observer.observe(graph.get(i));
+			
+			int h = 0;
+			for(Node<N> node : observer.elements())
+				hubs[h++] = node.index();
+		}
 		
-		// * Add the hubs to the head list
-		for(Node<N> node : observer.elements())
+		// * Add the hubs to the head
+		for(int hub : hubs)
 		{
-			head.add(node.index());
-			mask.set(node.index(), false);
+			alive[hub] = false;
+			mask.set(hub, false);
+			permutation[hub] = headSize++;
+			
+			if(heap != null)
+				heap.remove(hub);
 		}
 		
-		clust = new ConnectionClustering<N>(graph, mask);
-		lastGCCSize = clust.clusterSize(clust.largestClusterIndex());
+		// * Update the live degrees of their neighbors
+		if(heap != null)
+			for(int hub : hubs)
+				for(int neighbor : neighbors[hub])
+					if(alive[neighbor])
+					{
+						degrees[neighbor]--;
+						heap.decreased(neighbor);
+					}
 		
-		Global.log().info("iteration " + iterations + ": " + clust.numClusters() + " clusters.");
+		// * Only the GCC is affected by removing the hubs
+		int pieces = burn(gcc);
 		
-		// * Add the non-GCC nodes to the tail list
-		prependNonGCCClusters(tail);
-
-		assert(head.size() + tail.size() + mask.numOnes() == graph.size());
+		Global.log().info("iteration " + iterations + ": " + pieces + " clusters.");
+		
+		assert(headSize + tailSize + gcc.length == n);
 		
 		iterations ++;
 	}
 	
-	private void prependNonGCCClusters(List<Integer> list)
+	/**
+	 * Splits the living nodes among the given nodes into connected
+	 * components. The largest becomes the new GCC, the others are moved to the
+	 * tail, in order of increasing size.
+	 *
+	 * @param nodes Sorted node indices.
+	 * @return The number of components.
+	 */
+	private int burn(int[] nodes)
 	{
-		if(clust.numClusters() == 0)
-			return;
+		int numAlive = 0;
+		for(int node : nodes)
+			if(alive[node])
+			{
+				parents.set(node, node);
+				numAlive++;
+			}
 		
-		// ** Create an array of cluster indices by increasing size
-		List<Integer> clusters = new ArrayList<Integer>(Series.series(clust.numClusters()));
-		clusters.remove(clust.largestClusterIndex());
-				
-		Collections.sort(clusters, this.comp);
+		union(nodes);
 		
-		// * for each cluster (except the largest)
-		for(int cluster : clusters.subList(0, clusters.size()))
-		{	
-			if(islands != null)
+		// * Number the components in order of their smallest node, which is
+		//   the root
+		int[] members = new int[numAlive];
+		int numComponents = 0;
+		int[] sizes = new int[16];
+		
+		int m = 0;
+		for(int node : nodes)
+		{
+			if(! alive[node])
+				continue;
+			
+			int root = find(node);
+			if(componentOf[root] == -1)
 			{
-				List<Integer> clusterIndices = new ArrayList<Integer>(clust.cluster(cluster));
-				islands.add(clusterIndices);
+				if(numComponents == sizes.length)
+					sizes = Arrays.copyOf(sizes, sizes.length * 2);
+				componentOf[root] = numComponents++;
 			}
 			
-			// * Sort each cluster first
-			//  Collections.sort(nodes, new DegreeIndexComparator(graph));
+			sizes[componentOf[root]]++;
+			members[m++] = node;
+		}
+		
+		// * Group the members by component, keeping them sorted
+		int[] offsets = new int[numComponents + 1];
+		for(int c = 0; c < numComponents; c++)
+			offsets[c + 1] = offsets[c] + sizes[c];
+		
+		int[] grouped = new int[numAlive];
+		int[] fill = Arrays.copyOf(offsets, numComponents);
+		for(int node : members)
+			grouped[fill[componentOf[find(node)]]++] = node;
+		
+		for(int node : members)
+			if(parents.get(node) == node)
+				componentOf[node] = -1;
+		
+		// * The largest component, the first in case of a tie
+		int largest = -1;
+		for(int c = 0; c < numComponents; c++)
+			if(largest == -1 || sizes[c] > sizes[largest])
+				largest = c;
+		
+		gcc = largest == -1 ? new int[0] : Arrays.copyOfRange(grouped, offsets[largest], offsets[largest + 1]);
+		lastGCCSize = gcc.length;
+		
+		// * Sort the other components by increasing size, then by their
+		//   smallest node, using one primitive array
+		long[] order = new long[Math.max(0, numComponents - 1)];
+		int o = 0;
+		for(int c = 0; c < numComponents; c++)
+			if(c != largest)
+				order[o++] = ((long) sizes[c] << 32) | c;
+		
+		Arrays.sort(order);
+		
+		for(long entry : order)
+		{
+			int c = (int) entry;
 			
-			for(int node : clust.cluster(cluster))
+			if(islands != null)
 			{
-				list.add(0, node);
+				List<Integer> island = new ArrayList<Integer>(sizes[c]);
+				for(int i = offsets[c]; i < offsets[c + 1]; i++)
+					island.add(grouped[i]);
+				islands.add(island);
+			}
+			
+			for(int i = offsets[c]; i < offsets[c + 1]; i++)
+			{
+				int node = grouped[i];
+				
+				alive[node] = false;
 				mask.set(node, false);
+				permutation[node] = n - 1 - tailSize++;
+				
+				if(heap != null)
+					heap.remove(node);
 			}
 		}
 		
+		return numComponents;
+	}
+	
+	/**
+	 * Joins the living nodes among the given nodes along their links, in
+	 * parallel if there are enough of them.
+	 */
+	private void union(final int[] nodes)
+	{
+		if(numThreads == 1 || nodes.length < PARALLEL_THRESHOLD)
+		{
+			union(nodes, 0, nodes.length);
+			return;
+		}
+		
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(numThreads);
+		for(int t = 0; t < numThreads; t++)
+		{
+			final int from = (int) ((long) nodes.length * t / numThreads),
+			          to = (int) ((long) nodes.length * (t + 1) / numThreads);
+			
+			tasks.add(new Callable<Object>()
+			{
+				@Override
+				public Object call()
+				{
+					union(nodes, from, to);
+					return null;
+				}
+			});
+		}
+		
+		Global.invokeAll(tasks, numThreads);
+	}
+	
+	private void union(int[] nodes, int from, int to)
+	{
+		for(int i = from; i < to; i++)
+		{
+			int node = nodes[i];
+			if(! alive[node])
+				continue;
+			
+			// * Every link is seen from both sides
+			for(int neighbor : neighbors[node])
+				if(neighbor > node && alive[neighbor])
+					union(node, neighbor);
+		}
+	}
+	
+	/**
+	 * Links the root of the larger index below the other, so that the root
+	 * of each component is its smallest node, whatever the order of the
+	 * unions. Safe to call from multiple threads.
+	 */
+	private void union(int a, int b)
+	{
+		while(true)
+		{
+			a = find(a);
+			b = find(b);
+			
+			if(a == b)
+				return;
+			
+			if(a < b)
+			{
+				int t = a; a = b; b = t;
+			}
+			
+			if(parents.compareAndSet(a, a, b))
+				return;
+		}
+	}
+	
+	private int find(int node)
+	{
+		// * Path halving, which is harmless if it fails
+		int parent = parents.get(node);
+		while(parent != node)
+		{
+			int grandparent = parents.get(parent);
+			parents.compareAndSet(node, parent, grandparent);
+			
+			node = grandparent;
+			parent = parents.get(node);
+		}
+		
+		return node;
 	}
 	
 	/**
@@ -231,9 +472,9 @@ public class SlashBurn<N>
 	}
 	
 	/**
-	 * Returns the wing width ratio, assuming that the last iteration was the 
+	 * Returns the wing width ratio, assuming that the last iteration was the
 	 * final one.
-	 * 
+	 *
 	 * @return
 	 */
 	public double wingWidthRatio()
@@ -241,33 +482,142 @@ public class SlashBurn<N>
 		return (k * iterations) / (double) graph.size();
 	}
 	
-	private class ClusterSizeComparator implements Comparator<Integer>
+	public void check()
 	{
-
-		@Override
-		public int compare(Integer o1, Integer o2)
-		{
-			int size1 = clust.clusterSize(o1);
-			int size2 = clust.clusterSize(o2);
-			
-			return Double.compare(size1, size2);
-		}
+		int numAlive = 0;
+		for(int i : series(n))
+			if(alive[i])
+				numAlive++;
+		
+		if(numAlive != gcc.length)
+			throw new RuntimeException("GCC size ("+gcc.length+") does not match number of remaining nodes ("+numAlive+").");
+		
+		for(int node : gcc)
+			if(! alive[node])
+				throw new RuntimeException("Node "+node+" in GCC has been removed.");
 		
+		for(int i : series(n))
+			if(mask.get(i) != alive[i])
+				throw new RuntimeException("Mask does not match the remaining nodes at node "+i+".");
+		
+		if(headSize + tailSize + gcc.length != n)
+			throw new RuntimeException("Head, tail and GCC sizes don't add up.");
 	}
 	
-	public void check()
+	/**
+	 * An indexed max-heap of nodes, by their live degree, then by lowest
+	 * index.
+	 */
+	private static class Heap
 	{
-		for(int i : series(graph.size()))
-			if(mask.get(i))
+		private int[] keys;
+		private int[] heap;
+		// * The position of each node in the heap, or -1
+		private int[] positions;
+		private int size;
+		
+		public Heap(int[] keys)
+		{
+			this.keys = keys;
+			
+			int n = keys.length;
+			heap = new int[n];
+			positions = new int[n];
+			for(int i = 0; i < n; i++)
+				heap[i] = positions[i] = i;
+			size = n;
+			
+			for(int i = size / 2 - 1; i >= 0; i--)
+				down(i);
+		}
+		
+		public int pop()
+		{
+			if(size == 0)
+				throw new IllegalStateException("Heap is empty.");
+			
+			int top = heap[0];
+			remove(top);
+			return top;
+		}
+		
+		public void remove(int node)
+		{
+			int position = positions[node];
+			if(position == -1)
+				return;
+			
+			positions[node] = -1;
+			size--;
+			
+			if(position == size)
+				return;
+			
+			int last = heap[size];
+			heap[position] = last;
+			positions[last] = position;
+			
+			up(position);
+			down(positions[last]);
+		}
+		
+		/**
+		 * Restores the heap after the key of the node has decreased.
+		 */
+		public void decreased(int node)
+		{
+			if(positions[node] != -1)
+				down(positions[node]);
+		}
+		
+		private boolean above(int a, int b)
+		{
+			return keys[a] > keys[b] || (keys[a] == keys[b] && a < b);
+		}
+		
+		private void up(int position)
+		{
+			int node = heap[position];
+			while(position > 0)
 			{
-				if(clust.clusterOf(i) == null)
-					throw new RuntimeException();
-			} else {
-				if(clust.clusterOf(i) != null)
-					throw new RuntimeException();
+				int parent = (position - 1) / 2;
+				if(! above(node, heap[parent]))
+					break;
+				
+				heap[position] = heap[parent];
+				positions[heap[position]] = position;
+				position = parent;
 			}
+			
+			heap[position] = node;
+			positions[node] = position;
+		}
+		
+		private void down(int position)
+		{
+			int node = heap[position];
+			while(true)
+			{
+				int child = 2 * position + 1;
+				if(child >= size)
+					break;
+				
+				if(child + 1 < size && above(heap[child + 1], heap[child]))
+					child++;
+				
+				if(! above(heap[child], node))
+					break;
+				
+				heap[position] = heap[child];
+				positions[heap[position]] = position;
+				position = child;
+			}
+			
+			heap[position] = node;
+			positions[node] = position;
+		}
 	}
-
+	
 	public static <L, T> List<DTNode<L, T>> getHubs(DTGraph<L, T> graph, int k, boolean useSignatures)
 	{
 		return getHubs(graph, k, -1, useSignatures);
@@ -287,8 +637,8 @@ public class SlashBurn<N>
 	public static <L, T> List<DTNode<L, T>> getHubs(DTGraph<L, T> graph, int k, int iterations,  boolean useSignatures)
 	{
 		Comparator<Node<L>> comp = useSignatures ? 
-				new SignatureCompWrapper<L, T>() : new DegreeComparator<L>();
-				
+				new SignatureCompWrapper<L, T>() : null;
+		
 		SlashBurn<L> sb = new SlashBurn<L>(graph, k, comp);
 		
 		int i = 0;
@@ -297,10 +647,10 @@ public class SlashBurn<N>
 			sb.iterate();
 			i++;
 		}
-				
+		
 		List<DTNode<L, T>> hubs = new ArrayList<DTNode<L,T>>(sb.headSize());
 		Order order = sb.order();
-				
+		
 		for(int newIndex : series(sb.headSize()))
 			hubs.add(graph.get(order.originalIndex(newIndex)));
 		
@@ -364,7 +714,7 @@ public class SlashBurn<N>
 	 */
 	public static class SignatureComparator<L, T> implements Comparator<DTNode<L, T>>
 	{
-
+		
 		@Override
 		public int compare(DTNode<L, T> first, DTNode<L, T> second)
 		{
@@ -380,7 +730,7 @@ public class SlashBurn<N>
 	 */
 	private static class SignatureCompWrapper<L, T> implements Comparator<Node<L>>
 	{
-
+		
 		@Override
 		@SuppressWarnings("unchecked")
 		public int compare(Node<L> first, Node<L> second)
@@ -3,15 +3,17 @@ package org.nodes.boxing;
 import static org.nodes.util.Series.series;
 
 import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.nodes.Graph;
 import org.nodes.MapUTGraph;
+import org.nodes.NeighborCursor;
 import org.nodes.Node;
 import org.nodes.Subgraph;
-import org.nodes.algorithms.FloydWarshall;
+import org.nodes.algorithms.AllPairsBFS;
 import org.nodes.util.Series;
 
 /**
@@ -101,9 +103,9 @@ public class Boxing<L> extends AbstractList<Set<Node<L>>>
 	public int boxMax(int i)
 	{ 
 		Graph<L> sub = Subgraph.subgraph(graph, base.get(i));
-		FloydWarshall<L> fw = new FloydWarshall<L>(sub);
+		AllPairsBFS<L> distances = new AllPairsBFS<L>(sub);
 		
-		return (int)fw.diameter();
+		return (int)distances.diameter();
 	}
 
 	@Override
@@ -136,10 +138,57 @@ public class Boxing<L> extends AbstractList<Set<Node<L>>>
 		for(int i : series(size()))
 			post.add(i);
 		
+		// * The box of each node, or -1
+		int[] boxes = new int[graph.size()];
+		Arrays.fill(boxes, -1);
+		
 		for(int i : series(size()))
-			for(int j : series(i+1, size()))
-				if(connected(i, j))
-					post.nodes().get(i).connect(post.nodes().get(j));
+			for(Node<L> node : get(i))
+			{
+				if(boxes[node.index()] != -1)
+				{
+					// * Overlapping boxes: check every pair of boxes
+					for(int a : series(size()))
+						for(int b : series(a+1, size()))
+							if(connected(a, b))
+								post.nodes().get(a).connect(post.nodes().get(b));
+					
+					return post;
+				}
+				
+				boxes[node.index()] = i;
+			}
+		
+		// * Collect the connected pairs of boxes from the links of the graph, 
+		//   and connect them in order
+		long[] pairs = new long[16];
+		int numPairs = 0;
+		
+		NeighborCursor cursor = new NeighborCursor(graph);
+		for(int node : series(graph.size()))
+		{
+			int a = boxes[node];
+			if(a == -1)
+				continue;
+			
+			int num = cursor.load(node);
+			for(int k = 0; k < num; k++)
+			{
+				int b = boxes[cursor.get(k)];
+				if(b <= a)
+					continue;
+				
+				if(numPairs == pairs.length)
+					pairs = Arrays.copyOf(pairs, pairs.length * 2);
+				pairs[numPairs++] = ((long) a << 32) | b;
+			}
+		}
+		
+		Arrays.sort(pairs, 0, numPairs);
+		
+		for(int k = 0; k < numPairs; k++)
+			if(k == 0 || pairs[k] != pairs[k - 1])
+				post.nodes().get((int)(pairs[k] >>> 32)).connect(post.nodes().get((int) pairs[k]));
 		
 		return post;
 	}
@@ -8,6 +8,10 @@ import java.util.Set;
  * A boxing algorithm divides the nodes of a graph into small clusters such that
  * the diameter of each cluster is less than a parameter l. The objective of the 
  * algorithm is to minimize the number of boxes.
+ * </p><p>
+ * Implementations that need distances between nodes can take them from a 
+ * {@link DistanceOracle}, which may be shared between several boxers of the 
+ * same graph.
  * </p>
  * 
  * @author Peter
@@ -0,0 +1,231 @@
+package org.nodes.boxing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+import org.nodes.Global;
+import org.nodes.Graph;
+
+/**
+ * <p>
+ * The number of boxes needed to cover a graph, for a range of box sizes, and
+ * the box-counting dimension that follows from it. If the graph is fractal,
+ * the number of boxes N(l) scales as l^-d, so d is minus the slope of the
+ * line through the points (ln l, ln N(l)).
+ * </p><p>
+ * The sweeps share their breadth-first searches between the box sizes:
+ * {@link #greedy(Graph, int, int, boolean, int)} colours the nodes for all
+ * box sizes in a single pass, and
+ * {@link #cbb(Graph, DistanceOracle, int, int, int, boolean, int)} boxes all
+ * sizes from one {@link DistanceOracle}, whose balls hold the neighbourhoods
+ * of every size as prefixes. The CBB sweep runs the box sizes in parallel.
+ * </p><p>
+ * Boxings are only kept if asked for, since for small box sizes they take
+ * much more memory than the counts.
+ * </p>
+ */
+public class BoxingSweep<L>
+{
+	private int lMin, lMax;
+	private int[] counts;
+	private List<Boxing<L>> boxings = null;
+
+	private BoxingSweep(int lMin, int lMax)
+	{
+		if(lMin < 1 || lMax < lMin)
+			throw new IllegalArgumentException("Box sizes must satisfy 1 <= lMin ("+lMin+") <= lMax ("+lMax+").");
+
+		this.lMin = lMin;
+		this.lMax = lMax;
+
+		counts = new int[lMax - lMin + 1];
+	}
+
+	/**
+	 * Boxes the graph for each box size from lMin to lMax (inclusive) with the
+	 * greedy colouring algorithm, in a single pass over the graph.
+	 *
+	 * @param keepBoxings Whether to keep the boxings as well as the counts.
+	 * @param numThreads The number of threads for the searches.
+	 */
+	public static <L> BoxingSweep<L> greedy(Graph<L> graph, int lMin, int lMax, boolean keepBoxings, int numThreads)
+	{
+		BoxingSweep<L> sweep = new BoxingSweep<L>(lMin, lMax);
+
+		GreedyBoxer<L> boxer = new GreedyBoxer<L>(graph, lMax, numThreads);
+		for(int l = lMin; l <= lMax; l++)
+			sweep.counts[l - lMin] = boxer.count(l);
+
+		if(keepBoxings)
+		{
+			sweep.boxings = new ArrayList<Boxing<L>>(lMax - lMin + 1);
+			for(int l = lMin; l <= lMax; l++)
+				sweep.boxings.add(boxer.box(l));
+		}
+
+		return sweep;
+	}
+
+	/**
+	 * Boxes the graph for each box size from lMin to lMax (inclusive) with the
+	 * compact box burning algorithm, using an oracle without landmarks.
+	 */
+	public static <L> BoxingSweep<L> cbb(Graph<L> graph, int lMin, int lMax, int restarts, boolean keepBoxings, int numThreads)
+	{
+		return cbb(graph, new DistanceOracle(graph, lMax - 1), lMin, lMax, restarts, keepBoxings, numThreads);
+	}
+
+	/**
+	 * Boxes the graph for each box size from lMin to lMax (inclusive) with the
+	 * compact box burning algorithm, keeping the best of the given number of
+	 * restarts for each box size.
+	 *
+	 * The box sizes run in parallel on the global executor. The seeds for all
+	 * restarts are drawn from Global.random() before any work starts, so the
+	 * result depends only on the seed, not on the number of threads.
+	 *
+	 * @param oracle An oracle with a maximum distance of at least lMax - 1.
+	 * 	Its cached balls are shared by all box sizes.
+	 */
+	public static <L> BoxingSweep<L> cbb(
+			Graph<L> graph, DistanceOracle oracle,
+			int lMin, int lMax, final int restarts, final boolean keepBoxings, int numThreads)
+	{
+		if(lMax - 1 > oracle.maxDistance())
+			throw new IllegalArgumentException("Box size ("+lMax+") is too large for the oracle (max distance "+oracle.maxDistance()+").");
+
+		final BoxingSweep<L> sweep = new BoxingSweep<L>(lMin, lMax);
+		final CBBBoxer<L> boxer = new CBBBoxer<L>(graph, oracle);
+
+		if(keepBoxings)
+		{
+			sweep.boxings = new ArrayList<Boxing<L>>(lMax - lMin + 1);
+			for(int l = lMin; l <= lMax; l++)
+				sweep.boxings.add(null);
+		}
+
+		// * The largest box sizes first, since they take the most work
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(lMax - lMin + 1);
+		for(int l = lMax; l >= lMin; l--)
+		{
+			final int size = l;
+			final long[] seeds = CBBBoxer.seeds(restarts);
+
+			tasks.add(new Callable<Object>()
+			{
+				@Override
+				public Object call()
+				{
+					int index = size - sweep.lMin;
+
+					if(keepBoxings)
+					{
+						Boxing<L> boxing = boxer.box(size, seeds, 1);
+						sweep.boxings.set(index, boxing);
+						sweep.counts[index] = boxing.size();
+					} else
+						sweep.counts[index] = boxer.count(size, seeds, 1);
+
+					return null;
+				}
+			});
+		}
+
+		Global.invokeAll(tasks, numThreads);
+
+		return sweep;
+	}
+
+	/**
+	 * Boxes the graph for each box size from lMin to lMax (inclusive) with the
+	 * given algorithm, one box size at a time.
+	 */
+	public static <L> BoxingSweep<L> sweep(BoxingAlgorithm<L> algorithm, int lMin, int lMax, boolean keepBoxings)
+	{
+		BoxingSweep<L> sweep = new BoxingSweep<L>(lMin, lMax);
+		if(keepBoxings)
+			sweep.boxings = new ArrayList<Boxing<L>>(lMax - lMin + 1);
+
+		for(int l = lMin; l <= lMax; l++)
+		{
+			Boxing<L> boxing = algorithm.box(l);
+			sweep.counts[l - lMin] = boxing.size();
+
+			if(keepBoxings)
+				sweep.boxings.add(boxing);
+		}
+
+		return sweep;
+	}
+
+	/**
+	 * The number of boxes for box size l.
+	 */
+	public int count(int l)
+	{
+		check(l);
+		return counts[l - lMin];
+	}
+
+	/**
+	 * The number of boxes for each box size, starting at lMin.
+	 */
+	public int[] counts()
+	{
+		return counts.clone();
+	}
+
+	/**
+	 * The boxing for box size l.
+	 *
+	 * @throws IllegalStateException If the boxings were not kept.
+	 */
+	public Boxing<L> boxing(int l)
+	{
+		if(boxings == null)
+			throw new IllegalStateException("Boxings were not kept.");
+
+		check(l);
+		return boxings.get(l - lMin);
+	}
+
+	private void check(int l)
+	{
+		if(l < lMin || l > lMax)
+			throw new IllegalArgumentException("Box size ("+l+") outside the range of the sweep ("+lMin+" to "+lMax+").");
+	}
+
+	/**
+	 * The least-squares regression of ln N(l) on ln l, over all box sizes of
+	 * the sweep.
+	 */
+	public SimpleRegression regression()
+	{
+		SimpleRegression regression = new SimpleRegression();
+		for(int l = lMin; l <= lMax; l++)
+			regression.addData(Math.log(l), Math.log(counts[l - lMin]));
+
+		return regression;
+	}
+
+	/**
+	 * The box-counting dimension: minus the slope of the regression. NaN if
+	 * the sweep covers fewer than two box sizes.
+	 */
+	public double dimension()
+	{
+		return - regression().getSlope();
+	}
+
+	public int lMin()
+	{
+		return lMin;
+	}
+
+	public int lMax()
+	{
+		return lMax;
+	}
+}
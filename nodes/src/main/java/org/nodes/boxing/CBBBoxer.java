@@ -1,74 +1,151 @@
 package org.nodes.boxing;
 
-import static org.nodes.util.Series.series;
-
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.nodes.Global;
 import org.nodes.Graph;
+import org.nodes.NeighborCursor;
 import org.nodes.Node;
-import org.nodes.util.Series;
+import org.nodes.algorithms.BFS;
 
+/**
+ * <p>
+ * The compact box burning algorithm (Song et al., 2007). A box is grown from
+ * a random uncovered node by repeatedly adding a random candidate, and
+ * removing from the candidates all nodes at distance l or more from it, until
+ * no candidates are left.
+ * </p><p>
+ * The neighbors of all nodes are read into int arrays when the boxer is
+ * created, so later changes to the graph are not seen. The neighbourhoods are
+ * found with a reusable bounded breadth-first search, or taken from a
+ * {@link DistanceOracle}. The candidates are kept in a bitset, together with
+ * the list of its nonzero words, so that intersecting them with a
+ * neighbourhood costs time proportional to the candidates and the
+ * neighbourhood, not to the size of the graph.
+ * </p><p>
+ * Since the result is random, the algorithm can be restarted several times,
+ * keeping the boxing with the fewest boxes. The restarts run in parallel on
+ * the global executor. Each restart has its own random number generator,
+ * seeded from Global.random() in order, so the result depends only on the
+ * seed, not on the number of threads.
+ * </p>
+ */
 public class CBBBoxer<L> implements BoxingAlgorithm<L>
 {
 	private Graph<L> graph;
-	
-	// private Distance<V> usp;
-	
+	private DistanceOracle oracle = null;
+
+	// * The distinct neighbors of each node
+	private int[][] neighbors;
+
 	public CBBBoxer(Graph<L> graph)
 	{
 		this.graph = graph;
-		
-		// usp = new DijkstraDistance<V, E>(graph);
+		this.neighbors = NeighborCursor.distinctNeighbors(graph);
+	}
+
+	/**
+	 * A boxer that takes its neighbourhoods from the given oracle, for box
+	 * sizes up to oracle.maxDistance() + 1. The oracle can be shared with
+	 * other boxers of the same graph.
+	 */
+	public CBBBoxer(Graph<L> graph, DistanceOracle oracle)
+	{
+		if(oracle.size() != graph.size())
+			throw new IllegalArgumentException("Oracle size ("+oracle.size()+") does not match graph size ("+graph.size()+").");
+
+		this.graph = graph;
+		this.oracle = oracle;
+		this.neighbors = oracle.neighbors();
 	}
 
 	@Override
 	public Boxing<L> box(int l)
 	{
-		List<Set<Node<L>>> result = new ArrayList<Set<Node<L>>>();
-				
-		Set<Node<L>> uncovered = new LinkedHashSet<Node<L>>();
-		uncovered.addAll(graph.nodes());
-				
-		while(! uncovered.isEmpty())
-		{
-// 			Global.log().info("uncovered size: " +  uncovered.size());
-			List<Node<L>> candidates = new ArrayList<Node<L>>(uncovered);
-			Set<Node<L>> box = new HashSet<Node<L>>();
-			while(! candidates.isEmpty())
-			{
-				int draw = Global.random().nextInt(candidates.size());
-				Node<L> center = candidates.remove(draw);
-				
-				box.add(center);
-				uncovered.remove(center);
-				
-				// Remove the candidates that are too far away
-				Set<Node<L>> neighbourhood = neighbourhood(center, l);
-				candidates.retainAll(neighbourhood);
-				
-//				Iterator<V> it = candidates.iterator();
-//				while(it.hasNext())
-//				{
-//					V other = it.next();
-//					if(distance(center, other) >= l)
-//						it.remove();
-//				}
-			}
-			
-			result.add(box);
-		}
-		
+		return box(l, 1, 1);
+	}
+
+	/**
+	 * Runs the algorithm the given number of times, and returns the boxing
+	 * with the fewest boxes (the first, in case of a tie).
+	 *
+	 * @param l The box size: all nodes in a box are at distance less than l.
+	 * @param restarts The number of times to run the algorithm.
+	 * @param numThreads The number of threads to run the restarts on.
+	 */
+	public Boxing<L> box(int l, int restarts, int numThreads)
+	{
+		return box(l, seeds(restarts), numThreads);
+	}
+
+	/**
+	 * Like {@link #box(int, int, int)}, but only returns the number of boxes.
+	 */
+	public int count(int l, int restarts, int numThreads)
+	{
+		return count(l, seeds(restarts), numThreads);
+	}
+
+	/**
+	 * Runs one restart for each of the given seeds.
+	 */
+	Boxing<L> box(int l, long[] seeds, int numThreads)
+	{
+		Cover best = cover(l, seeds, numThreads);
+
+		List<Set<Node<L>>> result = new ArrayList<Set<Node<L>>>(best.numBoxes);
+		for(int b = 0; b < best.numBoxes; b++)
+			result.add(new HashSet<Node<L>>());
+
+		for(int i = 0; i < best.boxes.length; i++)
+			result.get(best.boxes[i]).add(graph.get(i));
+
 		return new Boxing<L>(result, graph);
 	}
-	
+
+	/**
+	 * Runs one restart for each of the given seeds.
+	 */
+	int count(int l, long[] seeds, int numThreads)
+	{
+		return cover(l, seeds, numThreads).numBoxes;
+	}
+
+	/**
+	 * Draws a seed for each restart from Global.random().
+	 */
+	static long[] seeds(int restarts)
+	{
+		if(restarts < 1)
+			throw new IllegalArgumentException("Number of restarts ("+restarts+") must be positive.");
+
+		long[] seeds = new long[restarts];
+		for(int r = 0; r < restarts; r++)
+			seeds[r] = Global.random().nextLong();
+
+		return seeds;
+	}
+
+	private Cover cover(int l, long[] seeds, int numThreads)
+	{
+		List<Cover> covers = new ArrayList<Cover>(seeds.length);
+		for(long seed : seeds)
+			covers.add(new Cover(l, seed));
+
+		Cover best = null;
+		for(Cover cover : Global.invokeAll(covers, numThreads))
+			if(best == null || cover.numBoxes < best.numBoxes)
+				best = cover;
+
+		return best;
+	}
+
 	/**
 	 * Return all nodes with distance less than d to center.
 	 * @param center
@@ -78,25 +155,230 @@ public class CBBBoxer<L> implements BoxingAlgorithm<L>
 	public Set<Node<L>> neighbourhood(Node<L> center, int d)
 	{
 		Set<Node<L>> neighbourhood = new LinkedHashSet<Node<L>>();
-		Set<Node<L>> shell0 = new LinkedHashSet<Node<L>>(),
-		       shell1 = new LinkedHashSet<Node<L>>();
-				
-		neighbourhood.add(center);
-		shell0.add(center);
-		
-		int c = 1;
-		while(c < d)
+
+		if(oracle != null && d <= oracle.maxDistance() + 1)
 		{
-			for(Node<L> node : shell0)
-				shell1.addAll(node.neighbors());
-			 
-			neighbourhood.addAll(shell1);
-			
-			shell0 = shell1;
-			shell1 = new LinkedHashSet<Node<L>>();
-			c++;
+			int[] ball = oracle.ball(center.index());
+			int size = oracle.ballSize(center.index(), Math.max(1, d));
+
+			for(int i = 0; i < size; i++)
+				neighbourhood.add(graph.get(ball[i]));
+
+			return neighbourhood;
 		}
-		
+
+		BFS bfs = new BFS(neighbors);
+		int size = bfs.search(center.index(), Math.max(0, d - 1));
+
+		for(int i = 0; i < size; i++)
+			neighbourhood.add(graph.get(bfs.node(i)));
+
 		return neighbourhood;
 	}
+
+	/**
+	 * A single run of the algorithm. The result is stored as the index of
+	 * the box of each node.
+	 */
+	private class Cover implements Callable<Cover>
+	{
+		private int l;
+		private long seed;
+
+		private int[] boxes;
+		private int numBoxes = 0;
+
+		// * The uncovered nodes in an array, and the position of each node in
+		//   it (-1 if covered), so that a node can be drawn and removed in
+		//   constant time
+		private int[] uncovered, positions;
+		private int numUncovered;
+
+		// * The candidates as a bitset, the indices of the words that may be
+		//   nonzero, and the number of candidates
+		private long[] candidates;
+		private int[] active;
+		private int numActive;
+		private int numCandidates;
+
+		// * The current neighbourhood as a bitset, and the indices of its
+		//   nonzero words
+		private long[] mask;
+		private int[] touched;
+		private int numTouched;
+
+		// * The current neighbourhood: either the prefix of an oracle ball, or
+		//   the nodes reached by the search
+		private BFS bfs;
+		private int[] ball;
+		private int ballSize;
+
+		public Cover(int l, long seed)
+		{
+			this.l = l;
+			this.seed = seed;
+		}
+
+		@Override
+		public Cover call()
+		{
+			int n = neighbors.length;
+			int words = (n + 63) >>> 6;
+
+			Random random = new Random(seed);
+
+			if(oracle == null || l > oracle.maxDistance() + 1)
+				bfs = new BFS(neighbors);
+
+			boxes = new int[n];
+			uncovered = new int[n];
+			positions = new int[n];
+			for(int i = 0; i < n; i++)
+				uncovered[i] = positions[i] = i;
+			numUncovered = n;
+
+			candidates = new long[words];
+			active = new int[words];
+			mask = new long[words];
+			touched = new int[words];
+
+			while(numUncovered > 0)
+			{
+				int box = numBoxes++;
+
+				// * The first center is drawn from all uncovered nodes. The
+				//   candidates are the uncovered nodes in its neighbourhood.
+				int center = uncovered[random.nextInt(numUncovered)];
+				take(center, box);
+
+				neighbourhood(center);
+				numActive = 0;
+				numCandidates = 0;
+				for(int k = 0; k < ballSize; k++)
+				{
+					int node = node(k);
+					if(positions[node] < 0)
+						continue;
+
+					int w = node >>> 6;
+					if(candidates[w] == 0)
+						active[numActive++] = w;
+
+					candidates[w] |= 1L << node;
+					numCandidates++;
+				}
+
+				while(numCandidates > 0)
+				{
+					center = draw(random.nextInt(numCandidates));
+					take(center, box);
+
+					candidates[center >>> 6] &= ~(1L << center);
+					numCandidates--;
+
+					neighbourhood(center);
+					intersect();
+				}
+			}
+
+			// * Only the result needs to be kept
+			uncovered = positions = active = touched = null;
+			candidates = mask = null;
+			bfs = null;
+			ball = null;
+
+			return this;
+		}
+
+		private void take(int node, int box)
+		{
+			boxes[node] = box;
+
+			// * Move the last uncovered node into this node's place
+			int position = positions[node];
+			int last = uncovered[--numUncovered];
+
+			uncovered[position] = last;
+			positions[last] = position;
+			positions[node] = -1;
+		}
+
+		/**
+		 * The candidate of the given rank, in order of index.
+		 */
+		private int draw(int rank)
+		{
+			for(int a = 0; a < numActive; a++)
+			{
+				int w = active[a];
+				int count = Long.bitCount(candidates[w]);
+
+				if(rank < count)
+				{
+					long word = candidates[w];
+					for(int r = 0; r < rank; r++)
+						word &= word - 1;
+
+					return (w << 6) + Long.numberOfTrailingZeros(word);
+				}
+
+				rank -= count;
+			}
+
+			throw new IllegalStateException("Rank out of bounds.");
+		}
+
+		/**
+		 * Removes the candidates that are not in the current neighbourhood.
+		 */
+		private void intersect()
+		{
+			numTouched = 0;
+			for(int k = 0; k < ballSize; k++)
+			{
+				int node = node(k);
+				int w = node >>> 6;
+				if(mask[w] == 0)
+					touched[numTouched++] = w;
+
+				mask[w] |= 1L << node;
+			}
+
+			int kept = 0;
+			numCandidates = 0;
+			for(int a = 0; a < numActive; a++)
+			{
+				int w = active[a];
+				candidates[w] &= mask[w];
+
+				if(candidates[w] != 0)
+				{
+					active[kept++] = w;
+					numCandidates += Long.bitCount(candidates[w]);
+				}
+			}
+			numActive = kept;
+
+			for(int t = 0; t < numTouched; t++)
+				mask[touched[t]] = 0;
+		}
+
+		/**
+		 * Finds the nodes at distance less than l from the center.
+		 */
+		private void neighbourhood(int center)
+		{
+			if(bfs == null)
+			{
+				ball = oracle.ball(center);
+				ballSize = oracle.ballSize(center, Math.max(1, l));
+			} else
+				ballSize = bfs.search(center, Math.max(0, l - 1));
+		}
+
+		private int node(int k)
+		{
+			return bfs == null ? ball[k] : bfs.node(k);
+		}
+	}
 }
@@ -0,0 +1,413 @@
+package org.nodes.boxing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.NeighborCursor;
+import org.nodes.algorithms.BFS;
+
+/**
+ * <p>
+ * Answers queries of the form "is the distance between i and j less than l?"
+ * for the small values of l used in boxing, without an all-pairs distance
+ * matrix.
+ * </p><p>
+ * Exact answers come from balls: the nodes within distance maxDistance of a
+ * node, found by a bounded breadth-first search when they are first needed.
+ * A ball is stored as an int array of its nodes, ordered by distance and
+ * then by index, so that the nodes within any smaller distance form a prefix,
+ * and membership can be checked by binary search per layer. Balls are cached
+ * until the cache reaches its budget.
+ * </p><p>
+ * Optionally, the oracle precomputes the distances from a set of landmark
+ * nodes. By the triangle inequality, these give a lower bound
+ * |d(a, i) - d(a, j)| and an upper bound d(a, i) + d(a, j) for every landmark
+ * a. If the bounds decide a query, no ball is needed.
+ * </p><p>
+ * Links in directed graphs are followed in either direction. The oracle is
+ * thread-safe, so one oracle can be shared by boxers running in parallel.
+ * </p>
+ */
+public class DistanceOracle
+{
+	/**
+	 * The default maximum number of node indices held in cached balls.
+	 */
+	public static final long DEFAULT_CACHE = 1L << 26;
+
+	/**
+	 * The result of {@link #distance(int, int)} for nodes that are further
+	 * apart than maxDistance.
+	 */
+	public static final int FAR = Integer.MAX_VALUE;
+
+	private int n;
+	private int maxDistance;
+
+	private int[][] neighbors;
+
+	// * distances[k][i] is the distance from landmark k to node i, or FAR
+	private int[] landmarks;
+	private int[][] distances;
+
+	private AtomicReferenceArray<Ball> balls;
+	private AtomicLong cached = new AtomicLong(0);
+	private long cacheSize;
+
+	private ThreadLocal<BFS> bfs = new ThreadLocal<BFS>()
+	{
+		@Override
+		protected BFS initialValue()
+		{
+			return new BFS(neighbors);
+		}
+	};
+
+	/**
+	 * An oracle without landmarks.
+	 *
+	 * @param maxDistance The largest distance for which queries are answered
+	 * 	exactly. For boxes of size up to lMax, this is lMax - 1.
+	 */
+	public DistanceOracle(Graph<?> graph, int maxDistance)
+	{
+		this(graph, maxDistance, new int[0], DEFAULT_CACHE, Global.numThreads());
+	}
+
+	/**
+	 * An oracle with the given number of landmarks, chosen as the nodes of
+	 * highest degree.
+	 */
+	public DistanceOracle(Graph<?> graph, int maxDistance, int numLandmarks)
+	{
+		this(graph, maxDistance, landmarks(graph, numLandmarks), DEFAULT_CACHE, Global.numThreads());
+	}
+
+	/**
+	 * @param graph
+	 * @param maxDistance The largest distance for which queries are answered
+	 * 	exactly.
+	 * @param landmarks The indices of the landmark nodes. May be empty.
+	 * @param cacheSize The maximum total number of node indices in cached
+	 * 	balls. Balls beyond this budget are recomputed on each use.
+	 * @param numThreads The number of threads for the landmark searches.
+	 */
+	public DistanceOracle(Graph<?> graph, int maxDistance, int[] landmarks, long cacheSize, int numThreads)
+	{
+		if(maxDistance < 0)
+			throw new IllegalArgumentException("Maximum distance ("+maxDistance+") cannot be negative.");
+
+		this.n = graph.size();
+		this.maxDistance = maxDistance;
+		this.cacheSize = cacheSize;
+		this.landmarks = landmarks.clone();
+
+		for(int landmark : landmarks)
+			if(landmark < 0 || landmark >= n)
+				throw new IllegalArgumentException("Landmark ("+landmark+") is not a node index.");
+
+		neighbors = NeighborCursor.distinctNeighbors(graph);
+		balls = new AtomicReferenceArray<Ball>(n);
+
+		searchLandmarks(numThreads);
+	}
+
+	private void searchLandmarks(int numThreads)
+	{
+		distances = new int[landmarks.length][];
+
+		List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>(landmarks.length);
+		for(final int landmark : landmarks)
+			tasks.add(new Callable<int[]>()
+			{
+				@Override
+				public int[] call()
+				{
+					BFS search = new BFS(neighbors);
+					int reached = search.search(landmark);
+
+					int[] row = new int[n];
+					Arrays.fill(row, FAR);
+					for(int k = 0; k < reached; k++)
+					{
+						int node = search.node(k);
+						row[node] = search.distance(node);
+					}
+
+					return row;
+				}
+			});
+
+		List<int[]> rows = Global.invokeAll(tasks, numThreads);
+		for(int k = 0; k < rows.size(); k++)
+			distances[k] = rows.get(k);
+	}
+
+	/**
+	 * Whether the distance between i and j is less than l.
+	 *
+	 * @param l At most maxDistance() + 1.
+	 */
+	public boolean within(int i, int j, int l)
+	{
+		if(l > maxDistance + 1)
+			throw new IllegalArgumentException("Box size ("+l+") is too large for maximum distance ("+maxDistance+").");
+
+		if(i == j)
+			return l > 0;
+
+		if(lowerBound(i, j) >= l)
+			return false;
+		if(upperBound(i, j) < l)
+			return true;
+
+		return find(i).contains(j, l);
+	}
+
+	/**
+	 * The distance between i and j, or {@link #FAR} if it is larger than
+	 * maxDistance().
+	 */
+	public int distance(int i, int j)
+	{
+		if(i == j)
+			return 0;
+
+		int lower = lowerBound(i, j);
+		if(lower > maxDistance)
+			return FAR;
+		if(lower == upperBound(i, j))
+			return lower;
+
+		return find(i).distance(j);
+	}
+
+	/**
+	 * A lower bound on the distance between i and j, from the landmarks. This
+	 * is 0 if there are no landmarks, and FAR if the landmarks show that the
+	 * nodes are not connected.
+	 */
+	public int lowerBound(int i, int j)
+	{
+		int bound = 0;
+		for(int[] row : distances)
+		{
+			int a = row[i], b = row[j];
+
+			if(a == FAR && b == FAR)
+				continue;
+			if(a == FAR || b == FAR)
+				return FAR;
+
+			bound = Math.max(bound, Math.abs(a - b));
+		}
+
+		return bound;
+	}
+
+	/**
+	 * An upper bound on the distance between i and j, from the landmarks. This
+	 * is FAR if there are no landmarks.
+	 */
+	public int upperBound(int i, int j)
+	{
+		int bound = FAR;
+		for(int[] row : distances)
+			if(row[i] != FAR && row[j] != FAR)
+				bound = Math.min(bound, row[i] + row[j]);
+
+		return bound;
+	}
+
+	/**
+	 * The nodes within maxDistance() of the center, ordered by distance and
+	 * then by index, starting with the center. The nodes within distance
+	 * l - 1 are the first {@link #ballSize(int, int)} entries.
+	 *
+	 * The array is shared: do not modify it.
+	 */
+	public int[] ball(int center)
+	{
+		return find(center).nodes;
+	}
+
+	/**
+	 * The number of nodes at distance less than l from the center.
+	 */
+	public int ballSize(int center, int l)
+	{
+		if(l > maxDistance + 1)
+			throw new IllegalArgumentException("Box size ("+l+") is too large for maximum distance ("+maxDistance+").");
+		if(l <= 0)
+			return 0;
+
+		return find(center).ends[l - 1];
+	}
+
+	private Ball find(int center)
+	{
+		Ball ball = balls.get(center);
+		if(ball != null)
+			return ball;
+
+		ball = new Ball(center);
+
+		if(! reserve(ball.nodes.length))
+			return ball;
+
+		// * Another thread may have computed the same ball at the same time, 
+		//   which wastes some work, but gives the same result. Only the ball 
+		//   that is stored counts against the budget.
+		if(! balls.compareAndSet(center, null, ball))
+		{
+			cached.addAndGet(- ball.nodes.length);
+
+			Ball existing = balls.get(center);
+			return existing == null ? ball : existing;
+		}
+
+		return ball;
+	}
+
+	/**
+	 * Claims room in the cache for the given number of node indices, if the
+	 * budget allows it.
+	 */
+	private boolean reserve(long size)
+	{
+		while(true)
+		{
+			long current = cached.get();
+			if(current + size > cacheSize)
+				return false;
+
+			if(cached.compareAndSet(current, current + size))
+				return true;
+		}
+	}
+
+	/**
+	 * Removes all cached balls.
+	 */
+	public void clear()
+	{
+		for(int i = 0; i < n; i++)
+			balls.set(i, null);
+		cached.set(0);
+	}
+
+	public int size()
+	{
+		return n;
+	}
+
+	/**
+	 * The number of node indices held in cached balls.
+	 */
+	public long cached()
+	{
+		return cached.get();
+	}
+
+	public int maxDistance()
+	{
+		return maxDistance;
+	}
+
+	public int[] landmarks()
+	{
+		return landmarks.clone();
+	}
+
+	/**
+	 * The neighbors of each node, as read from the graph. Do not modify these.
+	 */
+	public int[][] neighbors()
+	{
+		return neighbors;
+	}
+
+	/**
+	 * The indices of the k nodes of highest degree (in the distinct-neighbor
+	 * sense), ties broken by lowest index.
+	 */
+	public static int[] landmarks(Graph<?> graph, int k)
+	{
+		int n = graph.size();
+		k = Math.min(k, n);
+
+		NeighborCursor cursor = new NeighborCursor(graph);
+
+		// * Sort by descending degree, then index, with one primitive array
+		long[] order = new long[n];
+		for(int i = 0; i < n; i++)
+			order[i] = ((long) (Integer.MAX_VALUE - cursor.load(i)) << 32) | i;
+
+		Arrays.sort(order);
+
+		int[] landmarks = new int[k];
+		for(int i = 0; i < k; i++)
+			landmarks[i] = (int) order[i];
+
+		return landmarks;
+	}
+
+	private class Ball
+	{
+		// * The nodes within maxDistance, ordered by distance, then by index
+		int[] nodes;
+		// * ends[d] is the number of nodes at distance at most d
+		int[] ends;
+
+		public Ball(int center)
+		{
+			BFS search = bfs.get();
+			int reached = search.search(center, maxDistance);
+
+			nodes = new int[reached];
+			ends = new int[maxDistance + 1];
+
+			int d = 0;
+			for(int k = 0; k < reached; k++)
+			{
+				int node = search.node(k);
+				while(search.distance(node) > d)
+					ends[d++] = k;
+
+				nodes[k] = node;
+			}
+			while(d <= maxDistance)
+				ends[d++] = reached;
+
+			for(d = 0; d <= maxDistance; d++)
+				Arrays.sort(nodes, d == 0 ? 0 : ends[d - 1], ends[d]);
+		}
+
+		/**
+		 * Whether the node is at distance less than l.
+		 */
+		public boolean contains(int node, int l)
+		{
+			for(int d = 0; d < l; d++)
+				if(Arrays.binarySearch(nodes, d == 0 ? 0 : ends[d - 1], ends[d], node) >= 0)
+					return true;
+
+			return false;
+		}
+
+		public int distance(int node)
+		{
+			for(int d = 0; d <= maxDistance; d++)
+				if(Arrays.binarySearch(nodes, d == 0 ? 0 : ends[d - 1], ends[d], node) >= 0)
+					return d;
+
+			return FAR;
+		}
+	}
+}
@@ -1,138 +1,393 @@
 package org.nodes.boxing;
 
-import static org.nodes.util.Series.series;
-
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.nodes.Global;
 import org.nodes.Graph;
+import org.nodes.NeighborCursor;
 import org.nodes.Node;
-import org.nodes.algorithms.FloydWarshall;
-import org.nodes.util.Pair;
-import org.nodes.util.Series;
-import org.nodes.util.Distance;
+import org.nodes.algorithms.BFS;
 
+/**
+ * <p>
+ * The greedy colouring boxer (Song et al., 2007). For each box size l, two
+ * nodes are linked in the dual graph if their distance is at least l. The
+ * nodes are coloured greedily in order of index, each with the smallest
+ * colour not used by an earlier node it is linked to in the dual graph. The
+ * nodes of one colour form a box.
+ * </p><p>
+ * Since the dual graph is dense, we never build it. A colour is free for
+ * node i if every earlier node with that colour is near i (at distance less
+ * than l). So we keep, for each box size, the number of nodes of each colour,
+ * and compare it to the number of near nodes of that colour. The near nodes
+ * come from a breadth-first search from i up to distance lMax - 1, which
+ * colours i for all box sizes at once. Memory is linear in the number of
+ * nodes, and the colours are stored as bytes or shorts, until a box size
+ * needs more colours.
+ * </p><p>
+ * The searches run in parallel on the global executor, one block of nodes at
+ * a time. The colouring itself is sequential, so the result does not depend
+ * on the number of threads.
+ * </p>
+ */
 public class GreedyBoxer<L> implements BoxingAlgorithm<L>
 {
-	private int[][] colors;
-	private int lMax; // The maximal (horizontal) index to the colors array
-	private short[][] distanceCache = null;
-	private FloydWarshall<L> fw;
-	
+	/**
+	 * The number of nodes searched per thread in one block.
+	 */
+	public static final int BLOCK = 1024;
+
+	/**
+	 * The largest supported box size.
+	 */
+	public static final int MAX_SIZE = 256;
+
 	private Graph<L> graph;
-	
+	private DistanceOracle oracle = null;
+	private int numThreads;
+
+	// * The distinct neighbors of each node
+	private int[][] neighbors;
+
+	// * The largest box size for which colours have been computed
+	private int lMax;
+
+	// * colours[l-1] holds the colours of all nodes for box size l, and
+	//   counts[l-1][c] the number of nodes with colour c
+	private Colours[] colours;
+	private int[][] counts;
+	private int[] numColours;
+
 	public GreedyBoxer(Graph<L> graph, int lm)
 	{
-		super();
+		this(graph, lm, Global.numThreads());
+	}
+
+	/**
+	 * @param graph
+	 * @param lm The largest box size to compute colours for. Larger box
+	 * 	sizes trigger a recomputation.
+	 * @param numThreads The maximum number of threads to use.
+	 */
+	public GreedyBoxer(Graph<L> graph, int lm, int numThreads)
+	{
+		this.graph = graph;
+		this.numThreads = numThreads;
+		this.neighbors = NeighborCursor.distinctNeighbors(graph);
+
+		colour(lm);
+	}
+
+	/**
+	 * A boxer that takes its distances from the given oracle, which can be
+	 * shared with other boxers of the same graph. The largest box size is
+	 * limited to oracle.maxDistance() + 1.
+	 */
+	public GreedyBoxer(Graph<L> graph, int lm, DistanceOracle oracle)
+	{
+		if(oracle.size() != graph.size())
+			throw new IllegalArgumentException("Oracle size ("+oracle.size()+") does not match graph size ("+graph.size()+").");
+
 		this.graph = graph;
-		fw = new FloydWarshall<L>(graph);
-		
-		setMatrix(lm-1);
-	}	
+		this.oracle = oracle;
+		this.numThreads = Global.numThreads();
+		this.neighbors = oracle.neighbors();
 
+		colour(lm);
+	}
 
 	@Override
 	public Boxing<L> box(int l)
 	{
-		int lIndex = l-1;
-		if(lIndex > lMax)
-			setMatrix(lIndex);
-		
-		Map<Integer, Set<Node<L>>> boxes = new HashMap<Integer, Set<Node<L>>>();
-		for(int i : series(graph.size()))
+		int lIndex = Math.max(l, 1) - 1;
+		if(lIndex >= lMax)
+			colour(lIndex + 1);
+
+		List<Set<Node<L>>> boxes = new ArrayList<Set<Node<L>>>(numColours[lIndex]);
+		for(int c = 0; c < numColours[lIndex]; c++)
+			boxes.add(new HashSet<Node<L>>());
+
+		for(int i = 0; i < graph.size(); i++)
+			boxes.get(colours[lIndex].get(i)).add(graph.get(i));
+
+		return new Boxing<L>(boxes, graph);
+	}
+
+	/**
+	 * The number of boxes for box size l, without building the boxing.
+	 */
+	public int count(int l)
+	{
+		int lIndex = Math.max(l, 1) - 1;
+		if(lIndex >= lMax)
+			colour(lIndex + 1);
+
+		return numColours[lIndex];
+	}
+
+	/**
+	 * The colour of the given node for box size l. Nodes of the same colour
+	 * are in the same box.
+	 */
+	public int colour(int node, int l)
+	{
+		int lIndex = Math.max(l, 1) - 1;
+		if(lIndex >= lMax)
+			colour(lIndex + 1);
+
+		return colours[lIndex].get(node);
+	}
+
+	/**
+	 * Colours all nodes for box sizes 1 to lMax.
+	 */
+	private void colour(int lMax)
+	{
+		if(lMax < 1 || lMax > MAX_SIZE)
+			throw new IllegalArgumentException("Largest box size ("+lMax+") must be between 1 and "+MAX_SIZE+".");
+		if(oracle != null && lMax - 1 > oracle.maxDistance())
+			throw new IllegalArgumentException("Box size ("+lMax+") is too large for the oracle (max distance "+oracle.maxDistance()+").");
+
+		this.lMax = lMax;
+		int n = neighbors.length;
+
+		colours = new Colours[lMax];
+		counts = new int[lMax][];
+		numColours = new int[lMax];
+		for(int l = 0; l < lMax; l++)
+		{
+			colours[l] = new Colours(n);
+			counts[l] = new int[16];
+		}
+
+		// * hits[l][c] counts the near nodes of colour c for the current node
+		int[][] hits = new int[lMax][];
+		int[][] touched = new int[lMax][];
+		int[] numTouched = new int[lMax];
+		for(int l = 0; l < lMax; l++)
 		{
-			Node<L> node = graph.nodes().get(i);
-			int color = colors[i][lIndex];
-			
-			if(! boxes.containsKey(color))
-				boxes.put(color, new HashSet<Node<L>>());
-			
-			boxes.get(color).add(node);
+			hits[l] = new int[16];
+			touched[l] = new int[16];
+		}
+
+		int blockSize = BLOCK * Math.max(1, numThreads);
+		for(int from = 0; from < n; from += blockSize)
+		{
+			int to = (int) Math.min(n, (long) from + blockSize);
+			Near[] near = near(from, to);
+
+			for(int i = from; i < to; i++)
+			{
+				Near ni = near[i - from];
+
+				for(int k = 0; k < ni.size; k++)
+				{
+					int j = ni.nodes[k];
+
+					// * j is near i for all box sizes larger than the distance
+					for(int l = ni.distances[k] & 0xFF; l < lMax; l++)
+					{
+						int c = colours[l].get(j);
+						if(c >= hits[l].length)
+							hits[l] = Arrays.copyOf(hits[l], Math.max(c + 1, hits[l].length * 2));
+
+						if(hits[l][c]++ == 0)
+						{
+							if(numTouched[l] == touched[l].length)
+								touched[l] = Arrays.copyOf(touched[l], touched[l].length * 2);
+
+							touched[l][numTouched[l]++] = c;
+						}
+					}
+				}
+
+				for(int l = 0; l < lMax; l++)
+				{
+					// * A colour is free if all its nodes are near, and the
+					//   next new colour is always free
+					int best = numColours[l];
+					for(int t = 0; t < numTouched[l]; t++)
+					{
+						int c = touched[l][t];
+						if(hits[l][c] == counts[l][c] && c < best)
+							best = c;
+
+						hits[l][c] = 0;
+					}
+					numTouched[l] = 0;
+
+					colours[l].set(i, best);
+
+					if(best == numColours[l])
+					{
+						numColours[l]++;
+						if(best == counts[l].length)
+							counts[l] = Arrays.copyOf(counts[l], counts[l].length * 2);
+					}
+					counts[l][best]++;
+				}
+			}
+
+			if(to / 100000 > from / 100000)
+				Global.log().info("Coloured " + to + " nodes.");
 		}
-		
-		return new Boxing<L>(
-				new ArrayList<Set<Node<L>>>(boxes.values()), 
-				graph);
-		
 	}
-	
-	private int distance(int i, int j)
+
+	/**
+	 * Finds, for each node in the block, the earlier nodes within distance
+	 * lMax - 1, in parallel.
+	 */
+	private Near[] near(int from, int to)
 	{
-		if(i == j) 
-			return 0;		
-		
-		if(distanceCache != null)
+		int numTasks = Math.max(1, Math.min(to - from, numThreads));
+
+		final Near[] near = new Near[to - from];
+
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(numTasks);
+		for(int t = 0; t < numTasks; t++)
 		{
-			int max = Math.max(i,  j), min = Math.max(i,  j);
-			return distanceCache[max][min];
+			final int taskFrom = from + (int) ((long) (to - from) * t / numTasks),
+			          taskTo = from + (int) ((long) (to - from) * (t + 1) / numTasks),
+			          offset = from;
+
+			tasks.add(new Callable<Object>()
+			{
+				@Override
+				public Object call()
+				{
+					BFS bfs = oracle == null ? new BFS(neighbors) : null;
+
+					for(int i = taskFrom; i < taskTo; i++)
+						near[i - offset] = bfs == null ? new Near(i, lMax, oracle) : new Near(i, lMax, bfs);
+
+					return null;
+				}
+			});
 		}
-		
-		Number dNum = fw.distance(i, j);
-		int distance = (dNum != null) ? (int)dNum.doubleValue() : Integer.MAX_VALUE;
-		
-		return distance;
+
+		Global.invokeAll(tasks, numThreads);
+
+		return near;
 	}
 
-	private void setMatrix(int lMax)
+	/**
+	 * The nodes with a lower index than a given node, within distance lMax - 1
+	 * of it, with their distances.
+	 */
+	private static class Near
 	{
-		// * NB the l index represent the distance - 1. So the colors at 
-		//   colors[.][0] are those for box size 1
-		
-		this.lMax = lMax;
-		int n = graph.size();
-		
-		colors = new int[n][];
-		
-		// * Set the color of node 0 to 0 for all l's
-		colors[0] = new int[lMax+1];
-		for (int l : series(lMax))
-			colors[0][l] = 0;
-		
-		List<Integer> nColors = new ArrayList<Integer>();
-		List<Pair<Integer, Integer>> neighbours = new ArrayList<Pair<Integer,Integer>>(n);
-		
-		for(int i : series(1, n))
+		int[] nodes;
+		byte[] distances;
+		int size = 0;
+
+		public Near(int node, int lMax, BFS bfs)
+		{
+			int reached = bfs.search(node, lMax - 1);
+
+			init(reached);
+			for(int k = 1; k < reached; k++)
+			{
+				int other = bfs.node(k);
+				if(other < node)
+					add(other, bfs.distance(other));
+			}
+		}
+
+		public Near(int node, int lMax, DistanceOracle oracle)
 		{
-			if(i%1000 == 0)
-				Global.log().info("At node "+i);
-			colors[i] = new int[lMax+1];
-
-			// * this node's neighbours in the dual graph (nodes that are farther than l away)
-			//   we will shrink this as we increment l
-			neighbours.clear();
-			for(int j : series(i))
-				neighbours.add(new Pair<Integer, Integer>(j, distance(i, j)));
-			
-			for(int l : series(lMax+1))
+			int[] ball = oracle.ball(node);
+			int reached = oracle.ballSize(node, lMax);
+
+			init(reached);
+
+			// * The ball is ordered by distance, so we read it layer by layer
+			int k = 1;
+			for(int d = 1; d < lMax; d++)
 			{
-				Iterator<Pair<Integer, Integer>> it = neighbours.iterator();
-				while(it.hasNext())
-					if(it.next().second() < l + 1)
-						it.remove();
-								
-				nColors.clear();
-				for(Pair<Integer, Integer> pair : neighbours)
-					nColors.add(colors[pair.first()][l]);
-				
-				colors[i][l] = smallestException(nColors);
+				int end = oracle.ballSize(node, d + 1);
+				for(; k < end; k++)
+					if(ball[k] < node)
+						add(ball[k], d);
 			}
 		}
 
+		private void init(int reached)
+		{
+			nodes = new int[Math.max(0, reached - 1)];
+			distances = new byte[nodes.length];
+		}
+
+		private void add(int node, int distance)
+		{
+			nodes[size] = node;
+			distances[size] = (byte) distance;
+			size++;
+		}
 	}
-	
+
+	/**
+	 * The colours of all nodes for one box size, stored in the narrowest
+	 * array that fits the largest colour so far.
+	 */
+	private static class Colours
+	{
+		private byte[] bytes;
+		private short[] shorts = null;
+		private int[] ints = null;
+
+		public Colours(int n)
+		{
+			bytes = new byte[n];
+		}
+
+		public int get(int i)
+		{
+			if(bytes != null)
+				return bytes[i] & 0xFF;
+			if(shorts != null)
+				return shorts[i] & 0xFFFF;
+			return ints[i];
+		}
+
+		public void set(int i, int colour)
+		{
+			if(bytes != null && colour > 0xFF)
+			{
+				shorts = new short[bytes.length];
+				for(int j = 0; j < bytes.length; j++)
+					shorts[j] = (short) (bytes[j] & 0xFF);
+				bytes = null;
+			}
+
+			if(shorts != null && colour > 0xFFFF)
+			{
+				ints = new int[shorts.length];
+				for(int j = 0; j < shorts.length; j++)
+					ints[j] = shorts[j] & 0xFFFF;
+				shorts = null;
+			}
+
+			if(bytes != null)
+				bytes[i] = (byte) colour;
+			else if(shorts != null)
+				shorts[i] = (short) colour;
+			else
+				ints[i] = colour;
+		}
+	}
+
 	/**
 	 * Returns the smallest positive integer not contained in a given list of
 	 * illegal integers.
-	 * 
+	 *
 	 * This method modifies the list it is passed.
-	 * 
+	 *
 	 * @param illegal
 	 * @return
 	 */
@@ -2,25 +2,19 @@ package org.nodes.clustering;
 
 import static org.nodes.util.Series.series;
 
-import java.util.AbstractCollection;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Deque;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 import org.nodes.classification.Classification;
 import org.nodes.classification.Classified;
 import org.nodes.Graph;
+import org.nodes.NeighborCursor;
 import org.nodes.Node;
 import org.nodes.Subgraph;
-import org.nodes.util.FrequencyModel;
 import org.nodes.util.BitString;
-import org.nodes.util.Series;
 
 /**
  * Clusters a graph by (weakly) connected components
@@ -51,13 +45,21 @@ public class ConnectionClusterer<N> implements Clusterer<N>
 		return Subgraph.subgraphIndices(graph, largest);
 	}
 
+	/**
+	 * The connected components of a graph, optionally restricted to the nodes
+	 * selected by a mask.
+	 * 
+	 * The components are found by union-find over int arrays.
+	 * 
+	 * Clusters are numbered by their smallest node index, and the members of 
+	 * each cluster are sorted.
+	 */
 	public static class ConnectionClustering<N>
 	{
-		private List<Integer> clusters;
-		private List<List<Integer>> clusterLists;
-		
-		private int maxCluster = -1;
-		private BitString mask = null;
+		// * The cluster of each node, or -1 if the node is not clustered
+		private int[] clusterOf;
+		// * The members of each cluster
+		private List<int[]> clusters;
 		
 		private Graph<N> data;
 		
@@ -75,19 +77,76 @@ public class ConnectionClusterer<N> implements Clusterer<N>
 				throw new IllegalArgumentException("Mask size ("+mask.size()+") should match number of nodes in graph ("+data.size()+").");
 			
 			this.data = data;
-			this.mask = mask;
 			
-			clusters = new ArrayList<Integer>();
-			for(int i : Series.series(data.size()))
-				clusters.add(null);
+			int n = data.size();
+			
+			// * Union-find over the links between unmasked nodes
+			int[] parents = new int[n];
+			int[] sizes = new int[n];
+			for(int i = 0; i < n; i++)
+			{
+				parents[i] = i;
+				sizes[i] = 1;
+			}
 			
-			clusterLists = new ArrayList<List<Integer>>();
+			NeighborCursor cursor = new NeighborCursor(data);
+			for(int i = 0; i < n; i++)
+			{
+				if(masked(mask, i))
+					continue;
+				
+				int num = cursor.load(i);
+				for(int j = 0; j < num; j++)
+				{
+					int neighbor = cursor.get(j);
+					// * Every link is seen from both sides
+					if(neighbor > i && ! masked(mask, neighbor))
+						union(parents, sizes, i, neighbor);
+				}
+			}
 			
-			for(Node<N> node : data.nodes())
-				search(data, node);
+			// * Number the clusters in order of their smallest node. The 
+			//   sizes array is reused to map roots to cluster indices.
+			int[] rootCluster = sizes;
+			Arrays.fill(rootCluster, -1);
 			
-			for(List<Integer> members : clusterLists)
-			 	Collections.sort(members);
+			clusterOf = new int[n];
+			int numClusters = 0;
+			
+			for(int i = 0; i < n; i++)
+			{
+				if(masked(mask, i))
+				{
+					clusterOf[i] = -1;
+					continue;
+				}
+				
+				int root = find(parents, i);
+				if(rootCluster[root] == -1)
+					rootCluster[root] = numClusters++;
+				
+				clusterOf[i] = rootCluster[root];
+			}
+			
+			// * Collect the members. The parents array is reused for the 
+			//   cluster sizes.
+			int[] clusterSizes = parents;
+			Arrays.fill(clusterSizes, 0, numClusters, 0);
+			for(int i = 0; i < n; i++)
+				if(clusterOf[i] != -1)
+					clusterSizes[clusterOf[i]]++;
+			
+			clusters = new ArrayList<int[]>(numClusters);
+			for(int c = 0; c < numClusters; c++)
+				clusters.add(new int[clusterSizes[c]]);
+			
+			Arrays.fill(clusterSizes, 0, numClusters, 0);
+			for(int i = 0; i < n; i++)
+				if(clusterOf[i] != -1)
+				{
+					int c = clusterOf[i];
+					clusters.get(c)[clusterSizes[c]++] = i;
+				}
 			
 			// check();
 		}
@@ -96,75 +155,48 @@ public class ConnectionClusterer<N> implements Clusterer<N>
 		{	
 			this(data, null);
 		}
-	
-		/**
-		 * If the given node has no assigned cluster yet, it assigns it a new 
-		 * cluster, searches for all nodes reachable from it, and assigns them the 
-		 * same cluster. 
-		 * 
-		 * @param data
-		 * @param node
-		 */
-		private void search(Graph<N> data, Node<N> node)
+		
+		private static boolean masked(BitString mask, int node)
 		{
-			if(maskedOut(node))
-				return;
-						
-			if(clusters.get(node.index()) != null)
-				return;
-			
-			Deque<Node<N>> stack = new LinkedList<Node<N>>();
-			stack.add(node);
-			
-			maxCluster ++;
-			clusterLists.add(new LinkedList<Integer>());
-			
-			int cluster = maxCluster;
-			
-			// * Search depth-first for all nodes connected to this component
+			if(mask == null)
+				return false;
 			
-			while(stack.size() > 0)
-			{
-				Node<N> current = stack.getLast();
-				
-				set(current.index(), cluster);
-				
-				// * search for the first unassigned neighbour node
-				boolean complete = true;
-				for(Node<N> neighbour : current.neighbors())
-					if(! maskedOut(neighbour) && clusters.get(neighbour.index()) == null)
-					{
-						complete = false;
-						stack.add(neighbour);
-						break;
-					}
-				
-				if(complete)
-					stack.removeLast();
-
-			}
+			return ! mask.get(node);
 		}
 		
-		private boolean maskedOut(Node<N> node)
+		private static int find(int[] parents, int node)
 		{
-			if(mask == null)
-				return false;
+			// * Path halving
+			while(parents[node] != node)
+			{
+				parents[node] = parents[parents[node]];
+				node = parents[node];
+			}
 			
-			return ! mask.get(node.index());
+			return node;
 		}
 		
-		private void set(int nodeIndex, int cluster)
+		private static void union(int[] parents, int[] sizes, int a, int b)
 		{
-			if(clusters.get(nodeIndex) != null)
+			a = find(parents, a);
+			b = find(parents, b);
+			
+			if(a == b)
 				return;
 			
-			clusters.set(nodeIndex, cluster);
-			clusterLists.get(cluster).add(nodeIndex);
+			// * Union by size
+			if(sizes[a] < sizes[b])
+			{
+				int t = a; a = b; b = t;
+			}
+			
+			parents[b] = a;
+			sizes[a] += sizes[b];
 		}
 		
 		public int numClusters()
 		{
-			return maxCluster + 1;
+			return clusters.size();
 		}
 		
 		/**
@@ -175,8 +207,8 @@ public class ConnectionClusterer<N> implements Clusterer<N>
 		{
 			int index = -1;
 			
-			for(int i : Series.series(numClusters()))
-				if(index == -1 || clusterLists.get(i).size() > clusterLists.get(index).size())
+			for(int i = 0; i < numClusters(); i++)
+				if(index == -1 || clusters.get(i).length > clusters.get(index).length)
 					index = i;
 				
 			return index;
@@ -184,25 +216,32 @@ public class ConnectionClusterer<N> implements Clusterer<N>
 		
 		public int clusterSize(int i)
 		{
-			return clusterLists.get(i).size();
+			return clusters.get(i).length;
 		}
 		
 		public Collection<Integer> cluster(int cluster)
 		{
-//			List<Integer> indices = new ArrayList<Integer>(clusterSize(cluster));
-//			
-//			for(int i : Series.series(clusters.size()))
-//				if(clusters.get(i) != null && clusters.get(i) == cluster)
-//					indices.add(i);
-//			
-//			return indices;
-			
-			return Collections.unmodifiableList(clusterLists.get(cluster));
+			final int[] members = clusters.get(cluster);
+			
+			return new AbstractList<Integer>()
+			{
+				@Override
+				public Integer get(int index)
+				{
+					return members[index];
+				}
+
+				@Override
+				public int size()
+				{
+					return members.length;
+				}
+			};
 		}
 		
 		public Integer clusterOf(int index)
 		{
-			return clusters.get(index);
+			return clusterOf[index] < 0 ? null : clusterOf[index];
 		}
 		
 		public Collection<Integer> largestCluster()
@@ -212,30 +251,32 @@ public class ConnectionClusterer<N> implements Clusterer<N>
 		
 		public Classified<Node<N>> clustered()
 		{
-			return Classification.combine(new ArrayList<Node<N>>(data.nodes()), clusters);
+			List<Integer> classes = new ArrayList<Integer>(clusterOf.length);
+			for(int index = 0; index < clusterOf.length; index++)
+				classes.add(clusterOf(index));
+			
+			return Classification.combine(new ArrayList<Node<N>>(data.nodes()), classes);
 		}
 		
 		private void check()
 		{
 			int c = 0;
-			for(int cluster : series(clusterLists.size()))
-				for(int index : clusterLists.get(cluster))
+			for(int cluster : series(clusters.size()))
+				for(int index : clusters.get(cluster))
 				{
-					if(clusters.get(index) != cluster)
-						throw new RuntimeException("...");
+					if(clusterOf[index] != cluster)
+						throw new RuntimeException("Node "+index+" is listed in cluster "+cluster+", but assigned to "+clusterOf[index]+".");
 					
 					c++;
 				}
-
-			for(List<Integer> members : clusterLists)
-			{
-				Set<Integer> set = new HashSet<Integer>(members);
-				System.out.println(set.size() + " " + members.size());
-			}
 			
+			int assigned = 0;
+			for(int cluster : clusterOf)
+				if(cluster != -1)
+					assigned++;
 			
-			if(mask != null && c != mask.numOnes())
-				throw new RuntimeException("..." + c + " " + mask.numOnes());
+			if(c != assigned)
+				throw new RuntimeException(c + " nodes are listed in clusters, but " + assigned + " are assigned.");
 		}
 	}
 	
@@ -6,7 +6,7 @@ import org.nodes.classification.Classified;
 import org.nodes.clustering.KMedioids;
 import org.nodes.Graph;
 import org.nodes.Node;
-import org.nodes.algorithms.FloydWarshall;
+import org.nodes.algorithms.AllPairsBFS;
 import org.nodes.util.Series;
 
 public class GraphKMedoids<L> implements Clusterer<L>
@@ -27,11 +27,11 @@ public class GraphKMedoids<L> implements Clusterer<L>
 	@Override
 	public Classified<Node<L>> cluster(Graph<L> graph)
 	{
-		FloydWarshall<L> fw = new FloydWarshall<L>(graph);
+		AllPairsBFS<L> distances = new AllPairsBFS<L>(graph);
 		List<Node<L>> nodes = (List<Node<L>>) graph.nodes();
 		
 		KMedioids<Node<L>> meds = 
-				new KMedioids<Node<L>>(nodes, fw, k);
+				new KMedioids<Node<L>>(nodes, distances, k);
 		
 		meds.iterate(ITS);
 		return meds.clustered();
@@ -1,15 +1,27 @@
 package org.nodes.data;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import org.nodes.CSRDGraph;
+import org.nodes.CSRUGraph;
 import org.nodes.Global;
 import org.nodes.DGraph;
 import org.nodes.DNode;
@@ -438,6 +450,86 @@ public class Data {
 		return graph;
 	}	
 
+	/**
+	 * Reads a file in edge-list representation into a frozen directed graph 
+	 * with null labels. Requires that the nodes are represented using 
+	 * _consecutive_ integers.
+	 * 
+	 * The file is parsed in parallel, by the tasks of the global executor
+	 * (see {@link Global#executor()}).
+	 *  
+	 * @param file
+	 * @return 
+	 * @throws IOException
+	 */
+	public static CSRDGraph<String> edgeListDirectedCSR(File file)
+			throws IOException
+	{
+		return edgeListDirectedCSR(file, Global.numThreads() * 4);
+	}
+	
+	/**
+	 * Reads a file in edge-list representation into a frozen directed graph 
+	 * with null labels. Requires that the nodes are represented using 
+	 * _consecutive_ integers.
+	 * 
+	 * @param file
+	 * @param numParts The number of byte ranges the file is split into for 
+	 *  parsing in parallel.
+	 * @return
+	 * @throws IOException
+	 */
+	public static CSRDGraph<String> edgeListDirectedCSR(File file, int numParts)
+			throws IOException
+	{
+		EdgeListParser.Result result = EdgeListParser.parse(file, numParts);
+		Global.log().info("File parsed (n="+result.numNodes+", l="+result.numLinks+").");
+		
+		List<String> labels = Collections.nCopies(result.numNodes, null);
+		
+		return CSRDGraph.fromLinks(labels, result.from, result.to, result.sizes);
+	}
+	
+	/**
+	 * Reads a file in edge-list representation into a frozen undirected graph 
+	 * with null labels. Requires that the nodes are represented using 
+	 * _consecutive_ integers.
+	 * 
+	 * The file is parsed in parallel, by the tasks of the global executor
+	 * (see {@link Global#executor()}).
+	 *  
+	 * @param file
+	 * @return 
+	 * @throws IOException
+	 */
+	public static CSRUGraph<String> edgeListUndirectedCSR(File file)
+			throws IOException
+	{
+		return edgeListUndirectedCSR(file, Global.numThreads() * 4);
+	}
+	
+	/**
+	 * Reads a file in edge-list representation into a frozen undirected graph 
+	 * with null labels. Requires that the nodes are represented using 
+	 * _consecutive_ integers.
+	 * 
+	 * @param file
+	 * @param numParts The number of byte ranges the file is split into for 
+	 *  parsing in parallel.
+	 * @return
+	 * @throws IOException
+	 */
+	public static CSRUGraph<String> edgeListUndirectedCSR(File file, int numParts)
+			throws IOException
+	{
+		EdgeListParser.Result result = EdgeListParser.parse(file, numParts);
+		Global.log().info("File parsed (n="+result.numNodes+", l="+result.numLinks+").");
+		
+		List<String> labels = Collections.nCopies(result.numNodes, null);
+		
+		return CSRUGraph.fromLinks(labels, result.from, result.to, result.sizes);
+	}
+
 	private static void ensure(Graph<String> graph, int max)
 	{
 		while(graph.size() < max + 1)
@@ -457,4 +549,40 @@ public class Data {
 		
 		writer.close();
 	}
+	
+	/**
+	 * Opens the file for reading. If the file is gzip-compressed (as 
+	 * determined by its first two bytes), it is decompressed transparently.
+	 */
+	public static InputStream open(File file)
+			throws IOException
+	{
+		InputStream in = new BufferedInputStream(new FileInputStream(file), STREAM_BUFFER);
+		
+		in.mark(2);
+		int b0 = in.read(), b1 = in.read();
+		in.reset();
+		
+		if(b0 == (GZIPInputStream.GZIP_MAGIC & 0xff) && b1 == (GZIPInputStream.GZIP_MAGIC >>> 8))
+			return new GZIPInputStream(in, STREAM_BUFFER);
+		
+		return in;
+	}
+	
+	/**
+	 * Opens the file for writing. If the filename ends in ".gz", the output is 
+	 * gzip-compressed.
+	 */
+	public static OutputStream create(File file)
+			throws IOException
+	{
+		OutputStream out = new FileOutputStream(file);
+		
+		if(file.getName().endsWith(".gz"))
+			return new GZIPOutputStream(out, STREAM_BUFFER);
+		
+		return new BufferedOutputStream(out, STREAM_BUFFER);
+	}
+	
+	private static final int STREAM_BUFFER = 1 << 16;
 }
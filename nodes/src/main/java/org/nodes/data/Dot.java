@@ -3,25 +3,47 @@ package org.nodes.data;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.nodes.DGraph;
 import org.nodes.DTGraph;
 import org.nodes.DTNode;
 import org.nodes.Graph;
+import org.nodes.LightDTGraph;
+import org.nodes.Link;
 import org.nodes.MapDTGraph;
 import org.nodes.MapUTGraph;
 import org.nodes.UTGraph;
+import org.nodes.Node;
 import org.nodes.UTNode;
 
+/**
+ * Methods for reading and writing graphs in (a small subset of) the dot 
+ * format, as produced by the toString() methods of the graphs in this 
+ * library.
+ * 
+ * The readers and writers for files and streams work incrementally: statements 
+ * are read and parsed one at a time, so that the whole file is never held in 
+ * memory. Files that are gzip-compressed are decompressed transparently, and 
+ * files ending in ".gz" are written compressed.
+ */
 public class Dot {
 	
-	private static Pattern list = Pattern.compile(".*\\{(.*)\\}");
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 1 << 16;
+	
 	private static Pattern labeledLinkUndirected = Pattern.compile("\\s*(.*)\\s*--\\s*(.*)\\s*\\[label=(.*)\\]");
 	private static Pattern unlabeledLinkUndirected = Pattern.compile("\\s*(.*)\\s--\\s(.*)\\s*");	
 	
@@ -37,22 +59,72 @@ public class Dot {
 		else throw new IllegalArgumentException("String representation should start with 'digraph' or 'graph'");
 	}
 	
+	public static Graph<String> read(File file)
+		throws IOException
+	{
+		return read(file, false);
+	}
+	
+	/**
+	 * @param light If true, directed graphs are read into a LightDTGraph, 
+	 * 	otherwise a MapDTGraph is used. Undirected graphs are always read into 
+	 * 	a MapUTGraph.
+	 */
+	public static Graph<String> read(File file, boolean light)
+		throws IOException
+	{
+		InputStream in = Data.open(file);
+		try {
+			return read(in, light);
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Reads a graph from the given stream. The stream is not closed.
+	 */
+	public static Graph<String> read(InputStream in, boolean light)
+		throws IOException
+	{
+		Reader reader = new BufferedReader(new InputStreamReader(in, UTF8), BUFFER_SIZE);
+		
+		String header = header(reader).trim().toLowerCase();
+		if(header.startsWith("digraph"))
+			return readDT(reader, light ? 
+					new LightDTGraph<String, String>() :
+					new MapDTGraph<String, String>());
+		if(header.startsWith("graph"))
+			return readUT(reader, new MapUTGraph<String, String>());
+		
+		throw new IllegalArgumentException("Input should start with 'digraph' or 'graph'");
+	}
+	
 	public static UTGraph<String, String> readUT(String string)
+	{
+		try
+		{
+			Reader reader = new StringReader(string);
+			header(reader);
+			
+			return readUT(reader, new MapUTGraph<String, String>());
+		} catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static UTGraph<String, String> readUT(Reader in, UTGraph<String, String> graph)
+		throws IOException
 	{
 		Map<String, UTNode<String, String>> map = 
 				new HashMap<String, UTNode<String,String>>(); 
-		Matcher m = list.matcher(string);
 		
-		m.matches();
-		
-		String inner = m.group(1);
-		String[] elements = inner.split(";");
-		
-		UTGraph<String, String> graph = new MapUTGraph<String, String>();
-		
-		for(String element : elements)
+		StringBuilder buffer = new StringBuilder();
+		String element;
+		while((element = statement(in, buffer)) != null)
 		{
-			m = labeledLinkUndirected.matcher(element);
+			Matcher m = labeledLinkUndirected.matcher(element);
 			
 			if(m.matches())
 			{
@@ -82,6 +154,73 @@ public class Dot {
 		return graph;
 	}
 	
+	/**
+	 * Reads up to and including the opening brace. 
+	 * 
+	 * @return The text before the brace.
+	 */
+	private static String header(Reader in)
+		throws IOException
+	{
+		StringBuilder header = new StringBuilder();
+		
+		int c;
+		while((c = in.read()) != '{')
+		{
+			if(c == -1)
+				throw new IllegalArgumentException("Input ended before the opening brace.");
+			header.append((char) c);
+		}
+		
+		return header.toString();
+	}
+	
+	/**
+	 * Reads the next statement, up to a semicolon or the closing brace. 
+	 * Semicolons and braces inside square brackets do not end a statement. 
+	 * 
+	 * @param buffer A buffer to reuse between calls.
+	 * @return The statement, or null if there are no more statements.
+	 */
+	private static String statement(Reader in, StringBuilder buffer)
+		throws IOException
+	{
+		while(true)
+		{
+			buffer.setLength(0);
+			
+			boolean end = false;
+			int depth = 0;
+			int c;
+			while(true)
+			{
+				c = in.read();
+				if(c == -1 || (depth == 0 && c == '}'))
+				{
+					end = true;
+					break;
+				}
+				
+				if(depth == 0 && c == ';')
+					break;
+				
+				if(c == '[')
+					depth++;
+				if(c == ']')
+					depth--;
+				
+				buffer.append((char) c);
+			}
+			
+			String statement = buffer.toString();
+			if(statement.trim().length() > 0)
+				return statement;
+			
+			if(end)
+				return null;
+		}
+	}
+	
 	private static UTNode<String, String> nodeUT(
 			String name, 
 			Map<String, UTNode<String, String>> map, 
@@ -101,21 +240,30 @@ public class Dot {
 	}
 	
 	public static DTGraph<String, String> readDT(String string)
+	{
+		try
+		{
+			Reader reader = new StringReader(string);
+			header(reader);
+			
+			return readDT(reader, new MapDTGraph<String, String>());
+		} catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static DTGraph<String, String> readDT(Reader in, DTGraph<String, String> graph)
+		throws IOException
 	{
 		Map<String, DTNode<String, String>> map = 
 				new HashMap<String, DTNode<String,String>>(); 
-		Matcher m = list.matcher(string);
-		
-		m.matches();
-		
-		String inner = m.group(1);
-		String[] elements = inner.split(";");
 		
-		DTGraph<String, String> graph = new MapDTGraph<String, String>();
-		
-		for(String element : elements)
+		StringBuilder buffer = new StringBuilder();
+		String element;
+		while((element = statement(in, buffer)) != null)
 		{
-			m = labeledLinkDirected.matcher(element);
+			Matcher m = labeledLinkDirected.matcher(element);
 			
 			if(m.matches())
 			{
@@ -166,11 +314,50 @@ public class Dot {
 	public static <L> void write(Graph<L> graph, File file)
 		throws IOException
 	{
-		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		OutputStream out = Data.create(file);
+		try {
+			write(graph, out);
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Writes the graph to the given stream, one link at a time, in the same 
+	 * format as the toString() method of the graph. The stream is flushed, but 
+	 * not closed.
+	 */
+	public static <L> void write(Graph<L> graph, OutputStream stream)
+		throws IOException
+	{
+		Writer out = new BufferedWriter(new OutputStreamWriter(stream, UTF8), BUFFER_SIZE);
 		
-		out.write(graph.toString());
+		out.write(graph instanceof DGraph<?> ? "digraph {" : "graph {");
 		
-		out.close();
+		boolean first = true;
+		for(Link<L> link : graph.links())
+		{
+			if(first) 
+				first = false;
+			else 
+				out.write("; ");
+			
+			out.write(link.toString());
+		}
+		
+		// * Nodes without links
+		for(Node<L> node : graph.nodes())
+			if(node.degree() == 0)
+			{
+				if(first) 
+					first = false;
+				else 
+					out.write("; ");
+				
+				out.write(node.toString());
+			}
+		
+		out.write("}");
+		out.flush();
 	}
 }
-
@@ -0,0 +1,303 @@
+package org.nodes.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.nodes.Global;
+
+/**
+ * Parses an edge list of integer node indices in parallel.
+ *
+ * The file is split into byte ranges, which are tokenized directly from the
+ * bytes (no String is created per line) by the tasks of the global executor.
+ * Each range is owned by the lines that start inside it. Every task collects
+ * its links in its own int buffers, which are returned unmerged, so that the
+ * caller can build a graph from them in one pass.
+ *
+ * Lines that are empty, or start with '#' or '%' are ignored, as are all
+ * tokens after the second on a line.
+ */
+class EdgeListParser
+{
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The links of one byte range of the file.
+	 */
+	static class Part
+	{
+		int[] from = new int[1024];
+		int[] to = new int[1024];
+		int size = 0;
+		int max = -1;
+
+		void add(int a, int b)
+		{
+			if(size == from.length)
+			{
+				int capacity = from.length + (from.length >> 1);
+				from = Arrays.copyOf(from, capacity);
+				to = Arrays.copyOf(to, capacity);
+			}
+
+			from[size] = a;
+			to[size] = b;
+			size++;
+
+			max = Math.max(max, Math.max(a, b));
+		}
+	}
+
+	/**
+	 * The combined result of parsing all parts.
+	 */
+	static class Result
+	{
+		int[][] from, to;
+		int[] sizes;
+		int numNodes;
+		int numLinks;
+	}
+
+	/**
+	 * Parses the given file, using the global executor.
+	 *
+	 * @param file
+	 * @param numParts The number of byte ranges to split the file into.
+	 * @return
+	 * @throws IOException
+	 */
+	public static Result parse(final File file, int numParts)
+			throws IOException
+	{
+		final long length = file.length();
+		numParts = (int) Math.max(1, Math.min(numParts, length / BUFFER_SIZE + 1));
+
+		List<Callable<Part>> tasks = new ArrayList<Callable<Part>>(numParts);
+		for(int p = 0; p < numParts; p++)
+		{
+			final long start = length * p / numParts;
+			final long end = length * (p + 1) / numParts;
+
+			tasks.add(new Callable<Part>()
+			{
+				@Override
+				public Part call() throws Exception
+				{
+					return parse(file, start, end);
+				}
+			});
+		}
+
+		List<Part> parts;
+		try
+		{
+			parts = Global.invokeAll(tasks, Global.numThreads());
+		} catch (RuntimeException e)
+		{
+			if(e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+
+			throw e;
+		}
+
+		Result result = new Result();
+		result.from = new int[numParts][];
+		result.to = new int[numParts][];
+		result.sizes = new int[numParts];
+
+		int max = -1;
+		long numLinks = 0;
+
+		for(int p = 0; p < numParts; p++)
+		{
+			Part part = parts.get(p);
+
+			result.from[p] = part.from;
+			result.to[p] = part.to;
+			result.sizes[p] = part.size;
+
+			max = Math.max(max, part.max);
+			numLinks += part.size;
+		}
+
+		if(numLinks > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("File "+file+" contains more than Integer.MAX_VALUE links ("+numLinks+").");
+
+		result.numNodes = max + 1;
+		result.numLinks = (int) numLinks;
+
+		return result;
+	}
+
+	/**
+	 * Parses all lines that start in the byte range from start (inclusive) to
+	 * end (exclusive).
+	 */
+	static Part parse(File file, long start, long end)
+			throws IOException
+	{
+		Part part = new Part();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			Reader reader = new Reader(raf.getChannel(), start > 0 ? start - 1 : 0);
+
+			// * If we start in the middle of a line, that line belongs to the
+			//   previous range.
+			if(start > 0)
+				reader.skipLine();
+
+			while(reader.position() < end && reader.hasNext())
+			{
+				long lineStart = reader.position();
+
+				reader.skipSpaces();
+				if(! reader.hasNext())
+					break;
+
+				int c = reader.peek();
+				if(c == '\n' || c == '\r' || c == '#' || c == '%')
+				{
+					reader.skipLine();
+					continue;
+				}
+
+				int a = reader.readInt(lineStart);
+				reader.skipSpaces();
+				int b = reader.readInt(lineStart);
+
+				part.add(a, b);
+
+				reader.skipLine();
+			}
+		} finally {
+			raf.close();
+		}
+
+		return part;
+	}
+
+	/**
+	 * A minimal buffered reader over bytes.
+	 */
+	private static class Reader
+	{
+		private FileChannel channel;
+		private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		// * The file position of the start of the buffer
+		private long bufferStart;
+		private boolean eof = false;
+
+		public Reader(FileChannel channel, long position)
+				throws IOException
+		{
+			this.channel = channel;
+			this.bufferStart = position;
+
+			channel.position(position);
+			buffer.limit(0);
+		}
+
+		public long position()
+		{
+			return bufferStart + buffer.position();
+		}
+
+		public boolean hasNext()
+				throws IOException
+		{
+			if(buffer.hasRemaining())
+				return true;
+
+			fill();
+			return buffer.hasRemaining();
+		}
+
+		private void fill()
+				throws IOException
+		{
+			if(eof)
+				return;
+
+			bufferStart += buffer.position();
+			buffer.clear();
+
+			int read = 0;
+			while(read == 0)
+				read = channel.read(buffer);
+
+			if(read < 0)
+				eof = true;
+
+			buffer.flip();
+		}
+
+		public int peek()
+		{
+			return buffer.get(buffer.position());
+		}
+
+		/**
+		 * Skips spaces and tabs.
+		 */
+		public void skipSpaces()
+				throws IOException
+		{
+			while(hasNext())
+			{
+				int c = peek();
+				if(c != ' ' && c != '\t')
+					return;
+				buffer.get();
+			}
+		}
+
+		/**
+		 * Skips to the start of the next line.
+		 */
+		public void skipLine()
+				throws IOException
+		{
+			while(hasNext())
+				if(buffer.get() == '\n')
+					return;
+		}
+
+		/**
+		 * Reads a non-negative integer.
+		 */
+		public int readInt(long lineStart)
+				throws IOException
+		{
+			long value = 0;
+			int digits = 0;
+
+			while(hasNext())
+			{
+				int c = peek();
+				if(c < '0' || c > '9')
+					break;
+
+				value = value * 10 + (c - '0');
+				if(value > Integer.MAX_VALUE)
+					throw new IllegalArgumentException("Integer on line starting at byte "+lineStart+" is too large.");
+
+				buffer.get();
+				digits++;
+			}
+
+			if(digits == 0)
+				throw new IllegalArgumentException("The line starting at byte "+lineStart+" does not start with two integers.");
+
+			return (int) value;
+		}
+	}
+}
@@ -1,323 +1,446 @@
 package org.nodes.data;
 
-import static org.nodes.util.Functions.toString;
-
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.nodes.DGraph;
 import org.nodes.Graph;
+import org.nodes.LightDTGraph;
 import org.nodes.Link;
 import org.nodes.MapDTGraph;
 import org.nodes.MapUTGraph;
 import org.nodes.Node;
 import org.nodes.TGraph;
 import org.nodes.TLink;
-import org.nodes.UTGraph;
+import org.nodes.TNode;
 import org.nodes.util.Functions;
-import org.openrdf.query.parser.sparql.StringEscapesProcessor;
 
 /**
- * Methods for reading graph in GML format.
- * 
- * 
- * Works only if all elements (brackets, etc) are separated by whitespace.
+ * Methods for reading and writing graphs in GML format.
+ *
+ * Reading and writing is streaming: the input is tokenized incrementally and
+ * the output is written element by element, so that the memory use does not
+ * depend on the size of the file. Files that are gzip-compressed are
+ * decompressed transparently, and files ending in ".gz" are written
+ * compressed.
  *
+ * Only the ids and labels of nodes and the sources, targets and labels of
+ * edges are read. All other attributes are ignored.
  */
 public class GML
 {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 1 << 16;
+
 	public static TGraph<String, String> read(File file)
 		throws IOException
 	{
-		Reader reader = new Reader(file);
+		return read(file, false);
+	}
+
+	/**
+	 * @param light If true, directed graphs are read into a LightDTGraph,
+	 * 	otherwise a MapDTGraph is used. Undirected graphs are always read into
+	 * 	a MapUTGraph.
+	 */
+	public static TGraph<String, String> read(File file, boolean light)
+		throws IOException
+	{
+		InputStream in = Data.open(file);
+		try {
+			return read(in, light);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a graph from the given stream. The stream is not closed.
+	 */
+	public static TGraph<String, String> read(InputStream in, boolean light)
+		throws IOException
+	{
+		Reader reader = new Reader(
+				new BufferedReader(new InputStreamReader(in, UTF8), BUFFER_SIZE),
+				light);
 
 		return reader.graph();
 	}
-	
+
 	private static class Reader
 	{
-		private Map<Integer, Node<String>> nodes = new HashMap<Integer, Node<String>>();
-		
-		public static final int BUFFER_SIZE = 10;
-		public Pattern tokenizer = Pattern.compile("\"([^\"]*)\"|(\\S+)");
-		
-		private BufferedReader reader;
-		private LinkedList<String> buffer = new LinkedList<String>();
-		
-		private TGraph<String, String> graph;
-		private boolean directed;
-		
-		public Reader(File file) throws IOException
+		private Map<Integer, TNode<String, String>> nodes =
+				new HashMap<Integer, TNode<String, String>>();
+
+		private Tokenizer tokenizer;
+
+		private TGraph<String, String> graph = null;
+		private boolean light;
+
+		public Reader(java.io.Reader in, boolean light)
+				throws IOException
 		{
-			reader = new BufferedReader(new FileReader(file));
-			graph = null;
-			
+			this.tokenizer = new Tokenizer(in);
+			this.light = light;
+
 			start();
 		}
-		
+
 		public TGraph<String, String> graph()
 		{
 			return graph;
 		}
-		
-		private void read()
-		{
-			if(buffer.size() > 100)
-				return;
-			// * Read until whitespace 
-			StringBuffer bf = new StringBuffer();
-			
-			int cr = -1;
-			boolean inQuotes = false;
-			
-			do {
-				try
-				{
-					cr = reader.read();
-				} catch (IOException e)
-				{
-					throw new RuntimeException(e);
-				}
-				if(cr >= 0)
-				{
-					bf.append((char)cr);
-					
-					if((char)cr == '"')
-						inQuotes = ! inQuotes;
-				}
-				
-				if(inQuotes && cr == -1)
-					throw new IllegalStateException("Stream ended inside quotes.");
-				
-			} while (
-					inQuotes ||
-					(
-						cr != -1 && 
-						(! Character.isWhitespace(bf.charAt(bf.length()-1)) 
-									|| bf.length() < BUFFER_SIZE)
-					));
-			
-			// * Tokenize
-
-		    Matcher m = tokenizer.matcher(bf);
-		    while(m.find())
-				buffer.add(m.group());
-		}
-		
+
 		private String pop()
+				throws IOException
 		{
-			read();
-			if(buffer.isEmpty())
-				return null;
-			return buffer.pop();
-		}
-		
-		
-		private void start() 
-		{
-			String next = pop();
+			String next = tokenizer.next();
 			if(next == null)
-				return;
-			
-			if(next.toLowerCase().equals("creator"))
-				readCreator();
-			
-			if(next.toLowerCase().equals("graph"))
-				readGraph();
-		}
-		
-		private void readCreator()
-		{
-			pop();
-			start();
+				throw new IllegalStateException("Input ended unexpectedly (line "+tokenizer.line()+").");
+
+			return next;
 		}
-		
-		private void readGraph()
+
+		private void start()
+				throws IOException
 		{
-			if(pop().equals("["))
-				inGraph();
-			else 
-				throw new IllegalStateException("Keyword 'graph' should be followed by a [");
+			String key;
+			while((key = tokenizer.next()) != null)
+			{
+				String value = pop();
+
+				if(key.equalsIgnoreCase("graph"))
+				{
+					if(! value.equals("["))
+						throw new IllegalStateException("Keyword 'graph' should be followed by a [ (line "+tokenizer.line()+").");
+
+					inGraph();
+					return;
+				}
+
+				if(value.equals("["))
+					readSub();
+			}
 		}
-		
+
 		private void inGraph()
+				throws IOException
 		{
 			while(true)
 			{
-				String next = pop();
-				
-				if(next.toLowerCase().equals("directed"))
-					readDirected();
-				
-				if(next.toLowerCase().equals("node"))
+				String key = pop();
+
+				if(key.equals("]"))
+					break;
+
+				String value = pop();
+
+				if(key.equalsIgnoreCase("directed"))
+					readDirected(value);
+				else if(key.equalsIgnoreCase("node") && value.equals("["))
 					readNode();
-				
-				if(next.toLowerCase().equals("edge"))
+				else if(key.equalsIgnoreCase("edge") && value.equals("["))
 					readEdge();
-			
-				if(next.equals("]"))
-					break;
+				else if(value.equals("["))
+					readSub();
 			}
+
+			ensureGraph();
 		}
-		
-		private void readDirected()
+
+		private void readDirected(String value)
 		{
-			String next = pop();
+			if(graph != null)
+				throw new IllegalStateException("The 'directed' statement should come before all nodes and edges (line "+tokenizer.line()+").");
 
-			if(next.equals("1"))
+			if(value.equals("1"))
 			{
-				directed = true;
-				graph = new MapDTGraph<String, String>();
-			} else if(next.equals("0"))
+				graph = light ?
+						new LightDTGraph<String, String>() :
+						new MapDTGraph<String, String>();
+			} else if(value.equals("0"))
 			{
-				directed = false;
-				graph = new  MapUTGraph<String, String>();
+				graph = new MapUTGraph<String, String>();
 			} else
-				throw new RuntimeException("Could not read 'directed' statement. Should have been '1' or '0', was '"+next+"'.,");
-			
+				throw new RuntimeException("Could not read 'directed' statement. Should have been '1' or '0', was '"+value+"'.,");
+
+		}
+
+		/**
+		 * GML graphs are undirected unless stated otherwise.
+		 */
+		private void ensureGraph()
+		{
+			if(graph == null)
+				graph = new MapUTGraph<String, String>();
 		}
-		
-		private String label;
-		private Integer id;
-		
+
 		private void readNode()
+				throws IOException
 		{
-			label = null;
-			id = null;
-			
-			if(! pop().equals("["))
-				throw new IllegalStateException("Node definition should start with [");
-			
-			String next = pop();
-			while(! next.equals("]"))
+			String label = null;
+			Integer id = null;
+
+			String key = pop();
+			while(! key.equals("]"))
 			{
-				if(next.equals("["))
+				String value = pop();
+
+				if(value.equals("["))
 					readSub();
-				
-				if(next.toLowerCase().equals("id"))
-					id = Integer.parseInt(pop());
-				
-				if(next.toLowerCase().equals("label"))
-					label = pop();
-				
-				next = pop();	
+				else if(key.equalsIgnoreCase("id"))
+					id = Integer.parseInt(value);
+				else if(key.equalsIgnoreCase("label"))
+					label = value;
+
+				key = pop();
 			}
 
 			if(id == null)
-				throw new RuntimeException("Graph description did not contain id.");
-			
+				throw new RuntimeException("Graph description did not contain id (line "+tokenizer.line()+").");
+
+			ensureGraph();
 			nodes.put(id, graph.add(label == null ? ("" + id) : label));
 		}
-		
-		int edges = 0;
-		private Integer to, from;	
+
 		private void readEdge()
+				throws IOException
 		{
-			to = null;
-			from = null;
-			if(! pop().equals("["))
-				throw new IllegalStateException("Edge definition should start with [");
-			
-			String next = pop();
-			while(! next.equals("]") )
+			Integer to = null, from = null;
+			String tag = null;
+
+			String key = pop();
+			while(! key.equals("]") )
 			{
-				if(next.toLowerCase().equals("source"))
-					from = Integer.parseInt(pop());
-				
-				if(next.toLowerCase().equals("target"))
-					to = Integer.parseInt(pop());
-				
-				next = pop();
+				String value = pop();
+
+				if(value.equals("["))
+					readSub();
+				else if(key.equalsIgnoreCase("source"))
+					from = Integer.parseInt(value);
+				else if(key.equalsIgnoreCase("target"))
+					to = Integer.parseInt(value);
+				else if(key.equalsIgnoreCase("label"))
+					tag = value;
+
+				key = pop();
 			}
-			
+
 			if(to == null)
-				throw new RuntimeException("Target id missing from node definition.");
-				
+				throw new RuntimeException("Target id missing from edge definition (line "+tokenizer.line()+").");
+
 			if(from == null)
-				throw new RuntimeException("Source id missing from node definition.");
-			
-			Node<String> fn = nodes.get(from),
-			             tn = nodes.get(to);
-			
-			fn.connect(tn);
-			edges++;
+				throw new RuntimeException("Source id missing from edge definition (line "+tokenizer.line()+").");
+
+			TNode<String, String> fn = nodes.get(from),
+			                      tn = nodes.get(to);
+
+			if(fn == null || tn == null)
+				throw new RuntimeException("Edge refers to unknown node id (line "+tokenizer.line()+").");
+
+			fn.connect(tn, tag);
 		}
-		
+
 		/**
-		 * Read (and ignores) any attribute containing brackets;
+		 * Reads (and ignores) the remainder of an attribute containing
+		 * brackets.
 		 */
 		private void readSub()
-		{	
-			String elem;
-			do {
-				elem = pop();
-			} while(!elem.equals("]") && elem != null);
+				throws IOException
+		{
+			int depth = 1;
+			while(depth > 0)
+			{
+				String elem = pop();
 
+				if(elem.equals("["))
+					depth++;
+				else if(elem.equals("]"))
+					depth--;
+			}
 		}
 	}
-	
-	public static <L> String toString(Graph<L> graph)
+
+	/**
+	 * Pull-based tokenizer for GML. Returns brackets, quoted strings (without
+	 * the quotes) and whitespace-separated words.
+	 */
+	private static class Tokenizer
 	{
-		StringBuffer bf = new StringBuffer();
-		
-		bf.append("graph [ \n");
-		
-		bf.append("\tdirected " + ((graph instanceof DGraph<?>) ? 1 : 0)+"\n");
-		
-		// * Nodes
-		for(Node<L> node : graph.nodes())
+		private java.io.Reader in;
+		private StringBuilder token = new StringBuilder();
+		private int peek = -2;
+		private int line = 1;
+
+		public Tokenizer(java.io.Reader in)
 		{
-			bf.append("\tnode [ \n");
-			bf.append("\t\tid " + node.index()+"\n");
-			bf.append("\t\tlabel \"" + esc(node.label().toString()) + "\"\n");
-			bf.append("\t]\n");
+			this.in = in;
 		}
-		
-		// * Links
-		for(Link<L> link : graph.links())
+
+		public int line()
+		{
+			return line;
+		}
+
+		private int read()
+				throws IOException
+		{
+			int c;
+			if(peek != -2)
+			{
+				c = peek;
+				peek = -2;
+			} else
+				c = in.read();
+
+			if(c == '\n')
+				line++;
+
+			return c;
+		}
+
+		/**
+		 * @return The next token, or null if the input has ended.
+		 */
+		public String next()
+				throws IOException
+		{
+			int c = read();
+			while(c != -1 && Character.isWhitespace(c))
+				c = read();
+
+			if(c == -1)
+				return null;
+
+			if(c == '[')
+				return "[";
+			if(c == ']')
+				return "]";
+
+			token.setLength(0);
+
+			if(c == '"')
+			{
+				c = read();
+				while(c != '"')
+				{
+					if(c == -1)
+						throw new IllegalStateException("Stream ended inside quotes.");
+
+					if(c == '\\')
+					{
+						c = read();
+						if(c == -1)
+							throw new IllegalStateException("Stream ended inside quotes.");
+					}
+
+					token.append((char) c);
+					c = read();
+				}
+
+				return token.toString();
+			}
+
+			while(c != -1 && !Character.isWhitespace(c) && c != '[' && c != ']')
+			{
+				token.append((char) c);
+				c = read();
+			}
+
+			// * Keep the delimiter for the next call
+			if(c == '\n')
+				line--;
+			peek = c;
+
+			return token.toString();
+		}
+	}
+
+	public static <L> String toString(Graph<L> graph)
+	{
+		StringWriter out = new StringWriter();
+
+		try
+		{
+			write(graph, out);
+		} catch (IOException e)
 		{
-			bf.append("\tedge [ \n");
-			bf.append("\t\tsource " + link.first().index()+"\n");
-			bf.append("\t\ttarget " + link.second().index()+"\n");
-			if(link instanceof TLink<?,?>)
-				bf.append("\t\tlabel \"" + esc( Functions.toString( ((TLink<L, ?>)link).tag() )) + "\"\n");
-			bf.append("\t]\n");
+			throw new RuntimeException(e);
 		}
-		
-		bf.append("]\n");
-		
-		return bf.toString();
+
+		return out.toString();
 	}
-	
+
 	private static String esc(String in)
 	{
-		String out = in.replace("\"", "\\\"");
+		String out = in.replace("\\", "\\\\");
+		out = out.replace("\"", "\\\"");
 		out = out.replace("\n", "");
 		return out;
 	}
-	
+
 	public static <L> void write(Graph<L> graph, File file)
 		throws IOException
 	{
-		BufferedWriter out = new BufferedWriter(new FileWriter(file));
-		
-		out.write(toString(graph));
-		
-		out.close();		
+		OutputStream out = Data.create(file);
+		try {
+			write(graph, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the graph to the given stream. The stream is flushed, but not
+	 * closed.
+	 */
+	public static <L> void write(Graph<L> graph, OutputStream out)
+		throws IOException
+	{
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF8), BUFFER_SIZE);
+		write(graph, writer);
+		writer.flush();
+	}
+
+	private static <L> void write(Graph<L> graph, Writer out)
+		throws IOException
+	{
+		out.write("graph [ \n");
+
+		out.write("\tdirected " + ((graph instanceof DGraph<?>) ? 1 : 0)+"\n");
+
+		// * Nodes
+		for(Node<L> node : graph.nodes())
+		{
+			out.write("\tnode [ \n");
+			out.write("\t\tid " + node.index()+"\n");
+			out.write("\t\tlabel \"" + esc(Functions.toString(node.label())) + "\"\n");
+			out.write("\t]\n");
+		}
+
+		// * Links
+		for(Link<L> link : graph.links())
+		{
+			out.write("\tedge [ \n");
+			out.write("\t\tsource " + link.first().index()+"\n");
+			out.write("\t\ttarget " + link.second().index()+"\n");
+			if(link instanceof TLink<?,?> && ((TLink<L, ?>)link).tag() != null)
+				out.write("\t\tlabel \"" + esc( Functions.toString( ((TLink<L, ?>)link).tag() )) + "\"\n");
+			out.write("\t]\n");
+		}
+
+		out.write("]\n");
 	}
 
 }
@@ -0,0 +1,441 @@
+package org.nodes.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.nodes.CSRDGraph;
+import org.nodes.CSRUGraph;
+import org.nodes.DGraph;
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.MappedDGraph;
+import org.nodes.MappedUGraph;
+import org.nodes.Node;
+import org.nodes.UGraph;
+import org.nodes.util.MappedArrays;
+import org.nodes.util.MappedArrays.Ints;
+import org.nodes.util.MappedArrays.Longs;
+
+/**
+ * Reads and writes graphs in a binary, memory-mappable format.
+ *
+ * Reading a graph does not parse anything: the file is mapped into memory and
+ * the returned graph ({@link MappedDGraph} or {@link MappedUGraph}) reads its
+ * structure directly from the mapped pages. Only the label dictionary is
+ * loaded into the heap.
+ *
+ * <h2>Format</h2>
+ * All values are little-endian. Each section starts at a multiple of 8 bytes.
+ * <ul>
+ * <li>header: magic (int), version (int), flags (int), number of nodes n
+ * (int), number of links (int), padding (int), number of stored neighbour
+ * entries t (long)</li>
+ * <li>directed graphs: out-offsets (n+1 longs), out-targets (t ints),
+ * in-offsets (n+1 longs), in-sources (t ints)</li>
+ * <li>undirected graphs: offsets (n+1 longs), targets (t ints). Each link is
+ * stored for both its nodes, except self-loops.</li>
+ * <li>if the graph has labels: one label index per node (n ints, -1 for null),
+ * followed by the dictionary: the number of labels (int) and for each label
+ * its length in bytes (int) and its UTF-8 encoding.</li>
+ * </ul>
+ * Neighbour lists are sorted.
+ */
+public class GraphFile
+{
+	public static final int MAGIC = 0x4E444746;
+	public static final int VERSION = 1;
+
+	public static final int DIRECTED = 1;
+	public static final int LABELS = 2;
+
+	private static final int HEADER_SIZE = 32;
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Writes a directed graph to the given file. Labels are stored by their
+	 * toString() representation.
+	 *
+	 * @param graph
+	 * @param file
+	 * @throws IOException
+	 */
+	public static <L> void write(DGraph<L> graph, File file)
+			throws IOException
+	{
+		CSRDGraph<L> csr = CSRDGraph.copy(graph);
+		int n = csr.size();
+
+		Writer out = new Writer(file);
+		try {
+			boolean labels = hasLabels(csr);
+			out.header(DIRECTED | (labels ? LABELS : 0), n, csr.numLinks(), csr.numLinks());
+
+			long offset = 0;
+			out.putLong(offset);
+			for(int i = 0; i < n; i++)
+				out.putLong(offset += csr.outDegree(i));
+
+			for(int i = 0; i < n; i++)
+				for(int j = 0; j < csr.outDegree(i); j++)
+					out.putInt(csr.out(i, j));
+			out.align();
+
+			offset = 0;
+			out.putLong(offset);
+			for(int i = 0; i < n; i++)
+				out.putLong(offset += csr.inDegree(i));
+
+			for(int i = 0; i < n; i++)
+				for(int j = 0; j < csr.inDegree(i); j++)
+					out.putInt(csr.in(i, j));
+			out.align();
+
+			if(labels)
+				out.labels(csr);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes an undirected graph to the given file. Labels are stored by their
+	 * toString() representation.
+	 *
+	 * @param graph
+	 * @param file
+	 * @throws IOException
+	 */
+	public static <L> void write(UGraph<L> graph, File file)
+			throws IOException
+	{
+		CSRUGraph<L> csr = CSRUGraph.copy(graph);
+		int n = csr.size();
+
+		long t = 0;
+		for(int i = 0; i < n; i++)
+			t += csr.degree(i);
+
+		Writer out = new Writer(file);
+		try {
+			boolean labels = hasLabels(csr);
+			out.header(labels ? LABELS : 0, n, csr.numLinks(), t);
+
+			long offset = 0;
+			out.putLong(offset);
+			for(int i = 0; i < n; i++)
+				out.putLong(offset += csr.degree(i));
+
+			for(int i = 0; i < n; i++)
+				for(int j = 0; j < csr.degree(i); j++)
+					out.putInt(csr.neighbor(i, j));
+			out.align();
+
+			if(labels)
+				out.labels(csr);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Maps the given file as a directed graph.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static MappedDGraph readDirected(File file)
+			throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			Header header = new Header(channel, file);
+
+			if(! header.directed())
+				throw new IllegalArgumentException("File "+file+" contains an undirected graph.");
+
+			long position = HEADER_SIZE;
+
+			Longs outOffsets = MappedArrays.longs(channel, position, header.n + 1);
+			position += 8L * (header.n + 1);
+			Ints outTargets = MappedArrays.ints(channel, position, header.t);
+			position += aligned(4L * header.t);
+
+			Longs inOffsets = MappedArrays.longs(channel, position, header.n + 1);
+			position += 8L * (header.n + 1);
+			Ints inSources = MappedArrays.ints(channel, position, header.t);
+			position += aligned(4L * header.t);
+
+			Ints labelIds = null;
+			List<String> dictionary = new ArrayList<String>();
+			if(header.labeled())
+			{
+				labelIds = MappedArrays.ints(channel, position, header.n);
+				position += aligned(4L * header.n);
+
+				dictionary = dictionary(channel, position);
+			}
+
+			MappedDGraph graph = new MappedDGraph(outOffsets, outTargets, inOffsets, inSources, labelIds, dictionary);
+			Global.log().info("Mapped graph (n="+graph.size()+", l="+graph.numLinks()+").");
+
+			return graph;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Maps the given file as an undirected graph.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static MappedUGraph readUndirected(File file)
+			throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			Header header = new Header(channel, file);
+
+			if(header.directed())
+				throw new IllegalArgumentException("File "+file+" contains a directed graph.");
+
+			long position = HEADER_SIZE;
+
+			Longs offsets = MappedArrays.longs(channel, position, header.n + 1);
+			position += 8L * (header.n + 1);
+			Ints targets = MappedArrays.ints(channel, position, header.t);
+			position += aligned(4L * header.t);
+
+			Ints labelIds = null;
+			List<String> dictionary = new ArrayList<String>();
+			if(header.labeled())
+			{
+				labelIds = MappedArrays.ints(channel, position, header.n);
+				position += aligned(4L * header.n);
+
+				dictionary = dictionary(channel, position);
+			}
+
+			MappedUGraph graph = new MappedUGraph(offsets, targets, header.numLinks, labelIds, dictionary);
+			Global.log().info("Mapped graph (n="+graph.size()+", l="+graph.numLinks()+").");
+
+			return graph;
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static long aligned(long bytes)
+	{
+		return (bytes + 7) / 8 * 8;
+	}
+
+	private static boolean hasLabels(Graph<?> graph)
+	{
+		for(Node<?> node : graph.nodes())
+			if(node.label() != null)
+				return true;
+
+		return false;
+	}
+
+	private static List<String> dictionary(FileChannel channel, long position)
+			throws IOException
+	{
+		ByteBuffer buffer = channel.map(MapMode.READ_ONLY, position, channel.size() - position)
+				.order(MappedArrays.ORDER);
+
+		int size = buffer.getInt();
+		List<String> dictionary = new ArrayList<String>(size);
+
+		for(int i = 0; i < size; i++)
+		{
+			byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+
+			dictionary.add(new String(bytes, UTF8));
+		}
+
+		return dictionary;
+	}
+
+	private static class Header
+	{
+		int flags, n, numLinks;
+		long t;
+
+		public Header(FileChannel channel, File file)
+				throws IOException
+		{
+			if(channel.size() < HEADER_SIZE)
+				throw new IllegalArgumentException("File "+file+" is too small to be a graph file.");
+
+			ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE).order(MappedArrays.ORDER);
+
+			int magic = buffer.getInt();
+			if(magic != MAGIC)
+				throw new IllegalArgumentException("File "+file+" is not a graph file (magic number was "+Integer.toHexString(magic)+").");
+
+			int version = buffer.getInt();
+			if(version != VERSION)
+				throw new IllegalArgumentException("File "+file+" has format version "+version+". Only version "+VERSION+" is supported.");
+
+			flags = buffer.getInt();
+			n = buffer.getInt();
+			numLinks = buffer.getInt();
+			buffer.getInt();
+			t = buffer.getLong();
+		}
+
+		public boolean directed()
+		{
+			return (flags & DIRECTED) != 0;
+		}
+
+		public boolean labeled()
+		{
+			return (flags & LABELS) != 0;
+		}
+	}
+
+	/**
+	 * Buffered little-endian writer for the sections of the file.
+	 */
+	private static class Writer
+	{
+		private FileOutputStream stream;
+		private FileChannel channel;
+		private ByteBuffer buffer;
+
+		private long written = 0;
+
+		public Writer(File file)
+				throws IOException
+		{
+			stream = new FileOutputStream(file);
+			channel = stream.getChannel();
+			buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(MappedArrays.ORDER);
+		}
+
+		public void header(int flags, int n, int numLinks, long t)
+				throws IOException
+		{
+			putInt(MAGIC);
+			putInt(VERSION);
+			putInt(flags);
+			putInt(n);
+			putInt(numLinks);
+			putInt(0);
+			putLong(t);
+		}
+
+		public void labels(Graph<?> graph)
+				throws IOException
+		{
+			Map<String, Integer> ids = new LinkedHashMap<String, Integer>();
+
+			for(Node<?> node : graph.nodes())
+			{
+				if(node.label() == null)
+				{
+					putInt(-1);
+					continue;
+				}
+
+				String label = node.label().toString();
+				Integer id = ids.get(label);
+				if(id == null)
+				{
+					id = ids.size();
+					ids.put(label, id);
+				}
+
+				putInt(id);
+			}
+			align();
+
+			putInt(ids.size());
+			for(String label : ids.keySet())
+			{
+				byte[] bytes = label.getBytes(UTF8);
+				putInt(bytes.length);
+				for(byte b : bytes)
+				{
+					ensure(1);
+					buffer.put(b);
+					written++;
+				}
+			}
+		}
+
+		public void putInt(int value)
+				throws IOException
+		{
+			ensure(4);
+			buffer.putInt(value);
+			written += 4;
+		}
+
+		public void putLong(long value)
+				throws IOException
+		{
+			ensure(8);
+			buffer.putLong(value);
+			written += 8;
+		}
+
+		/**
+		 * Pads the output to a multiple of 8 bytes
+		 */
+		public void align()
+				throws IOException
+		{
+			while(written % 8 != 0)
+			{
+				ensure(1);
+				buffer.put((byte) 0);
+				written++;
+			}
+		}
+
+		private void ensure(int bytes)
+				throws IOException
+		{
+			if(buffer.remaining() < bytes)
+				flush();
+		}
+
+		private void flush()
+				throws IOException
+		{
+			buffer.flip();
+			while(buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+
+		public void close()
+				throws IOException
+		{
+			flush();
+			stream.close();
+		}
+	}
+}
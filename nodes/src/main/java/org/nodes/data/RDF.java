@@ -11,6 +11,7 @@ import java.util.regex.Pattern;
 
 import org.nodes.Global;
 import org.nodes.DTGraph;
+import org.nodes.DictDTGraph;
 import org.nodes.DTLink;
 import org.nodes.DTNode;
 import org.nodes.MapDTGraph;
@@ -59,6 +60,29 @@ public class RDF
 			List<Statement> sesameGraph, 
 			List<String> vWhiteList,
 			List<String> eWhiteList)
+	{
+		return fill(new MapDTGraph<String, String>(), sesameGraph, vWhiteList, eWhiteList);
+	}
+	
+	/**
+	 * Creates a graph in which the labels and tags are stored as integer ids 
+	 * into symbol tables. For large RDF graphs, this uses several times less 
+	 * memory than a MapDTGraph, since each URI and predicate is stored only 
+	 * once.
+	 */
+	public static DictDTGraph<String, String> createDictionaryGraph(
+			List<Statement> sesameGraph, 
+			List<String> vWhiteList,
+			List<String> eWhiteList)
+	{
+		return fill(new DictDTGraph<String, String>(), sesameGraph, vWhiteList, eWhiteList);
+	}
+	
+	private static <G extends DTGraph<String, String>> G fill(
+			G graph,
+			List<Statement> sesameGraph, 
+			List<String> vWhiteList,
+			List<String> eWhiteList)
 	{
 		List<Pattern> vertexWhiteList = null;
 		
@@ -78,7 +102,6 @@ public class RDF
 				edgeWhiteList.add(Pattern.compile(patternString));
 		}
 		
-		MapDTGraph<String, String> graph = new MapDTGraph<String, String>();
 		DTNode<String, String> node1, node2;
 		
 		Global.log().info("Constructing graph");
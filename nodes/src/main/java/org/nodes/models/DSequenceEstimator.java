@@ -27,8 +27,8 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.Random;
 import java.util.Set;
-import java.util.Vector;
 
 import org.apache.commons.math3.distribution.NormalDistribution;
 import org.apache.commons.math3.distribution.TDistribution;
@@ -46,6 +46,7 @@ import org.nodes.util.LogNum;
 import org.nodes.util.MaxObserver;
 import org.nodes.util.Pair;
 import org.nodes.util.Series;
+import org.nodes.util.bootstrap.LogNormalCI;
 
 /**
  * Implementation of the Diaconis/Blitzstein sequential importance sampling 
@@ -62,7 +63,7 @@ public class DSequenceEstimator<L>
 	private L label = null;
 	private List<D> sequence;
 	
-	private List<Double> logSamples = new Vector<Double>();
+	private List<Double> logSamples = new ArrayList<Double>();
 
 	public DSequenceEstimator(DGraph<?> data, int samples)
 	{
@@ -201,40 +202,53 @@ public class DSequenceEstimator<L>
 	 * Samples the given number of graphs from this sequence model. The 
 	 * resulting log-probabilities are stored in the model.
 	 * 
+	 * Multithreaded: the samples are drawn by tasks on the global executor, 
+	 * each with its own random number generator.
+	 */
+	public void nonuniform(int samples, int numThreads)
+	{
+		nonuniform(samples, numThreads, 0.0, 0.0);
+	}
+	
+	/**
+	 * Samples at most the given number of graphs from this sequence model, 
+	 * and stops early once the two-sided (1 - alpha) confidence interval on 
+	 * the log number of graphs (see {@link LogNormalCI}) is narrower than the 
+	 * given width (in bits). The resulting log-probabilities are stored in 
+	 * the model.
+	 * 
 	 * Multithreaded
+	 * 
+	 * @param width The target width. If this is not positive, all samples are
+	 * 	drawn.
+	 * @return The number of samples drawn.
 	 */
-	public void nonuniform(final int samples, final int numThreads)
+	public int nonuniform(int samples, int numThreads, double alpha, double width)
 	{
-		final int perThread = samples/numThreads;
-		final int rem = samples - perThread * numThreads;
-		
-		List<Thread> threads = new ArrayList<Thread>(numThreads);
-		for(final int t : series(numThreads))
+		return nonuniform(samples, numThreads, alpha, width, -1);
+	}
+	
+	/**
+	 * As {@link #nonuniform(int, int, double, double)}, but sampling also stops 
+	 * when the given time budget runs out.
+	 * 
+	 * @param maxMillis The time budget in milliseconds. If this is negative,
+	 * 	there is no time budget.
+	 * @return The number of samples drawn.
+	 */
+	public int nonuniform(int samples, int numThreads, double alpha, double width, long maxMillis)
+	{
+		ImportanceSampler.Source source = new ImportanceSampler.Source()
 		{
-			Thread thread = new Thread() {
-				public void run()
-				{
-					for(int i : series(perThread + (t == 0 ? rem : 0)))
-						nonuniform();
-				}
-			};
-			threads.add(thread);
-		}
+			@Override
+			public double logSample(Random random)
+			{
+				Result result = sample(random);
+				return - result.logC() - result.logSigma();
+			}
+		};
 		
-		for(Thread thread : threads)
-		{
-			thread.start();
-		}
-
-		// * Wait until all threads are finished
-		try
-		{
-			for(Thread thread : threads)
-				thread.join();
-		} catch (InterruptedException e)
-		{
-			throw new RuntimeException(e);
-		}
+		return ImportanceSampler.sample(source, samples, numThreads, alpha, width, maxMillis, logSamples);
 	}
 	
 	/**
@@ -243,6 +257,14 @@ public class DSequenceEstimator<L>
 	 * @return
 	 */
 	public Result nonuniform()
+	{
+		Result result = sample(Global.random());
+		logSamples.add(- result.logC() - result.logSigma());
+		
+		return result;
+	}
+	
+	private Result sample(Random random)
 	{
 		// * Create an empty graph
 		DGraph<L> graph = new MapDTGraph<L, String>();
@@ -282,7 +304,7 @@ public class DSequenceEstimator<L>
 			{
 				DNode<L> from = graph.get(fromIndex);
 				
-				List<Integer> toCandidates = findAcceptableSet(sequence, graph, from);
+				List<Integer> toCandidates = findAcceptableSet(sequence, graph, from, random);
 //				System.out.println("candidates: " + toCandidates);
 				
 				int i;
@@ -302,12 +324,12 @@ public class DSequenceEstimator<L>
 						sum += sequence.get(toIndex).in() + SMOOTH;
 					}
 					
-					i = choose(candidateWeights, sum);
+					i = choose(candidateWeights, sum, random);
 					logSigY += log2(candidateWeights.get(i)/sum);
 
 				} else // * uniform choice
 				{
-					i = Global.random().nextInt(toCandidates.size());
+					i = random.nextInt(toCandidates.size());
 					logSigY += - log2(toCandidates.size());
 				}
 				
@@ -325,8 +347,6 @@ public class DSequenceEstimator<L>
 			}
 		}
 		
-		logSamples.add(- logCY - logSigY);
-		
 		return new Result(graph, logCY, logSigY);
 	}
 	
@@ -595,6 +615,18 @@ public class DSequenceEstimator<L>
 	 */
 	public <L> List<Integer> findAcceptableSet(
 			List<D> residualDegrees, DGraph<L> graphSoFar, DNode<L> hub)
+	{
+		return findAcceptableSet(residualDegrees, graphSoFar, hub, Global.random());
+	}
+	
+	/**
+	 * Returns the set of nodes we can connect to the node hub without creating 
+	 * an ungraphical degree sequence.
+	 * 
+	 * @param random The source of randomness for the quickselect.
+	 */
+	public <L> List<Integer> findAcceptableSet(
+			List<D> residualDegrees, DGraph<L> graphSoFar, DNode<L> hub, Random random)
 	{
 		// * Cache the set of forbidden nodes
 		boolean[] forbidden = new boolean[residualDegrees.size()];
@@ -636,7 +668,7 @@ public class DSequenceEstimator<L>
 			}
 		}
 		
-		List<Index> leftMost = MaxObserver.quickSelect(hubDegree.out() - 1, res, new SpecialComparator(), false);
+		List<Index> leftMost = MaxObserver.quickSelect(hubDegree.out() - 1, res, new SpecialComparator(), false, random);
 						
 		for(Index index : leftMost)
 		{
@@ -7,6 +7,7 @@ import static org.nodes.models.DSequenceEstimator.out;
 import java.util.List;
 
 import org.nodes.DGraph;
+import org.nodes.Global;
 import org.nodes.Graph;
 import org.nodes.Graphs;
 import org.nodes.UGraph;
@@ -38,6 +39,9 @@ public class DegreeSequenceModel implements StructureModel<Graph<? extends Objec
 	private double alpha;
 	private Margin margin;
 	private Prior prior;
+	
+	private double tolerance = -1.0;
+	private long maxTime = -1;
 		
 	/**
 	 * 
@@ -52,38 +56,102 @@ public class DegreeSequenceModel implements StructureModel<Graph<? extends Objec
 		this.margin = margin;
 		this.prior = prior;
 	}
+	
+	/**
+	 * An adaptive model: samples are drawn in batches until the two-sided 
+	 * (1 - alpha) confidence interval on the log number of graphs is narrower 
+	 * than the tolerance, or until the time budget expires. The number of 
+	 * iterations is the maximum number of samples. 
+	 * 
+	 * @param tolerance The target width of the confidence interval in bits. 
+	 * 	If this is not positive, sampling doesn't stop for the confidence 
+	 *  interval.
+	 * @param maxTime The time budget per graph, in milliseconds. If this is 
+	 * 	negative, there is no time budget.
+	 */
+	public DegreeSequenceModel(int iterations, double alpha, Prior prior, Margin margin, double tolerance, long maxTime)
+	{
+		this(iterations, alpha, prior, margin);
+		
+		this.tolerance = tolerance;
+		this.maxTime = maxTime;
+	}
 
 	@Override
 	public double codelength(Graph<? extends Object> graph)
 	{
-		LogNormalCI ci = graph instanceof DGraph<?> ? directed((DGraph<?>)graph) : undirected((UGraph<?>)graph); 
+		return estimate(graph).codelength();
+	}
+	
+	/**
+	 * Estimates the codelength of the given graph, and reports how many 
+	 * samples were used for the estimate.
+	 */
+	public Estimate estimate(Graph<? extends Object> graph)
+	{
+		List<Double> logSamples = graph instanceof DGraph<?> ? directed((DGraph<?>)graph) : undirected((UGraph<?>)graph); 
+		LogNormalCI ci = new LogNormalCI(logSamples);
 		
 		double priorBits = graph instanceof DGraph<?> ? prior((DGraph<?>) graph, prior) : prior((UGraph<?>) graph, prior);
 
 		if(margin == Margin.LOWERBOUND)
-			return priorBits + ci.lowerBound(alpha);
+			return new Estimate(priorBits + ci.lowerBound(alpha), logSamples.size());
 		if(margin == Margin.MEAN)
-			return priorBits + ci.mlMean();
+			return new Estimate(priorBits + ci.mlMean(), logSamples.size());
 		if(margin == Margin.UPPERBOUND)
-			return priorBits + ci.lowerBound(alpha);
+			return new Estimate(priorBits + ci.lowerBound(alpha), logSamples.size());
 		
 		throw new IllegalStateException();
 	}
 	
-	private LogNormalCI directed(DGraph<?> graph)
+	private List<Double> directed(DGraph<?> graph)
 	{
-		int numThreads = Runtime.getRuntime().availableProcessors();
+		int numThreads = Global.numThreads();
 		DSequenceEstimator<? extends Object> model = new DSequenceEstimator<Object>(graph);
-		model.nonuniform(iterations, numThreads);
-		return new LogNormalCI(model.logSamples());
+		model.nonuniform(iterations, numThreads, alpha, tolerance, maxTime);
+		return model.logSamples();
 	}
 	 
-	private LogNormalCI undirected(UGraph<?> graph)
+	private List<Double> undirected(UGraph<?> graph)
 	{
-		int numThreads = Runtime.getRuntime().availableProcessors();
+		int numThreads = Global.numThreads();
 		USequenceEstimator<? extends Object> model = new USequenceEstimator<Object>(graph);
-		model.nonuniform(iterations, numThreads);
-		return new LogNormalCI(model.logSamples());
+		model.nonuniform(iterations, numThreads, alpha, tolerance, maxTime);
+		return model.logSamples();
+	}
+	
+	/**
+	 * The result of a codelength estimate.
+	 */
+	public static class Estimate
+	{
+		private double codelength;
+		private int samples;
+		
+		public Estimate(double codelength, int samples)
+		{
+			this.codelength = codelength;
+			this.samples = samples;
+		}
+
+		public double codelength()
+		{
+			return codelength;
+		}
+
+		/**
+		 * The number of samples the estimate is based on.
+		 */
+		public int samples()
+		{
+			return samples;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return codelength + " bits (" + samples + " samples)";
+		}
 	}
 	
 	public static double prior(DGraph<?> graph, Prior prior)
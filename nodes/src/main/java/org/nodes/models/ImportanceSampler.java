@@ -0,0 +1,200 @@
+package org.nodes.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import org.nodes.Global;
+import org.nodes.util.Pair;
+import org.nodes.util.bootstrap.LogNormalCI;
+
+/**
+ * Draws the samples of a sequential importance sampler (like
+ * {@link DSequenceEstimator} and {@link USequenceEstimator}) in parallel, on
+ * the global executor.
+ *
+ * Every task has its own random number generator, seeded from
+ * Global.random(), and collects its samples in a primitive buffer. The buffers
+ * are merged in task order, so the result is deterministic for a given seed
+ * and number of threads.
+ *
+ * If a target width is given, the samples are drawn in rounds that double the
+ * number of samples so far, and sampling stops as soon as the log-normal
+ * confidence interval on the log number of graphs is narrower than the target.
+ * If a time budget is given, sampling stops when it runs out (every task
+ * draws at least {@link #MIN_SAMPLES} samples per round regardless).
+ */
+class ImportanceSampler
+{
+	/**
+	 * The number of samples in the first round, when stopping early.
+	 */
+	public static final int FIRST_ROUND = 100;
+
+	/**
+	 * The number of bootstrap samples for the confidence intervals that decide
+	 * whether to stop early.
+	 */
+	public static final int CHECK_BS_SAMPLES = 1000;
+
+	/**
+	 * The number of samples every task draws, even if the time budget has run
+	 * out.
+	 */
+	public static final int MIN_SAMPLES = 2;
+
+	public static interface Source
+	{
+		/**
+		 * Draws a single sample, and returns its log weight (base 2).
+		 *
+		 * This method is called from multiple threads at once.
+		 */
+		public double logSample(Random random);
+	}
+
+	/**
+	 * Draws samples from the given source, and adds them to logSamples.
+	 *
+	 * @param samples The maximum number of samples to draw.
+	 * @param alpha The confidence interval used for stopping early is a
+	 * 	two-sided (1 - alpha) interval.
+	 * @param width The target width of the confidence interval in bits. If
+	 * 	this is not positive, sampling doesn't stop for the confidence
+	 * 	interval.
+	 * @param maxMillis The time budget in milliseconds. If this is negative,
+	 * 	there is no time budget.
+	 * @param logSamples The list to add the samples to. The confidence
+	 * 	interval is computed over all samples in this list.
+	 * @return The number of samples drawn.
+	 */
+	public static int sample(
+			Source source, int samples, int numThreads,
+			double alpha, double width, long maxMillis, List<Double> logSamples)
+	{
+		Budget budget = new Budget(maxMillis);
+
+		if(width <= 0.0)
+			return round(source, samples, numThreads, budget, logSamples);
+
+		int drawn = 0;
+		int round = Math.min(FIRST_ROUND, samples);
+
+		while(drawn < samples)
+		{
+			int size = Math.min(round, samples - drawn);
+			drawn += round(source, size, numThreads, budget, logSamples);
+
+			if(budget.expired())
+				break;
+
+			if(logSamples.size() > 1)
+			{
+				LogNormalCI ci = new LogNormalCI(logSamples, CHECK_BS_SAMPLES);
+				Pair<Double, Double> bounds = ci.twoSided(alpha);
+
+				if(bounds.second() - bounds.first() < width)
+					break;
+			}
+
+			round = drawn;
+		}
+
+		return drawn;
+	}
+
+	/**
+	 * @return The number of samples drawn.
+	 */
+	private static int round(
+			final Source source, int samples, int numThreads,
+			final Budget budget, List<Double> logSamples)
+	{
+		numThreads = Math.max(1, Math.min(numThreads, samples));
+
+		// * On a single thread, or inside a task of the global executor, one 
+		//   generator draws all samples
+		if(numThreads == 1 || Global.inExecutor())
+		{
+			Random random = new Random(Global.random().nextLong());
+
+			int i = 0;
+			for(; i < samples; i++)
+			{
+				if(i >= MIN_SAMPLES && budget.expired())
+					break;
+
+				logSamples.add(source.logSample(random));
+			}
+
+			return i;
+		}
+
+		int perTask = samples / numThreads;
+		int rem = samples - perTask * numThreads;
+
+		List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>(numThreads);
+		for(int t = 0; t < numThreads; t++)
+		{
+			final int size = perTask + (t < rem ? 1 : 0);
+			final long seed = Global.random().nextLong();
+
+			tasks.add(new Callable<double[]>()
+			{
+				@Override
+				public double[] call() throws Exception
+				{
+					Random random = new Random(seed);
+
+					// * The buffer grows as needed, since a time budget may
+					//   stop the task long before it reaches its size
+					double[] buffer = new double[Math.min(size, 1024)];
+					int i = 0;
+					for(; i < size; i++)
+					{
+						if(Thread.interrupted())
+							throw new InterruptedException();
+
+						if(i >= MIN_SAMPLES && budget.expired())
+							break;
+
+						if(i == buffer.length)
+							buffer = Arrays.copyOf(buffer, (int) Math.min(size, 2L * buffer.length));
+
+						buffer[i] = source.logSample(random);
+					}
+
+					return i == buffer.length ? buffer : Arrays.copyOf(buffer, i);
+				}
+			});
+		}
+
+		int drawn = 0;
+		for(double[] buffer : Global.invokeAll(tasks, numThreads))
+			for(double logSample : buffer)
+			{
+				logSamples.add(logSample);
+				drawn++;
+			}
+
+		return drawn;
+	}
+
+	private static class Budget
+	{
+		private long start = System.nanoTime();
+		private long nanos;
+
+		public Budget(long maxMillis)
+		{
+			this.nanos = maxMillis < 0 ? -1 : maxMillis * 1000000L;
+		}
+
+		public boolean expired()
+		{
+			return nanos >= 0 && System.nanoTime() - start >= nanos;
+		}
+	}
+}
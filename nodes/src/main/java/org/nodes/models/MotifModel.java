@@ -23,6 +23,7 @@ import java.util.Set;
 import org.nodes.DGraph;
 import org.nodes.DLink;
 import org.nodes.DNode;
+import org.nodes.Global;
 import org.nodes.Graph;
 import org.nodes.Graphs;
 import org.nodes.Link;
@@ -122,7 +123,7 @@ public class MotifModel
 	public static <L> double sizeBeta(DGraph<L> graph, DGraph<L> sub,
 			List<List<Integer>> occurrences, boolean resetWiring, int iterations, double alpha)
 	{		
-		int numThreads = Runtime.getRuntime().availableProcessors();
+		int numThreads = Global.numThreads();
 		
 		List<List<Integer>> wiring = new ArrayList<List<Integer>>();
 		Set<Integer> motifNodes = new HashSet<Integer>();
@@ -172,98 +173,18 @@ public class MotifModel
 			DGraph<?> graph, List<List<Integer>> occurrences, 
 			FrequencyModel<String> rest)
 	{
-		// * records which node is in which occurrence (if any)
-		Map<Integer, Integer> nodeInOccurrence = new HashMap<Integer, Integer>();
+		SubbedGraph subbed = new SubbedGraph(graph);
+		subbed.addAll(occurrences);
 		
-		for(int occurrenceIndex : series(occurrences.size()))
-			for(int nodeIndex : occurrences.get(occurrenceIndex))
-				nodeInOccurrence.put(nodeIndex, occurrenceIndex);
+		rest.add("multi-edges", subbed.multipleEdgeBits());
 		
-		FrequencyModel<Pair<Integer, Integer>> nodeToInstance = 
-				new FrequencyModel<Pair<Integer,Integer>>();
-		FrequencyModel<Pair<Integer, Integer>> instanceToNode = 
-				new FrequencyModel<Pair<Integer,Integer>>();
-		FrequencyModel<Pair<Integer, Integer>> instanceToInstance = 
-				new FrequencyModel<Pair<Integer,Integer>>();
-		
-		// * Record the in and out degrees
-		FrequencyModel<Integer> in = new FrequencyModel<Integer>();
-		FrequencyModel<Integer> out = new FrequencyModel<Integer>();
-		
-		for(DLink<?> link : graph.links())
-		{
-			int fromInstance = nodeInOccurrence.get(link.from().index()) == null ? -1 : nodeInOccurrence.get(link.from().index()); 
-			int toInstance =   nodeInOccurrence.get(link.to().index()) == null ? -1 : nodeInOccurrence.get(link.to().index()); 
-		
-			if(fromInstance == -1 && toInstance == -1)
-			{
-				out.add(link.from().index());
-				in.add(link.to().index());
-				continue;
-			}
-			
-			if(fromInstance == -1)
-			{
-				Pair<Integer, Integer> n2i = Pair.p(link.from().index(), toInstance);
-				if(nodeToInstance.frequency(n2i) == 0.0)
-				{
-					out.add(link.from().index());
-					in.add(-(toInstance + 1));
-				}
-				nodeToInstance.add(n2i);
-				continue;
-			}
-			
-			if(toInstance == -1)
-			{
-				Pair<Integer, Integer> i2n = Pair.p(fromInstance, link.to().index());
-				if(instanceToNode.frequency(i2n) == 0.0)
-				{
-					in.add(link.to().index());
-					out.add(-(fromInstance + 1));
-				}
-				instanceToNode.add(i2n);
-				continue;
-			}
-			
-			if(fromInstance != toInstance)
-			{
-				Pair<Integer, Integer> i2i = Pair.p(fromInstance, toInstance);
-				if(instanceToInstance.frequency(i2i) == 0.0)
-				{
-					out.add(-(fromInstance + 1));
-					in.add(-(toInstance + 1));
-				}
-				instanceToInstance.add(i2i);
-			}
-		}
-		
-		Set<Integer> nodes = new LinkedHashSet<Integer>();
-		nodes.addAll(in.tokens());
-		nodes.addAll(out.tokens());
-		List<D> degrees = new ArrayList<D>(nodes.size());
-		
-		for(int node : nodes)
-			degrees.add(new DSequenceEstimator.D((int)in.frequency(node), (int)out.frequency(node)));
-				
-		List<Integer> additions = new ArrayList<Integer>(graph.size());
-		for(Pair<Integer, Integer> token : nodeToInstance.tokens())
-			additions.add((int)nodeToInstance.frequency(token) - 1);
-		for(Pair<Integer, Integer> token : instanceToNode.tokens())
-			additions.add((int)instanceToNode.frequency(token) - 1);
-		for(Pair<Integer, Integer> token : instanceToInstance.tokens())
-			additions.add((int)instanceToInstance.frequency(token) - 1);
-		
-		rest.add("multi-edges", Functions.prefix(additions.isEmpty() ? 0 : Functions.max(additions)));
-		rest.add("multi-edges", OnlineModel.storeIntegers(additions)); 
-		
-		return degrees;
+		return subbed.directedDegrees();
 	}
 	
 	public static <L> double sizeBeta(UGraph<L> graph, UGraph<L> sub,
 			List<List<Integer>> occurrences, boolean resetWiring, int iterations, double alpha)
 	{		
-		int numThreads = Runtime.getRuntime().availableProcessors();
+		int numThreads = Global.numThreads();
 		
 		List<List<Integer>> wiring = new ArrayList<List<Integer>>();
 		Set<Integer> motifNodes = new HashSet<Integer>();
@@ -313,85 +234,12 @@ public class MotifModel
 			UGraph<?> graph, List<List<Integer>> occurrences, 
 			FrequencyModel<String> rest)
 	{
-		// * records which node is in which occurrence (if any)
-		Map<Integer, Integer> nodeInOccurrence = new HashMap<Integer, Integer>();
-		
-		for(int occurrenceIndex : series(occurrences.size()))
-			for(int nodeIndex : occurrences.get(occurrenceIndex))
-				nodeInOccurrence.put(nodeIndex, occurrenceIndex);
-		
-		FrequencyModel<Pair<Integer, Integer>> nodeToInstance = 
-				new FrequencyModel<Pair<Integer,Integer>>();
-		FrequencyModel<Pair<Integer, Integer>> instanceToInstance = 
-				new FrequencyModel<Pair<Integer,Integer>>();
-		
-		// * Record the in and out degrees
-		FrequencyModel<Integer> degrees = new FrequencyModel<Integer>();
-
-		
-		for(ULink<?> link : graph.links())
-		{
-			int firstInstance = nodeInOccurrence.get(link.first().index()) == null ? -1 : nodeInOccurrence.get(link.first().index()); 
-			int secondInstance =   nodeInOccurrence.get(link.second().index()) == null ? -1 : nodeInOccurrence.get(link.second().index()); 
-		
-			if(firstInstance == -1 && secondInstance == -1)
-			{
-				degrees.add(link.first().index());
-				degrees.add(link.second().index());
-				continue;
-			}
-			
-			if(firstInstance == -1)
-			{
-				Pair<Integer, Integer> n2i = Pair.p(link.first().index(), secondInstance);
-				if(nodeToInstance.frequency(n2i) == 0.0)
-				{
-					degrees.add(link.first().index());
-					degrees.add(-(secondInstance + 1));
-				}
-				nodeToInstance.add(n2i);
-				continue;
-			}
-			
-			if(secondInstance == -1)
-			{
-				Pair<Integer, Integer> n2i = Pair.p(link.second().index(), firstInstance);
-				if(nodeToInstance.frequency(n2i) == 0.0)
-				{
-					degrees.add(link.second().index());
-					degrees.add(-(firstInstance + 1));
-				}
-				nodeToInstance.add(n2i);
-				continue;
-			}
-			
-			if(firstInstance != secondInstance)
-			{
-				Pair<Integer, Integer> i2i = Pair.p(min(firstInstance, secondInstance), max(firstInstance, secondInstance));
-				if(instanceToInstance.frequency(i2i) == 0.0)
-				{
-					degrees.add(-(firstInstance + 1));
-					degrees.add(-(secondInstance + 1));
-				}
-				instanceToInstance.add(i2i);
-			}
-		}
-		
-		List<Integer> result = new ArrayList<Integer>((int)degrees.distinct());
-		
-		for(int node : degrees.tokens())
-			result.add((int)degrees.frequency(node));
-				
-		List<Integer> additions = new ArrayList<Integer>(graph.size());
-		for(Pair<Integer, Integer> token : nodeToInstance.tokens())
-			additions.add((int)nodeToInstance.frequency(token) - 1);
-		for(Pair<Integer, Integer> token : instanceToInstance.tokens())
-			additions.add((int)instanceToInstance.frequency(token) - 1);
+		SubbedGraph subbed = new SubbedGraph(graph);
+		subbed.addAll(occurrences);
 		
-		rest.add("multi-edges", Functions.prefix(additions.isEmpty() ? 0 : Functions.max(additions)));
-		rest.add("multi-edges", OnlineModel.storeIntegers(additions)); 
+		rest.add("multi-edges", subbed.multipleEdgeBits());
 		
-		return result;
+		return subbed.degrees();
 	}	
 	
 	public static double wiringBits(Graph<?> sub, List<List<Integer>> wiring,
@@ -414,42 +262,38 @@ public class MotifModel
 
 	public static double sizeER(Graph<?> graph, Graph<?> sub, List<List<Integer>> occurrences, boolean resetWiring)
 	{
-		if(graph instanceof DGraph)
-			return sizeER((DGraph<?>) graph, (DGraph<?>) sub, occurrences, resetWiring);
-		else
-			return sizeER((UGraph<?>) graph, (UGraph<?>) sub, occurrences, resetWiring); 
+		SubbedGraph subbed = new SubbedGraph(graph);
+		subbed.addAll(occurrences);
+		
+		return sizeER(graph, sub, occurrences, subbed, resetWiring);
 	}
 	
-	private static ERSimpleModel erModel = new ERSimpleModel(true);
 	public static double sizeER(DGraph<?> graph, DGraph<?> sub,
 				List<List<Integer>> occurrences, boolean resetWiring)
 	{		
-		FrequencyModel<String> bits = new FrequencyModel<String>();
-		
-		bits.add("sub", erModel.codelength(sub));
-		sizeSubbedER(graph, sub, occurrences, bits);
-		
-		// * Store the rewiring information
-		bits.add("wiring", wiringBitsDirect(graph, sub, occurrences, resetWiring));
-		
-		// * Store the insertion order, to preserve the precise ordering of the
-		//   nodes in the data
-		int subbedSize = graph.size() - (sub.size() - 1) * occurrences.size(); 
-		
-		bits.add("labels", log2Choose(occurrences.size(), subbedSize)); 
-
-		bits.add("insertions", log2Factorial(graph.size()) - log2Factorial(subbedSize));
-		
-		return bits.total();
+		return sizeER((Graph<?>) graph, sub, occurrences, resetWiring);
 	}
 	
 	public static double sizeER(UGraph<?> graph, UGraph<?> sub,
 				List<List<Integer>> occurrences, boolean resetWiring)
+	{		
+		return sizeER((Graph<?>) graph, sub, occurrences, resetWiring);
+	}
+	
+	private static ERSimpleModel erModel = new ERSimpleModel(true);
+	/**
+	 * Computes the size under the ER model from the statistics of the subbed
+	 * graph, without building it. 
+	 * 
+	 * @param subbed The subbed graph for exactly the given occurrences.
+	 */
+	public static double sizeER(Graph<?> graph, Graph<?> sub,
+				List<List<Integer>> occurrences, SubbedGraph subbed, boolean resetWiring)
 	{		
 		FrequencyModel<String> bits = new FrequencyModel<String>();
 		
 		bits.add("sub", erModel.codelength(sub));
-		sizeSubbedER(graph, sub, occurrences, bits);
+		sizeSubbedER(graph, sub, occurrences, subbed, bits);
 		
 		// * Store the rewiring information
 		bits.add("wiring", wiringBitsDirect(graph, sub, occurrences, resetWiring));
@@ -465,198 +309,61 @@ public class MotifModel
 		return bits.total();
 	}
 	
-	private static void sizeSubbedER(DGraph<?> graph, DGraph<?> sub,
-			List<List<Integer>> occurrences, FrequencyModel<String> bits)
+	private static void sizeSubbedER(Graph<?> graph, Graph<?> sub,
+			List<List<Integer>> occurrences, SubbedGraph subbed, FrequencyModel<String> bits)
 	{
 		int subbedSize = graph.size() - (sub.size() - 1) * occurrences.size();
-		int subbedLinks = 0;
 		// - NB: subbedLinks is not simply 
 		//      graph.numLinks() - (sub.numLinks() * occurrences.size())
 		//   because the subbed graph is a simple graph: any multiple edges 
 		//   created by removal of occurrences are removed and stored elsewhere. 
-		
-		// * records which node is in which occurrence (if any)
-		Map<Integer, Integer> nodeInOccurrence = new HashMap<Integer, Integer>();
-		
-		for(int occurrenceIndex : series(occurrences.size()))
-			for(int nodeIndex : occurrences.get(occurrenceIndex))
-				nodeInOccurrence.put(nodeIndex, occurrenceIndex);
-		
-		FrequencyModel<Pair<Integer, Integer>> nodeToInstance = 
-				new FrequencyModel<Pair<Integer,Integer>>();
-		FrequencyModel<Pair<Integer, Integer>> instanceToNode = 
-				new FrequencyModel<Pair<Integer,Integer>>();
-		FrequencyModel<Pair<Integer, Integer>> instanceToInstance = 
-				new FrequencyModel<Pair<Integer,Integer>>();
-		
-		for(DLink<?> link : graph.links())
-		{
-			int fromInstance = nodeInOccurrence.get(link.from().index()) == null ? -1 : nodeInOccurrence.get(link.from().index()); 
-			int toInstance =   nodeInOccurrence.get(link.to().index()) == null ? -1 : nodeInOccurrence.get(link.to().index()); 
-		
-			if(fromInstance == -1 && toInstance == -1)
-			{
-				subbedLinks++;
-				continue;
-			}
-			
-			if(fromInstance == -1)
-			{
-				Pair<Integer, Integer> n2i = Pair.p(link.from().index(), toInstance);
-				if(nodeToInstance.frequency(n2i) == 0.0)
-					subbedLinks++;
-				nodeToInstance.add(n2i);
-				continue;
-			}
-			
-			if(toInstance == -1)
-			{
-				Pair<Integer, Integer> i2n = Pair.p(fromInstance, link.to().index());
-				if(instanceToNode.frequency(i2n) == 0.0)
-					subbedLinks++;
-				instanceToNode.add(i2n);
-				continue;
-			}
-			
-			if(fromInstance != toInstance)
-			{
-				Pair<Integer, Integer> i2i = Pair.p(fromInstance, toInstance);
-				if(instanceToInstance.frequency(i2i) == 0.0)
-					subbedLinks++;
-				instanceToInstance.add(i2i);
-			}
-		}
+		int subbedLinks = subbed.numLinks();
 		
 		// * size of the subbed graph under the binomial compressor
 		double n = subbedSize;
-		double t = n * n - n;
+		double t = graph instanceof DGraph<?> ? n * n - n : (n * n - n)/2;
 		
 		bits.add("subbed", Functions.prefix((int)n) + Functions.log2(t) + log2Choose(subbedLinks, t));
 		
-		List<Integer> additions = new ArrayList<Integer>(graph.size());
-		for(Pair<Integer, Integer> token : nodeToInstance.tokens())
-			additions.add((int)nodeToInstance.frequency(token) - 1);
-		for(Pair<Integer, Integer> token : instanceToNode.tokens())
-			additions.add((int)instanceToNode.frequency(token) - 1);
-		for(Pair<Integer, Integer> token : instanceToInstance.tokens())
-			additions.add((int)instanceToInstance.frequency(token) - 1);
-				
-		bits.add("multiple-edges", Functions.prefix(additions.isEmpty() ? 0 : max(additions)));
-		bits.add("multiple-edges", OnlineModel.storeIntegers(additions)); 
+		bits.add("multiple-edges", subbed.multipleEdgeBits());
 	}
-	
-	private static void sizeSubbedER(UGraph<?> graph, UGraph<?> sub,
-			List<List<Integer>> occurrences, FrequencyModel<String> bits)
-	{
-		int subbedSize = graph.size() - (sub.size() - 1) * occurrences.size();
-		int subbedLinks = 0;
-		
-		// * records which node is in which occurrence (if any)
-		Map<Integer, Integer> nodeInOccurrence = new HashMap<Integer, Integer>();
-		
-		for(int occurrenceIndex : series(occurrences.size()))
-			for(int nodeIndex : occurrences.get(occurrenceIndex))
-				nodeInOccurrence.put(nodeIndex, occurrenceIndex);
-		
-		FrequencyModel<Pair<Integer, Integer>> nodeToInstance = 
-				new FrequencyModel<Pair<Integer,Integer>>();
-		FrequencyModel<Pair<Integer, Integer>> instanceToInstance = 
-				new FrequencyModel<Pair<Integer,Integer>>();
-		
-		for(Link<?> link : graph.links())
-		{
-			int firstInstance = nodeInOccurrence.get(link.first().index()) == null ? -1 : nodeInOccurrence.get(link.first().index()); 
-			int secondInstance =   nodeInOccurrence.get(link.second().index()) == null ? -1 : nodeInOccurrence.get(link.second().index()); 
-		
-			if(firstInstance == -1 && secondInstance == -1)
-			{
-				subbedLinks++;
-				continue;
-			}
-			
-			if(firstInstance == -1) // second is in an instance
-			{
-				Pair<Integer, Integer> n2i = Pair.p(link.first().index(), secondInstance);
-				if(nodeToInstance.frequency(n2i) == 0.0)
-					subbedLinks++;
-				nodeToInstance.add(n2i);
-				continue;
-			}
-			
-			if(secondInstance == -1) // first is in an instance
-			{
-				Pair<Integer, Integer> n2i = Pair.p(link.second().index(), firstInstance);
-				if(nodeToInstance.frequency(n2i) == 0.0)
-					subbedLinks++;
-				nodeToInstance.add(n2i);
-				continue;
-			}
-			
-			if(firstInstance != secondInstance) // both are in an instance
-			{
-				Pair<Integer, Integer> i2i = Pair.p(Math.min(firstInstance, secondInstance), max(firstInstance, secondInstance));
-				if(instanceToInstance.frequency(i2i) == 0.0)
-					subbedLinks++;
-				instanceToInstance.add(i2i);
-			}
-		}
-		
-		// * size of the subbed graph under the binomial compressor
-		double n = subbedSize;
-		double t = (n * n - n)/2;
-		
-		bits.add("subbed", Functions.prefix((int)n) + Functions.log2(t) + log2Choose(subbedLinks, t));
-		
-		List<Integer> additions = new ArrayList<Integer>(graph.size());
-		for(Pair<Integer, Integer> token : nodeToInstance.tokens())
-			additions.add((int)nodeToInstance.frequency(token) - 1);
-		for(Pair<Integer, Integer> token : instanceToInstance.tokens())
-			additions.add((int)instanceToInstance.frequency(token) - 1);
-				
-		bits.add("multiple-edges", Functions.prefix(additions.isEmpty() ? 0 : max(additions)));
-		bits.add("multiple-edges", OnlineModel.storeIntegers(additions)); 
-	}	
 
 	public static double sizeEL(Graph<?> graph, Graph<?> sub, List<List<Integer>> occurrences, boolean resetWiring)
 	{
-		if(graph instanceof DGraph)
-			return sizeEL((DGraph<?>) graph, (DGraph<?>) sub, occurrences, resetWiring);
-		else
-			return sizeEL((UGraph<?>) graph, (UGraph<?>) sub, occurrences, resetWiring); 
+		SubbedGraph subbed = new SubbedGraph(graph);
+		subbed.addAll(occurrences);
+		
+		return sizeEL(graph, sub, occurrences, subbed, resetWiring);
 	}
 	
-	private static EdgeListModel elModel = new EdgeListModel(Prior.COMPLETE);
 	public static double sizeEL(DGraph<?> graph, DGraph<?> sub,
 			List<List<Integer>> occurrences, boolean resetWiring)
 	{		
-		FrequencyModel<String> bits = new FrequencyModel<String>();
-		
-		bits.add("sub", elModel.codelength(sub));
-
-		List<D> degrees = subbedDegrees(graph, occurrences, bits);
-		bits.add("subbed", EdgeListModel.directed(degrees, Prior.COMPLETE));
-		
-		// * Store the rewiring information
-		bits.add("wiring", wiringBitsDirect(graph, sub, occurrences, resetWiring));
-		
-		// * Store the insertion order, to preserve the precise ordering of the
-		//   nodes in the data
-		int subbedSize = graph.size() - (sub.size() - 1) * occurrences.size(); 
-		bits.add("insertions", log2Factorial(graph.size()) - log2Factorial(subbedSize));
-		bits.add("labels", log2Choose(occurrences.size(), subbedSize)); 
-		
-		return bits.total();
+		return sizeEL((Graph<?>) graph, sub, occurrences, resetWiring);
 	}
 	
 	public static double sizeEL(UGraph<?> graph, UGraph<?> sub,
 			List<List<Integer>> occurrences, boolean resetWiring)
+	{		
+		return sizeEL((Graph<?>) graph, sub, occurrences, resetWiring);
+	}
+	
+	private static EdgeListModel elModel = new EdgeListModel(Prior.COMPLETE);
+	/**
+	 * Computes the size under the edge list model from the statistics of the 
+	 * subbed graph, without building it. 
+	 * 
+	 * @param subbed The subbed graph for exactly the given occurrences.
+	 */
+	public static double sizeEL(Graph<?> graph, Graph<?> sub,
+			List<List<Integer>> occurrences, SubbedGraph subbed, boolean resetWiring)
 	{		
 		FrequencyModel<String> bits = new FrequencyModel<String>();
 		
 		bits.add("sub", elModel.codelength(sub));
 
-		List<Integer> degrees = subbedDegrees(graph, occurrences, bits);
-		bits.add("subbed", EdgeListModel.undirected(degrees, Prior.COMPLETE));
+		bits.add("multi-edges", subbed.multipleEdgeBits());
+		bits.add("subbed", subbed.edgeListBits());
 		
 		// * Store the rewiring information
 		bits.add("wiring", wiringBitsDirect(graph, sub, occurrences, resetWiring));
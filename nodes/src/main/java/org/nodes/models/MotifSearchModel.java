@@ -1,20 +1,31 @@
 package org.nodes.models;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.nodes.DGraph;
 import org.nodes.Global;
 import org.nodes.Graph;
 import org.nodes.UGraph;
 import org.nodes.util.Fibonacci;
-import org.nodes.util.Pair;
 
 /**
  * A copy of the motif model that searches for a good subselection in the 
  * available instances.
+ * 
+ * The search is sequential, unless a number of threads is given, in which 
+ * case the probes of the search are evaluated in parallel on the global 
+ * executor. The sizes of several motifs can be computed at once with the 
+ * sizes... methods, which run the search for each motif as a separate task. 
+ * Since the beta model is sampled, and the parallel probes draw from 
+ * Global.random() in an arbitrary order, sizeBeta and sizesBeta are only 
+ * reproducible with a single thread.
  *  
  * @author Peter
  *
@@ -28,6 +39,11 @@ public class MotifSearchModel
 	}
 	
 	public static <L> double size(Graph<L> graph, Graph<L> sub, List<List<Integer>> occurrences, final StructureModel<Graph<?>> model, boolean resetWiring, int depth)
+	{
+		return size(graph, sub, occurrences, model, resetWiring, depth, 1);
+	}
+	
+	public static <L> double size(Graph<L> graph, Graph<L> sub, List<List<Integer>> occurrences, final StructureModel<Graph<?>> model, boolean resetWiring, int depth, int numThreads)
 	{
 		Function<Graph<L>> function = new Function<Graph<L>>()
 		{
@@ -39,7 +55,7 @@ public class MotifSearchModel
 		};
 		
 		FindPhi<Graph<L>> find 
-			= new FindPhi<Graph<L>>(graph, sub, occurrences, resetWiring, depth, function);
+			= new FindPhi<Graph<L>>(graph, sub, occurrences, resetWiring, depth, function, numThreads);
 		
 		return find.size();
 	}
@@ -50,6 +66,11 @@ public class MotifSearchModel
 	}
 	
 	public static <L> double sizeBeta(Graph<L> graph, Graph<L> sub, List<List<Integer>> occurrences, boolean resetWiring, final int iterations, final double alpha, int depth)
+	{
+		return sizeBeta(graph, sub, occurrences, resetWiring, iterations, alpha, depth, 1);
+	}
+	
+	public static <L> double sizeBeta(Graph<L> graph, Graph<L> sub, List<List<Integer>> occurrences, boolean resetWiring, final int iterations, final double alpha, int depth, int numThreads)
 	{
 		Function<Graph<L>> function = new Function<Graph<L>>()
 		{
@@ -61,7 +82,7 @@ public class MotifSearchModel
 		};
 		
 		FindPhi<Graph<L>> find 
-			= new FindPhi<Graph<L>>(graph, sub, occurrences, resetWiring, depth, function);
+			= new FindPhi<Graph<L>>(graph, sub, occurrences, resetWiring, depth, function, numThreads);
 		
 		return find.size();
 	}
@@ -73,17 +94,29 @@ public class MotifSearchModel
 	
 	public static double sizeER(Graph<?> graph, Graph<?> sub, List<List<Integer>> occurrences, boolean resetWiring, int depth)
 	{
+		return sizeER(graph, sub, occurrences, resetWiring, depth, 1);
+	}
+	
+	public static double sizeER(Graph<?> graph, Graph<?> sub, List<List<Integer>> occurrences, boolean resetWiring, int depth, int numThreads)
+	{
+		// * The statistics of the data are computed once, and shared by all
+		//   probes
+		final SubbedGraph base = new SubbedGraph(graph);
+		
 		Function<Graph<?>> function = new Function<Graph<?>>()
 		{
 			public double size(Graph<?> graph, Graph<?> sub,
 					List<List<Integer>> occurrences, boolean resetWiring)
 			{
-				return MotifModel.sizeER(graph, sub, occurrences, resetWiring);
+				SubbedGraph subbed = base.copy();
+				subbed.addAll(occurrences);
+				
+				return MotifModel.sizeER(graph, sub, occurrences, subbed, resetWiring);
 			}
 		};
 		
 		FindPhi<Graph<?>> find 
-			= new FindPhi<Graph<?>>(graph, sub, occurrences, resetWiring, depth, function);
+			= new FindPhi<Graph<?>>(graph, sub, occurrences, resetWiring, depth, function, numThreads);
 		
 		return find.size();
 	}
@@ -95,25 +128,171 @@ public class MotifSearchModel
 	
 	public static double sizeEL(Graph<?> graph, Graph<?> sub, List<List<Integer>> occurrences, boolean resetWiring, int depth)
 	{
+		return sizeEL(graph, sub, occurrences, resetWiring, depth, 1);
+	}
+	
+	public static double sizeEL(Graph<?> graph, Graph<?> sub, List<List<Integer>> occurrences, boolean resetWiring, int depth, int numThreads)
+	{
+		// * The statistics of the data are computed once, and shared by all
+		//   probes
+		final SubbedGraph base = new SubbedGraph(graph);
+		
 		Function<Graph<?>> function = new Function<Graph<?>>()
 		{
 			public double size(Graph<?> graph, Graph<?> sub,
 					List<List<Integer>> occurrences, boolean resetWiring)
 			{
-				return MotifModel.sizeEL(graph, sub, occurrences, resetWiring);
+				SubbedGraph subbed = base.copy();
+				subbed.addAll(occurrences);
+				
+				return MotifModel.sizeEL(graph, sub, occurrences, subbed, resetWiring);
 			}
 		};
 		
 		FindPhi<Graph<?>> find 
-			= new FindPhi<Graph<?>>(graph, sub, occurrences, resetWiring, depth, function);
+			= new FindPhi<Graph<?>>(graph, sub, occurrences, resetWiring, depth, function, numThreads);
 		
 		return find.size();
 	}
 	
+	
+	/**
+	 * Computes {@link #size(Graph, Graph, List, StructureModel, boolean, int)} 
+	 * for several motifs at once. The searches for the different motifs are 
+	 * run in parallel, using at most numThreads threads.
+	 * 
+	 * @param subs The motifs.
+	 * @param occurrences The occurrences of each motif, in the same order.
+	 * @return The size for each motif, in the same order.
+	 */
+	public static <L> List<Double> sizes(Graph<L> graph, List<? extends Graph<L>> subs, List<List<List<Integer>>> occurrences, final StructureModel<Graph<?>> model, boolean resetWiring, int depth, int numThreads)
+	{
+		Function<Graph<L>> function = new Function<Graph<L>>()
+		{
+			public double size(Graph<L> graph, Graph<L> sub,
+					List<List<Integer>> occurrences, boolean resetWiring)
+			{
+				return MotifModel.size(graph, sub, occurrences, model, resetWiring);
+			}
+		};
+		
+		return sizes(graph, subs, occurrences, resetWiring, depth, function, numThreads);
+	}
+	
+	/**
+	 * Computes {@link #sizeBeta(Graph, Graph, List, boolean, int, double, int)} 
+	 * for several motifs at once. Since the beta model is sampled, the result 
+	 * is only reproducible for numThreads = 1. 
+	 */
+	public static <L> List<Double> sizesBeta(Graph<L> graph, List<? extends Graph<L>> subs, List<List<List<Integer>>> occurrences, boolean resetWiring, final int iterations, final double alpha, int depth, int numThreads)
+	{
+		Function<Graph<L>> function = new Function<Graph<L>>()
+		{
+			public double size(Graph<L> graph, Graph<L> sub,
+					List<List<Integer>> occurrences, boolean resetWiring)
+			{
+				return MotifModel.sizeBeta(graph, sub, occurrences, resetWiring, iterations, alpha);
+			}
+		};
+		
+		return sizes(graph, subs, occurrences, resetWiring, depth, function, numThreads);
+	}
+	
+	/**
+	 * Computes {@link #sizeER(Graph, Graph, List, boolean, int)} for several 
+	 * motifs at once.
+	 */
+	public static List<Double> sizesER(Graph<?> graph, List<? extends Graph<?>> subs, List<List<List<Integer>>> occurrences, boolean resetWiring, int depth, int numThreads)
+	{
+		// * The statistics of the data are computed once, and shared by all
+		//   probes
+		final SubbedGraph base = new SubbedGraph(graph);
+		
+		Function<Graph<?>> function = new Function<Graph<?>>()
+		{
+			public double size(Graph<?> graph, Graph<?> sub,
+					List<List<Integer>> occurrences, boolean resetWiring)
+			{
+				SubbedGraph subbed = base.copy();
+				subbed.addAll(occurrences);
+				
+				return MotifModel.sizeER(graph, sub, occurrences, subbed, resetWiring);
+			}
+		};
+		
+		return sizes(graph, subs, occurrences, resetWiring, depth, function, numThreads);
+	}
+	
+	/**
+	 * Computes {@link #sizeEL(Graph, Graph, List, boolean, int)} for several 
+	 * motifs at once.
+	 */
+	public static List<Double> sizesEL(Graph<?> graph, List<? extends Graph<?>> subs, List<List<List<Integer>>> occurrences, boolean resetWiring, int depth, int numThreads)
+	{
+		// * The statistics of the data are computed once, and shared by all
+		//   probes
+		final SubbedGraph base = new SubbedGraph(graph);
+		
+		Function<Graph<?>> function = new Function<Graph<?>>()
+		{
+			public double size(Graph<?> graph, Graph<?> sub,
+					List<List<Integer>> occurrences, boolean resetWiring)
+			{
+				SubbedGraph subbed = base.copy();
+				subbed.addAll(occurrences);
+				
+				return MotifModel.sizeEL(graph, sub, occurrences, subbed, resetWiring);
+			}
+		};
+		
+		return sizes(graph, subs, occurrences, resetWiring, depth, function, numThreads);
+	}
+	
+	private static <G extends Graph<? extends Object>> List<Double> sizes(
+			final G graph, List<? extends G> subs, List<List<List<Integer>>> occurrences, 
+			final boolean resetWiring, final int depth, final Function<G> function, final int numThreads)
+	{
+		if(subs.size() != occurrences.size())
+			throw new IllegalArgumentException("Number of motifs ("+subs.size()+") does not match the number of occurrence lists ("+occurrences.size()+").");
+		
+		// * A single motif uses the threads for its own probes, unless it runs
+		//   as a task itself
+		List<Callable<Double>> tasks = new ArrayList<Callable<Double>>(subs.size());
+		for(int i = 0; i < subs.size(); i++)
+		{
+			final G sub = subs.get(i);
+			final List<List<Integer>> subOccurrences = occurrences.get(i);
+			
+			tasks.add(new Callable<Double>()
+			{
+				@Override
+				public Double call()
+				{
+					return new FindPhi<G>(graph, sub, subOccurrences, resetWiring, depth, function, numThreads).size();
+				}
+			});
+		}
+		
+		return Global.invokeAll(tasks, numThreads);
+	}
+	
 	private static interface Function<G extends Graph<? extends Object>> {
 		public double size(G graph, G sub, List<List<Integer>> occurrences, boolean resetWiring);
 	}
 	
+	/**
+	 * Fibonacci search for the number of occurrences that gives the smallest
+	 * codelength.
+	 * 
+	 * The probes that the search may need next are independent of each other, 
+	 * so with multiple threads they are evaluated at the same time: the two 
+	 * points of the current step (or the three points of the final step), 
+	 * together with the points of the next k steps down both branches. With
+	 * 2^(k+1) - 1 threads, one round of parallel probes advances the search 
+	 * k + 1 steps. Every value is computed once and memoized. The maximum 
+	 * depth fallback only considers the points the search itself visited, so 
+	 * the result is the same as that of the sequential search.
+	 */
 	private static class FindPhi<G extends Graph<? extends Object>> 
 	{
 		int maxDepth = -1;
@@ -124,6 +303,11 @@ public class MotifSearchModel
 		Function<G> function;
 		boolean resetWiring;
 		
+		// * Whether to evaluate probes in parallel, and how many steps to look
+		//   ahead
+		boolean parallel;
+		int lookahead = 0;
+		
 		int cutoff;
 		double size;
 		
@@ -131,7 +315,8 @@ public class MotifSearchModel
 				List<List<Integer>> occurrences, 
 				boolean resetWiring,
 				int maxDepth,
-				Function<G> function)
+				Function<G> function, 
+				int numThreads)
 		{
 			this.data = data;
 			this.motif = motif;
@@ -140,6 +325,14 @@ public class MotifSearchModel
 			this.function = function;
 			this.maxDepth = maxDepth;
 			
+			// * Inside a task of the global executor, the probes would run on 
+			//   this thread anyway (see Global.invokeAll()), so we don't look 
+			//   ahead.
+			parallel = numThreads > 1 && ! Global.inExecutor();
+			if(parallel)
+				while((1 << (lookahead + 2)) - 1 <= numThreads)
+					lookahead++;
+			
 			int n = occurrences.size();
 			int to = Fibonacci.isFibonacci(n) ? n : (int)Fibonacci.get((int) Math.ceil(Fibonacci.getIndexApprox(n)));
 
@@ -166,6 +359,8 @@ public class MotifSearchModel
 			{
 				// return the best of from, from +1 and to
 				int x0 = from, x1 = from + 1, x2 = to;
+				probe(from, to, depth);
+				
 				double y0 = sample(x0),
 					   y1 = sample(x1),
 					   y2 = sample(x2);
@@ -193,9 +388,9 @@ public class MotifSearchModel
 				size = Double.POSITIVE_INFINITY;
 				cutoff = -1;
 				
-				for(int key : cache.keySet())
+				for(int key : visited.keySet())
 				{
-					double value = cache.get(key);
+					double value = visited.get(key);
 					if(size > value)
 					{
 						size = value;
@@ -210,6 +405,8 @@ public class MotifSearchModel
 			int mid1 = to - r0;
 			int mid2 = from + r0;
 			
+			probe(from, to, depth);
+			
 			double y1 = sample(mid1);
 			double y2 = sample(mid2);
 			
@@ -219,19 +416,106 @@ public class MotifSearchModel
 				find(from, mid2, depth + 1);
 		}
 		
-		private Map<Integer, Double> cache = new LinkedHashMap<Integer, Double>();
+		// * All computed values
+		private Map<Integer, Double> cache = new HashMap<Integer, Double>();
+		// * The values the search has looked at, in order 
+		private Map<Integer, Double> visited = new LinkedHashMap<Integer, Double>();
 		
 		public double sample(int n)
 		{
-			if(! cache.containsKey(n))
+			Double size = cache.get(n);
+			
+			if(size == null)
 			{
-				double size = function.size(data, motif, occurrences.subList(0, Math.min(occurrences.size(), n)), resetWiring);
+				size = compute(n);
 				cache.put(n, size);
-				
-				return size;
 			}
 			
-			return cache.get(n);
+			visited.put(n, size);
+			return size;
+		}
+		
+		private double compute(int n)
+		{
+			return function.size(data, motif, occurrences.subList(0, Math.min(occurrences.size(), n)), resetWiring);
+		}
+		
+		/**
+		 * If the points the search needs in the given range are not known, 
+		 * evaluates them, and those of the following steps down to the 
+		 * lookahead, in parallel.
+		 */
+		private void probe(int from, int to, int depth)
+		{
+			if(! parallel)
+				return;
+			
+			// * If the points of this step are known, they were evaluated with
+			//   those of the previous steps, and so were those of the next few 
+			//   steps
+			Set<Integer> points = new LinkedHashSet<Integer>();
+			points(from, to, depth, 0, points);
+			
+			if(cache.keySet().containsAll(points))
+				return;
+			
+			points(from, to, depth, lookahead, points);
+			
+			List<Integer> todo = new ArrayList<Integer>(points.size());
+			for(int point : points)
+				if(! cache.containsKey(point))
+					todo.add(point);
+			
+			if(todo.size() <= 1)
+				return;
+			
+			List<Callable<Double>> tasks = new ArrayList<Callable<Double>>(todo.size());
+			for(final int point : todo)
+				tasks.add(new Callable<Double>()
+				{
+					@Override
+					public Double call()
+					{
+						return compute(point);
+					}
+				});
+			
+			List<Double> values = Global.invokeAll(tasks, todo.size());
+			for(int i = 0; i < todo.size(); i++)
+				cache.put(todo.get(i), values.get(i));
+		}
+		
+		/**
+		 * Collects the points that find(from, to, depth) samples, and those of
+		 * both of its branches, up to the given number of steps ahead.
+		 */
+		private void points(int from, int to, int depth, int ahead, Set<Integer> points)
+		{
+			int range = to - from;
+			
+			if(range <= 2)
+			{
+				points.add(from);
+				points.add(from + 1);
+				points.add(to);
+				return;
+			}
+			
+			if(maxDepth >= 0 && depth > maxDepth)
+				return;
+			
+			int r0 = (int)Fibonacci.previous(range);
+			int mid1 = to - r0;
+			int mid2 = from + r0;
+			
+			points.add(mid1);
+			points.add(mid2);
+			
+			if(ahead > 0)
+			{
+				points(mid1, to, depth + 1, ahead - 1, points);
+				points(from, mid2, depth + 1, ahead - 1, points);
+			}
 		}
 	}
 }
@@ -0,0 +1,608 @@
+package org.nodes.models;
+
+import static org.nodes.util.Functions.log2Factorial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.nodes.DGraph;
+import org.nodes.DLink;
+import org.nodes.Graph;
+import org.nodes.Link;
+import org.nodes.UGraph;
+import org.nodes.models.DSequenceEstimator.D;
+import org.nodes.util.Functions;
+import org.nodes.util.OnlineModel;
+
+/**
+ * The degrees, number of links and multiple links of a subbed graph (the data
+ * with each occurrence of a motif replaced by a single node), without building
+ * the subbed graph itself.
+ *
+ * Outside the occurrences, the subbed graph keeps all links of the data,
+ * including multiple links and self-loops. Links between an occurrence and
+ * another node, or between two occurrences, are merged into a single link: the
+ * number of links removed by this is stored as the multiple-edges part of the
+ * code. Links inside an occurrence are removed.
+ *
+ * The degrees of the data are computed once, in the constructor. After that,
+ * the statistics are kept as changes with respect to the data, so that adding
+ * an occurrence takes time proportional to the number of links of its nodes,
+ * and copying the object takes time proportional to the number of changes.
+ * This makes it cheap to compute the codelengths for many different
+ * numbers of occurrences.
+ */
+public class SubbedGraph
+{
+	private boolean directed;
+	private int n;
+
+	// * For undirected graphs, the neighbors of each node, one per link (a
+	//   self-loop occurs once). For directed graphs, the successors and
+	//   predecessors of each node, one per link.
+	private int[][] neighbors, successors, predecessors;
+
+	// * The degrees of the data, and their frequencies (in directed graphs, for
+	//   all nodes that have in- or out-links)
+	private int[] baseDegrees, baseIn, baseOut;
+	private int[] baseFrequencies, baseInFrequencies, baseOutFrequencies;
+	private int baseNumLinks, basePresent;
+
+	// * The changes with respect to the data. Occurrence k is represented by
+	//   node n + k.
+	private Map<Integer, Integer> degrees, in, out;
+	private Map<Integer, Integer> frequencies, inFrequencies, outFrequencies;
+	private int numLinks, present;
+
+	// * The number of links for each pair of nodes that involves an occurrence
+	private Map<Long, Integer> pairs;
+	// * Which occurrence each node belongs to
+	private Map<Integer, Integer> nodeInOccurrence;
+	private List<int[]> occurrences;
+
+	/**
+	 * Creates the statistics for the data without any occurrences replaced.
+	 *
+	 * @param data An undirected or directed graph.
+	 */
+	public SubbedGraph(Graph<?> data)
+	{
+		if(! (data instanceof UGraph<?> || data instanceof DGraph<?>))
+			throw new IllegalArgumentException("Graph type ("+data.getClass()+") not recognized.");
+
+		directed = data instanceof DGraph<?>;
+		n = data.size();
+		baseNumLinks = data.numLinks();
+
+		if(directed)
+		{
+			baseIn = new int[n];
+			baseOut = new int[n];
+
+			for(DLink<?> link : ((DGraph<?>) data).links())
+			{
+				baseOut[link.from().index()]++;
+				baseIn[link.to().index()]++;
+			}
+
+			successors = new int[n][];
+			predecessors = new int[n][];
+			for(int node = 0; node < n; node++)
+			{
+				successors[node] = new int[baseOut[node]];
+				predecessors[node] = new int[baseIn[node]];
+			}
+
+			int[] numOut = new int[n], numIn = new int[n];
+			for(DLink<?> link : ((DGraph<?>) data).links())
+			{
+				int from = link.from().index(), to = link.to().index();
+				successors[from][numOut[from]++] = to;
+				predecessors[to][numIn[to]++] = from;
+			}
+
+			int max = 0;
+			for(int node = 0; node < n; node++)
+				max = Math.max(max, Math.max(baseIn[node], baseOut[node]));
+
+			baseInFrequencies = new int[max + 1];
+			baseOutFrequencies = new int[max + 1];
+			for(int node = 0; node < n; node++)
+				if(baseIn[node] + baseOut[node] > 0)
+				{
+					baseInFrequencies[baseIn[node]]++;
+					baseOutFrequencies[baseOut[node]]++;
+					basePresent++;
+				}
+		} else
+		{
+			baseDegrees = new int[n];
+			int[] numNeighbors = new int[n];
+
+			for(Link<?> link : data.links())
+			{
+				int first = link.first().index(), second = link.second().index();
+
+				baseDegrees[first]++;
+				baseDegrees[second]++;
+
+				numNeighbors[first]++;
+				if(first != second)
+					numNeighbors[second]++;
+			}
+
+			neighbors = new int[n][];
+			for(int node = 0; node < n; node++)
+				neighbors[node] = new int[numNeighbors[node]];
+
+			Arrays.fill(numNeighbors, 0);
+			for(Link<?> link : data.links())
+			{
+				int first = link.first().index(), second = link.second().index();
+
+				neighbors[first][numNeighbors[first]++] = second;
+				if(first != second)
+					neighbors[second][numNeighbors[second]++] = first;
+			}
+
+			int max = 0;
+			for(int degree : baseDegrees)
+				max = Math.max(max, degree);
+
+			baseFrequencies = new int[max + 1];
+			for(int degree : baseDegrees)
+				if(degree > 0)
+				{
+					baseFrequencies[degree]++;
+					basePresent++;
+				}
+		}
+
+		clear();
+	}
+
+	private SubbedGraph(SubbedGraph base)
+	{
+		directed = base.directed;
+		n = base.n;
+
+		neighbors = base.neighbors;
+		successors = base.successors;
+		predecessors = base.predecessors;
+
+		baseDegrees = base.baseDegrees;
+		baseIn = base.baseIn;
+		baseOut = base.baseOut;
+		baseFrequencies = base.baseFrequencies;
+		baseInFrequencies = base.baseInFrequencies;
+		baseOutFrequencies = base.baseOutFrequencies;
+		baseNumLinks = base.baseNumLinks;
+		basePresent = base.basePresent;
+	}
+
+	/**
+	 * Removes all occurrences.
+	 */
+	public void clear()
+	{
+		degrees = new HashMap<Integer, Integer>();
+		in = new HashMap<Integer, Integer>();
+		out = new HashMap<Integer, Integer>();
+		frequencies = new HashMap<Integer, Integer>();
+		inFrequencies = new HashMap<Integer, Integer>();
+		outFrequencies = new HashMap<Integer, Integer>();
+
+		numLinks = baseNumLinks;
+		present = basePresent;
+
+		pairs = new HashMap<Long, Integer>();
+		nodeInOccurrence = new HashMap<Integer, Integer>();
+		occurrences = new ArrayList<int[]>();
+	}
+
+	/**
+	 * Returns an independent copy. This object may be copied from multiple
+	 * threads at once, so long as it is not modified at the same time.
+	 */
+	public SubbedGraph copy()
+	{
+		SubbedGraph copy = new SubbedGraph(this);
+
+		copy.degrees = new HashMap<Integer, Integer>(degrees);
+		copy.in = new HashMap<Integer, Integer>(in);
+		copy.out = new HashMap<Integer, Integer>(out);
+		copy.frequencies = new HashMap<Integer, Integer>(frequencies);
+		copy.inFrequencies = new HashMap<Integer, Integer>(inFrequencies);
+		copy.outFrequencies = new HashMap<Integer, Integer>(outFrequencies);
+
+		copy.numLinks = numLinks;
+		copy.present = present;
+
+		copy.pairs = new HashMap<Long, Integer>(pairs);
+		copy.nodeInOccurrence = new HashMap<Integer, Integer>(nodeInOccurrence);
+		copy.occurrences = new ArrayList<int[]>(occurrences);
+
+		return copy;
+	}
+
+	/**
+	 * Replaces the given occurrence by a single node.
+	 *
+	 * @param occurrence A list of node indices, none of which may be part of
+	 * 	an occurrence added before.
+	 */
+	public void add(List<Integer> occurrence)
+	{
+		int[] nodes = new int[occurrence.size()];
+		for(int i = 0; i < nodes.length; i++)
+		{
+			nodes[i] = occurrence.get(i);
+
+			if(nodeInOccurrence.containsKey(nodes[i]))
+				throw new IllegalArgumentException("Node " + nodes[i] + " is already part of an occurrence.");
+		}
+
+		int[] links = links(nodes);
+
+		relink(links, -1);
+		for(int node : nodes)
+			nodeInOccurrence.put(node, occurrences.size());
+		relink(links, 1);
+
+		occurrences.add(nodes);
+	}
+
+	/**
+	 * Adds all given occurrences, in order.
+	 */
+	public void addAll(List<List<Integer>> occurrences)
+	{
+		for(List<Integer> occurrence : occurrences)
+			add(occurrence);
+	}
+
+	/**
+	 * Restores the occurrence that was added last.
+	 */
+	public void removeLast()
+	{
+		if(occurrences.isEmpty())
+			throw new IllegalStateException("No occurrences to remove.");
+
+		int[] nodes = occurrences.remove(occurrences.size() - 1);
+		int[] links = links(nodes);
+
+		relink(links, -1);
+		for(int node : nodes)
+			nodeInOccurrence.remove(node);
+		relink(links, 1);
+	}
+
+	/**
+	 * The number of occurrences that have been replaced.
+	 */
+	public int numOccurrences()
+	{
+		return occurrences.size();
+	}
+
+	/**
+	 * The number of links in the subbed graph.
+	 */
+	public int numLinks()
+	{
+		return numLinks;
+	}
+
+	/**
+	 * The number of nodes in the subbed graph that have links.
+	 */
+	public int numPresent()
+	{
+		return present;
+	}
+
+	/**
+	 * The links of the data that touch the given nodes, as (from, to) pairs,
+	 * each once.
+	 */
+	private int[] links(int[] nodes)
+	{
+		int num = 0;
+		for(int node : nodes)
+			num += directed ? successors[node].length + predecessors[node].length : neighbors[node].length;
+
+		int[] links = new int[2 * num];
+		int i = 0;
+
+		for(int node : nodes)
+			if(directed)
+			{
+				for(int other : successors[node])
+				{
+					links[i++] = node;
+					links[i++] = other;
+				}
+
+				// * Links inside the occurrence were added as successors
+				for(int other : predecessors[node])
+					if(! contains(nodes, other))
+					{
+						links[i++] = other;
+						links[i++] = node;
+					}
+			} else
+			{
+				// * Links inside the occurrence are added from their lowest node
+				for(int other : neighbors[node])
+					if(other >= node || ! contains(nodes, other))
+					{
+						links[i++] = node;
+						links[i++] = other;
+					}
+			}
+
+		return Arrays.copyOf(links, i);
+	}
+
+	private static boolean contains(int[] nodes, int node)
+	{
+		for(int other : nodes)
+			if(other == node)
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * The index of the node that represents the given node in the subbed
+	 * graph.
+	 */
+	private int represent(int node)
+	{
+		Integer occurrence = nodeInOccurrence.get(node);
+
+		return occurrence == null ? node : n + occurrence;
+	}
+
+	/**
+	 * Adds (delta = 1) or removes (delta = -1) the given links to or from the
+	 * subbed graph.
+	 */
+	private void relink(int[] links, int delta)
+	{
+		for(int i = 0; i < links.length; i += 2)
+		{
+			int from = represent(links[i]), to = represent(links[i + 1]);
+
+			// * A link inside an occurrence
+			if(from == to && from >= n)
+				continue;
+
+			// * A link between two regular nodes
+			if(from < n && to < n)
+			{
+				changeDegrees(from, to, delta);
+				continue;
+			}
+
+			// * A link involving an occurrence: only the first link between a
+			//   pair counts
+			long pair = directed || from < to
+					? ((long) from << 32) | to
+					: ((long) to << 32) | from;
+
+			Integer count = pairs.get(pair);
+			int old = count == null ? 0 : count;
+
+			if(old + delta == 0)
+				pairs.remove(pair);
+			else
+				pairs.put(pair, old + delta);
+
+			if((delta > 0 && old == 0) || (delta < 0 && old == 1))
+				changeDegrees(from, to, delta);
+		}
+	}
+
+	private void changeDegrees(int from, int to, int delta)
+	{
+		numLinks += delta;
+
+		if(directed)
+		{
+			changeDegree(from, 0, delta);
+			changeDegree(to, delta, 0);
+		} else
+		{
+			changeDegree(from, delta);
+			changeDegree(to, delta);
+		}
+	}
+
+	private void changeDegree(int node, int delta)
+	{
+		int old = get(degrees, baseDegrees, node);
+
+		if(old > 0)
+		{
+			change(frequencies, old, -1);
+			present--;
+		}
+
+		degrees.put(node, old + delta);
+
+		if(old + delta > 0)
+		{
+			change(frequencies, old + delta, 1);
+			present++;
+		}
+	}
+
+	private void changeDegree(int node, int inDelta, int outDelta)
+	{
+		int oldIn = get(in, baseIn, node), oldOut = get(out, baseOut, node);
+
+		if(oldIn + oldOut > 0)
+		{
+			change(inFrequencies, oldIn, -1);
+			change(outFrequencies, oldOut, -1);
+			present--;
+		}
+
+		in.put(node, oldIn + inDelta);
+		out.put(node, oldOut + outDelta);
+
+		if(oldIn + inDelta + oldOut + outDelta > 0)
+		{
+			change(inFrequencies, oldIn + inDelta, 1);
+			change(outFrequencies, oldOut + outDelta, 1);
+			present++;
+		}
+	}
+
+	private int get(Map<Integer, Integer> changed, int[] base, int node)
+	{
+		Integer value = changed.get(node);
+		if(value != null)
+			return value;
+
+		return node < n ? base[node] : 0;
+	}
+
+	private static void change(Map<Integer, Integer> map, int key, int delta)
+	{
+		Integer value = map.get(key);
+		map.put(key, (value == null ? 0 : value) + delta);
+	}
+
+	/**
+	 * The frequencies of the base, with the given changes applied.
+	 */
+	private static int[] frequencies(int[] base, Map<Integer, Integer> changes)
+	{
+		int length = base.length;
+		for(Map.Entry<Integer, Integer> entry : changes.entrySet())
+			if(entry.getValue() != 0)
+				length = Math.max(length, entry.getKey() + 1);
+
+		int[] frequencies = Arrays.copyOf(base, length);
+		for(Map.Entry<Integer, Integer> entry : changes.entrySet())
+			if(entry.getValue() != 0)
+				frequencies[entry.getKey()] += entry.getValue();
+
+		return frequencies;
+	}
+
+	private static int max(int[] frequencies)
+	{
+		for(int i = frequencies.length - 1; i >= 0; i--)
+			if(frequencies[i] > 0)
+				return i;
+
+		return 0;
+	}
+
+	/**
+	 * The number of bits required to store the multiple links that were
+	 * removed by merging the links to the occurrences.
+	 */
+	public double multipleEdgeBits()
+	{
+		// * For each pair that involves an occurrence, the number of links
+		//   removed
+		int[] additions = new int[1];
+		for(int count : pairs.values())
+		{
+			if(count > additions.length)
+				additions = Arrays.copyOf(additions, Math.max(count, 2 * additions.length));
+
+			additions[count - 1]++;
+		}
+
+		return Functions.prefix(max(additions)) + OnlineModel.storeIntegers(additions);
+	}
+
+	/**
+	 * The number of bits required to store the subbed graph under the edge list
+	 * model with the complete prior, as computed by
+	 * {@link EdgeListModel#undirected(List, DegreeSequenceModel.Prior)} and
+	 * {@link EdgeListModel#directed(List, DegreeSequenceModel.Prior)}.
+	 */
+	public double edgeListBits()
+	{
+		double bits;
+		if(directed)
+		{
+			int[] inFreq = frequencies(baseInFrequencies, inFrequencies),
+			      outFreq = frequencies(baseOutFrequencies, outFrequencies);
+
+			bits = log2Factorial(numLinks);
+
+			for(int degree = 0; degree < inFreq.length; degree++)
+				bits -= inFreq[degree] * log2Factorial(degree);
+			for(int degree = 0; degree < outFreq.length; degree++)
+				bits -= outFreq[degree] * log2Factorial(degree);
+
+			bits += Functions.prefix(present);
+			bits += Functions.prefix(max(inFreq)) + OnlineModel.storeIntegers(inFreq);
+			bits += Functions.prefix(max(outFreq)) + OnlineModel.storeIntegers(outFreq);
+		} else
+		{
+			int[] freq = frequencies(baseFrequencies, frequencies);
+
+			bits = log2Factorial(2 * numLinks) - log2Factorial(numLinks) - numLinks;
+
+			for(int degree = 0; degree < freq.length; degree++)
+				bits -= freq[degree] * log2Factorial(degree);
+
+			bits += Functions.prefix(present);
+			bits += Functions.prefix(max(freq)) + OnlineModel.storeIntegers(freq);
+		}
+
+		return bits;
+	}
+
+	/**
+	 * The degrees of the nodes of the subbed graph that have links: first the
+	 * regular nodes, in order, then the occurrences.
+	 */
+	public List<Integer> degrees()
+	{
+		if(directed)
+			throw new IllegalStateException("Subbed graph is directed.");
+
+		List<Integer> result = new ArrayList<Integer>(present);
+		for(int node = 0; node < n + occurrences.size(); node++)
+		{
+			int degree = get(degrees, baseDegrees, node);
+			if(degree > 0)
+				result.add(degree);
+		}
+
+		return result;
+	}
+
+	/**
+	 * The in and out degrees of the nodes of the subbed graph that have links:
+	 * first the regular nodes, in order, then the occurrences.
+	 */
+	public List<D> directedDegrees()
+	{
+		if(! directed)
+			throw new IllegalStateException("Subbed graph is undirected.");
+
+		List<D> result = new ArrayList<D>(present);
+		for(int node = 0; node < n + occurrences.size(); node++)
+		{
+			int inDegree = get(in, baseIn, node), outDegree = get(out, baseOut, node);
+			if(inDegree + outDegree > 0)
+				result.add(new D(inDegree, outDegree));
+		}
+
+		return result;
+	}
+}
@@ -27,8 +27,8 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.Random;
 import java.util.Set;
-import java.util.Vector;
 
 import org.apache.commons.math3.distribution.NormalDistribution;
 import org.apache.commons.math3.distribution.TDistribution;
@@ -45,6 +45,7 @@ import org.nodes.util.LogNum;
 import org.nodes.util.MaxObserver;
 import org.nodes.util.Pair;
 import org.nodes.util.Series;
+import org.nodes.util.bootstrap.LogNormalCI;
 
 /**
  * Implementation of the Diaconis/Blitzstein sequential importance sampling 
@@ -61,7 +62,7 @@ public class USequenceEstimator<L>
 	private L label = null;
 	private List<Integer> sequence;
 	
-	private List<Double> logSamples = new Vector<Double>();
+	private List<Double> logSamples = new ArrayList<Double>();
 
 	public USequenceEstimator(Graph<?> data, int samples)
 	{
@@ -567,39 +568,53 @@ public class USequenceEstimator<L>
 	 * Samples the given number of graphs from this sequence model. The 
 	 * resulting log-probabilities are stored in the model.
 	 * 
+	 * Multithreaded: the samples are drawn by tasks on the global executor, 
+	 * each with its own random number generator.
+	 */
+	public void nonuniform(int samples, int numThreads)
+	{
+		nonuniform(samples, numThreads, 0.0, 0.0);
+	}
+	
+	/**
+	 * Samples at most the given number of graphs from this sequence model, 
+	 * and stops early once the two-sided (1 - alpha) confidence interval on 
+	 * the log number of graphs (see {@link LogNormalCI}) is narrower than the 
+	 * given width (in bits). The resulting log-probabilities are stored in 
+	 * the model.
+	 * 
 	 * Multithreaded
+	 * 
+	 * @param width The target width. If this is not positive, all samples are
+	 * 	drawn.
+	 * @return The number of samples drawn.
 	 */
-	public void nonuniform(final int samples, final int numThreads)
+	public int nonuniform(int samples, int numThreads, double alpha, double width)
 	{
-		final int perThread = samples/numThreads;
-		final int rem = samples - perThread * numThreads;
-		
-		List<Thread> threads = new ArrayList<Thread>(numThreads);
-		for(final int t : series(numThreads))
+		return nonuniform(samples, numThreads, alpha, width, -1);
+	}
+	
+	/**
+	 * As {@link #nonuniform(int, int, double, double)}, but sampling also stops 
+	 * when the given time budget runs out.
+	 * 
+	 * @param maxMillis The time budget in milliseconds. If this is negative,
+	 * 	there is no time budget.
+	 * @return The number of samples drawn.
+	 */
+	public int nonuniform(int samples, int numThreads, double alpha, double width, long maxMillis)
+	{
+		ImportanceSampler.Source source = new ImportanceSampler.Source()
 		{
-			Thread thread = new Thread() {
-				public void run()
-				{
-					for(int i : series(perThread + (t==0 ? rem : 0) ))
-						nonuniform();
-				}
-			};
-			threads.add(thread);
-		}
+			@Override
+			public double logSample(Random random)
+			{
+				Result result = sample(random);
+				return - result.logC() - result.logSigma();
+			}
+		};
 		
-		for(Thread thread : threads)
-		{
-			thread.start();
-		}
-
-		try
-		{
-			for(Thread thread : threads)
-				thread.join();
-		} catch (InterruptedException e)
-		{
-			throw new RuntimeException(e);
-		}
+		return ImportanceSampler.sample(source, samples, numThreads, alpha, width, maxMillis, logSamples);
 	}
 	
 	/**
@@ -608,6 +623,14 @@ public class USequenceEstimator<L>
 	 * @return
 	 */
 	public Result nonuniform()
+	{
+		Result result = sample(Global.random());
+		logSamples.add(- result.logC() - result.logSigma());
+		
+		return result;
+	}
+	
+	private Result sample(Random random)
 	{
 		// * Create an empty graph
 		UGraph<L> graph = new MapUTGraph<L, String>();
@@ -648,7 +671,7 @@ public class USequenceEstimator<L>
 				
 				List<Integer> toCandidates = new ArrayList<Integer>(n);
 				
-				toCandidates = findAcceptableSet(sequence, graph, from);
+				toCandidates = findAcceptableSet(sequence, graph, from, random);
 				int i;
 				
 				if(PICK_CANDIDATE_BY_DEGREE) // choose the candidate by weighted degree
@@ -662,12 +685,12 @@ public class USequenceEstimator<L>
 						sum += sequence.get(toIndex);
 					}
 					
-					i = choose(candidateWeights, sum);
+					i = choose(candidateWeights, sum, random);
 					logSigY += log2(candidateWeights.get(i)/sum);
 
 				} else // uniform choice
 				{
-					i = Global.random().nextInt(toCandidates.size());
+					i = random.nextInt(toCandidates.size());
 					logSigY += - log2(toCandidates.size());
 				}
 				
@@ -680,8 +703,6 @@ public class USequenceEstimator<L>
 			}
 		}
 		
-		logSamples.add(- logCY - logSigY);
-		
 		return new Result(graph, logCY, logSigY);
 	}
 	
@@ -877,6 +898,18 @@ public class USequenceEstimator<L>
 	 */
 	public static <L> List<Integer> findAcceptableSet(
 			List<Integer> residualDegrees, Graph<L> graphSoFar, Node<L> hub)
+	{
+		return findAcceptableSet(residualDegrees, graphSoFar, hub, Global.random());
+	}
+	
+	/**
+	 * Returns the set of nodes we can connect to the node hub without creating 
+	 * an ungraphical degree sequence.
+	 * 
+	 * @param random The source of randomness for the quickselect.
+	 */
+	public static <L> List<Integer> findAcceptableSet(
+			List<Integer> residualDegrees, Graph<L> graphSoFar, Node<L> hub, Random random)
 	{
 		// * Cache the set of forbidden nodes
 		boolean[] forbidden = new boolean[residualDegrees.size()];
@@ -918,7 +951,7 @@ public class USequenceEstimator<L>
 			}
 		}
 		
-		List<Index> leftMost = MaxObserver.quickSelect(hubDegree - 1, res, new SpecialComparator(), false);
+		List<Index> leftMost = MaxObserver.quickSelect(hubDegree - 1, res, new SpecialComparator(), false, random);
 						
 		for(Index index : leftMost)
 		{
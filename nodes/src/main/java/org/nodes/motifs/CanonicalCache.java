@@ -0,0 +1,378 @@
+package org.nodes.motifs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.nodes.DGraph;
+import org.nodes.DNode;
+import org.nodes.Graph;
+import org.nodes.Graphs;
+import org.nodes.Node;
+import org.nodes.Subgraph;
+import org.nodes.UGraph;
+import org.nodes.UNode;
+import org.nodes.algorithms.Nauty;
+import org.nodes.util.Functions;
+import org.nodes.util.Order;
+
+/**
+ * A cache for the canonical forms of sampled subgraphs.
+ *
+ * When sampling motifs, the number of distinct subgraphs is usually tiny
+ * compared to the number of samples. This cache keys each sample by an exact
+ * encoding of the subgraph in the order in which its nodes were sampled: the
+ * labels of the nodes and the number of links between each pair. If the
+ * encoding has been seen before, the canonical order and the canonical graph
+ * are returned without building the subgraph or running Nauty. Each entry 
+ * also carries a {@link MotifCode} for the canonical graph, which is cheaper 
+ * to use as a map key than the graph itself. Equal codes from one cache are 
+ * the same object. 
+ *
+ * The lookups can be called from multiple threads. The cache holds at most 
+ * 'capacity' entries; once it is full, new subgraphs are canonized but not 
+ * stored. The entries, and the canonical graphs in them, are shared between 
+ * all callers. The graphs can be read concurrently, but they are mutable 
+ * objects: they must not be modified, and since computing their hash codes 
+ * is expensive, use code() rather than the graph as a map key.
+ *
+ * @param <L> The label type of the canonical graphs.
+ */
+public class CanonicalCache<L>
+{
+	public static final int DEFAULT_CAPACITY = 1000000;
+
+	private Comparator<L> comparator;
+	private String blank;
+	private int capacity;
+
+	private ConcurrentMap<Key, Entry<?>> map = new ConcurrentHashMap<Key, Entry<?>>();
+	private ConcurrentMap<MotifCode, MotifCode> codes = new ConcurrentHashMap<MotifCode, MotifCode>();
+	// * The number of entries in each map, including those about to be 
+	//   stored, so that concurrent stores cannot exceed the capacity
+	private AtomicInteger numEntries = new AtomicInteger();
+	private AtomicInteger numCodes = new AtomicInteger();
+
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+
+	/**
+	 * A cache for labeled subgraphs, with the default capacity.
+	 */
+	public CanonicalCache(Comparator<L> comparator)
+	{
+		this(comparator, null, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * A cache for labeled subgraphs.
+	 *
+	 * @param comparator The comparator for the labels, used by Nauty.
+	 * @param capacity The maximum number of entries.
+	 */
+	public CanonicalCache(Comparator<L> comparator, int capacity)
+	{
+		this(comparator, null, capacity);
+	}
+
+	private CanonicalCache(Comparator<L> comparator, String blank, int capacity)
+	{
+		if(capacity < 0)
+			throw new IllegalArgumentException("Capacity ("+capacity+") cannot be negative.");
+
+		this.comparator = comparator;
+		this.blank = blank;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * A cache that ignores the labels of the data, and returns blanked
+	 * canonical graphs.
+	 *
+	 * @param label The label for all nodes of the canonical graphs.
+	 * @param capacity The maximum number of entries.
+	 */
+	public static CanonicalCache<String> blank(String label, int capacity)
+	{
+		return new CanonicalCache<String>(new Functions.NaturalComparator<String>(), label, capacity);
+	}
+
+	/**
+	 * Returns the canonical form of the subgraph of the given data graph
+	 * induced by the given nodes.
+	 *
+	 * @param data
+	 * @param indices The indices of the nodes of the subgraph in the data
+	 * 	graph.
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public Entry<UGraph<L>> undirected(UGraph<L> data, List<Integer> indices)
+	{
+		int n = indices.size();
+
+		List<UNode<L>> nodes = new ArrayList<UNode<L>>(n);
+		for(int index : indices)
+			nodes.add(data.get(index));
+
+		int[] counts = new int[n * (n + 1) / 2];
+		int c = 0;
+		for(int i = 0; i < n; i++)
+			for(int j = i; j < n; j++)
+				counts[c++] = nodes.get(i).links(nodes.get(j)).size();
+
+		Key key = new Key(false, labels(nodes), counts);
+
+		Entry<UGraph<L>> entry = (Entry<UGraph<L>>) map.get(key);
+		if(entry != null)
+		{
+			hits.incrementAndGet();
+			return entry;
+		}
+
+		misses.incrementAndGet();
+
+		UGraph<L> sub = Subgraph.uSubgraphIndices(data, indices);
+		if(blank != null)
+			sub = (UGraph<L>) Graphs.blank(sub, blank);
+
+		Order order = Nauty.order(sub, comparator);
+		sub = Graphs.reorder(sub, order);
+		entry = new Entry<UGraph<L>>(order, sub, intern(MotifCode.of(sub)));
+
+		return store(key, entry);
+	}
+
+	/**
+	 * Returns the canonical form of the subgraph of the given data graph
+	 * induced by the given nodes. Tags are ignored.
+	 *
+	 * @param data
+	 * @param indices The indices of the nodes of the subgraph in the data
+	 * 	graph.
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public Entry<DGraph<L>> directed(DGraph<L> data, List<Integer> indices)
+	{
+		int n = indices.size();
+
+		List<DNode<L>> nodes = new ArrayList<DNode<L>>(n);
+		for(int index : indices)
+			nodes.add(data.get(index));
+
+		int[] counts = new int[n * n];
+		int c = 0;
+		for(int i = 0; i < n; i++)
+			for(int j = 0; j < n; j++)
+				counts[c++] = nodes.get(i).linksOut(nodes.get(j)).size();
+
+		Key key = new Key(true, labels(nodes), counts);
+
+		Entry<DGraph<L>> entry = (Entry<DGraph<L>>) map.get(key);
+		if(entry != null)
+		{
+			hits.incrementAndGet();
+			return entry;
+		}
+
+		misses.incrementAndGet();
+
+		DGraph<L> sub = Subgraph.dSubgraphIndices(data, indices);
+		if(blank != null)
+			sub = (DGraph<L>) Graphs.blank(sub, blank);
+
+		Order order = Nauty.order(sub, comparator);
+		sub = Graphs.reorder(sub, order);
+		entry = new Entry<DGraph<L>>(order, sub, intern(MotifCode.of(sub)));
+
+		return store(key, entry);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <G extends Graph<L>> Entry<G> store(Key key, Entry<G> entry)
+	{
+		Entry<?> existing = map.get(key);
+		if(existing != null)
+			return (Entry<G>) existing;
+		
+		if(! reserve(numEntries))
+			return entry;
+
+		existing = map.putIfAbsent(key, entry);
+		if(existing != null)
+			numEntries.decrementAndGet();
+
+		return existing == null ? entry : (Entry<G>) existing;
+	}
+
+	private MotifCode intern(MotifCode code)
+	{
+		MotifCode existing = codes.get(code);
+		if(existing != null)
+			return existing;
+		
+		if(! reserve(numCodes))
+			return code;
+		
+		existing = codes.putIfAbsent(code, code);
+		if(existing != null)
+			numCodes.decrementAndGet();
+		
+		return existing == null ? code : existing;
+	}
+	
+	/**
+	 * Claims room for one more entry, if the capacity allows it.
+	 */
+	private boolean reserve(AtomicInteger count)
+	{
+		while(true)
+		{
+			int current = count.get();
+			if(current >= capacity)
+				return false;
+			
+			if(count.compareAndSet(current, current + 1))
+				return true;
+		}
+	}
+
+	private Object[] labels(List<? extends Node<L>> nodes)
+	{
+		if(blank != null)
+			return null;
+
+		Object[] labels = new Object[nodes.size()];
+		for(int i = 0; i < labels.length; i++)
+			labels[i] = nodes.get(i).label();
+
+		return labels;
+	}
+
+	/**
+	 * The number of lookups answered from the cache.
+	 */
+	public long hits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * The number of lookups that required canonization.
+	 */
+	public long misses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * The number of cached entries.
+	 */
+	public int size()
+	{
+		return map.size();
+	}
+
+	public void clear()
+	{
+		map.clear();
+		codes.clear();
+		numEntries.set(0);
+		numCodes.set(0);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CanonicalCache [size=" + size() + ", hits=" + hits() + ", misses=" + misses() + "]";
+	}
+
+	/**
+	 * The canonical form of a sampled subgraph.
+	 */
+	public static class Entry<G>
+	{
+		private Order order;
+		private G graph;
+		private MotifCode code;
+
+		private Entry(Order order, G graph, MotifCode code)
+		{
+			this.order = order;
+			this.graph = graph;
+			this.code = code;
+		}
+
+		/**
+		 * The order that maps the subgraph, with its nodes in sampled order,
+		 * to the canonical graph. Use order().apply(indices) to get the
+		 * sampled indices in canonical order.
+		 */
+		public Order order()
+		{
+			return order;
+		}
+
+		/**
+		 * The canonical graph. This object is shared by all samples with the
+		 * same encoding, and should not be modified.
+		 */
+		public G graph()
+		{
+			return graph;
+		}
+
+		/**
+		 * The code of the canonical graph.
+		 */
+		public MotifCode code()
+		{
+			return code;
+		}
+	}
+
+	private static class Key
+	{
+		private boolean directed;
+		private Object[] labels;
+		private int[] counts;
+		private int hash;
+
+		public Key(boolean directed, Object[] labels, int[] counts)
+		{
+			this.directed = directed;
+			this.labels = labels;
+			this.counts = counts;
+
+			hash = 31 * (31 * (directed ? 1 : 0) + Arrays.hashCode(labels)) + Arrays.hashCode(counts);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+
+			Key other = (Key) obj;
+
+			return hash == other.hash
+					&& directed == other.directed
+					&& Arrays.equals(counts, other.counts)
+					&& Arrays.equals(labels, other.labels);
+		}
+	}
+}
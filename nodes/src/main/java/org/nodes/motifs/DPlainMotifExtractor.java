@@ -29,8 +29,6 @@ import org.nodes.Graph;
 import org.nodes.Graphs;
 import org.nodes.MapDTGraph;
 import org.nodes.Node;
-import org.nodes.Subgraph;
-import org.nodes.algorithms.Nauty;
 import org.nodes.compression.EdgeListCompressor;
 import org.nodes.compression.Functions;
 import org.nodes.compression.NeighborListCompressor;
@@ -43,7 +41,6 @@ import org.nodes.util.Compressor;
 import org.nodes.util.FrequencyModel;
 import org.nodes.util.Generator;
 import org.nodes.util.Generators;
-import org.nodes.util.Order;
 import org.nodes.util.Series;
 
 import au.com.bytecode.opencsv.CSVWriter;
@@ -69,12 +66,14 @@ public class DPlainMotifExtractor<L extends Comparable<L>>
 
 	private List<DGraph<L>> tokens;
 
-	private Generator<Integer> intGen;
+	private int minSize, maxSize;
+	private int numThreads;
 	
 	private MotifVarTags mvTop = null;
 	
-	private FrequencyModel<DGraph<L>> fm;
-	private Map<DGraph<L>, List<List<Integer>>> occurrences;
+	// * Motifs are identified by the codes of their canonical graphs
+	private FrequencyModel<MotifCode> fm;
+	private Map<MotifCode, List<List<Integer>>> occurrences;
 	
 	private int minFreq;
 	
@@ -84,12 +83,29 @@ public class DPlainMotifExtractor<L extends Comparable<L>>
 			int minSize,
 			int maxSize,
 			int minFreq)
+	{
+		this(data, numSamples, minSize, maxSize, minFreq, Global.numThreads());
+	}
+	
+	/**
+	 * @param numThreads The number of threads to sample with. The result does
+	 * 	not depend on the number of threads.
+	 */
+	public DPlainMotifExtractor(
+			DGraph<L> data,
+			int numSamples,
+			int minSize,
+			int maxSize,
+			int minFreq,
+			int numThreads)
 	{
 		this.data = data;
 		this.samples = numSamples;
+		this.numThreads = numThreads;
 		
 		comparator = new Functions.NaturalComparator<L>();
-		intGen = Generators.uniform(minSize, maxSize + 1);
+		this.minSize = minSize;
+		this.maxSize = maxSize;
 		
 		this.minFreq = minFreq; 
 		
@@ -109,121 +125,62 @@ public class DPlainMotifExtractor<L extends Comparable<L>>
 			int size, 
 			int minFreq)
 	{
-		this.data = data;
-		this.samples = numSamples;
-		
-		comparator = new Functions.NaturalComparator<L>();
-		intGen = Generators.uniform(size, size+1);
-		
-		this.minFreq = minFreq; 
-		
-		run();
+		this(data, numSamples, size, size, minFreq);
 	}
 
 	private void run()
 	{
 		Global.log().info("Sampling motifs");		
-		fm = new FrequencyModel<DGraph<L>>();
 
-		// * The (overlapping) instances
-		occurrences = new LinkedHashMap<DGraph<L>, List<List<Integer>>>();
-
-		SimpleSubgraphGenerator gen = 
-			new SimpleSubgraphGenerator(data, intGen);
+		final CanonicalCache<L> cache = new CanonicalCache<L>(comparator);
+		
+		MotifSampler<DGraph<L>> sampler = new MotifSampler<DGraph<L>>(data, minSize, maxSize, 
+			new MotifSampler.Canonizer<DGraph<L>>()
+			{
+				@Override
+				public CanonicalCache.Entry<DGraph<L>> canonical(List<Integer> indices)
+				{
+					return cache.directed(data, indices);
+				}
+			});
 		
-//		SubgraphGenerator<L> gen = new SubgraphGenerator<L>(data, intGen);
-
 		Global.log().info("Start sampling.");
-		for (int i : Series.series(samples))
-		{
-			if (i % 10000 == 0)
-				System.out.println("Samples finished: " + i);
-
-			List<Integer> indices = gen.generate();
-			
-			DGraph<L> sub = Subgraph.dSubgraphIndices(data, indices);
-
-			// * Reorder nodes to canonical ordering
-			Order canonical = Nauty.order(sub, comparator);
-			sub = Graphs.reorder(sub, canonical);
-			
-			List<Integer> occurrence = canonical.apply(indices); 
-			
-			fm.add(sub);
-			
-			// * record the occurrence
-			if (!occurrences.containsKey(sub))
-				occurrences.put(sub, new ArrayList<List<Integer>>());
-
-			occurrences.get(sub).add(occurrence);
-		}
+		sampler.sample(samples, numThreads);
+		
+		// * The (overlapping) instances
+		fm = sampler.frequencies();
+		occurrences = sampler.occurrences();
+		
+		Global.log().info("Finished sampling. " + cache);
 		
 		Global.log().info("Removing overlapping occurrences.");
 		// * Remove overlapping occurrences 
 		//   (keep the ones with the lowest exdegrees)
-		FrequencyModel<DGraph<L>> newFm = 
-				new FrequencyModel<DGraph<L>>();
-		Map<DGraph<L>, List<List<Integer>>> newOccurrences = 
-				new LinkedHashMap<DGraph<L>, List<List<Integer>>>();
+		OverlapRemover remover = new OverlapRemover(data);
 		
-		for(DGraph<L> sub : fm.tokens())
+		List<MotifCode> frequent = new ArrayList<MotifCode>();
+		for(MotifCode sub : fm.tokens())
 			if(fm.frequency(sub) >= minFreq)
-			{
-				int nl = sub.numLinks();
-				
-				// * A map from nodes to occurrences containing them
-				Map<DNode<L>, List<Occurrence>> map = 
-					new LinkedHashMap<DNode<L>, List<Occurrence>>();
-				
-				// * A list of all occurrences, sorted by exDegree
-				LinkedList<Occurrence> list = new LinkedList<Occurrence>();
-				
-				// - fill the map and list
-				for(List<Integer> occurrence : occurrences.get(sub))
-				{
-					Occurrence occ = new Occurrence(occurrence);
-					
-					list.add(occ);
-					
-					for(int index : occurrence)
-					{
-						DNode<L> node = data.get(index);
-						
-						if(! map.containsKey(node))
-							map.put(node, new ArrayList<Occurrence>());	 
-						map.get(node).add(occ);
-					}
-				}
-				
-				Collections.sort(list);
-				
-				while(!list.isEmpty())
-				{
-					// * Find the first living occurrence, remove any dead ones
-					Occurrence head = list.poll();
-					
-					if(head.alive()) // * register it as a viable occurrence
-					{
-						newFm.add(sub, SORT_BY_SCORE ? nl/(double)head.exDegree() : 1.0);
-						
-						if(! newOccurrences.containsKey(sub))
-							newOccurrences.put(sub, new ArrayList<List<Integer>>());
-						newOccurrences.get(sub).add(head.indices());
-						
-						// - now kill any occurrence that shares a node with this one.
-						for(int nodeIndex : head.indices())
-							for(Occurrence occ : map.get(data.get(nodeIndex)))
-								occ.kill();
-					} 
-				}
-			}	
+				frequent.add(sub);
+		
+		Map<MotifCode, List<List<Integer>>> newOccurrences = 
+				remover.remove(occurrences, frequent, numThreads);
+		
+		FrequencyModel<MotifCode> newFm = 
+				new FrequencyModel<MotifCode>();
+		for(MotifCode sub : frequent)
+			for(List<Integer> occurrence : newOccurrences.get(sub))
+				newFm.add(sub, SORT_BY_SCORE ? sub.numLinks()/(double)remover.exDegree(occurrence) : 1.0);
 		
 		fm = newFm;
 		occurrences = newOccurrences;
 		
 		Global.log().info("Finished sampling motifs and removing overlaps.");
 
-		tokens = new ArrayList<DGraph<L>>(fm.sorted());
+		// * Convert the codes back to graphs, for reporting
+		tokens = new ArrayList<DGraph<L>>();
+		for(MotifCode code : fm.sorted())
+			tokens.add(code.<L>toDGraph());
 	}
 	
 	public List<DGraph<L>> subgraphs()
@@ -233,53 +190,11 @@ public class DPlainMotifExtractor<L extends Comparable<L>>
 	
 	public List<List<Integer>> occurrences(DGraph<L> subgraph)
 	{
-		return occurrences.get(subgraph);
-	}
-
-	private class Occurrence implements Comparable<Occurrence> {
-		
-		private boolean alive = true;
-		private List<Integer> indices;
-		private int id;
-		
-		private int exDegree;
-	
-		public Occurrence(List<Integer> indices)
-		{
-			this.indices = indices;
-			
-			exDegree = MotifCompressor.exDegree(data, indices);
-		}
-		
-		public boolean alive()
-		{
-			return alive;
-		}
-		
-		public void kill()
-		{
-			alive = false;
-		}
-		
-		public List<Integer> indices()
-		{
-			return indices;
-		}
-		
-		public int exDegree()
-		{
-			return exDegree;
-		}
-
-		@Override
-		public int compareTo(Occurrence other)
-		{
-			return Integer.compare(exDegree, other.exDegree);
-		}		
+		return occurrences.get(MotifCode.of(subgraph));
 	}
 
 	public double frequency(DGraph<L> sub)
 	{
-		return fm.frequency(sub);
+		return fm.frequency(MotifCode.of(sub));
 	}
 }
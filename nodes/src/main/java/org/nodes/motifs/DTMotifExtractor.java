@@ -6,12 +6,15 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.nodes.DGraph;
 import org.nodes.DLink;
@@ -25,7 +28,6 @@ import org.nodes.Graphs;
 import org.nodes.MapDTGraph;
 import org.nodes.Node;
 import org.nodes.Subgraph;
-import org.nodes.algorithms.Nauty;
 import org.nodes.compression.EdgeListCompressor;
 import org.nodes.compression.Functions;
 import org.nodes.compression.NeighborListCompressor;
@@ -37,7 +39,6 @@ import org.nodes.util.BitString;
 import org.nodes.util.Compressor;
 import org.nodes.util.FrequencyModel;
 import org.nodes.util.Generator;
-import org.nodes.util.Order;
 import org.nodes.util.Series;
 
 
@@ -70,14 +71,31 @@ public class DTMotifExtractor
 	
 	private MotifVarTags mvTop = null;
 	
+	private int numThreads;
+	
 	public DTMotifExtractor(
 			DTGraph<String, String> data,
 			int numSamples,
 			int minSize,
 			int maxSize)
+	{
+		this(data, numSamples, minSize, maxSize, Global.numThreads());
+	}
+	
+	/**
+	 * @param numThreads The number of threads to search the masks with. The 
+	 * 	result does not depend on the number of threads.
+	 */
+	public DTMotifExtractor(
+			DTGraph<String, String> data,
+			int numSamples,
+			int minSize,
+			int maxSize, 
+			int numThreads)
 	{
 		this.data = data;
 		this.samples = numSamples;
+		this.numThreads = numThreads;
 		
 		comp = new Functions.NaturalComparator<String>();
 		intGen = new UniformGenerator(minSize, maxSize);
@@ -85,17 +103,20 @@ public class DTMotifExtractor
 
 	public void run()
 	{
-		FrequencyModel<DGraph<String>> fm = new FrequencyModel<DGraph<String>>();
+		// * Motifs are identified by the codes of their canonical graphs
+		FrequencyModel<MotifCode> fm = new FrequencyModel<MotifCode>();
 		
 		// * Places in the graph where each motif occurs
-		Map<DGraph<String>, List<List<Integer>>> occurrences = new LinkedHashMap<DGraph<String>, List<List<Integer>>>();
+		Map<MotifCode, List<List<Integer>>> occurrences = new LinkedHashMap<MotifCode, List<List<Integer>>>();
 		// * Those nodes that have been taken by one of the occurrences. If a new occurrence contains one of these,
 		//   it will not be added
-		Map<DGraph<String>, Set<Integer>> taken = new LinkedHashMap<DGraph<String>, Set<Integer>>();
+		Map<MotifCode, Set<Integer>> taken = new LinkedHashMap<MotifCode, Set<Integer>>();
 
 		SubgraphGenerator<String> gen = new SubgraphGenerator<String>(data,
 				intGen, Collections.EMPTY_LIST);
 
+		CanonicalCache<String> cache = CanonicalCache.blank("", CanonicalCache.DEFAULT_CAPACITY);
+		
 		Functions.tic();
 
 		// * Sampling
@@ -106,9 +127,11 @@ public class DTMotifExtractor
 			
 			// * Sample a subgraph
 			SubgraphGenerator<String>.Result result = gen.generate();
-			DTGraph<String, String> subLabeled = Subgraph.dtSubgraphIndices(data,
-					result.indices());
-			DGraph<String> subBlanked = Graphs.blank(subLabeled, "");
+			
+			// * Blank and reorder nodes to canonical ordering
+			CanonicalCache.Entry<DGraph<String>> canonical = 
+					cache.directed(data, result.indices());
+			MotifCode subBlanked = canonical.code();
 			
 			// * Check if any of the nodes of the occurrence have been used already
 			boolean overlaps;
@@ -120,11 +143,7 @@ public class DTMotifExtractor
 			// * Add it as an occurrence	
 			if(! overlaps)
 			{	
-				// * Reorder nodes to canonical ordering
-				Order canonical = Nauty.order(subBlanked, comp);
-				subBlanked = Graphs.reorder(subBlanked, canonical);
-				
-				List<Integer> indices = canonical.apply(result.indices());
+				List<Integer> indices = canonical.order().apply(result.indices());
 				
 				fm.add(subBlanked, CORRECT_FREQUENCIES ? result.invProbability() : 1.0);
 	
@@ -140,13 +159,19 @@ public class DTMotifExtractor
 			}
 		}
 
-		tokens = fm.sorted();
+		List<MotifCode> codes = fm.sorted();
+		
+		// * Convert the codes back to graphs, for reporting and masking
+		tokens = new ArrayList<DGraph<String>>(codes.size());
+		for(MotifCode code : codes)
+			tokens.add(code.<String>toDGraph());
 		
-		for(DGraph<String> token : tokens.subList(0, 10))
+		for(DGraph<String> token : tokens.subList(0, Math.min(10, tokens.size())))
 			System.out.println("--- " + token);
 
 		System.out.println("Finished sampling. "+tokens.size()+ " tokens found. Time taken: " + Functions.toc()
 				+ " seconds.");
+		Global.log().info("Canonical forms: " + cache);
 
 		// * Masking
 		
@@ -155,48 +180,30 @@ public class DTMotifExtractor
 		List<List<Integer>> topOccurrences = null;
 		List<List<String>> topLabels = null;
 			
+		// * The parts of the code that depend only on the data are computed 
+		//   once, and shared by all masks. The label sets are computed here, 
+		//   so that the parallel searches don't race to compute them lazily.
+		MotifVarTags base = new MotifVarTags(data, null, Collections.<List<Integer>>emptyList(), SPECIFY_SUBS);
+		base.labelSets();
+			
 		int i  = 0;
-		for (DGraph<String> sub : tokens)
+		for (MotifCode code : codes)
 		{
-			System.out.println("Starting motif (" + fm.frequency(sub) + ")" + sub);
-			int nMask = sub.size() + sub.numLinks();
+			DGraph<String> sub = tokens.get(i);
 			
-			if(fm.frequency(sub) < MIN_OCCURRENCES)
-				break;
+			System.out.println("Starting motif (" + fm.frequency(code) + ")" + sub);
 			
-			double currentTopBits = Double.MAX_VALUE;
-			DTGraph<String, String> motif = null;
-			List<List<Integer>> occOut = null;
-			List<List<String>> labels = null;
-			double bits = -1.0;
+			if(fm.frequency(code) < MIN_OCCURRENCES)
+				break;
 			
-			DTGraph<String, String> currentTopMotif = null;
-			List<List<Integer>> currentTopOccurrences = null;
-			List<List<String>> currentTopLabels = null;
+			Candidate best = search(sub, occurrences.get(code), base);
 			
-			for(BitString mask : BitString.all(nMask))
-			{				
-				System.out.print(".");
-				
-				occOut = new ArrayList<List<Integer>>();
-				labels = new ArrayList<List<String>>();
-
-				motif = mask(sub, mask, data,
-						occurrences.get(sub), occOut, labels);
-				
-				MotifVarTags mv = new MotifVarTags(data, motif,occOut, SPECIFY_SUBS);
-				bits = mv.size();
-				
-				if(bits < currentTopBits)
-				{
-					currentTopBits = bits;
-					currentTopMotif = motif;
-					currentTopOccurrences = occOut;
-					currentTopLabels = labels;
-				}				
-			}
+			double currentTopBits = best.bits;
+			DTGraph<String, String> currentTopMotif = best.motif;
+			List<List<Integer>> currentTopOccurrences = best.occurrences;
+			List<List<String>> currentTopLabels = best.labels;
 			
-			System.out.println("\nfinished: best size " + currentTopBits);
+			System.out.println("finished: best size " + currentTopBits);
 			System.out.println("          best motif " + currentTopMotif);
 
 			List<Integer> occChoice = org.nodes.util.Functions.choose(currentTopOccurrences);
@@ -227,6 +234,149 @@ public class DTMotifExtractor
 		Global.log().info("baseline (neighbor list)" + compressor.compressedSize(data));
 	}
 	
+	/**
+	 * Finds the mask with the smallest codelength for the given motif.
+	 * 
+	 * The codelength of a mask consists of a part that depends on the labels 
+	 * and tags of the masked motif, and a part that depends only on which 
+	 * occurrences it selects (the silhouette and the wiring), which is much 
+	 * more expensive to compute. All masks are evaluated for the first part, 
+	 * which only needs the label sequences of the occurrences. Of the masks 
+	 * that select the same occurrences, only the one with the smallest first 
+	 * part can be the best, so the others are pruned. The remaining 
+	 * candidates are evaluated in order of their first part, in parallel 
+	 * batches of numThreads. Since the second part is never negative, the 
+	 * search stops as soon as the first part of the next candidate exceeds 
+	 * the best total so far.
+	 * 
+	 * Ties are broken by the order of the masks, so that the result is the 
+	 * same as when all masks are evaluated in full, in order.
+	 */
+	private Candidate search(DGraph<String> sub, List<List<Integer>> occurrences, final MotifVarTags base)
+	{
+		final DGraph<String> motif = sub;
+		final List<List<Integer>> occ = occurrences;
+		
+		// * The label sequences don't depend on the mask
+		final List<List<String>> sequences = new ArrayList<List<String>>(occurrences.size());
+		for(List<Integer> occurrence : occurrences)
+			sequences.add(labels(data, occurrence));
+		
+		final List<BitString> masks = new ArrayList<BitString>(BitString.all(sub.size() + sub.numLinks()));
+		
+		// * Evaluate the mask-dependent parts, keeping for each selection of 
+		//   occurrences the cheapest mask (the first, in case of ties)
+		int chunkSize = Math.max(1, (masks.size() + numThreads - 1) / numThreads);
+		List<Callable<Map<BitSet, Candidate>>> chunks = new ArrayList<Callable<Map<BitSet, Candidate>>>();
+		for(int start = 0; start < masks.size(); start += chunkSize)
+		{
+			final int first = start;
+			final List<BitString> chunk = masks.subList(start, Math.min(masks.size(), start + chunkSize));
+			chunks.add(new Callable<Map<BitSet, Candidate>>()
+			{
+				@Override
+				public Map<BitSet, Candidate> call()
+				{
+					Map<BitSet, Candidate> best = new LinkedHashMap<BitSet, Candidate>();
+					for(int i : series(chunk.size()))
+						keep(best, candidate(first + i, motif, chunk.get(i), occ, sequences, base));
+					
+					return best;
+				}
+			});
+		}
+		
+		Map<BitSet, Candidate> groups = new LinkedHashMap<BitSet, Candidate>();
+		for(Map<BitSet, Candidate> chunk : Global.invokeAll(chunks, numThreads))
+			for(Candidate candidate : chunk.values())
+				keep(groups, candidate);
+		
+		final List<Candidate> candidates = new ArrayList<Candidate>(groups.values());
+		Collections.sort(candidates, new Comparator<Candidate>()
+		{
+			@Override
+			public int compare(Candidate a, Candidate b)
+			{
+				int c = Double.compare(a.maskBits, b.maskBits);
+				return c != 0 ? c : Integer.compare(a.index, b.index);
+			}
+		});
+		
+		Global.log().info(masks.size() + " masks, " + candidates.size() + " distinct selections of occurrences.");
+		
+		// * Evaluate the occurrence-dependent parts
+		Candidate best = null;
+		for(int start = 0; start < candidates.size(); start += numThreads)
+		{
+			if(best != null && base.labelSets() + candidates.get(start).maskBits > best.bits)
+				break;
+			
+			List<Callable<Candidate>> evaluations = new ArrayList<Callable<Candidate>>(numThreads);
+			for(final Candidate candidate : candidates.subList(start, Math.min(candidates.size(), start + numThreads)))
+				evaluations.add(new Callable<Candidate>()
+				{
+					@Override
+					public Candidate call()
+					{
+						MotifVarTags mv = new MotifVarTags(base, candidate.motif, candidate.occurrences);
+						candidate.bits = base.labelSets() + candidate.maskBits + mv.occurrenceBits();
+						
+						return candidate;
+					}
+				});
+			
+			for(Candidate candidate : Global.invokeAll(evaluations, numThreads))
+				if(best == null || candidate.bits < best.bits || 
+						(candidate.bits == best.bits && candidate.index < best.index))
+					best = candidate;
+		}
+		
+		return best;
+	}
+	
+	private static void keep(Map<BitSet, Candidate> best, Candidate candidate)
+	{
+		Candidate current = best.get(candidate.selection);
+		if(current == null || candidate.maskBits < current.maskBits || 
+				(candidate.maskBits == current.maskBits && candidate.index < current.index))
+			best.put(candidate.selection, candidate);
+	}
+	
+	private static Candidate candidate(int index, DGraph<String> sub, BitString mask, 
+			List<List<Integer>> occurrences, List<List<String>> sequences, MotifVarTags base)
+	{
+		Candidate candidate = new Candidate();
+		candidate.index = index;
+		
+		candidate.occurrences = new ArrayList<List<Integer>>();
+		candidate.labels = new ArrayList<List<String>>();
+		candidate.selection = new BitSet(occurrences.size());
+		
+		candidate.motif = mask(sub, mask, occurrences, sequences, 
+				candidate.occurrences, candidate.labels, candidate.selection);
+		
+		candidate.maskBits = new MotifVarTags(base, candidate.motif, candidate.occurrences).maskBits();
+		
+		return candidate;
+	}
+	
+	/**
+	 * A masked motif, with the occurrences it selects.
+	 */
+	private static class Candidate
+	{
+		DTGraph<String, String> motif;
+		List<List<Integer>> occurrences;
+		List<List<String>> labels;
+		// * The indices of the selected occurrences
+		BitSet selection;
+		// * The index of the mask, used to break ties
+		int index;
+		
+		double maskBits;
+		double bits;
+	}
+	
 	/**
 	 * Returns the labels of the given occurrence in canonical order
 	 * 
@@ -356,11 +506,34 @@ public class DTMotifExtractor
 			DTGraph<String, String> data, List<List<Integer>> occurrences,
 			List<List<Integer>> occurrencesOut, List<List<String>> labels)
 	{
+		List<List<String>> sequences = new ArrayList<List<String>>(occurrences.size());
+		for (List<Integer> occurrence : occurrences)
+			sequences.add(labels(data, occurrence));
+		
+		DTGraph<String, String> motif = mask(sub, mask, occurrences, sequences, 
+				occurrencesOut, labels, new BitSet());
+		
+		System.out.print(occurrencesOut.size());
 		
+		return motif;
+	}
+	
+	/**
+	 * Applies the mask, using the precomputed label sequences of the 
+	 * occurrences.
+	 * 
+	 * @param selection The indices of the matching occurrences will be set in
+	 * 	this bitset.
+	 */
+	private static DTGraph<String, String> mask(DGraph<String> sub, BitString mask,
+			List<List<Integer>> occurrences, List<List<String>> sequences, 
+			List<List<Integer>> occurrencesOut, List<List<String>> labels, 
+			BitSet selection)
+	{
 		FrequencyModel<List<String>> fm = new FrequencyModel<List<String>>();
-		for (List<Integer> occurrence : occurrences)
+		for (List<String> labelSequence : sequences)
 		{
-			List<String> sequence = labels(data, occurrence);
+			List<String> sequence = new ArrayList<String>(labelSequence);
 						
 			assert(sequence.size() == mask.size());
 			for(int i : series(mask.size()))
@@ -373,9 +546,9 @@ public class DTMotifExtractor
 		List<String> choice = fm.maxToken();
 		
 		// * Filter out the non-matching occurrences
-		for (List<Integer> occurrence : occurrences)
+		for (int o : series(occurrences.size()))
 		{
-			List<String> sequence = labels(data, occurrence);
+			List<String> sequence = sequences.get(o);
 			
 			boolean matches = true;
 			for(int i : series(sequence.size()))
@@ -387,12 +560,11 @@ public class DTMotifExtractor
 			
 			if(matches)
 			{
-				occurrencesOut.add(occurrence);
+				occurrencesOut.add(occurrences.get(o));
 				labels.add(sequence);
+				selection.set(o);
 			}
 		}
-		
-		System.out.print(occurrencesOut.size());
 
 		// * Copy the subgraph and mask out the 1s
 		return motif(sub, choice);
@@ -0,0 +1,323 @@
+package org.nodes.motifs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.nodes.DGraph;
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.NeighborCursor;
+import org.nodes.UGraph;
+import org.nodes.util.Functions;
+
+/**
+ * Counts all connected induced subgraphs of a given size exactly, by their
+ * canonical form.
+ *
+ * The subgraphs are enumerated with the ESU algorithm (Wernicke, 2006), which
+ * finds every connected set of nodes exactly once, from its lowest node. The
+ * work is divided over the threads of the global executor by root node. Each
+ * task counts the canonical forms it finds (by their {@link MotifCode}s)
+ * privately, and the tasks are merged at the end.
+ *
+ * For directed graphs, a set of nodes is connected if it is weakly connected.
+ * Tags are ignored.
+ *
+ * Since the number of subgraphs grows very quickly with their size, this is
+ * meant for small sizes (3 to 6) and moderately sized graphs. For large graphs,
+ * use a sampling extractor like {@link UPlainMotifExtractor}.
+ *
+ * @param <L>
+ */
+public class MotifCensus<L extends Comparable<L>>
+{
+	/**
+	 * The number of tasks per thread. More tasks than threads balances the
+	 * load, since some roots have much more work than others.
+	 */
+	public static final int TASKS_PER_THREAD = 16;
+
+	private Graph<L> data;
+	private int size;
+	private boolean directed;
+	private boolean record;
+
+	// * The distinct neighbors of each node, sorted
+	private int[][] neighbors;
+
+	private CanonicalCache<L> cache;
+
+	private Map<MotifCode, Counts> counts = new LinkedHashMap<MotifCode, Counts>();
+	private long total = 0;
+
+	/**
+	 * Counts the subgraphs of the given size without recording occurrences,
+	 * using Global.numThreads() threads.
+	 *
+	 * @param data An undirected or directed graph.
+	 * @param size
+	 */
+	public MotifCensus(Graph<L> data, int size)
+	{
+		this(data, size, false, Global.numThreads());
+	}
+
+	/**
+	 * @param data An undirected or directed graph.
+	 * @param size The number of nodes in the subgraphs.
+	 * @param recordOccurrences Whether to record all occurrences. This
+	 * 	requires memory proportional to the number of subgraphs.
+	 * @param numThreads
+	 */
+	public MotifCensus(Graph<L> data, int size, boolean recordOccurrences, int numThreads)
+	{
+		if(size < 1)
+			throw new IllegalArgumentException("Size ("+size+") must be positive.");
+		if(! (data instanceof UGraph<?> || data instanceof DGraph<?>))
+			throw new IllegalArgumentException("Graph type ("+data.getClass()+") not recognized.");
+
+		this.data = data;
+		this.size = size;
+		this.directed = data instanceof DGraph<?>;
+		this.record = recordOccurrences;
+
+		cache = new CanonicalCache<L>(new Functions.NaturalComparator<L>());
+
+		neighbors = NeighborCursor.distinctNeighbors(data);
+		run(numThreads);
+	}
+
+	private void run(int numThreads)
+	{
+		int n = data.size();
+		int numTasks = Math.max(1, Math.min(n, numThreads * TASKS_PER_THREAD));
+
+		List<Task> tasks = new ArrayList<Task>(numTasks);
+		for(int t = 0; t < numTasks; t++)
+			tasks.add(new Task(t, numTasks));
+
+		for(Task task : Global.invokeAll(tasks, numThreads))
+			merge(task);
+	}
+
+	private void merge(Task task)
+	{
+		for(Map.Entry<MotifCode, Counts> entry : task.counts.entrySet())
+		{
+			Counts mine = counts.get(entry.getKey());
+
+			if(mine == null)
+				counts.put(entry.getKey(), entry.getValue());
+			else
+				mine.add(entry.getValue());
+
+			total += entry.getValue().count;
+		}
+
+		task.counts = null;
+	}
+
+	/**
+	 * The canonical forms found, in order of decreasing count.
+	 */
+	public List<MotifCode> motifs()
+	{
+		List<MotifCode> motifs = new ArrayList<MotifCode>(counts.keySet());
+
+		Collections.sort(motifs, new Comparator<MotifCode>()
+		{
+			@Override
+			public int compare(MotifCode a, MotifCode b)
+			{
+				return - Long.compare(counts.get(a).count, counts.get(b).count);
+			}
+		});
+
+		return motifs;
+	}
+
+	/**
+	 * The number of occurrences of the given motif.
+	 */
+	public long count(MotifCode motif)
+	{
+		Counts c = counts.get(motif);
+
+		return c == null ? 0 : c.count;
+	}
+
+	/**
+	 * The number of occurrences of the given motif, which should be in
+	 * canonical order.
+	 */
+	public long count(Graph<L> motif)
+	{
+		return count(MotifCode.of(motif));
+	}
+
+	/**
+	 * The occurrences of the given motif, each as a list of node indices in
+	 * canonical order. Occurrences may overlap.
+	 *
+	 * @throws IllegalStateException If occurrences were not recorded.
+	 */
+	public List<List<Integer>> occurrences(MotifCode motif)
+	{
+		if(! record)
+			throw new IllegalStateException("Occurrences were not recorded.");
+
+		Counts c = counts.get(motif);
+
+		return c == null ? Collections.<List<Integer>>emptyList() : c.occurrences;
+	}
+
+	/**
+	 * The total number of connected subgraphs of the given size.
+	 */
+	public long total()
+	{
+		return total;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	private static class Counts
+	{
+		long count = 0;
+		List<List<Integer>> occurrences;
+
+		public Counts(boolean record)
+		{
+			if(record)
+				occurrences = new ArrayList<List<Integer>>();
+		}
+
+		public void add(Counts other)
+		{
+			count += other.count;
+
+			if(occurrences != null)
+				occurrences.addAll(other.occurrences);
+		}
+	}
+
+	/**
+	 * Enumerates the subgraphs rooted at every numTasks-th node, starting at
+	 * 'first'.
+	 */
+	private class Task implements Callable<Task>
+	{
+		private int first, step;
+
+		private Map<MotifCode, Counts> counts = new LinkedHashMap<MotifCode, Counts>();
+
+		// * For each node, the number of nodes in the current subgraph that are
+		//   the node itself or a neighbor of it
+		private int[] blocked;
+		private int[] subgraph;
+
+		public Task(int first, int step)
+		{
+			this.first = first;
+			this.step = step;
+		}
+
+		@Override
+		public Task call()
+		{
+			blocked = new int[data.size()];
+			subgraph = new int[size];
+
+			for(int root = first; root < data.size(); root += step)
+			{
+				int[] extension = new int[neighbors[root].length];
+				int num = 0;
+				for(int neighbor : neighbors[root])
+					if(neighbor > root)
+						extension[num++] = neighbor;
+
+				subgraph[0] = root;
+				block(root, 1);
+				extend(1, extension, num, root);
+				block(root, -1);
+			}
+
+			// * Only the running tasks need their buffers
+			blocked = null;
+
+			return this;
+		}
+
+		/**
+		 * @param depth The number of nodes in the subgraph.
+		 * @param extension The candidates for extending the subgraph.
+		 * @param num The number of candidates.
+		 */
+		private void extend(int depth, int[] extension, int num, int root)
+		{
+			if(depth == size)
+			{
+				observe();
+				return;
+			}
+
+			while(num > 0)
+			{
+				int w = extension[--num];
+
+				// * The new extension: the remaining candidates, and the
+				//   exclusive neighbors of w
+				int[] next = new int[num + neighbors[w].length];
+				System.arraycopy(extension, 0, next, 0, num);
+				int nextNum = num;
+
+				for(int u : neighbors[w])
+					if(u > root && blocked[u] == 0)
+						next[nextNum++] = u;
+
+				subgraph[depth] = w;
+				block(w, 1);
+				extend(depth + 1, next, nextNum, root);
+				block(w, -1);
+			}
+		}
+
+		private void block(int node, int delta)
+		{
+			blocked[node] += delta;
+			for(int neighbor : neighbors[node])
+				blocked[neighbor] += delta;
+		}
+
+		@SuppressWarnings("unchecked")
+		private void observe()
+		{
+			List<Integer> indices = new ArrayList<Integer>(size);
+			for(int node : subgraph)
+				indices.add(node);
+
+			CanonicalCache.Entry<?> entry = directed
+					? cache.directed((DGraph<L>) data, indices)
+					: cache.undirected((UGraph<L>) data, indices);
+
+			Counts c = counts.get(entry.code());
+			if(c == null)
+			{
+				c = new Counts(record);
+				counts.put(entry.code(), c);
+			}
+
+			c.count++;
+			if(record)
+				c.occurrences.add(entry.order().apply(indices));
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package org.nodes.motifs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.nodes.DGraph;
+import org.nodes.DLink;
+import org.nodes.DTGraph;
+import org.nodes.Graph;
+import org.nodes.Link;
+import org.nodes.MapDTGraph;
+import org.nodes.MapUTGraph;
+import org.nodes.Node;
+import org.nodes.UGraph;
+import org.nodes.UTGraph;
+
+/**
+ * A compact, immutable key for a canonical motif: its size, whether it is
+ * directed, the adjacency matrix packed into bits and the node labels.
+ *
+ * For undirected graphs the upper triangle of the adjacency matrix (including
+ * the diagonal) is stored, for directed graphs the whole matrix, row by row.
+ * Graphs with multiple links between the same nodes also store the link
+ * counts.
+ *
+ * Hashing and comparing codes is much cheaper than hashing and comparing
+ * graphs. Two codes are equal if and only if the graphs they were made from
+ * are equal, so the graph they represent should be in canonical order (see
+ * {@link CanonicalCache}) for equal codes to mean isomorphic graphs.
+ */
+public final class MotifCode
+{
+	private int size;
+	private boolean directed;
+	private long[] bits;
+	// * The link count for each pair, or null if no pair has more than one link
+	private int[] multiplicities;
+	private List<Object> labels;
+
+	private int numLinks;
+	private int hash;
+
+	private MotifCode(int size, boolean directed, int[] counts, List<Object> labels)
+	{
+		this.size = size;
+		this.directed = directed;
+		this.labels = labels;
+
+		bits = new long[(counts.length + 63) / 64];
+		for(int i = 0; i < counts.length; i++)
+		{
+			if(counts[i] > 0)
+				bits[i / 64] |= 1L << (i % 64);
+			if(counts[i] > 1)
+				multiplicities = counts;
+
+			numLinks += counts[i];
+		}
+
+		hash = 31 * (31 * (31 * size + (directed ? 1 : 0)) + Arrays.hashCode(bits)) + labels.hashCode();
+	}
+
+	/**
+	 * Returns the code for the given graph.
+	 *
+	 * @param graph An undirected or directed graph. Tags are ignored.
+	 * @return
+	 */
+	public static MotifCode of(Graph<?> graph)
+	{
+		int n = graph.size();
+
+		List<Object> labels = new ArrayList<Object>(n);
+		for(Node<?> node : graph.nodes())
+			labels.add(node.label());
+		labels = Collections.unmodifiableList(labels);
+
+		if(graph instanceof DGraph<?>)
+		{
+			int[] counts = new int[n * n];
+			for(DLink<?> link : ((DGraph<?>) graph).links())
+				counts[link.from().index() * n + link.to().index()]++;
+
+			return new MotifCode(n, true, counts, labels);
+		}
+
+		if(graph instanceof UGraph<?>)
+		{
+			int[] counts = new int[n * (n + 1) / 2];
+			for(Link<?> link : graph.links())
+			{
+				int i = link.first().index(), j = link.second().index();
+				counts[pair(Math.min(i, j), Math.max(i, j), n)]++;
+			}
+
+			return new MotifCode(n, false, counts, labels);
+		}
+
+		throw new IllegalArgumentException("Graph type ("+graph.getClass()+") not recognized.");
+	}
+
+	/**
+	 * The index of the pair (i, j), i <= j, in the upper triangle.
+	 */
+	private static int pair(int i, int j, int n)
+	{
+		return i * n - i * (i - 1) / 2 + (j - i);
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public int numLinks()
+	{
+		return numLinks;
+	}
+
+	public boolean directed()
+	{
+		return directed;
+	}
+
+	public List<Object> labels()
+	{
+		return labels;
+	}
+
+	private int count(int index)
+	{
+		if(multiplicities != null)
+			return multiplicities[index];
+
+		return (int) (bits[index / 64] >>> (index % 64)) & 1;
+	}
+
+	/**
+	 * Reconstructs the undirected graph represented by this code.
+	 */
+	@SuppressWarnings("unchecked")
+	public <L> UGraph<L> toUGraph()
+	{
+		if(directed)
+			throw new IllegalStateException("This code represents a directed graph.");
+
+		UTGraph<L, String> graph = new MapUTGraph<L, String>();
+		for(Object label : labels)
+			graph.add((L) label);
+
+		for(int i = 0; i < size; i++)
+			for(int j = i; j < size; j++)
+				for(int c = count(pair(i, j, size)); c > 0; c--)
+					graph.get(i).connect(graph.get(j));
+
+		return graph;
+	}
+
+	/**
+	 * Reconstructs the directed graph represented by this code.
+	 */
+	@SuppressWarnings("unchecked")
+	public <L> DGraph<L> toDGraph()
+	{
+		if(! directed)
+			throw new IllegalStateException("This code represents an undirected graph.");
+
+		DTGraph<L, String> graph = new MapDTGraph<L, String>();
+		for(Object label : labels)
+			graph.add((L) label);
+
+		for(int i = 0; i < size; i++)
+			for(int j = 0; j < size; j++)
+				for(int c = count(i * size + j); c > 0; c--)
+					graph.get(i).connect(graph.get(j));
+
+		return graph;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof MotifCode))
+			return false;
+
+		MotifCode other = (MotifCode) obj;
+
+		return hash == other.hash
+				&& size == other.size
+				&& directed == other.directed
+				&& Arrays.equals(bits, other.bits)
+				&& Arrays.equals(multiplicities, other.multiplicities)
+				&& labels.equals(other.labels);
+	}
+
+	@Override
+	public String toString()
+	{
+		return (directed ? "d" : "u") + size + ":" + Arrays.toString(bits) + labels;
+	}
+}
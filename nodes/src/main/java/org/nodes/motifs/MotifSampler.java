@@ -0,0 +1,153 @@
+package org.nodes.motifs;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.random.SimpleSubgraphGenerator;
+import org.nodes.util.FrequencyModel;
+import org.nodes.util.Generators;
+
+/**
+ * Samples subgraphs with a {@link SimpleSubgraphGenerator} and counts their
+ * canonical forms, for the plain motif extractors. The canonical forms are 
+ * identified by their {@link MotifCode}s.
+ *
+ * The samples are divided into chunks of {@link #CHUNK} samples. Each chunk has
+ * its own random number generator, seeded from Global.random() in order, and
+ * collects its own frequencies and occurrences. The chunks are divided over the
+ * threads of the global executor and merged in order, so the result depends
+ * only on the seed, not on the number of threads.
+ *
+ * @param <G> The type of the canonical graphs.
+ */
+class MotifSampler<G>
+{
+	/**
+	 * The number of samples in a chunk.
+	 */
+	public static final int CHUNK = 10000;
+
+	public static interface Canonizer<G>
+	{
+		/**
+		 * Returns the canonical form of the subgraph induced by the given
+		 * nodes. This method is called from multiple threads at once.
+		 */
+		public CanonicalCache.Entry<G> canonical(List<Integer> indices);
+	}
+
+	private Graph<?> data;
+	private int minSize, maxSize;
+	private Canonizer<G> canonizer;
+
+	private FrequencyModel<MotifCode> fm = new FrequencyModel<MotifCode>();
+	private Map<MotifCode, List<List<Integer>>> occurrences = new LinkedHashMap<MotifCode, List<List<Integer>>>();
+
+	// * The number of samples merged so far
+	private int merged = 0;
+
+	/**
+	 * @param data
+	 * @param minSize The minimum size of the sampled subgraphs (inclusive).
+	 * @param maxSize The maximum size of the sampled subgraphs (inclusive).
+	 * @param canonizer
+	 */
+	public MotifSampler(Graph<?> data, int minSize, int maxSize, Canonizer<G> canonizer)
+	{
+		this.data = data;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.canonizer = canonizer;
+	}
+
+	/**
+	 * Draws the given number of samples, using at most numThreads threads.
+	 */
+	public void sample(int samples, int numThreads)
+	{
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		for(int start = 0; start < samples; start += CHUNK)
+			chunks.add(new Chunk(Math.min(CHUNK, samples - start), Global.random().nextLong()));
+
+		for(Chunk chunk : Global.invokeAll(chunks, numThreads))
+			merge(chunk);
+	}
+
+	private void merge(Chunk chunk)
+	{
+		for(MotifCode sub : chunk.occurrences.keySet())
+		{
+			List<List<Integer>> subOccurrences = chunk.occurrences.get(sub);
+
+			if(! occurrences.containsKey(sub))
+				occurrences.put(sub, new ArrayList<List<Integer>>());
+			occurrences.get(sub).addAll(subOccurrences);
+
+			fm.add(sub, subOccurrences.size());
+		}
+		chunk.occurrences = null;
+
+		merged += chunk.samples;
+		Global.log().info("Samples finished: " + merged);
+	}
+
+	/**
+	 * The frequencies of the codes of the sampled canonical graphs.
+	 */
+	public FrequencyModel<MotifCode> frequencies()
+	{
+		return fm;
+	}
+
+	/**
+	 * For the code of each sampled canonical graph, the sampled occurrences, with the
+	 * indices in canonical order.
+	 */
+	public Map<MotifCode, List<List<Integer>>> occurrences()
+	{
+		return occurrences;
+	}
+
+	private class Chunk implements Callable<Chunk>
+	{
+		private int samples;
+		private long seed;
+
+		private Map<MotifCode, List<List<Integer>>> occurrences = new LinkedHashMap<MotifCode, List<List<Integer>>>();
+
+		public Chunk(int samples, long seed)
+		{
+			this.samples = samples;
+			this.seed = seed;
+		}
+
+		@Override
+		public Chunk call()
+		{
+			Random random = new Random(seed);
+			SimpleSubgraphGenerator gen = new SimpleSubgraphGenerator(
+					data, Generators.uniform(minSize, maxSize + 1, random), random);
+
+			for(int i = 0; i < samples; i++)
+			{
+				List<Integer> indices = gen.generate();
+
+				CanonicalCache.Entry<G> canonical = canonizer.canonical(indices);
+				MotifCode sub = canonical.code();
+
+				if(! occurrences.containsKey(sub))
+					occurrences.put(sub, new ArrayList<List<Integer>>());
+
+				occurrences.get(sub).add(canonical.order().apply(indices));
+			}
+
+			return this;
+		}
+	}
+}
@@ -9,6 +9,7 @@ import static org.nodes.util.Series.series;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -63,11 +64,16 @@ public class MotifVarTags
 	private List<List<Integer>> occurrences; 
 
 	// - This list holds the index of the occurrence the given node belongs to
-	//
-	private List<Integer> inOccurrence;
+	//   (computed when first needed)
+	private List<Integer> inOccurrence = null;
 	private int replacedNodes = 0;
 	private int numLabels;
 	
+	// * The parts that depend only on the graph, shared between instances 
+	//   for the same graph
+	private Set<String> labels, tags;
+	private Double labelSetBits = null;
+	
 	private boolean specifySubstitutions;
 	
 	// * whether to reset the wiring KT estimator for each occurrence
@@ -93,7 +99,42 @@ public class MotifVarTags
 		this.motif = motif;
 		this.occurrences = occurrences;
 		this.specifySubstitutions = specifySubstitutions;
-
+		
+		labels = new HashSet<String>(graph.labels());
+		tags = new HashSet<String>(graph.tags());
+		
+		numLabels = labels.size();
+	}
+	
+	/**
+	 * Creates an object for the same graph as 'base', with a different motif
+	 * and occurrences. The parts of the code that depend only on the graph 
+	 * (the label and tag sets) are taken from 'base', so that this constructor
+	 * takes constant time.
+	 */
+	public MotifVarTags(
+			MotifVarTags base,
+			DTGraph<String, String> motif,
+			List<List<Integer>> occurrences)
+	{
+		this.graph = base.graph;
+		this.motif = motif;
+		this.occurrences = occurrences;
+		this.specifySubstitutions = base.specifySubstitutions;
+		this.reset = base.reset;
+		
+		labels = base.labels;
+		tags = base.tags;
+		labelSetBits = base.labelSets();
+		
+		numLabels = base.numLabels;
+	}
+	
+	private void index()
+	{
+		if(inOccurrence != null)
+			return;
+		
 		inOccurrence = new ArrayList<Integer>(graph.size());
 		for(int i : series(graph.size()))
 			inOccurrence.add(null);
@@ -104,8 +145,6 @@ public class MotifVarTags
 				inOccurrence.set(i, occIndex);
 				replacedNodes++;
 			}
-		
-		numLabels = graph.labels().size();
 	}
 
 	public double size()
@@ -125,6 +164,25 @@ public class MotifVarTags
 		return bits;
 	}
 	
+	/**
+	 * The parts of the code that depend on the labels and tags of the motif: 
+	 * the motif itself and the substitutions.
+	 */
+	public double maskBits()
+	{
+		return motif() + labelSubstitutions() + tagSubstitutions();
+	}
+	
+	/**
+	 * The parts of the code that depend only on which occurrences are 
+	 * replaced (and the size of the motif): the silhouette graph and the
+	 * wiring.
+	 */
+	public double occurrenceBits()
+	{
+		return silhouetteStructure() + silhouetteLabels() + wiring();
+	}
+	
 	/**
 	 * The cost of storing the motif
 	 * 
@@ -140,18 +198,18 @@ public class MotifVarTags
 		bits += EdgeListCompressor.directed(motif); 
 		
 		// * Store the labels
-		OnlineModel<String> labelModel = new OnlineModel<String>(graph.labels());
-		labelModel.addToken(VARIABLE_SYMBOL);
-		
+		List<String> motifLabels = new ArrayList<String>(motif.size());
 		for(DNode<String> node : motif.nodes())
-			bits += - Functions.log2(labelModel.observe(node.label()));
+			motifLabels.add(node.label());
 		
-		// * Store the tags
-		OnlineModel<String> tagModel = new OnlineModel<String>(graph.tags());
-		tagModel.addToken(VARIABLE_SYMBOL);
+		bits += kt(motifLabels, labels, VARIABLE_SYMBOL);
 		
+		// * Store the tags
+		List<String> motifTags = new ArrayList<String>(motif.numLinks());
 		for(DTLink<String, String> link : motif.links())
-			bits += - Functions.log2(tagModel.observe(link.tag()));
+			motifTags.add(link.tag());
+		
+		bits += kt(motifTags, tags, VARIABLE_SYMBOL);
 		
 		return bits;
 	}
@@ -163,6 +221,14 @@ public class MotifVarTags
 	 * @return
 	 */
 	public double labelSets()
+	{
+		if(labelSetBits == null)
+			labelSetBits = computeLabelSets();
+		
+		return labelSetBits;
+	}
+	
+	private double computeLabelSets()
 	{
 		GZIPCompressor<List<Object>> compressor = new GZIPCompressor<List<Object>>();
 		
@@ -191,6 +257,8 @@ public class MotifVarTags
 	 */
 	public double silhouetteStructure()
 	{
+		index();
+		
 		double bits = 0;
 
 		// * Store the subbed graph
@@ -264,6 +332,8 @@ public class MotifVarTags
 
 	public double silhouetteLabels()
 	{
+		index();
+		
 		// * Labels
 		double bits = 0;
 		
@@ -344,17 +414,12 @@ public class MotifVarTags
 			}
 			
 			// - Store the sequence of terminals
-			OnlineModel<String> model = 
-					specifySubstitutions ? 
-					new OnlineModel<String>(terminals) :
-					new OnlineModel<String>(graph.labels());	
-			
 			int index = indices.get(i);
+			List<String> sequence = new ArrayList<String>(occurrences.size());
 			for (List<Integer> occurrence : occurrences)
-			{
-				String label = graph.get(occurrence.get(index)).label();
-				bits += - log2(model.observe(label));
-			}
+				sequence.add(graph.get(occurrence.get(index)).label());
+			
+			bits += kt(sequence, specifySubstitutions ? terminals : labels, null);
 		}
 
 		return bits;
@@ -429,18 +494,56 @@ public class MotifVarTags
 			if(specifySubstitutions)
 			{
 				bits += Functions.prefix(set.size());
-				bits += set.size() * log2(graph.tags().size());
+				bits += set.size() * log2(tags.size());
 			}
 			
 			// Store the sequence
 			// We know the length of sequence already
-			OnlineModel<String> model = 
-					specifySubstitutions ?
-					new OnlineModel<String>(set) :
-					new OnlineModel<String>(graph.tags());
+			bits += kt(sequence, specifySubstitutions ? set : tags, null);
+		}
+		
+		return bits;
+	}
+	
+	/**
+	 * The number of bits required to store the sequence with a KT estimator 
+	 * over the given alphabet, plus the extra symbol if it isn't null. This 
+	 * gives the same result as an OnlineModel over the alphabet, but takes 
+	 * time proportional to the length of the sequence rather than the size of
+	 * the alphabet.
+	 */
+	private static double kt(List<String> sequence, Set<String> alphabet, String extra)
+	{
+		for(String symbol : sequence)
+			if(! (alphabet.contains(symbol) || (extra != null && extra.equals(symbol))))
+			{
+				// * Unknown symbols are handled by the OnlineModel itself
+				OnlineModel<String> model = new OnlineModel<String>(alphabet);
+				if(extra != null)
+					model.addToken(extra);
+				
+				double bits = 0.0;
+				for(String s : sequence)
+					bits += - Functions.log2(model.observe(s));
+				
+				return bits;
+			}
+		
+		int distinct = alphabet.size() + (extra == null || alphabet.contains(extra) ? 0 : 1);
+		
+		Map<String, Integer> frequencies = new HashMap<String, Integer>();
+		double bits = 0.0;
+		int total = 0;
+		
+		for(String symbol : sequence)
+		{
+			Integer frequency = frequencies.get(symbol);
+			int f = frequency == null ? 0 : frequency;
+			
+			bits += - Functions.log2((f + 0.5) / (total + 0.5 * distinct));
 			
-			for(String symbol : sequence)
-				bits += - log2(model.observe(symbol));
+			frequencies.put(symbol, f + 1);
+			total++;
 		}
 		
 		return bits;
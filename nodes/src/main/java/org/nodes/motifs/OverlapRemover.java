@@ -0,0 +1,153 @@
+package org.nodes.motifs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.NeighborCursor;
+
+/**
+ * Removes overlapping occurrences of motifs.
+ *
+ * For each motif, the occurrences are sorted by their exdegree (the number of
+ * links from the occurrence to nodes outside it), and taken greedily: an
+ * occurrence is kept if none of its nodes is used by an occurrence kept
+ * before it. Occurrences of different motifs may overlap.
+ *
+ * The neighbors of all nodes are read once, into sorted int arrays, so that
+ * the exdegrees can be computed without touching the graph. Each motif keeps
+ * track of the nodes taken in its own bitset, so that the motifs can be
+ * processed in parallel.
+ */
+public class OverlapRemover
+{
+	// * The distinct neighbors of each node, sorted
+	private int[][] neighbors;
+
+	public OverlapRemover(Graph<?> data)
+	{
+		neighbors = NeighborCursor.distinctNeighbors(data);
+	}
+
+	/**
+	 * The number of links from the occurrence to nodes outside it. Each
+	 * neighbor is counted once per node in the occurrence.
+	 */
+	public int exDegree(List<Integer> occurrence)
+	{
+		int[] nodes = new int[occurrence.size()];
+		for(int i = 0; i < nodes.length; i++)
+			nodes[i] = occurrence.get(i);
+
+		return exDegree(nodes);
+	}
+
+	private int exDegree(int[] occurrence)
+	{
+		int sum = 0;
+		for(int node : occurrence)
+		{
+			sum += neighbors[node].length;
+
+			for(int other : occurrence)
+				if(Arrays.binarySearch(neighbors[node], other) >= 0)
+					sum--;
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Removes the overlapping occurrences of a single motif.
+	 *
+	 * @param occurrences
+	 * @return The kept occurrences, in order of increasing exdegree.
+	 */
+	public List<List<Integer>> remove(List<List<Integer>> occurrences)
+	{
+		int n = occurrences.size();
+
+		// * Sort by exdegree, then by position, using one primitive array
+		long[] order = new long[n];
+		int[][] arrays = new int[n][];
+		for(int i = 0; i < n; i++)
+		{
+			List<Integer> occurrence = occurrences.get(i);
+
+			arrays[i] = new int[occurrence.size()];
+			for(int j = 0; j < arrays[i].length; j++)
+				arrays[i][j] = occurrence.get(j);
+
+			order[i] = ((long) exDegree(arrays[i]) << 32) | i;
+		}
+
+		Arrays.sort(order);
+
+		BitSet taken = new BitSet(neighbors.length);
+		List<List<Integer>> kept = new ArrayList<List<Integer>>();
+
+		for(long entry : order)
+		{
+			int i = (int) entry;
+
+			boolean free = true;
+			for(int node : arrays[i])
+				if(taken.get(node))
+				{
+					free = false;
+					break;
+				}
+
+			if(! free)
+				continue;
+
+			for(int node : arrays[i])
+				taken.set(node);
+
+			kept.add(occurrences.get(i));
+		}
+
+		return kept;
+	}
+
+	/**
+	 * Removes the overlapping occurrences of the given motifs, using at most
+	 * numThreads threads.
+	 *
+	 * @param occurrences The occurrences of each motif.
+	 * @param motifs The motifs to process.
+	 * @return A map from each motif to its kept occurrences, in the order of
+	 * 	'motifs'.
+	 */
+	public <K> Map<K, List<List<Integer>>> remove(
+			final Map<K, List<List<Integer>>> occurrences, Collection<K> motifs, int numThreads)
+	{
+		List<K> keys = new ArrayList<K>(motifs);
+
+		List<Callable<List<List<Integer>>>> tasks = new ArrayList<Callable<List<List<Integer>>>>(keys.size());
+		for(final K motif : keys)
+			tasks.add(new Callable<List<List<Integer>>>()
+			{
+				@Override
+				public List<List<Integer>> call()
+				{
+					return remove(occurrences.get(motif));
+				}
+			});
+
+		List<List<List<Integer>>> kept = Global.invokeAll(tasks, numThreads);
+
+		Map<K, List<List<Integer>>> result = new LinkedHashMap<K, List<List<Integer>>>();
+		for(int i = 0; i < keys.size(); i++)
+			result.put(keys.get(i), kept.get(i));
+
+		return result;
+	}
+}
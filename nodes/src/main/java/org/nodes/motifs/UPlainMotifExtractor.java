@@ -29,10 +29,8 @@ import org.nodes.Graph;
 import org.nodes.Graphs;
 import org.nodes.MapDTGraph;
 import org.nodes.Node;
-import org.nodes.Subgraph;
 import org.nodes.UGraph;
 import org.nodes.UNode;
-import org.nodes.algorithms.Nauty;
 import org.nodes.compression.EdgeListCompressor;
 import org.nodes.compression.Functions;
 import org.nodes.compression.NeighborListCompressor;
@@ -48,7 +46,6 @@ import org.nodes.util.Compressor;
 import org.nodes.util.FrequencyModel;
 import org.nodes.util.Generator;
 import org.nodes.util.Generators;
-import org.nodes.util.Order;
 import org.nodes.util.Series;
 
 
@@ -73,12 +70,14 @@ public class UPlainMotifExtractor<L extends Comparable<L>>
 
 	private List<UGraph<L>> tokens;
 
-	private Generator<Integer> intGen;
+	private int minSize, maxSize;
+	private int numThreads;
 	
 	private MotifVarTags mvTop = null;
 	
-	private FrequencyModel<UGraph<L>> fm;
-	private Map<UGraph<L>, List<List<Integer>>> occurrences;
+	// * Motifs are identified by the codes of their canonical graphs
+	private FrequencyModel<MotifCode> fm;
+	private Map<MotifCode, List<List<Integer>>> occurrences;
 	private int minFreq;
 	
 	
@@ -98,13 +97,30 @@ public class UPlainMotifExtractor<L extends Comparable<L>>
 			int minSize,
 			int maxSize,
 			int minFreq)
+	{	
+		this(data, numSamples, minSize, maxSize, minFreq, Global.numThreads());
+	}
+	
+	/**
+	 * @param numThreads The number of threads to sample with. The result does
+	 * 	not depend on the number of threads.
+	 */
+	public UPlainMotifExtractor(
+			UGraph<L> data,
+			int numSamples,
+			int minSize,
+			int maxSize,
+			int minFreq, 
+			int numThreads)
 	{	
 		this.data = data;
 		this.samples = numSamples;
 		this.minFreq = minFreq;
+		this.numThreads = numThreads;
 		
 		comparator = new Functions.NaturalComparator<L>();
-		intGen = Generators.uniform(minSize, maxSize + 1);
+		this.minSize = minSize;
+		this.maxSize = maxSize;
 		
 		run();
 	}
@@ -114,113 +130,61 @@ public class UPlainMotifExtractor<L extends Comparable<L>>
 			int numSamples,
 			int size)
 	{
-		this.data = data;
-		this.samples = numSamples;
-		
-		comparator = new Functions.NaturalComparator<L>();
-		intGen = Generators.uniform(size, size+1);
-		
-		run();
+		this(data, numSamples, size, size, 0);
 	}
 
 	private void run()
 	{
 		Global.log().info("Sampling motifs");		
-		fm = new FrequencyModel<UGraph<L>>();
-
-		// * The (overlapping) instances
-		occurrences = new LinkedHashMap<UGraph<L>, List<List<Integer>>>();
 
-		SimpleSubgraphGenerator gen = 
-			new SimpleSubgraphGenerator(data, intGen);
+		final CanonicalCache<L> cache = new CanonicalCache<L>(comparator);
+		
+		MotifSampler<UGraph<L>> sampler = new MotifSampler<UGraph<L>>(data, minSize, maxSize, 
+			new MotifSampler.Canonizer<UGraph<L>>()
+			{
+				@Override
+				public CanonicalCache.Entry<UGraph<L>> canonical(List<Integer> indices)
+				{
+					return cache.undirected(data, indices);
+				}
+			});
 		
 		Global.log().info("Start sampling.");
-		for (int i : Series.series(samples))
-		{
-			if (i % 10000 == 0)
-				System.out.println("Samples finished: " + i);
-
-			List<Integer> indices = gen.generate();
-			
-			UGraph<L> sub = Subgraph.uSubgraphIndices(data, indices);
-
-			// * Reorder nodes to canonical ordering
-			Order canonical = Nauty.order(sub, comparator);
-			sub = Graphs.reorder(sub, canonical);
-			
-			List<Integer> occurrence = canonical.apply(indices); 
-			
-			fm.add(sub); // no need for a correction as in normal motif sampling
-			
-			// * record the occurrence
-			if (!occurrences.containsKey(sub))
-				occurrences.put(sub, new ArrayList<List<Integer>>());
-
-			occurrences.get(sub).add(occurrence);
-		}
+		sampler.sample(samples, numThreads);
+		
+		// * The (overlapping) instances
+		fm = sampler.frequencies();
+		occurrences = sampler.occurrences();
+		
+		Global.log().info("Finished sampling. " + cache);
 		
 		Global.log().info("Removing overlapping occurrences.");
 		// * Remove overlapping occurrences 
 		//   (keep the ones with the lowest exdegrees)
-		FrequencyModel<UGraph<L>> newFm = 
-				new FrequencyModel<UGraph<L>>();
-		Map<UGraph<L>, List<List<Integer>>> newOccurrences = 
-				new LinkedHashMap<UGraph<L>, List<List<Integer>>>();
+		OverlapRemover remover = new OverlapRemover(data);
 		
-		for(UGraph<L> sub : fm.tokens())
+		List<MotifCode> frequent = new ArrayList<MotifCode>();
+		for(MotifCode sub : fm.tokens())
 			if(fm.frequency(sub) >= minFreq)
-			{
-				// * A map from nodes to occurrences containing them
-				Map<UNode<L>, List<Occurrence>> map = 
-					new LinkedHashMap<UNode<L>, List<Occurrence>>();
-				
-				// * A list of all occurrences, sorted by exDegree
-				LinkedList<Occurrence> list = new LinkedList<Occurrence>();
-				
-				// - fill the map and list
-				for(List<Integer> occurrence : occurrences.get(sub))
-				{
-					Occurrence occ = new Occurrence(occurrence);
-					list.add(occ);
-					
-					for(int index : occurrence)
-					{
-						UNode<L> node = data.get(index);
-						
-						if(! map.containsKey(node))
-							map.put(node, new ArrayList<Occurrence>());	 
-						map.get(node).add(occ);
-					}
-				}
-				
-				Collections.sort(list);
-				
-				while(!list.isEmpty())
-				{
-					// * Find the first living occurrence, remove any dead ones
-					Occurrence head = list.poll();
-					
-					if(head.alive()) // * register it as a viable occurrence
-					{
-						newFm.add(sub);
-						if(! newOccurrences.containsKey(sub))
-							newOccurrences.put(sub, new ArrayList<List<Integer>>());
-						newOccurrences.get(sub).add(head.indices());
-						
-						// - now kill any occurrence that shares a node with this one.
-						for(int nodeIndex : head.indices())
-							for(Occurrence occ : map.get(data.get(nodeIndex)))
-								occ.kill();
-					} 
-				}
-			}
+				frequent.add(sub);
+		
+		Map<MotifCode, List<List<Integer>>> newOccurrences = 
+				remover.remove(occurrences, frequent, numThreads);
+		
+		FrequencyModel<MotifCode> newFm = 
+				new FrequencyModel<MotifCode>();
+		for(MotifCode sub : frequent)
+			newFm.add(sub, newOccurrences.get(sub).size());
 		
 		fm = newFm;
 		occurrences = newOccurrences;
 		
 		Global.log().info("Finished sampling motifs and removing overlaps.");
 
-		tokens = fm.sorted();
+		// * Convert the codes back to graphs, for reporting
+		tokens = new ArrayList<UGraph<L>>();
+		for(MotifCode code : fm.sorted())
+			tokens.add(code.<L>toUGraph());
 	}
 	
 	public List<UGraph<L>> subgraphs()
@@ -230,57 +194,12 @@ public class UPlainMotifExtractor<L extends Comparable<L>>
 	
 	public List<List<Integer>> occurrences(UGraph<L> subgraph)
 	{
-		return occurrences.get(subgraph);
-	}
-
-	private class Occurrence implements Comparable<Occurrence> {
-		
-		private boolean alive = true;
-		private List<Integer> indices;
-		private int id;
-		
-		private int exDegree;
-	
-		public Occurrence(List<Integer> indices)
-		{
-			this.indices = indices;
-			
-			exDegree = MotifCompressor.exDegree(data, indices);
-		}
-		
-		public boolean alive()
-		{
-			return alive;
-		}
-		
-		public void kill()
-		{
-			alive = false;
-		}
-		
-		public List<Integer> indices()
-		{
-			return indices;
-		}
-		
-		public int exDegree()
-		{
-			return exDegree;
-		}
-
-		@Override
-		public int compareTo(Occurrence other)
-		{
-			return Integer.compare(exDegree, other.exDegree);
-		}
-		
-
-		
+		return occurrences.get(MotifCode.of(subgraph));
 	}
 
 	public double frequency(UGraph<L> sub)
 	{
-		return fm.frequency(sub);
+		return fm.frequency(MotifCode.of(sub));
 	}
 	
 }
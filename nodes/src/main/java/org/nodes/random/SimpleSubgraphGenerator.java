@@ -9,6 +9,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.nodes.util.AbstractGenerator;
@@ -42,11 +43,34 @@ public class SimpleSubgraphGenerator extends AbstractGenerator<List<Integer>>
 	
 	private Graph<?> graph;
 	
+	// * If null, Global.random() is used
+	private Random random = null;
+	
 	public SimpleSubgraphGenerator(Graph<?> graph, Generator<Integer> ints)
 	{
 		this.graph = graph;
 		this.ints = ints;
 	}
+	
+	/**
+	 * A generator that draws its random numbers from the given random number
+	 * generator, instead of Global.random(). Generators with their own random
+	 * number generators can be used from different threads at the same time. 
+	 * 
+	 * @param graph
+	 * @param ints
+	 * @param random
+	 */
+	public SimpleSubgraphGenerator(Graph<?> graph, Generator<Integer> ints, Random random)
+	{
+		this(graph, ints);
+		this.random = random;
+	}
+	
+	private Random random()
+	{
+		return random == null ? Global.random() : random;
+	}
 
 	@Override
 	public List<Integer> generate()
@@ -61,7 +85,7 @@ public class SimpleSubgraphGenerator extends AbstractGenerator<List<Integer>>
 			success = true;
 			
 			result.clear();
-			result.add(Global.random().nextInt(graph.size()));
+			result.add(random().nextInt(graph.size()));
 			restarts ++;
 			if(restarts > RESTARTS)
 				checkLCC(depth);
@@ -126,7 +150,7 @@ public class SimpleSubgraphGenerator extends AbstractGenerator<List<Integer>>
 		if(candidates.isEmpty())
 			return null;
 		
-		return choose(candidates);
+		return choose(candidates, random());
 	}
 
 	/**
@@ -136,7 +160,7 @@ public class SimpleSubgraphGenerator extends AbstractGenerator<List<Integer>>
 	 */
 	protected Node<?> randomNeighbor(List<Integer> indices)
 	{
-		Node<?> randomNode = graph.get(choose(indices));
+		Node<?> randomNode = graph.get(choose(indices, random()));
 		
 		Collection<? extends Node<?>> neighbors;
 		
@@ -149,6 +173,6 @@ public class SimpleSubgraphGenerator extends AbstractGenerator<List<Integer>>
 		if(neighbors.isEmpty())
 			return null;
 		
-		return choose(neighbors);
+		return choose(neighbors, random());
 	}
 }
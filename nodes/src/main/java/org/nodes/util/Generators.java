@@ -4,6 +4,7 @@ import static java.lang.Math.cos;
 import static java.lang.Math.sin;
 
 import java.util.List;
+import java.util.Random;
 
 import org.nodes.Global;
 
@@ -21,23 +22,42 @@ public class Generators
 	 */
 	public static Generator<Integer> uniform(int lower, int upper)
 	{
-		return new UniformGenerator(lower, upper);
+		return new UniformGenerator(lower, upper, null);
+	}
+	
+	/**
+	 * Returns a generator that samples integers from a uniform distribution
+	 * over the range from 'lower' (inclusive) to 'upper' (exclusive), using 
+	 * the given random number generator.
+	 * 
+	 * @param lower
+	 * @param upper
+	 * @param random
+	 * @return
+	 */
+	public static Generator<Integer> uniform(int lower, int upper, Random random)
+	{
+		return new UniformGenerator(lower, upper, random);
 	}
 	
 	private static class UniformGenerator extends AbstractGenerator<Integer>
 	{
 		private int lower, upper;
+		private Random random;
 
-		public UniformGenerator(int lower, int upper)
+		public UniformGenerator(int lower, int upper, Random random)
 		{
 			this.lower = lower;
 			this.upper = upper;
+			this.random = random;
 		}
 		
 		@Override
 		public Integer generate()
 		{	
-			return Global.random().nextInt(upper - lower) + lower;
+			Random random = this.random == null ? Global.random() : this.random;
+			
+			return random.nextInt(upper - lower) + lower;
 		}
 	}
 }
@@ -0,0 +1,136 @@
+package org.nodes.util;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Read-only views of int and long arrays stored in a file, backed by memory
+ * mapped buffers.
+ *
+ * A single MappedByteBuffer is limited to 2GB, so large arrays are mapped in
+ * chunks. The chunks remain valid after the channel is closed, and the
+ * operating system shares the underlying pages between all processes that map
+ * the same file.
+ *
+ * All values are stored in little-endian byte order.
+ */
+public class MappedArrays
+{
+	public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	// * chunks hold 2^27 elements (512MB for ints, 1GB for longs)
+	private static final int SHIFT = 27;
+	private static final long CHUNK = 1L << SHIFT;
+	private static final long MASK = CHUNK - 1;
+
+	/**
+	 * Maps an int array of the given length, starting at the given byte
+	 * position in the channel.
+	 */
+	public static Ints ints(FileChannel channel, long position, long length)
+			throws IOException
+	{
+		int numChunks = (int)((length + CHUNK - 1) / CHUNK);
+		IntBuffer[] chunks = new IntBuffer[numChunks];
+
+		for(int c = 0; c < numChunks; c++)
+		{
+			long elements = Math.min(CHUNK, length - c * CHUNK);
+			chunks[c] = channel.map(MapMode.READ_ONLY, position + c * CHUNK * 4L, elements * 4L)
+					.order(ORDER).asIntBuffer();
+		}
+
+		return new Ints(chunks, length);
+	}
+
+	/**
+	 * Maps a long array of the given length, starting at the given byte
+	 * position in the channel.
+	 */
+	public static Longs longs(FileChannel channel, long position, long length)
+			throws IOException
+	{
+		int numChunks = (int)((length + CHUNK - 1) / CHUNK);
+		LongBuffer[] chunks = new LongBuffer[numChunks];
+
+		for(int c = 0; c < numChunks; c++)
+		{
+			long elements = Math.min(CHUNK, length - c * CHUNK);
+			chunks[c] = channel.map(MapMode.READ_ONLY, position + c * CHUNK * 8L, elements * 8L)
+					.order(ORDER).asLongBuffer();
+		}
+
+		return new Longs(chunks, length);
+	}
+
+	public static class Ints
+	{
+		private IntBuffer[] chunks;
+		private long length;
+
+		private Ints(IntBuffer[] chunks, long length)
+		{
+			this.chunks = chunks;
+			this.length = length;
+		}
+
+		public int get(long index)
+		{
+			return chunks[(int)(index >>> SHIFT)].get((int)(index & MASK));
+		}
+
+		public long length()
+		{
+			return length;
+		}
+
+		/**
+		 * Returns whether the given value occurs between from (inclusive) and
+		 * to (exclusive), assuming that this range is sorted.
+		 */
+		public boolean contains(long from, long to, int value)
+		{
+			long lo = from, hi = to - 1;
+			while(lo <= hi)
+			{
+				long mid = (lo + hi) >>> 1;
+				int midValue = get(mid);
+
+				if(midValue < value)
+					lo = mid + 1;
+				else if(midValue > value)
+					hi = mid - 1;
+				else
+					return true;
+			}
+
+			return false;
+		}
+	}
+
+	public static class Longs
+	{
+		private LongBuffer[] chunks;
+		private long length;
+
+		private Longs(LongBuffer[] chunks, long length)
+		{
+			this.chunks = chunks;
+			this.length = length;
+		}
+
+		public long get(long index)
+		{
+			return chunks[(int)(index >>> SHIFT)].get((int)(index & MASK));
+		}
+
+		public long length()
+		{
+			return length;
+		}
+	}
+}
@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import java.util.RandomAccess;
 
 import org.nodes.Global;
@@ -154,29 +155,43 @@ public class MaxObserver<T>
 	 * @return
 	 */
 	public static <T> List<T> quickSelect(int k, List<T> in, Comparator<T> comp, boolean copy)
+	{
+		return quickSelect(k, in, comp, copy, Global.random());
+	}
+	
+	/**
+	 * Quickselect with a given source of randomness for the pivots, so that
+	 * it can be used from multiple threads.
+	 */
+	public static <T> List<T> quickSelect(int k, List<T> in, Comparator<T> comp, boolean copy, Random random)
 	{
 		if(copy)
 			in = new ArrayList<T>(in);
 		
-		select(k, in, 0, in.size(), comp);
+		select(k, in, 0, in.size(), comp, random);
 		
 		return in.subList(0, k);
 	}
 	
 	protected static <T> int select(int k, List<T> list, int from, int to, Comparator<T> comp)
+	{
+		return select(k, list, from, to, comp, Global.random());
+	}
+	
+	protected static <T> int select(int k, List<T> list, int from, int to, Comparator<T> comp, Random random)
 	{
 		if(from == to -1)
 			return from;
 		
-		int pivotIndex = Global.random().nextInt(to - from) + from;
+		int pivotIndex = random.nextInt(to - from) + from;
 		pivotIndex = partition(list, from, to, pivotIndex, comp);
 		
 		if(k == pivotIndex)
 			return pivotIndex;
 		else if(k < pivotIndex)
-			return select(k, list, from, pivotIndex, comp);
+			return select(k, list, from, pivotIndex, comp, random);
 		else 
-			return select(k, list, pivotIndex + 1, to, comp);
+			return select(k, list, pivotIndex + 1, to, comp, random);
 	}
 	
 	/**
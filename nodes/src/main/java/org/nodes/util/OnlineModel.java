@@ -129,6 +129,42 @@ public class OnlineModel<T> extends FrequencyModel<T>
 		return bits;
 	}
 
+	/**
+	 * The same as {@link #storeIntegers(List)} for any sequence in which each 
+	 * integer i occurs frequencies[i] times. The codelength of the KT 
+	 * estimator does not depend on the order of the sequence, so it is 
+	 * computed from the frequencies directly with the gamma function, in time 
+	 * proportional to the length of the array.
+	 * 
+	 * @param frequencies
+	 * @return
+	 */
+	public static double storeIntegers(int[] frequencies)
+	{
+		int max = -1, total = 0;
+		for(int i = 0; i < frequencies.length; i++)
+			if(frequencies[i] > 0)
+			{
+				max = i;
+				total += frequencies[i];
+			}
+		
+		if(total == 0)
+			return 0.0;
+		
+		// * The probability of the sequence is the product over all symbols of
+		//   (0.5)(1.5)...(f - 0.5), divided by (a)(a + 1)...(a + total - 1) 
+		//   with a = 0.5 * (max + 1) 
+		double a = 0.5 * (max + 1);
+		double bits = Functions.logGamma(total + a) - Functions.logGamma(a);
+		
+		for(int i = 0; i <= max; i++)
+			if(frequencies[i] > 0)
+				bits -= Functions.logGamma(frequencies[i] + 0.5) - Functions.logGamma(0.5);
+		
+		return bits / Math.log(2.0);
+	}
+
 	/**
 	 * Returns the number of bits required to store the given sequence.
 	 * 
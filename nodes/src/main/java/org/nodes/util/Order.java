@@ -4,6 +4,7 @@ import static org.nodes.util.Series.series;
 
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -21,7 +22,7 @@ import org.nodes.Global;
  */
 public final class Order
 {
-	private List<Integer> master;
+	private int[] master;
 	private Order inverse;
 	
 	private Order()
@@ -36,14 +37,31 @@ public final class Order
 	 */
 	public Order(List<Integer> values)
 	{
-		master = new ArrayList<Integer>(values);
-		List<Integer> inverseMaster = new ArrayList<Integer>();
-		
+		int[] array = new int[values.size()];
 		for(int i : series(values.size()))
-			inverseMaster.add(-1);
+			array[i] = values.get(i);
 		
-		for(int i : series(values.size()))
-			inverseMaster.set(values.get(i), i);
+		init(array);
+	}
+	
+	/**
+	 * 
+	 * @param values Mapping. The indices of this array are the old indices. 
+	 * 	The values at those indices are the new indices. The array is copied. 
+	 */
+	public Order(int[] values)
+	{
+		init(values.clone());
+	}
+	
+	private void init(int[] values)
+	{
+		master = values;
+		int[] inverseMaster = new int[values.length];
+		Arrays.fill(inverseMaster, -1);
+		
+		for(int i = 0; i < values.length; i++)
+			inverseMaster[values[i]] = i;
 		
 		inverse = new Order();
 		inverse.master = inverseMaster;
@@ -52,7 +70,7 @@ public final class Order
 	
 	public int newIndex(int originalIndex)
 	{
-		return master.get(originalIndex);
+		return master[originalIndex];
 	}
 	
 	public int originalIndex(int newIndex)
@@ -75,12 +93,20 @@ public final class Order
 	
 	public String toString()
 	{
-		return master.toString();
+		return Arrays.toString(master);
 	}
 
 	public int size()
 	{
-		return master.size();
+		return master.length;
+	}
+	
+	/**
+	 * The new index of each original index, as a copy.
+	 */
+	public int[] newIndices()
+	{
+		return master.clone();
 	}
 	
 	/**
@@ -0,0 +1,96 @@
+package org.nodes.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dictionary that assigns consecutive integer ids to distinct objects. Each
+ * object is stored once, so that any number of graphs can refer to it by its
+ * id. Null is a valid symbol.
+ *
+ * This class is not thread-safe.
+ *
+ * @param <T>
+ */
+public class SymbolTable<T>
+{
+	private Map<T, Integer> ids;
+	private List<T> symbols;
+
+	public SymbolTable()
+	{
+		this(16);
+	}
+
+	public SymbolTable(int capacity)
+	{
+		ids = new HashMap<T, Integer>(capacity);
+		symbols = new ArrayList<T>(capacity);
+	}
+
+	/**
+	 * Returns the id of the given symbol, adding it to the table if it isn't
+	 * present yet.
+	 */
+	public int id(T symbol)
+	{
+		Integer id = ids.get(symbol);
+		if(id != null)
+			return id;
+
+		id = symbols.size();
+		symbols.add(symbol);
+		ids.put(symbol, id);
+
+		return id;
+	}
+
+	/**
+	 * Returns the id of the given symbol, or -1 if it is not in the table.
+	 */
+	public int find(T symbol)
+	{
+		Integer id = ids.get(symbol);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the symbol with the given id.
+	 */
+	public T get(int id)
+	{
+		return symbols.get(id);
+	}
+
+	/**
+	 * The number of symbols in the table.
+	 */
+	public int size()
+	{
+		return symbols.size();
+	}
+
+	/**
+	 * An unmodifiable view of the symbols, in order of their ids.
+	 */
+	public List<T> symbols()
+	{
+		return new AbstractList<T>()
+		{
+			@Override
+			public T get(int index)
+			{
+				return symbols.get(index);
+			}
+
+			@Override
+			public int size()
+			{
+				return symbols.size();
+			}
+		};
+	}
+}
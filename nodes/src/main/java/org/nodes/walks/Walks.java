@@ -3,14 +3,12 @@ package org.nodes.walks;
 import static org.nodes.util.Functions.reverse;
 
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.NoSuchElementException;
 
-import org.nodes.Acyclic;
 import org.nodes.Graph;
+import org.nodes.NeighborCursor;
 import org.nodes.Node;
 import org.nodes.util.Functions;
 
@@ -38,15 +36,14 @@ import org.nodes.util.Functions;
 public class Walks
 {
 	/**
-	 * Returns a breadth first walk that visits each node in the graph exactly 
-	 * once.
+	 * Returns a breadth first walk that visits each node reachable from the 
+	 * root exactly once.
 	 * 
-	 * The walk maintains a history of nodes it has already returned, unless the
-	 * graph is guaranteed acyclic (because it implements {@link Acyclic}. 
+	 * The walk works on node indices, and keeps a history of the nodes it 
+	 * has already visited as a boolean array. 
 	 * 
 	 * @param <L> The type of node labels in the graph
-	 * @param <N> The node-type of the graph
-	 * @param graph The grap
+	 * @param graph The graph
 	 * @param root The node to start the walk.
 	 * @return 
 	 */
@@ -73,61 +70,61 @@ public class Walks
 		
 		private class Iterator implements java.util.Iterator<Node<L>>
 		{
-			private LinkedList<Node<L>> buffer;
-			private int next = 0; // The next node in the buffer to unpack
+			// * Each node is added to the queue at most once
+			private int[] queue = new int[graph.size()];
+			private int head = 0, tail = 0;
 			
-			// * Whether we can assume that the given graph is acyclic
-			private boolean acyclic = (graph instanceof Acyclic);  
 			// * History of visited nodes
-			private Set<Node<L>> history = acyclic ? new HashSet<Node<L>>() : null;
+			private boolean[] visited = new boolean[graph.size()];
+			private NeighborCursor cursor = new NeighborCursor(graph);
 			
 			public Iterator() {
-				buffer = new LinkedList<Node<L>>();
-				buffer.add(start);
+				queue[tail++] = start.index();
+				visited[start.index()] = true;
 			}
 
 			@Override
 			public boolean hasNext()
 			{
-				ensure();
-				
-				return ! buffer.isEmpty();
-				
+				return head < tail;
 			}
 
 			@Override
 			public Node<L> next()
 			{
-				ensure();
-
-				next --;
+				if(! hasNext())
+					throw new NoSuchElementException();
+				
+				int node = queue[head++];
+				
+				int n = cursor.load(node);
+				for(int i = 0; i < n; i++)
+				{
+					int neighbor = cursor.get(i);
+					if(! visited[neighbor])
+					{
+						visited[neighbor] = true;
+						queue[tail++] = neighbor;
+					}
+				}
 				
-				if(acyclic) history.add(buffer.peek());
-				return buffer.poll();
+				return graph.get(node);
 			}
 
 			@Override
 			public void remove()
 			{
-				// TODO: implement
 				throw new UnsupportedOperationException();
 			}
-			
-			private void ensure()
-			{
-				if(buffer.size() < 5 && next < buffer.size())
-					for(Node<L> node : buffer.get(next).neighbors())
-						if(! history.contains(node))
-							buffer.add(node);
-				
-				next++;
-			}
 		}
 	}
 
 	/**
+	 * Returns a depth first walk that visits each node reachable from the 
+	 * root exactly once.
 	 * 
-	 * @param <T>
+	 * @param graph The graph
+	 * @param root The node to start the walk.
 	 * @return
 	 */
 	public static <L> Walk<L> depthFirst(Graph<L> graph, Node<L> root)
@@ -153,62 +150,60 @@ public class Walks
 		
 		private class Iterator implements java.util.Iterator<Node<L>>
 		{
-			private LinkedList<Node<L>> buffer;
-			private int next = 0; // The next node in the buffer to unpack
+			// * Nodes are pushed once for every link that reaches them, and 
+			//   skipped when they come up after they've been visited
+			private int[] stack = new int[16];
+			private int size = 0;
 			
-			// * Whether we can assume that the given graph is acyclic
-			private boolean acyclic = (graph instanceof Acyclic);  
 			// * History of visited nodes
-			private Set<Node<L>> history = acyclic ? new HashSet<Node<L>>() : null;
+			private boolean[] visited = new boolean[graph.size()];
+			private NeighborCursor cursor = new NeighborCursor(graph);
 			
 			public Iterator() {
-				buffer = new LinkedList<Node<L>>();
-				buffer.add(start);
+				push(start.index());
 			}
 
 			@Override
 			public boolean hasNext()
 			{
-				ensure();
-				
-				return ! buffer.isEmpty();
+				while(size > 0 && visited[stack[size - 1]])
+					size--;
 				
+				return size > 0;
 			}
 
 			@Override
 			public Node<L> next()
 			{
-				ensure();
-
-				next --;
+				if(! hasNext())
+					throw new NoSuchElementException();
+				
+				int node = stack[--size];
+				visited[node] = true;
 				
-				if(acyclic) history.add(buffer.peek());
-				return buffer.poll();
+				// * Push in reverse, so that the first neighbor is popped first
+				int n = cursor.load(node);
+				for(int i = n - 1; i >= 0; i--)
+					if(! visited[cursor.get(i)])
+						push(cursor.get(i));
+				
+				return graph.get(node);
 			}
 
 			@Override
 			public void remove()
 			{
-				// TODO: implement
 				throw new UnsupportedOperationException();
 			}
-
-			/**
-			 * Ensures that the buffer has enough nodes, if they are available
-			 */
-			private void ensure()
+			
+			private void push(int node)
 			{
-
-				if(buffer.size() < 5 && next < buffer.size())
-					for(Node<L> node : buffer.get(next).neighbors())
-						buffer.add(next+1, node);
+				if(size == stack.length)
+					stack = Arrays.copyOf(stack, stack.length * 2);
 				
-				next++;
+				stack[size++] = node;
 			}
-			
 		}
 	}
 
-
-
 }
@@ -0,0 +1,174 @@
+package org.nodes;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.nodes.data.Examples;
+
+public class CSRDGraphTest
+{
+	private DGraph<String> example()
+	{
+		LightDGraph<String> graph = new LightDGraph<String>();
+		
+		DNode<String> a = graph.add("a");
+		DNode<String> b = graph.add("b");
+		DNode<String> c = graph.add("c");
+
+		a.connect(a);
+		b.connect(c);
+		c.connect(a);
+		a.connect(c);
+		a.connect(c);
+		
+		return graph;
+	}
+	
+	@Test
+	public void testNumLinks()
+	{
+		DGraph<String> graph = CSRDGraph.copy(example());
+		
+		int numLinks = 0;
+		for(Link<String> link : graph.links())
+			numLinks++;
+		
+		assertEquals(5, numLinks);
+		assertEquals(graph.numLinks(), numLinks);
+	}
+	
+	@Test
+	public void testFreeze()
+	{
+		LightDGraph<String> graph = (LightDGraph<String>) example();
+		CSRDGraph<String> frozen = graph.freeze();
+		
+		assertEquals(graph, frozen);
+		assertEquals(frozen, graph);
+		assertEquals(graph.hashCode(), frozen.hashCode());
+		
+		for(int i : Arrays.asList(0, 1, 2))
+		{
+			assertEquals(graph.get(i).inDegree(), frozen.get(i).inDegree());
+			assertEquals(graph.get(i).outDegree(), frozen.get(i).outDegree());
+		}
+	}
+	
+	@Test
+	public void testCopy()
+	{
+		DGraph<String> graph = Examples.physicians();
+		DGraph<String> copy = CSRDGraph.copy(graph);
+		
+		assertEquals(graph.size(), copy.size());
+		assertEquals(1098, copy.numLinks());
+		
+		int numLinks = 0;
+		for(Link<String> link : copy.links())
+			numLinks++;
+		assertEquals(1098, numLinks);
+		
+		for(DLink<String> link : graph.links())
+			assertTrue(copy.get(link.from().index()).connectedTo(copy.get(link.to().index())));
+		
+		assertEquals(LightDGraph.copy(graph), copy);
+	}
+	
+	@Test
+	public void testConnected()
+	{
+		DGraph<String> graph = CSRDGraph.copy(example());
+		
+		DNode<String> a = graph.get(0), b = graph.get(1), c = graph.get(2);
+		
+		assertTrue(a.connectedTo(a));
+		assertTrue(a.connectedTo(c));
+		assertTrue(c.connectedTo(a));
+		assertTrue(b.connectedTo(c));
+		assertFalse(c.connectedTo(b));
+		assertTrue(c.connected(b));
+		assertFalse(a.connected(b));
+	}
+	
+	@Test
+	public void testNodeLinks()
+	{
+		DGraph<String> graph = CSRDGraph.copy(example());
+		
+		{
+			Node<String> node = graph.get(0);
+			assertEquals(2, node.neighbors().size());
+			
+			assertEquals(1, node.links(graph.get(0)).size());
+			assertEquals(0, node.links(graph.get(1)).size());			
+			assertEquals(3, node.links(graph.get(2)).size());
+		}
+		
+		{
+			Node<String> node = graph.get(2);
+			assertEquals(2, node.neighbors().size());
+			
+			assertEquals(3, node.links(graph.get(0)).size());
+			assertEquals(1, node.links(graph.get(1)).size());			
+			assertEquals(0, node.links(graph.get(2)).size());
+		}
+	}
+	
+	@Test
+	public void testNeighbors()
+	{
+		DGraph<String> graph = CSRDGraph.copy(example());
+		DNode<String> a = graph.get(0), b = graph.get(1), c = graph.get(2);
+		
+		assertEquals(new HashSet<Node<String>>(Arrays.asList(a, c)), new HashSet<Node<String>>(a.neighbors()));
+		assertEquals(new HashSet<Node<String>>(Arrays.asList(c)), new HashSet<Node<String>>(b.neighbors()));
+		assertEquals(new HashSet<Node<String>>(Arrays.asList(a, b)), new HashSet<Node<String>>(c.neighbors()));
+		
+		assertEquals(c, a.neighbor("c"));
+		assertNull(b.neighbor("a"));
+		assertEquals(1, c.in("b").size());
+		assertEquals(0, c.out("b").size());
+	}
+	
+	@Test
+	public void testNeighborsFast()
+	{
+		DGraph<String> graph = CSRDGraph.copy(Examples.physicians());
+	
+		for(Node<String> node : graph.nodes())
+		{
+			Collection<? extends Node<String>> col = ((FastWalkable<String,? extends Node<String>>)graph).neighborsFast(node);
+			
+			List<Integer> nbsList = new ArrayList<Integer>();
+			for(Node<String> nod : node.neighbors())
+				nbsList.add(nod.index());
+			
+			Set<Integer> nbsFast = new HashSet<Integer>();
+			for(Node<String> nod : col)
+				nbsFast.add(nod.index());
+			
+			List<Integer> nbsFastList = new ArrayList<Integer>(nbsFast);
+			
+			Collections.sort(nbsList);
+			Collections.sort(nbsFastList);
+			
+			assertEquals(nbsList, nbsFastList);			
+		}
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public void testReadOnly()
+	{
+		DGraph<String> graph = CSRDGraph.copy(example());
+		
+		graph.add("d");
+	}
+}
@@ -0,0 +1,116 @@
+package org.nodes;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+import org.nodes.data.Examples;
+
+public class CSRUGraphTest
+{
+	private LightUGraph<String> example()
+	{
+		LightUGraph<String> graph = new LightUGraph<String>();
+		
+		UNode<String> a = graph.add("a");
+		UNode<String> b = graph.add("b");
+		UNode<String> c = graph.add("c");
+
+		a.connect(a);
+		b.connect(c);
+		c.connect(a);
+		a.connect(c);
+		a.connect(c);
+		
+		return graph;
+	}
+	
+	@Test
+	public void testNumLinks()
+	{
+		UGraph<String> graph = example().freeze();
+		
+		int numLinks = 0;
+		for(Link<String> link : graph.links())
+			numLinks++;
+		
+		assertEquals(5, graph.numLinks());
+		assertEquals(graph.numLinks(), numLinks);
+	}
+	
+	@Test
+	public void testCopy()
+	{
+		UGraph<String> graph = Examples.yeast();
+		UGraph<String> copy = CSRUGraph.copy(graph);
+		
+		assertEquals(graph.size(), copy.size());
+		assertEquals(2277, copy.numLinks());
+		
+		int numLinks = 0;
+		for(Link<String> link : copy.links())
+			numLinks++;
+		assertEquals(2277, numLinks);
+		
+		for(ULink<String> link : graph.links())
+		{
+			UNode<String> first = copy.get(link.first().index()),
+			              second = copy.get(link.second().index());
+			
+			assertTrue(first.connected(second));
+			assertTrue(second.connected(first));
+		}
+		
+		assertEquals(copy, CSRUGraph.copy(LightUGraph.copy(graph)));
+		assertEquals(copy.hashCode(), CSRUGraph.copy(LightUGraph.copy(graph)).hashCode());
+	}
+	
+	@Test
+	public void testNodeLinks()
+	{
+		UGraph<String> graph = example().freeze();
+		
+		{
+			Node<String> node = graph.get(0);
+			assertEquals(2, node.neighbors().size());
+			assertEquals(4, node.degree());
+			
+			assertEquals(1, node.links(graph.get(0)).size());
+			assertEquals(0, node.links(graph.get(1)).size());			
+			assertEquals(3, node.links(graph.get(2)).size());
+		}
+		
+		{
+			Node<String> node = graph.get(1);
+			assertEquals(1, node.neighbors().size());
+			
+			assertEquals(0, node.links(graph.get(0)).size());
+			assertEquals(1, node.links(graph.get(2)).size());
+		}
+	}
+	
+	@Test
+	public void testNeighbors()
+	{
+		UGraph<String> graph = example().freeze();
+		UNode<String> a = graph.get(0), b = graph.get(1), c = graph.get(2);
+		
+		assertEquals(new HashSet<Node<String>>(Arrays.asList(a, c)), new HashSet<Node<String>>(a.neighbors()));
+		assertEquals(new HashSet<Node<String>>(Arrays.asList(c)), new HashSet<Node<String>>(b.neighbors()));
+		assertEquals(new HashSet<Node<String>>(Arrays.asList(a, b)), new HashSet<Node<String>>(c.neighbors()));
+		
+		assertTrue(a.connected(a));
+		assertFalse(a.connected(b));
+		assertEquals(b, c.neighbor("b"));
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public void testReadOnly()
+	{
+		UGraph<String> graph = example().freeze();
+		
+		graph.get(0).connect(graph.get(1));
+	}
+}
@@ -0,0 +1,149 @@
+package org.nodes;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.nodes.random.RandomGraphs;
+import org.nodes.util.SymbolTable;
+
+public class DictDTGraphTest
+{
+	@Test
+	public void testToString()
+	{
+		DTGraph<String,String> graph = new DictDTGraph<String,String>();
+		
+		DTNode<String,String> a = graph.add("a"),
+		              		  b = graph.add("b");
+		graph.add("c");
+	
+		a.connect(b, "1");
+		
+		assertEquals("digraph {a_0 -> b_1 [label=1]; c_2}", graph.toString());
+	}
+	
+	@Test
+	public void testRemove()
+	{
+		DTGraph<String, Double> graph = new DictDTGraph<String, Double>();
+		
+		DTNode<String, Double> a = graph.add(null),
+		                       b = graph.add(null),
+		                       c = graph.add(null),
+		                       d = graph.add(null),
+		                       e = graph.add(null);
+	
+		b.connect(a, 1.0);
+		c.connect(a, 2.0);
+		d.connect(a, 3.0);
+		e.connect(a, 4.0);
+		c.connect(d, 5.0);
+		a.connect(a, 6.0);
+		
+		assertEquals(6, graph.numLinks());
+		assertEquals(5, graph.size());
+		
+		a.remove();
+		
+		assertEquals(1, graph.numLinks());
+		assertEquals(4, graph.size());
+		
+		assertTrue(graph.get(1).connectedTo(graph.get(2)));
+		assertEquals(5.0, graph.get(1).linksOut().iterator().next().tag(), 0.0);
+		
+		graph.get(1).disconnect(graph.get(2));
+		assertEquals(0, graph.numLinks());
+	}
+	
+	@Test
+	public void testConnected()
+	{
+		DTGraph<String,String> graph = new DictDTGraph<String,String>();
+		
+		DTNode<String,String> a = graph.add(null),
+		              b = graph.add(null),
+		              c = graph.add(null);
+	
+		a.connect(b, null);
+		a.connect(c, "x");
+		
+		assertTrue(a.connected(b));
+		assertTrue(a.connectedTo(b));
+		assertFalse(a.connected(a));
+		assertTrue(b.connected(a));
+		assertFalse(b.connectedTo(a));
+		
+		assertTrue(a.connectedTo(c, "x"));
+		assertFalse(a.connectedTo(c, "y"));
+		assertFalse(a.connectedTo(b, "x"));
+		
+		assertEquals(1, a.toTag("x").size());
+		assertEquals(0, a.toTag("y").size());
+		assertEquals(1, c.fromTag("x").size());
+	}
+	
+	@Test
+	public void testLinks()
+	{
+		DTGraph<String,String> graph = new DictDTGraph<String,String>();
+		
+		DTNode<String,String> a = graph.add(null),
+		              b = graph.add(null),
+		              c = graph.add(null);
+	
+		a.connect(b, null);
+		
+		a.connect(c, null);
+		a.connect(c, null);
+		
+		assertEquals(0, a.links(a).size());
+		assertEquals(1, a.links(b).size());
+		assertEquals(1, b.links(a).size());
+		assertEquals(2, a.links(c).size());
+		assertEquals(2, c.links(a).size());
+		
+		a.links(c).iterator().next().remove();
+		assertEquals(1, a.links(c).size());
+		assertEquals(2, graph.numLinks());
+	}	
+	
+	@Test
+	public void testEquals()
+	{
+		Global.randomSeed();
+		DTGraph<String, String> graph = RandomGraphs.preferentialAttachmentDirected(100, 2);
+		
+		DictDTGraph<String, String> copy = DictDTGraph.copy(graph);
+		
+		assertEquals(graph.size(), copy.size());
+		assertEquals(graph.numLinks(), copy.numLinks());
+		assertTrue(copy.equals(graph));
+		assertTrue(graph.equals(copy));
+	}
+	
+	@Test
+	public void testSharedTables()
+	{
+		SymbolTable<String> labels = new SymbolTable<String>();
+		SymbolTable<String> tags = new SymbolTable<String>();
+		
+		DictDTGraph<String, String> g1 = new DictDTGraph<String, String>(labels, tags, 4);
+		DictDTGraph<String, String> g2 = new DictDTGraph<String, String>(labels, tags, 4);
+		
+		g1.add("a").connect(g1.add("b"), "p");
+		g2.add("b").connect(g2.add("a"), "p");
+		g2.add("c");
+		
+		assertEquals(3, labels.size());
+		assertEquals(1, tags.size());
+		
+		assertEquals(0, g1.node("a").index());
+		assertEquals(1, g2.node("a").index());
+		assertNull(g1.node("c"));
+		
+		g2.node("b").remove();
+		assertEquals(0, g2.node("a").index());
+		assertEquals(1, g2.node("c").index());
+		assertNull(g2.node("b"));
+	}
+}
@@ -0,0 +1,123 @@
+package org.nodes;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class GlobalTest
+{
+
+	@Test
+	public void testInvokeAll()
+	{
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		for(int i = 0; i < 20; i++)
+		{
+			final int value = i;
+			tasks.add(new Callable<Integer>()
+			{
+				@Override
+				public Integer call()
+				{
+					return value * value;
+				}
+			});
+		}
+
+		for(int numThreads : new int[]{1, 4})
+		{
+			List<Integer> results = Global.invokeAll(tasks, numThreads);
+
+			assertEquals(tasks.size(), results.size());
+			for(int i = 0; i < tasks.size(); i++)
+				assertEquals(i * i, (int) results.get(i));
+		}
+	}
+
+	@Test
+	public void testInvokeAllBound()
+	{
+		int numThreads = Global.numThreads();
+
+		try
+		{
+			Global.setNumThreads(6);
+
+			final AtomicInteger running = new AtomicInteger(), max = new AtomicInteger();
+
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for(int i = 0; i < 12; i++)
+				tasks.add(new Callable<Object>()
+				{
+					@Override
+					public Object call() throws InterruptedException
+					{
+						int now = running.incrementAndGet();
+						for(int m = max.get(); now > m; m = max.get())
+							max.compareAndSet(m, now);
+
+						Thread.sleep(10);
+						running.decrementAndGet();
+
+						return null;
+					}
+				});
+
+			assertEquals(12, Global.invokeAll(tasks, 2).size());
+			assertTrue(max.get() <= 2);
+		} finally
+		{
+			Global.setNumThreads(numThreads);
+		}
+	}
+
+	@Test
+	public void testInvokeAllFailure()
+	{
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for(int i = 0; i < 4; i++)
+			tasks.add(new Callable<Object>()
+			{
+				@Override
+				public Object call() throws IOException
+				{
+					throw new IOException();
+				}
+			});
+
+		for(int numThreads : new int[]{1, 4})
+			try
+			{
+				Global.invokeAll(tasks, numThreads);
+				fail();
+			} catch(RuntimeException e)
+			{
+				assertTrue(e.getCause() instanceof IOException);
+			}
+
+		tasks.set(2, new Callable<Object>()
+		{
+			@Override
+			public Object call()
+			{
+				throw new IllegalStateException();
+			}
+		});
+		tasks.subList(0, 2).clear();
+
+		for(int numThreads : new int[]{1, 4})
+			try
+			{
+				Global.invokeAll(tasks, numThreads);
+				fail();
+			} catch(IllegalStateException e)
+			{
+			}
+	}
+}
@@ -0,0 +1,168 @@
+package org.nodes;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.nodes.random.RandomGraphs;
+import org.nodes.walks.Walks;
+
+public class NeighborCursorTest
+{
+	private List<Graph<String>> graphs()
+	{
+		Global.setSeed(42);
+
+		UTGraph<String, String> undirected = RandomGraphs.random(50, 0.1);
+		DTGraph<String, String> directed = RandomGraphs.randomDirected(50, 0.1);
+
+		List<Graph<String>> graphs = new ArrayList<Graph<String>>();
+
+		graphs.add(undirected);
+		graphs.add(directed);
+		graphs.add(LightUGraph.copy(undirected));
+		graphs.add(LightDGraph.copy(directed));
+
+		LightDTGraph<String, String> lightTagged = new LightDTGraph<String, String>();
+		for(Node<String> node : directed.nodes())
+			lightTagged.add(node.label());
+		for(DTLink<String, String> link : directed.links())
+			lightTagged.get(link.from().index()).connect(lightTagged.get(link.to().index()), link.tag());
+		graphs.add(lightTagged);
+
+		graphs.add(CSRUGraph.copy(undirected));
+		graphs.add(CSRDGraph.copy(directed));
+		graphs.add(DictDTGraph.copy(directed));
+
+		return graphs;
+	}
+
+	@Test
+	public void testNeighbors()
+	{
+		for(Graph<String> graph : graphs())
+		{
+			NeighborCursor cursor = new NeighborCursor(graph);
+
+			for(Node<String> node : graph.nodes())
+			{
+				Set<Integer> expected = new HashSet<Integer>();
+				for(Node<String> neighbor : node.neighbors())
+					expected.add(neighbor.index());
+
+				Set<Integer> actual = new HashSet<Integer>();
+				int n = cursor.load(node.index());
+				for(int i = 0; i < n; i++)
+					actual.add(cursor.get(i));
+
+				assertEquals(graph.getClass().getSimpleName(), expected, actual);
+			}
+		}
+	}
+
+	@Test
+	public void testSelfLoops()
+	{
+		DTGraph<String, String> directed = new MapDTGraph<String, String>();
+		for(int i = 0; i < 4; i++)
+			directed.add("x");
+		
+		directed.get(0).connect(directed.get(0), "a");
+		directed.get(0).connect(directed.get(0), "b");
+		directed.get(0).connect(directed.get(1), "a");
+		directed.get(1).connect(directed.get(0), "a");
+		directed.get(2).connect(directed.get(2), "a");
+		directed.get(2).connect(directed.get(3), "a");
+		
+		List<Graph<String>> graphs = new ArrayList<Graph<String>>();
+		graphs.add(directed);
+		graphs.add(LightDGraph.copy(directed));
+		graphs.add(CSRDGraph.copy(directed));
+		graphs.add(DictDTGraph.copy(directed));
+		
+		for(Graph<String> graph : graphs)
+		{
+			// * The number of links between each pair of nodes, a self-loop 
+			//   counted once
+			Map<List<Integer>, Integer> links = new HashMap<List<Integer>, Integer>();
+			for(Link<String> link : graph.links())
+			{
+				int a = link.first().index(), b = link.second().index();
+				List<Integer> pair = Arrays.asList(Math.min(a, b), Math.max(a, b));
+				links.put(pair, links.containsKey(pair) ? links.get(pair) + 1 : 1);
+			}
+			
+			NeighborIndices indices = (NeighborIndices) graph;
+			for(int node = 0; node < graph.size(); node++)
+			{
+				int[] buffer = new int[indices.numNeighbors(node)];
+				int n = indices.neighbors(node, buffer);
+				assertTrue(n <= buffer.length);
+				
+				Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+				for(int i = 0; i < n; i++)
+					counts.put(buffer[i], counts.containsKey(buffer[i]) ? counts.get(buffer[i]) + 1 : 1);
+				
+				for(int neighbor : counts.keySet())
+				{
+					List<Integer> pair = Arrays.asList(Math.min(node, neighbor), Math.max(node, neighbor));
+					assertTrue(graph.getClass().getSimpleName(), counts.get(neighbor) <= links.get(pair));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testWalks()
+	{
+		for(Graph<String> graph : graphs())
+		{
+			Node<String> root = graph.get(0);
+
+			List<Node<String>> bf = new ArrayList<Node<String>>();
+			for(Node<String> node : Walks.breadthFirst(graph, root))
+				bf.add(node);
+
+			List<Node<String>> df = new ArrayList<Node<String>>();
+			for(Node<String> node : Walks.depthFirst(graph, root))
+				df.add(node);
+
+			assertEquals(root, bf.get(0));
+			assertEquals(root, df.get(0));
+
+			// * Each node is visited exactly once
+			assertEquals(bf.size(), new HashSet<Node<String>>(bf).size());
+			assertEquals(df.size(), new HashSet<Node<String>>(df).size());
+			assertEquals(new HashSet<Node<String>>(bf), new HashSet<Node<String>>(df));
+		}
+	}
+
+	@Test
+	public void testClusteringCoefficient()
+	{
+		for(Graph<String> graph : graphs())
+		{
+			long numPaths = 0, numClosed = 0;
+			// * Some graphs return repeated neighbors, the measure counts each
+			//   once
+			for(Node<String> one : graph.nodes())
+				for(Node<String> two : new HashSet<Node<String>>(one.neighbors()))
+					for(Node<String> three : new HashSet<Node<String>>(two.neighbors()))
+						if(!three.equals(one))
+						{
+							numPaths ++;
+							if(one.connected(three))
+								numClosed++;
+						}
+
+			assertEquals(graph.getClass().getSimpleName(), numClosed / (double) numPaths, Measures.clusteringCoefficient(graph), 1e-12);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package org.nodes.algorithms;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.nodes.DGraph;
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.Graphs;
+import org.nodes.MapUTGraph;
+import org.nodes.Node;
+import org.nodes.UGraph;
+import org.nodes.random.RandomGraphs;
+
+public class AllPairsBFSTest
+{
+
+	@Test
+	public void testFloydWarshall()
+	{
+		Global.setSeed(1);
+
+		// * Sparse graphs, so that some pairs are unreachable
+		UGraph<String> undirected = RandomGraphs.random(60, 50);
+		DGraph<String> directed = RandomGraphs.randomDirected(60, 0.015);
+
+		compare(undirected);
+		compare(directed);
+	}
+
+	private <L> void compare(Graph<L> graph)
+	{
+		FloydWarshall<L> fw = new FloydWarshall<L>(graph);
+
+		AllPairsBFS<L> single = new AllPairsBFS<L>(graph, false, 1),
+		               multi = new AllPairsBFS<L>(graph, false, 3),
+		               compact = new AllPairsBFS<L>(graph, true, 3);
+
+		for(int i = 0; i < graph.size(); i++)
+			for(int j = 0; j < graph.size(); j++)
+			{
+				assertEquals(fw.distance(i, j), single.distance(i, j));
+				assertEquals(fw.distance(i, j), multi.distance(i, j));
+				assertEquals(fw.distance(i, j), compact.distance(i, j));
+			}
+
+		for(Node<L> a : graph.nodes())
+			for(Node<L> b : graph.nodes())
+				assertEquals(fw.distance(a, b), compact.distance(a, b), 0.0);
+
+		assertEquals(fw.meanDistance(), multi.meanDistance(), 1e-10);
+		assertEquals(fw.diameter(), compact.diameter(), 0.0);
+	}
+
+	@Test
+	public void testStatistics()
+	{
+		Global.setSeed(2);
+		UGraph<String> graph = RandomGraphs.random(80, 70);
+
+		FloydWarshall<String> fw = new FloydWarshall<String>(graph);
+		AllPairsBFS.Statistics statistics = AllPairsBFS.statistics(graph, 3);
+
+		int n = graph.size();
+		long[] histogram = new long[n];
+		long unreachable = 0, sum = 0;
+		int diameter = 0;
+
+		for(int i = 0; i < n; i++)
+			for(int j = 0; j < n; j++)
+			{
+				if(i == j)
+					continue;
+
+				int d = fw.distance(i, j);
+				if(d == Short.MAX_VALUE)
+				{
+					unreachable++;
+					continue;
+				}
+
+				histogram[d]++;
+				sum += d;
+				diameter = Math.max(diameter, d);
+			}
+
+		assertEquals(diameter, statistics.diameter());
+		assertEquals(unreachable, statistics.unreachable());
+		assertEquals(n * (n - 1) - unreachable, statistics.reachable());
+		assertEquals(sum / (double) statistics.reachable(), statistics.meanDistance(), 1e-10);
+
+		assertEquals(diameter + 1, statistics.histogram().length);
+		for(int d = 0; d <= diameter; d++)
+			assertEquals(histogram[d], statistics.count(d));
+
+		assertFalse(statistics.connected());
+		assertEquals(AllPairsBFS.statistics(graph, 1).histogram().length, statistics.histogram().length);
+	}
+
+	@Test
+	public void testCompactOverflow()
+	{
+		// * A path of 300 nodes
+		UGraph<String> graph = new MapUTGraph<String, String>();
+		for(int i = 0; i < 300; i++)
+			graph.add("x");
+		for(int i = 0; i < 299; i++)
+			graph.get(i).connect(graph.get(i + 1));
+
+		assertEquals(299, new AllPairsBFS<String>(graph, false, 2).distance(0, 299));
+		assertEquals(299, AllPairsBFS.statistics(graph, 2).diameter());
+		assertTrue(AllPairsBFS.statistics(graph, 2).connected());
+
+		try
+		{
+			new AllPairsBFS<String>(graph, true, 2);
+			fail();
+		} catch(IllegalStateException e)
+		{
+		}
+	}
+
+	@Test
+	public void testBoundedSearch()
+	{
+		Graph<String> graph = Graphs.k(10, "x");
+		BFS bfs = new BFS(graph);
+
+		assertEquals(1, bfs.search(3, 0));
+		assertEquals(-1, bfs.distance(4));
+		assertEquals(10, bfs.search(3, 1));
+		assertEquals(1, bfs.distance(4));
+		assertEquals(3, bfs.node(0));
+	}
+}
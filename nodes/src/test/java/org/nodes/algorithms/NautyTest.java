@@ -523,4 +523,27 @@ public class NautyTest
 		assertTrue(orderedA.equals(orderedB));
 		assertTrue(orderedB.equals(orderedA));
 	}
+	
+	/**
+	 * Highly symmetric graphs, which are only tractable with automorphism 
+	 * pruning.
+	 */
+	@Test
+	public void testSymmetric()
+	{
+		List<UGraph<String>> graphs = new ArrayList<UGraph<String>>();
+		graphs.add(Graphs.k(12, "x"));
+		graphs.add(Graphs.star(40, "x"));
+		graphs.add(Graphs.ladder(10, "x"));
+		
+		for(UGraph<String> graph : graphs)
+		{
+			UGraph<String> orderedA = Graphs.reorder(graph, Nauty.order(graph, new NaturalComparator<String>()));
+			
+			UGraph<String> shuffled = Graphs.reorder(graph, Order.random(graph.size()));
+			UGraph<String> orderedB = Graphs.reorder(shuffled, Nauty.order(shuffled, new NaturalComparator<String>()));
+			
+			assertTrue(orderedA.equals(orderedB));
+		}
+	}
 }
@@ -2,10 +2,22 @@ package org.nodes.algorithms;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Test;
 import org.nodes.DTGraph;
 import org.nodes.DTNode;
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.Graphs;
+import org.nodes.LightUGraph;
 import org.nodes.MapDTGraph;
+import org.nodes.UGraph;
+import org.nodes.UNode;
+import org.nodes.random.RandomGraphs;
+import org.nodes.util.BitString;
 
 public class SlashBurnTest
 {
@@ -42,4 +54,79 @@ public class SlashBurnTest
 
 	}
 
+	@Test
+	public void testOrder()
+	{
+		// * A hub with two leaves and a path of two nodes
+		UGraph<String> graph = new LightUGraph<String>();
+		List<UNode<String>> nodes = new ArrayList<UNode<String>>();
+		for(int i = 0; i < 5; i++)
+			nodes.add(graph.add("x"));
+
+		nodes.get(0).connect(nodes.get(1));
+		nodes.get(0).connect(nodes.get(2));
+		nodes.get(0).connect(nodes.get(3));
+		nodes.get(3).connect(nodes.get(4));
+
+		List<List<Integer>> islands = new ArrayList<List<Integer>>();
+		SlashBurn<String> sb = new SlashBurn<String>(graph, 1, islands);
+		BitString mask = sb.mask();
+		
+		sb.finish();
+		sb.check();
+		
+		// * The mask is a live view
+		assertEquals(1, mask.numOnes());
+		assertTrue(mask.get(4));
+
+		assertEquals(2, sb.iterations());
+		assertEquals(2, sb.headSize());
+		assertEquals(2, sb.tailSize());
+
+		// * Hubs first, then the last GCC, then the islands, the first found
+		//   last
+		assertArrayEquals(new int[]{0, 4, 3, 1, 2}, sb.permutation());
+		assertEquals(Arrays.asList(1), islands.get(0));
+		assertEquals(Arrays.asList(2), islands.get(1));
+	}
+
+	@Test
+	public void testPermutation()
+	{
+		Global.setSeed(4);
+		UGraph<String> graph = RandomGraphs.preferentialAttachment(20000, 1);
+
+		// * Large enough to find the components in parallel
+		SlashBurn<String> single = new SlashBurn<String>(graph, 10, null, null, 1);
+		SlashBurn<String> multi = new SlashBurn<String>(graph, 10, null, null, 4);
+
+		single.finish();
+		multi.finish();
+		multi.check();
+
+		assertEquals(single.iterations(), multi.iterations());
+
+		int[] permutation = multi.permutation();
+		assertArrayEquals(single.permutation(), permutation);
+		assertArrayEquals(permutation, multi.order().newIndices());
+
+		boolean[] seen = new boolean[graph.size()];
+		for(int index : permutation)
+		{
+			assertFalse(seen[index]);
+			seen[index] = true;
+		}
+
+		// * The first hub has the highest degree
+		int max = 0;
+		for(UNode<String> node : graph.nodes())
+			max = Math.max(max, node.degree());
+		assertEquals(max, graph.get(multi.order().originalIndex(0)).degree());
+
+		Graph<String> reordered = Graphs.reorder(graph, permutation);
+		assertEquals(graph.size(), reordered.size());
+		assertEquals(graph.numLinks(), reordered.numLinks());
+		for(UNode<String> node : graph.nodes())
+			assertEquals(node.degree(), reordered.get(permutation[node.index()]).degree());
+	}
 }
@@ -0,0 +1,93 @@
+package org.nodes.boxing;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.LightUGraph;
+import org.nodes.UGraph;
+import org.nodes.random.RandomGraphs;
+
+public class BoxingSweepTest
+{
+
+	@Test
+	public void testGreedy()
+	{
+		Global.setSeed(1);
+		UGraph<String> graph = RandomGraphs.preferentialAttachment(300, 2);
+
+		BoxingSweep<String> sweep = BoxingSweep.greedy(graph, 2, 5, true, 2);
+		GreedyBoxer<String> boxer = new GreedyBoxer<String>(graph, 5);
+
+		for(int l = 2; l <= 5; l++)
+		{
+			assertEquals(boxer.count(l), sweep.count(l));
+			assertEquals(sweep.count(l), sweep.boxing(l).size());
+		}
+
+		assertEquals(4, sweep.counts().length);
+	}
+
+	@Test
+	public void testCBB()
+	{
+		Global.setSeed(2);
+		UGraph<String> graph = RandomGraphs.preferentialAttachment(300, 2);
+
+		// * The result depends only on the seed
+		Global.setSeed(3);
+		BoxingSweep<String> single = BoxingSweep.cbb(graph, 1, 5, 3, false, 1);
+		Global.setSeed(3);
+		BoxingSweep<String> multi = BoxingSweep.cbb(graph, 1, 5, 3, true, 3);
+
+		for(int l = 1; l <= 5; l++)
+		{
+			assertEquals(single.count(l), multi.count(l));
+			assertEquals(multi.count(l), multi.boxing(l).size());
+			assertTrue(multi.boxing(l).uncovered().isEmpty());
+		}
+
+		assertEquals(graph.size(), single.count(1));
+
+		try
+		{
+			single.boxing(2);
+			fail();
+		} catch(IllegalStateException e)
+		{
+		}
+	}
+
+	@Test
+	public void testDimension()
+	{
+		// * A path has dimension 1
+		UGraph<String> path = new LightUGraph<String>();
+		for(int i = 0; i < 1000; i++)
+			path.add("x");
+		for(int i = 0; i < 999; i++)
+			path.get(i).connect(path.get(i + 1));
+
+		BoxingSweep<String> sweep = BoxingSweep.greedy(path, 1, 8, false, 1);
+		assertEquals(1.0, sweep.dimension(), 0.02);
+		assertEquals(1.0, sweep.regression().getRSquare(), 0.01);
+	}
+
+	@Test
+	public void testPostGraph()
+	{
+		Global.setSeed(4);
+		UGraph<String> graph = RandomGraphs.preferentialAttachment(100, 2);
+
+		Boxing<String> boxing = new CBBBoxer<String>(graph).box(3);
+		Graph<Integer> post = boxing.postGraph();
+
+		assertEquals(boxing.size(), post.size());
+		for(int i = 0; i < boxing.size(); i++)
+			for(int j = 0; j < boxing.size(); j++)
+				if(i != j)
+					assertEquals(boxing.connected(i, j), post.get(i).connected(post.get(j)));
+	}
+}
@@ -0,0 +1,77 @@
+package org.nodes.boxing;
+
+import static org.junit.Assert.*;
+
+import java.util.Set;
+
+import org.junit.Test;
+import org.nodes.DGraph;
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.Node;
+import org.nodes.UGraph;
+import org.nodes.algorithms.AllPairsBFS;
+import org.nodes.random.RandomGraphs;
+
+public class CBBBoxerTest
+{
+
+	@Test
+	public void testValid()
+	{
+		Global.setSeed(1);
+
+		UGraph<String> undirected = RandomGraphs.preferentialAttachment(300, 2);
+		DGraph<String> directed = RandomGraphs.randomDirected(150, 0.02);
+
+		for(int l = 1; l <= 5; l++)
+		{
+			check(new CBBBoxer<String>(undirected).box(l), undirected, l);
+			check(new CBBBoxer<String>(directed).box(l, 3, 2), directed, l);
+		}
+
+		// * Boxes of size 1 hold a single node
+		assertEquals(undirected.size(), new CBBBoxer<String>(undirected).box(1).size());
+	}
+
+	@Test
+	public void testRestarts()
+	{
+		Global.setSeed(2);
+		UGraph<String> graph = RandomGraphs.preferentialAttachment(500, 2);
+		CBBBoxer<String> boxer = new CBBBoxer<String>(graph);
+
+		// * The result depends only on the seed
+		Global.setSeed(3);
+		Boxing<String> single = boxer.box(3, 8, 1);
+		Global.setSeed(3);
+		Boxing<String> multi = boxer.box(3, 8, 3);
+
+		assertEquals(single.size(), multi.size());
+		for(int i = 0; i < single.size(); i++)
+			assertEquals(single.get(i), multi.get(i));
+
+		// * The best of the restarts is at least as good as the first
+		Global.setSeed(3);
+		assertTrue(boxer.count(3, 1, 1) >= single.size());
+	}
+
+	private static void check(Boxing<String> boxing, Graph<String> graph, int l)
+	{
+		AllPairsBFS<String> exact = new AllPairsBFS<String>(graph);
+
+		int covered = 0;
+		for(Set<Node<String>> box : boxing)
+		{
+			assertFalse(box.isEmpty());
+			covered += box.size();
+
+			for(Node<String> a : box)
+				for(Node<String> b : box)
+					assertTrue(exact.distance(a.index(), b.index()) < Math.max(1, l));
+		}
+
+		assertEquals(graph.size(), covered);
+		assertTrue(boxing.uncovered().isEmpty());
+	}
+}
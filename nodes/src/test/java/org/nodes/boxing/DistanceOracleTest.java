@@ -0,0 +1,152 @@
+package org.nodes.boxing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import org.nodes.DGraph;
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.Node;
+import org.nodes.UGraph;
+import org.nodes.algorithms.AllPairsBFS;
+import org.nodes.random.RandomGraphs;
+
+public class DistanceOracleTest
+{
+
+	@Test
+	public void testExact()
+	{
+		Global.setSeed(1);
+
+		UGraph<String> undirected = RandomGraphs.random(70, 80);
+		DGraph<String> directed = RandomGraphs.randomDirected(70, 0.02);
+
+		for(int landmarks : new int[]{0, 1, 5})
+		{
+			// * A cache too small for all balls
+			compare(undirected, new DistanceOracle(undirected, 3, DistanceOracle.landmarks(undirected, landmarks), 100, 2));
+			compare(directed, new DistanceOracle(directed, 3, DistanceOracle.landmarks(directed, landmarks), DistanceOracle.DEFAULT_CACHE, 2));
+		}
+	}
+
+	private <L> void compare(Graph<L> graph, DistanceOracle oracle)
+	{
+		AllPairsBFS<L> exact = new AllPairsBFS<L>(graph);
+
+		for(int i = 0; i < graph.size(); i++)
+		{
+			for(int j = 0; j < graph.size(); j++)
+			{
+				int d = exact.distance(i, j);
+				if(d == Short.MAX_VALUE)
+					d = DistanceOracle.FAR;
+
+				assertEquals(d <= 3 ? d : DistanceOracle.FAR, oracle.distance(i, j));
+				assertTrue(oracle.lowerBound(i, j) <= d);
+				assertTrue(oracle.upperBound(i, j) >= d);
+
+				for(int l = 0; l <= 4; l++)
+					assertEquals(d < l, oracle.within(i, j, l));
+			}
+
+			int[] ball = oracle.ball(i);
+			assertEquals(i, ball[0]);
+			for(int l = 1; l <= 4; l++)
+			{
+				int size = 0;
+				for(int j = 0; j < graph.size(); j++)
+					if(exact.distance(i, j) < l)
+						size++;
+
+				assertEquals(size, oracle.ballSize(i, l));
+				for(int k = 0; k < size; k++)
+					assertTrue(exact.distance(i, ball[k]) < l);
+			}
+		}
+	}
+
+	@Test
+	public void testConcurrentCache()
+	{
+		Global.setSeed(3);
+		UGraph<String> graph = RandomGraphs.preferentialAttachment(300, 2);
+
+		for(long cacheSize : new long[]{500, DistanceOracle.DEFAULT_CACHE})
+		{
+			final DistanceOracle oracle = new DistanceOracle(graph, 3, new int[0], cacheSize, 1);
+
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for(int t = 0; t < 8; t++)
+				tasks.add(new Callable<Object>()
+				{
+					@Override
+					public Object call()
+					{
+						for(int i = 0; i < oracle.size(); i++)
+							oracle.ball(i);
+
+						return null;
+					}
+				});
+
+			Global.invokeAll(tasks, 8);
+			assertTrue(oracle.cached() <= cacheSize);
+
+			// * All balls fit in the default cache, and each is counted once
+			if(cacheSize == DistanceOracle.DEFAULT_CACHE)
+			{
+				long total = 0;
+				for(int i = 0; i < oracle.size(); i++)
+					total += oracle.ball(i).length;
+
+				assertEquals(total, oracle.cached());
+			}
+		}
+	}
+
+	@Test
+	public void testBoxers()
+	{
+		Global.setSeed(2);
+		UGraph<String> graph = RandomGraphs.preferentialAttachment(200, 2);
+
+		DistanceOracle oracle = new DistanceOracle(graph, 3, 4);
+
+		for(int l = 1; l <= 4; l++)
+		{
+			check(new CBBBoxer<String>(graph, oracle).box(l), graph, l);
+			check(new GreedyBoxer<String>(graph, 4, oracle).box(l), graph, l);
+		}
+
+		try
+		{
+			new GreedyBoxer<String>(graph, 5, oracle);
+			fail();
+		} catch(IllegalArgumentException e)
+		{
+		}
+	}
+
+	private static void check(Boxing<String> boxing, Graph<String> graph, int l)
+	{
+		AllPairsBFS<String> exact = new AllPairsBFS<String>(graph);
+
+		int covered = 0;
+		for(Set<Node<String>> box : boxing)
+		{
+			covered += box.size();
+			for(Node<String> a : box)
+				for(Node<String> b : box)
+					assertTrue(exact.distance(a.index(), b.index()) < l);
+		}
+
+		assertEquals(graph.size(), covered);
+		assertTrue(boxing.uncovered().isEmpty());
+	}
+}
@@ -0,0 +1,100 @@
+package org.nodes.boxing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.nodes.DGraph;
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.LightUGraph;
+import org.nodes.Node;
+import org.nodes.UGraph;
+import org.nodes.algorithms.AllPairsBFS;
+import org.nodes.random.RandomGraphs;
+
+public class GreedyBoxerTest
+{
+
+	@Test
+	public void testColours()
+	{
+		Global.setSeed(1);
+
+		UGraph<String> undirected = RandomGraphs.preferentialAttachment(300, 2);
+		DGraph<String> directed = RandomGraphs.randomDirected(150, 0.015);
+
+		compare(undirected, new GreedyBoxer<String>(undirected, 5, 1), 5);
+		compare(undirected, new GreedyBoxer<String>(undirected, 5, 3), 5);
+		compare(directed, new GreedyBoxer<String>(directed, 4, 2), 4);
+		compare(undirected, new GreedyBoxer<String>(undirected, 4, new DistanceOracle(undirected, 3, 2)), 4);
+	}
+
+	/**
+	 * Compares the colours to those of the greedy colouring of the dual
+	 * graph.
+	 */
+	private void compare(Graph<String> graph, GreedyBoxer<String> boxer, int lMax)
+	{
+		AllPairsBFS<String> distances = new AllPairsBFS<String>(graph);
+		int n = graph.size();
+
+		for(int l = 1; l <= lMax; l++)
+		{
+			int[] colours = new int[n];
+			int numColours = 0;
+			for(int i = 0; i < n; i++)
+			{
+				List<Integer> illegal = new ArrayList<Integer>();
+				for(int j = 0; j < i; j++)
+					if(distances.distance(i, j) >= l)
+						illegal.add(colours[j]);
+
+				colours[i] = GreedyBoxer.smallestException(illegal);
+				numColours = Math.max(numColours, colours[i] + 1);
+
+				assertEquals(colours[i], boxer.colour(i, l));
+			}
+
+			assertEquals(numColours, boxer.count(l));
+			check(boxer.box(l), graph, distances, l);
+		}
+	}
+
+	@Test
+	public void testManyColours()
+	{
+		// * A path with more than 2^16 colours for box size 1
+		UGraph<String> graph = new LightUGraph<String>();
+		for(int i = 0; i < 70000; i++)
+			graph.add("x");
+		for(int i = 0; i < 69999; i++)
+			graph.get(i).connect(graph.get(i + 1));
+
+		GreedyBoxer<String> boxer = new GreedyBoxer<String>(graph, 3);
+
+		assertEquals(70000, boxer.count(1));
+		assertEquals(69999, boxer.colour(69999, 1));
+		assertEquals(35000, boxer.count(2));
+		assertEquals(23334, boxer.count(3));
+	}
+
+	private static void check(Boxing<String> boxing, Graph<String> graph, AllPairsBFS<String> distances, int l)
+	{
+		int covered = 0;
+		for(Set<Node<String>> box : boxing)
+		{
+			assertFalse(box.isEmpty());
+			covered += box.size();
+
+			for(Node<String> a : box)
+				for(Node<String> b : box)
+					assertTrue(distances.distance(a.index(), b.index()) < l);
+		}
+
+		assertEquals(graph.size(), covered);
+	}
+}
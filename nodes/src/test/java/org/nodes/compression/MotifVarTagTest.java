@@ -6,6 +6,7 @@ import static org.nodes.compression.Functions.log2;
 import static org.nodes.util.Functions.prefix;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Test;
@@ -90,5 +91,42 @@ public class MotifVarTagTest
 		System.out.println("labelset: " + mv.labelSets());
 
 	}
+	
+	@Test
+	public void testShared()
+	{
+		DTGraph<String, String> graph = new MapDTGraph<String, String>();
+		
+		for(int i = 0; i < 30; i++)
+			graph.add(i % 3 == 0 ? "a" : "b");
+		for(int i = 0; i < 30; i++)
+		{
+			graph.get(i).connect(graph.get((i + 1) % 30), i % 2 == 0 ? "x" : "y");
+			graph.get(i).connect(graph.get((i + 7) % 30), "x");
+		}
+		
+		DTGraph<String, String> motif = new MapDTGraph<String, String>();
+		DTNode<String, String> a = motif.add("a"),
+		                       v = motif.add(MotifVarTags.VARIABLE_SYMBOL);
+		a.connect(v, MotifVarTags.VARIABLE_SYMBOL);
+		
+		@SuppressWarnings("unchecked")
+		List<List<Integer>> occurrences = asList(
+			asList(0, 1),
+			asList(3, 4),
+			asList(6, 7),
+			asList(12, 13));
+		
+		for(boolean specify : new boolean[]{true, false})
+		{
+			MotifVarTags full = new MotifVarTags(graph, motif, occurrences, specify);
+			
+			MotifVarTags base = new MotifVarTags(graph, null, Collections.<List<Integer>>emptyList(), specify);
+			MotifVarTags shared = new MotifVarTags(base, motif, occurrences);
+			
+			assertEquals(full.size(), shared.size(), 1e-7);
+			assertEquals(full.size(), shared.labelSets() + shared.maskBits() + shared.occurrenceBits(), 1e-7);
+		}
+	}
 
 }
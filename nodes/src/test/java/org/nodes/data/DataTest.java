@@ -11,6 +11,7 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
@@ -28,6 +29,8 @@ import org.nodes.Graphs;
 import org.nodes.Link;
 import org.nodes.MapDTGraph;
 import org.nodes.Node;
+import org.nodes.UGraph;
+import org.nodes.UNode;
 import org.nodes.UTGraph;
 import org.nodes.clustering.ConnectionClusterer;
 import org.nodes.clustering.ConnectionClusterer.ConnectionClustering;
@@ -68,6 +71,37 @@ public class DataTest {
 		System.out.println(graph.numLinks());
 	}
 	
+	@Test
+	public void testEdgeListCSR()
+		throws IOException
+	{
+		URL url = this.getClass().getResource("/graphs/physicians/physicians.txt");
+		File file = new File(url.getFile());
+		
+		DGraph<String> expected = Data.edgeListDirectedUnlabeled(file, true);
+		
+		for(int numParts : Arrays.asList(1, 3, 16, 100))
+		{
+			DGraph<String> graph = Data.edgeListDirectedCSR(file, numParts);
+			
+			assertEquals(expected.size(), graph.size());
+			assertEquals(expected.numLinks(), graph.numLinks());
+			assertEquals(expected, graph);
+		}
+		
+		url = this.getClass().getResource("/graphs/neural/celegans.txt");
+		file = new File(url.getFile());
+
+		UGraph<String> expectedU = Data.edgeListUndirectedUnlabeled(file, true);
+		UGraph<String> graph = Data.edgeListUndirectedCSR(file, 7);
+		
+		assertEquals(expectedU.size(), graph.size());
+		assertEquals(expectedU.numLinks(), graph.numLinks());
+		
+		for(UNode<String> node : expectedU.nodes())
+			assertEquals(node.degree(), graph.get(node.index()).degree());
+	}
+	
 	@Test
 	public void createCitSMall()
 		throws IOException, ParseException
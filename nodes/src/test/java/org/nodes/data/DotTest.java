@@ -2,10 +2,14 @@ package org.nodes.data;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Random;
 
 import org.junit.Test;
+import org.nodes.DTGraph;
 import org.nodes.Global;
+import org.nodes.Graph;
 import org.nodes.UTGraph;
 import org.nodes.random.RandomGraphs;
 
@@ -27,4 +31,31 @@ public class DotTest {
 		assertEquals(graph.numLinks(), out.numLinks());
 	}
 
+	@Test
+	public void testStream()
+		throws IOException
+	{
+		Global.randomSeed();
+		
+		DTGraph<String, String> graph = RandomGraphs.preferentialAttachmentDirected(30, 2);
+		graph.add("isolated");
+		
+		for(String name : new String[]{"dot-test.dot", "dot-test.dot.gz"})
+		{
+			File file = File.createTempFile("dot-test", name);
+			file.deleteOnExit();
+			
+			Dot.write(graph, file);
+			
+			for(boolean light : new boolean[]{false, true})
+			{
+				Graph<String> out = Dot.read(file, light);
+				
+				assertTrue(out instanceof DTGraph<?, ?>);
+				assertEquals(graph.size(), out.size());
+				assertEquals(graph.numLinks(), out.numLinks());
+			}
+		}
+	}
+
 }
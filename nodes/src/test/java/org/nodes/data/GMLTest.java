@@ -0,0 +1,95 @@
+package org.nodes.data;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.nodes.DTGraph;
+import org.nodes.DTLink;
+import org.nodes.Global;
+import org.nodes.LightDTGraph;
+import org.nodes.MapDTGraph;
+import org.nodes.TGraph;
+import org.nodes.UTGraph;
+import org.nodes.random.RandomGraphs;
+
+public class GMLTest
+{
+
+	@Test
+	public void testRoundTrip()
+		throws IOException
+	{
+		Global.randomSeed();
+		
+		DTGraph<String, String> graph = new MapDTGraph<String, String>();
+		graph.add("a \"quoted\" label");
+		graph.add("b");
+		graph.add("c");
+		
+		graph.get(0).connect(graph.get(1), "x");
+		graph.get(1).connect(graph.get(2), "y z");
+		graph.get(2).connect(graph.get(0));
+		
+		for(String name : new String[]{".gml", ".gml.gz"})
+		{
+			File file = File.createTempFile("gml-test", name);
+			file.deleteOnExit();
+			
+			GML.write(graph, file);
+
+			TGraph<String, String> out = GML.read(file, false);
+			assertTrue(out instanceof MapDTGraph<?, ?>);
+			assertEquals(graph, out);
+			
+			out = GML.read(file, true);
+			assertTrue(out instanceof LightDTGraph<?, ?>);
+			assertEquals(graph, out);
+			
+			DTLink<String, String> link = ((DTGraph<String, String>) out).get(1).linksOut().iterator().next();
+			assertEquals("y z", link.tag());
+		}
+	}
+	
+	@Test
+	public void testUndirected()
+		throws IOException
+	{
+		Global.randomSeed();
+		
+		UTGraph<String, String> graph = RandomGraphs.preferentialAttachment(50, 2);
+		
+		String gml = GML.toString(graph);
+		TGraph<String, String> out = GML.read(new ByteArrayInputStream(gml.getBytes("UTF-8")), false);
+		
+		assertTrue(out instanceof UTGraph<?, ?>);
+		assertEquals(graph.size(), out.size());
+		assertEquals(graph.numLinks(), out.numLinks());
+	}
+	
+	@Test
+	public void testAttributes()
+		throws IOException
+	{
+		String gml = 
+				"Creator \"test\"\n" +
+				"graph [\n" +
+				"  directed 1\n" +
+				"  comment \"ignored [ ] \"\n" +
+				"  node [ id 1 label \"one\" graphics [ x 1.0 y [ 2.0 ] ] ]\n" +
+				"  node [id 2]\n" +
+				"  edge [ source 1 target 2 graphics [ width 2 ] ]\n" +
+				"]";
+		
+		TGraph<String, String> out = GML.read(new ByteArrayInputStream(gml.getBytes("UTF-8")), false);
+		
+		assertEquals(2, out.size());
+		assertEquals(1, out.numLinks());
+		assertEquals("one", out.get(0).label());
+		assertEquals("2", out.get(1).label());
+		assertTrue(out.get(0).connected(out.get(1)));
+	}
+}
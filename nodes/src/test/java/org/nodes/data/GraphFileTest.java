@@ -0,0 +1,98 @@
+package org.nodes.data;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.nodes.DGraph;
+import org.nodes.DLink;
+import org.nodes.DNode;
+import org.nodes.LightDGraph;
+import org.nodes.LightUGraph;
+import org.nodes.MappedDGraph;
+import org.nodes.MappedUGraph;
+import org.nodes.UGraph;
+import org.nodes.UNode;
+
+public class GraphFileTest
+{
+	@Test
+	public void testDirected()
+			throws IOException
+	{
+		DGraph<String> graph = LightDGraph.copy(Examples.physicians());
+		
+		File file = File.createTempFile("physicians", ".graph");
+		file.deleteOnExit();
+		
+		GraphFile.write(graph, file);
+		MappedDGraph mapped = GraphFile.readDirected(file);
+		
+		assertEquals(graph.size(), mapped.size());
+		assertEquals(graph.numLinks(), mapped.numLinks());
+		assertEquals(graph, mapped);
+		
+		for(DLink<String> link : graph.links())
+			assertTrue(mapped.get(link.from().index()).connectedTo(mapped.get(link.to().index())));
+		
+		for(DNode<String> node : graph.nodes())
+		{
+			DNode<String> other = mapped.get(node.index());
+			assertEquals(node.label(), other.label());
+			assertEquals(node.inDegree(), other.inDegree());
+			assertEquals(node.outDegree(), other.outDegree());
+			assertEquals(node.neighbors().size(), other.neighbors().size());
+		}
+	}
+	
+	@Test
+	public void testUndirected()
+			throws IOException
+	{
+		LightUGraph<String> graph = new LightUGraph<String>();
+		UNode<String> a = graph.add("a"), b = graph.add(null), c = graph.add("ç");
+		
+		a.connect(a);
+		b.connect(c);
+		c.connect(a);
+		a.connect(c);
+		
+		File file = File.createTempFile("small", ".graph");
+		file.deleteOnExit();
+		
+		GraphFile.write(graph, file);
+		MappedUGraph mapped = GraphFile.readUndirected(file);
+		
+		assertEquals(4, mapped.numLinks());
+		assertEquals(4, mapped.links().size());
+		assertEquals("ç", mapped.get(2).label());
+		assertNull(mapped.get(1).label());
+		assertEquals(2, mapped.get(0).links(mapped.get(2)).size());
+		assertTrue(mapped.get(0).connected(mapped.get(0)));
+		assertFalse(mapped.get(0).connected(mapped.get(1)));
+		
+		UGraph<String> yeast = Examples.yeast();
+		GraphFile.write(yeast, file);
+		
+		MappedUGraph mappedYeast = GraphFile.readUndirected(file);
+		assertEquals(yeast.numLinks(), mappedYeast.numLinks());
+		
+		int numLinks = 0;
+		for(Object link : mappedYeast.links())
+			numLinks ++;
+		assertEquals(yeast.numLinks(), numLinks);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testWrongDirection()
+			throws IOException
+	{
+		File file = File.createTempFile("physicians", ".graph");
+		file.deleteOnExit();
+		
+		GraphFile.write(Examples.physicians(), file);
+		GraphFile.readUndirected(file);
+	}
+}
@@ -52,6 +52,36 @@ public class DSequenceModelTest
 //
 //	}
 
+	@Test
+	public void testParallel()
+	{
+		DGraph<String> graph = RandomGraphs.randomDirected(30, 0.1);
+		
+		Global.setSeed(1);
+		DSequenceEstimator<String> a = new DSequenceEstimator<String>(graph);
+		a.nonuniform(200, 3);
+		
+		Global.setSeed(1);
+		DSequenceEstimator<String> b = new DSequenceEstimator<String>(graph);
+		b.nonuniform(200, 3);
+		
+		assertEquals(200, a.logSamples().size());
+		// * Each task has its own random stream, so the result is repeatable
+		assertEquals(a.logSamples(), b.logSamples());
+	}
+	
+	@Test
+	public void testEarlyStop()
+	{
+		DGraph<String> graph = RandomGraphs.randomDirected(30, 0.1);
+		DSequenceEstimator<String> model = new DSequenceEstimator<String>(graph);
+		
+		int drawn = model.nonuniform(100000, 2, 0.05, 1000.0);
+		
+		assertTrue(drawn < 100000);
+		assertEquals(drawn, model.logSamples().size());
+	}
+	
 	@Test
 	public void testG1()
 	{
@@ -0,0 +1,45 @@
+package org.nodes.models;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.nodes.DGraph;
+import org.nodes.Graph;
+import org.nodes.models.DegreeSequenceModel.Estimate;
+import org.nodes.models.DegreeSequenceModel.Margin;
+import org.nodes.models.DegreeSequenceModel.Prior;
+import org.nodes.random.RandomGraphs;
+
+public class DegreeSequenceModelTest
+{
+
+	@Test
+	public void testAdaptive()
+	{
+		Graph<String> graph = RandomGraphs.random(50, 150);
+
+		DegreeSequenceModel fixed = new DegreeSequenceModel(2000, 0.05, Prior.NONE, Margin.MEAN);
+		DegreeSequenceModel adaptive = new DegreeSequenceModel(2000, 0.05, Prior.NONE, Margin.MEAN, 1.0, -1);
+
+		Estimate full = fixed.estimate(graph);
+		Estimate early = adaptive.estimate(graph);
+
+		assertEquals(2000, full.samples());
+		assertTrue(early.samples() < 2000);
+
+		assertEquals(full.codelength(), early.codelength(), 1.0);
+	}
+
+	@Test
+	public void testTimeBudget()
+	{
+		DGraph<String> graph = RandomGraphs.randomDirected(50, 0.1);
+
+		DegreeSequenceModel model = new DegreeSequenceModel(Integer.MAX_VALUE, 0.05, Prior.NONE, Margin.MEAN, -1.0, 200);
+
+		Estimate estimate = model.estimate(graph);
+
+		assertTrue(estimate.samples() >= 2);
+		assertTrue(estimate.samples() < Integer.MAX_VALUE);
+	}
+}
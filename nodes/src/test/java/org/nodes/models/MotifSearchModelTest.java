@@ -0,0 +1,74 @@
+package org.nodes.models;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.nodes.Global;
+import org.nodes.UGraph;
+import org.nodes.motifs.UPlainMotifExtractor;
+import org.nodes.random.RandomGraphs;
+
+public class MotifSearchModelTest
+{
+
+	@Test
+	public void testParallel()
+	{
+		Global.setSeed(1);
+		UGraph<String> graph = RandomGraphs.random(150, 0.05);
+		
+		UPlainMotifExtractor<String> ex = new UPlainMotifExtractor<String>(graph, 5000, 3, 4);
+		
+		List<UGraph<String>> subs = new ArrayList<UGraph<String>>(ex.subgraphs());
+		subs = subs.subList(0, Math.min(5, subs.size()));
+		
+		List<List<List<Integer>>> occurrences = new ArrayList<List<List<Integer>>>();
+		for(UGraph<String> sub : subs)
+			occurrences.add(ex.occurrences(sub));
+		
+		for(int depth : new int[]{-1, 2})
+		{
+			List<Double> er = new ArrayList<Double>(), el = new ArrayList<Double>();
+			
+			for(int i = 0; i < subs.size(); i++)
+			{
+				er.add(MotifSearchModel.sizeER(graph, subs.get(i), occurrences.get(i), true, depth));
+				el.add(MotifSearchModel.sizeEL(graph, subs.get(i), occurrences.get(i), true, depth));
+			}
+			
+			for(int i = 0; i < subs.size(); i++)
+			{
+				assertEquals(er.get(i), MotifSearchModel.sizeER(graph, subs.get(i), occurrences.get(i), true, depth, 7), 0.0);
+				assertEquals(el.get(i), MotifSearchModel.sizeEL(graph, subs.get(i), occurrences.get(i), true, depth, 7), 0.0);
+			}
+			
+			for(int threads : new int[]{1, 7})
+			{
+				assertEquals(er, MotifSearchModel.sizesER(graph, subs, occurrences, true, depth, threads));
+				assertEquals(el, MotifSearchModel.sizesEL(graph, subs, occurrences, true, depth, threads));
+			}
+		}
+	}
+	
+	@Test
+	public void testBetaReproducible()
+	{
+		Global.setSeed(2);
+		UGraph<String> graph = RandomGraphs.random(50, 0.1);
+		
+		UPlainMotifExtractor<String> ex = new UPlainMotifExtractor<String>(graph, 1000, 3, 3);
+		UGraph<String> sub = ex.subgraphs().get(0);
+		List<List<Integer>> occurrences = ex.occurrences(sub);
+		
+		Global.setSeed(3);
+		double first = MotifSearchModel.sizeBeta(graph, sub, occurrences, true, 20, 0.05);
+		
+		Global.setSeed(3);
+		double second = MotifSearchModel.sizeBeta(graph, sub, occurrences, true, 20, 0.05);
+		
+		assertEquals(first, second, 0.0);
+	}
+}
@@ -0,0 +1,264 @@
+package org.nodes.models;
+
+import static org.junit.Assert.*;
+import static org.nodes.util.Functions.log2;
+import static org.nodes.util.Functions.log2Choose;
+import static org.nodes.util.Functions.log2Factorial;
+import static org.nodes.util.Functions.prefix;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.nodes.DGraph;
+import org.nodes.DLink;
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.UGraph;
+import org.nodes.ULink;
+import org.nodes.models.DSequenceEstimator.D;
+import org.nodes.models.DegreeSequenceModel.Prior;
+import org.nodes.random.RandomGraphs;
+import org.nodes.util.FrequencyModel;
+import org.nodes.util.Functions;
+import org.nodes.util.OnlineModel;
+import org.nodes.util.Pair;
+
+public class SubbedGraphTest
+{
+
+	@Test
+	public void testIncremental()
+	{
+		Global.setSeed(1);
+		
+		for(Graph<String> data : new Graph[]{RandomGraphs.random(100, 0.05), RandomGraphs.randomDirected(100, 0.05)})
+		{
+			List<List<Integer>> occurrences = occurrences(data.size(), 3, 20);
+			
+			SubbedGraph incremental = new SubbedGraph(data);
+			for(int i = 0; i < occurrences.size(); i++)
+			{
+				SubbedGraph fresh = new SubbedGraph(data);
+				fresh.addAll(occurrences.subList(0, i));
+				
+				assertSame(incremental, fresh);
+				
+				incremental.add(occurrences.get(i));
+				
+				// * A copy is independent of the original
+				SubbedGraph copy = incremental.copy();
+				copy.removeLast();
+				assertSame(copy, fresh);
+			}
+			
+			while(incremental.numOccurrences() > 0)
+				incremental.removeLast();
+			
+			assertSame(incremental, new SubbedGraph(data));
+			assertEquals(data.numLinks(), incremental.numLinks());
+		}
+	}
+	
+	@Test
+	public void testEdgeList()
+	{
+		Global.setSeed(2);
+		
+		UGraph<String> data = RandomGraphs.random(100, 0.05);
+		SubbedGraph subbed = new SubbedGraph(data);
+		subbed.addAll(occurrences(data.size(), 4, 15));
+		
+		assertEquals(EdgeListModel.undirected(subbed.degrees(), Prior.COMPLETE), subbed.edgeListBits(), 1e-7);
+		
+		DGraph<String> directed = RandomGraphs.randomDirected(100, 0.05);
+		subbed = new SubbedGraph(directed);
+		subbed.addAll(occurrences(directed.size(), 4, 15));
+		
+		assertEquals(EdgeListModel.directed(subbed.directedDegrees(), Prior.COMPLETE), subbed.edgeListBits(), 1e-7);
+	}
+	
+	/**
+	 * Compares sizeER and sizeEL to the same codelengths computed from the
+	 * materialized subbed graph.
+	 */
+	@Test
+	public void testMaterialized()
+	{
+		Global.setSeed(3);
+		
+		UGraph<String> data = RandomGraphs.random(100, 0.1);
+		UGraph<String> sub = RandomGraphs.random(4, 3);
+		List<List<Integer>> occurrences = occurrences(data.size(), 4, 15);
+		
+		assertEquals(materializedER(data, sub, occurrences), MotifModel.sizeER(data, sub, occurrences, true), 1e-7);
+		assertEquals(materializedEL(data, sub, occurrences), MotifModel.sizeEL(data, sub, occurrences, true), 1e-7);
+		
+		DGraph<String> directed = RandomGraphs.randomDirected(100, 0.1);
+		DGraph<String> dSub = RandomGraphs.randomDirected(4, 0.5);
+		occurrences = occurrences(directed.size(), 4, 15);
+		
+		assertEquals(materializedER(directed, dSub, occurrences), MotifModel.sizeER(directed, dSub, occurrences, true), 1e-7);
+		assertEquals(materializedEL(directed, dSub, occurrences), MotifModel.sizeEL(directed, dSub, occurrences, true), 1e-7);
+	}
+	
+	private static double materializedER(Graph<String> data, Graph<String> sub, List<List<Integer>> occurrences)
+	{
+		Materialized m = new Materialized(data, occurrences);
+		
+		double n = m.size;
+		double t = data instanceof DGraph<?> ? n * n - n : (n * n - n)/2;
+		
+		return new ERSimpleModel(true).codelength(sub) 
+				+ prefix(m.size) + log2(t) + log2Choose(m.numLinks, t)
+				+ m.multipleEdgeBits() 
+				+ rest(data, sub, occurrences);
+	}
+	
+	private static double materializedEL(Graph<String> data, Graph<String> sub, List<List<Integer>> occurrences)
+	{
+		Materialized m = new Materialized(data, occurrences);
+		
+		double subbed = data instanceof DGraph<?> ? 
+				EdgeListModel.directed(m.directedDegrees(), Prior.COMPLETE) :
+				EdgeListModel.undirected(m.degrees(), Prior.COMPLETE);
+		
+		return new EdgeListModel(Prior.COMPLETE).codelength(sub) 
+				+ subbed 
+				+ m.multipleEdgeBits() 
+				+ rest(data, sub, occurrences);
+	}
+	
+	/**
+	 * The wiring, insertion and label bits, which don't depend on the subbed
+	 * graph.
+	 */
+	private static double rest(Graph<String> data, Graph<String> sub, List<List<Integer>> occurrences)
+	{
+		int subbedSize = data.size() - (sub.size() - 1) * occurrences.size();
+		
+		return MotifModel.wiringBitsDirect(data, sub, occurrences, true) 
+				+ log2Factorial(data.size()) - log2Factorial(subbedSize)
+				+ log2Choose(occurrences.size(), subbedSize);
+	}
+	
+	/**
+	 * The statistics of the subbed graph as built by MotifModel.subbedGraph, 
+	 * in which links to instance nodes may be multiple links. These are merged,
+	 * and the number of links removed is stored with the multiple edges.
+	 */
+	private static class Materialized
+	{
+		int size, numLinks = 0;
+		FrequencyModel<Integer> in = new FrequencyModel<Integer>(), 
+		                        out = new FrequencyModel<Integer>();
+		FrequencyModel<Pair<Integer, Integer>> pairs = new FrequencyModel<Pair<Integer, Integer>>();
+		
+		public Materialized(Graph<String> data, List<List<Integer>> occurrences)
+		{
+			Set<Integer> instances = new HashSet<Integer>();
+			List<List<Integer>> wiring = new ArrayList<List<Integer>>();
+			
+			if(data instanceof DGraph<?>)
+			{
+				DGraph<String> subbed = MotifModel.subbedGraph((DGraph<String>) data, occurrences, wiring, instances);
+				size = subbed.size();
+				
+				for(DLink<String> link : subbed.links())
+					add(link.from().index(), link.to().index(), instances, true);
+			} else
+			{
+				UGraph<String> subbed = MotifModel.subbedGraph((UGraph<String>) data, occurrences, wiring, instances);
+				size = subbed.size();
+				
+				for(ULink<String> link : subbed.links())
+					add(link.first().index(), link.second().index(), instances, false);
+			}
+		}
+		
+		private void add(int from, int to, Set<Integer> instances, boolean directed)
+		{
+			if(instances.contains(from) || instances.contains(to))
+			{
+				if(from == to)
+					return;
+				
+				Pair<Integer, Integer> pair = directed ? 
+						Pair.p(from, to) : Pair.p(Math.min(from, to), Math.max(from, to));
+				
+				pairs.add(pair);
+				if(pairs.frequency(pair) > 1.0)
+					return;
+			}
+			
+			numLinks++;
+			out.add(from);
+			in.add(to);
+		}
+		
+		public double multipleEdgeBits()
+		{
+			List<Integer> additions = new ArrayList<Integer>();
+			for(Pair<Integer, Integer> pair : pairs.tokens())
+				additions.add((int) pairs.frequency(pair) - 1);
+			
+			return prefix(additions.isEmpty() ? 0 : Functions.max(additions)) 
+					+ OnlineModel.storeIntegers(additions);
+		}
+		
+		public List<Integer> degrees()
+		{
+			FrequencyModel<Integer> degrees = new FrequencyModel<Integer>();
+			for(int node : in.tokens())
+				degrees.add(node, in.frequency(node));
+			for(int node : out.tokens())
+				degrees.add(node, out.frequency(node));
+			
+			List<Integer> result = new ArrayList<Integer>();
+			for(int node : degrees.tokens())
+				result.add((int) degrees.frequency(node));
+			
+			return result;
+		}
+		
+		public List<D> directedDegrees()
+		{
+			Set<Integer> nodes = new HashSet<Integer>(in.tokens());
+			nodes.addAll(out.tokens());
+			
+			List<D> result = new ArrayList<D>();
+			for(int node : nodes)
+				result.add(new D((int) in.frequency(node), (int) out.frequency(node)));
+			
+			return result;
+		}
+	}
+	
+	private static void assertSame(SubbedGraph expected, SubbedGraph actual)
+	{
+		assertEquals(expected.numLinks(), actual.numLinks());
+		assertEquals(expected.numPresent(), actual.numPresent());
+		assertEquals(expected.edgeListBits(), actual.edgeListBits(), 1e-7);
+		assertEquals(expected.multipleEdgeBits(), actual.multipleEdgeBits(), 1e-7);
+	}
+	
+	/**
+	 * Random non-overlapping occurrences.
+	 */
+	private static List<List<Integer>> occurrences(int n, int size, int num)
+	{
+		List<Integer> nodes = new ArrayList<Integer>();
+		for(int i = 0; i < n; i++)
+			nodes.add(i);
+		Collections.shuffle(nodes, Global.random());
+		
+		List<List<Integer>> occurrences = new ArrayList<List<Integer>>();
+		for(int i = 0; i < num; i++)
+			occurrences.add(new ArrayList<Integer>(nodes.subList(i * size, (i + 1) * size)));
+		
+		return occurrences;
+	}
+}
@@ -21,6 +21,7 @@ import java.util.TreeSet;
 
 import org.apache.commons.math3.distribution.TDistribution;
 import org.junit.Test;
+import org.nodes.Global;
 import org.nodes.Graph;
 import org.nodes.Graphs;
 import org.nodes.MapUTGraph;
@@ -160,6 +161,27 @@ public class USequenceModelTest
 		assertEquals(1.51E57, model.numGraphs(), 0.06E57);
 	}
 	
+	@Test
+	public void testParallel()
+	{
+		Graph<String> graph = RandomGraphs.random(30, 60);
+		
+		Global.setSeed(1);
+		USequenceEstimator<String> a = new USequenceEstimator<String>(graph);
+		a.nonuniform(200, 3);
+		
+		Global.setSeed(1);
+		USequenceEstimator<String> b = new USequenceEstimator<String>(graph);
+		b.nonuniform(200, 3);
+		
+		assertEquals(200, a.logSamples().size());
+		assertEquals(a.logSamples(), b.logSamples());
+		
+		int drawn = a.nonuniform(100000, 2, 0.05, 1000.0);
+		assertTrue(drawn < 100000);
+		assertEquals(200 + drawn, a.logSamples().size());
+	}
+	
 	@Test
 	public void testMulti()
 	{
@@ -0,0 +1,118 @@
+package org.nodes.motifs;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.nodes.DGraph;
+import org.nodes.DTGraph;
+import org.nodes.Global;
+import org.nodes.Graphs;
+import org.nodes.Subgraph;
+import org.nodes.UGraph;
+import org.nodes.algorithms.Nauty;
+import org.nodes.random.RandomGraphs;
+import org.nodes.util.Functions;
+import org.nodes.util.Order;
+
+public class CanonicalCacheTest
+{
+
+	@Test
+	public void testUndirected()
+	{
+		Global.setSeed(1);
+		UGraph<String> data = RandomGraphs.random(30, 0.3);
+		Functions.NaturalComparator<String> comp = new Functions.NaturalComparator<String>();
+
+		CanonicalCache<String> cache = new CanonicalCache<String>(comp);
+
+		for(int i = 0; i < 2000; i++)
+		{
+			List<Integer> indices = Functions.sample(4, data.size());
+
+			UGraph<String> sub = Subgraph.uSubgraphIndices(data, indices);
+			Order order = Nauty.order(sub, comp);
+
+			CanonicalCache.Entry<UGraph<String>> entry = cache.undirected(data, indices);
+
+			assertEquals(Graphs.reorder(sub, order), entry.graph());
+			assertEquals(order.apply(indices), entry.order().apply(indices));
+		}
+
+		assertEquals(2000, cache.hits() + cache.misses());
+		assertTrue(cache.hits() > cache.misses());
+	}
+
+	@Test
+	public void testDirectedBlank()
+	{
+		Global.setSeed(1);
+		DTGraph<String, String> data = RandomGraphs.randomDirected(30, 0.2);
+		Functions.NaturalComparator<String> comp = new Functions.NaturalComparator<String>();
+
+		CanonicalCache<String> cache = CanonicalCache.blank("", 10);
+
+		for(int i = 0; i < 2000; i++)
+		{
+			List<Integer> indices = Functions.sample(4, data.size());
+
+			DGraph<String> sub = Graphs.blank(Subgraph.dSubgraphIndices(data, indices), "");
+			Order order = Nauty.order(sub, comp);
+
+			CanonicalCache.Entry<DGraph<String>> entry = cache.directed(data, indices);
+
+			assertEquals(Graphs.reorder(sub, order), entry.graph());
+		}
+
+		assertTrue(cache.size() <= 10);
+	}
+
+	@Test
+	public void testConcurrentCapacity() throws Exception
+	{
+		Global.setSeed(2);
+		final UGraph<String> data = RandomGraphs.random(30, 0.3);
+		final CanonicalCache<String> cache = CanonicalCache.blank("", 5);
+
+		List<Future<Object>> futures = new ArrayList<Future<Object>>();
+		for(int t = 0; t < 4; t++)
+		{
+			final long seed = Global.random().nextLong();
+			futures.add(Global.executor().submit(new Callable<Object>()
+			{
+				@Override
+				public Object call()
+				{
+					Random random = new Random(seed);
+					for(int i = 0; i < 500; i++)
+					{
+						int size = 3 + random.nextInt(3);
+						List<Integer> indices = new ArrayList<Integer>();
+						while(indices.size() < size)
+						{
+							int index = random.nextInt(data.size());
+							if(! indices.contains(index))
+								indices.add(index);
+						}
+						
+						CanonicalCache.Entry<UGraph<String>> entry = cache.undirected(data, indices);
+						assertEquals(MotifCode.of(entry.graph()), entry.code());
+					}
+					return null;
+				}
+			}));
+		}
+
+		for(Future<Object> future : futures)
+			future.get();
+
+		assertTrue(cache.size() <= 5);
+		assertEquals(2000, cache.hits() + cache.misses());
+	}
+}
@@ -0,0 +1,113 @@
+package org.nodes.motifs;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.nodes.DGraph;
+import org.nodes.Global;
+import org.nodes.Graph;
+import org.nodes.Graphs;
+import org.nodes.Subgraph;
+import org.nodes.UGraph;
+import org.nodes.clustering.ConnectionClusterer;
+import org.nodes.random.RandomGraphs;
+import org.nodes.util.Functions;
+
+public class MotifCensusTest
+{
+	/**
+	 * Counts the connected subgraphs by checking every set of nodes. 
+	 */
+	private static Map<MotifCode, Long> bruteForce(Graph<String> data, int size)
+	{
+		CanonicalCache<String> cache = new CanonicalCache<String>(new Functions.NaturalComparator<String>());
+		Map<MotifCode, Long> counts = new HashMap<MotifCode, Long>();
+		
+		List<Integer> indices = new ArrayList<Integer>();
+		bruteForce(data, size, 0, indices, cache, counts);
+		
+		return counts;
+	}
+	
+	private static void bruteForce(Graph<String> data, int size, int next, List<Integer> indices, CanonicalCache<String> cache, Map<MotifCode, Long> counts)
+	{
+		if(indices.size() == size)
+		{
+			Graph<String> sub = Subgraph.subgraphIndices(data, indices);
+			if(ConnectionClusterer.largest(sub).size() != size)
+				return;
+			
+			MotifCode code = data instanceof DGraph<?> 
+					? cache.directed((DGraph<String>) data, indices).code()
+					: cache.undirected((UGraph<String>) data, indices).code();
+			
+			Long count = counts.get(code);
+			counts.put(code, count == null ? 1 : count + 1);
+			return;
+		}
+		
+		for(int i = next; i < data.size(); i++)
+		{
+			indices.add(i);
+			bruteForce(data, size, i + 1, indices, cache, counts);
+			indices.remove(indices.size() - 1);
+		}
+	}
+	
+	@Test
+	public void testUndirected()
+	{
+		Global.setSeed(1);
+		UGraph<String> data = Graphs.blank(RandomGraphs.random(16, 0.25), "x");
+		
+		for(int size = 3; size <= 5; size++)
+		{
+			Map<MotifCode, Long> expected = bruteForce(data, size);
+			MotifCensus<String> census = new MotifCensus<String>(data, size, true, 4);
+			
+			long total = 0;
+			for(MotifCode code : expected.keySet())
+			{
+				assertEquals((long) expected.get(code), census.count(code));
+				assertEquals((long) expected.get(code), census.occurrences(code).size());
+				total += expected.get(code);
+			}
+			
+			assertEquals(expected.size(), census.motifs().size());
+			assertEquals(total, census.total());
+		}
+	}
+	
+	@Test
+	public void testDirected()
+	{
+		Global.setSeed(1);
+		DGraph<String> data = Graphs.blank(RandomGraphs.randomDirected(14, 0.15), "x");
+		
+		Map<MotifCode, Long> expected = bruteForce(data, 4);
+		MotifCensus<String> census = new MotifCensus<String>(data, 4, false, 1);
+
+		for(MotifCode code : expected.keySet())
+			assertEquals((long) expected.get(code), census.count(code));
+		
+		assertEquals(expected.size(), census.motifs().size());
+	}
+	
+	@Test
+	public void testOccurrences()
+	{
+		Global.setSeed(1);
+		UGraph<String> data = Graphs.blank(RandomGraphs.random(50, 0.1), "x");
+		
+		MotifCensus<String> census = new MotifCensus<String>(data, 4, true, 2);
+		
+		for(MotifCode code : census.motifs())
+			for(List<Integer> occurrence : census.occurrences(code))
+				assertEquals(code.toUGraph(), Subgraph.uSubgraphIndices(data, occurrence));
+	}
+}
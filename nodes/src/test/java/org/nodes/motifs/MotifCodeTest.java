@@ -0,0 +1,78 @@
+package org.nodes.motifs;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.nodes.DGraph;
+import org.nodes.Global;
+import org.nodes.Graphs;
+import org.nodes.MapUTGraph;
+import org.nodes.UGraph;
+import org.nodes.UNode;
+import org.nodes.random.RandomGraphs;
+import org.nodes.util.Functions;
+
+public class MotifCodeTest
+{
+
+	@Test
+	public void testRoundTrip()
+	{
+		Global.setSeed(1);
+
+		UGraph<String> undirected = RandomGraphs.random(12, 0.4);
+		DGraph<String> directed = RandomGraphs.randomDirected(12, 0.4);
+
+		assertEquals(undirected, MotifCode.of(undirected).toUGraph());
+		assertEquals(directed, MotifCode.of(directed).toDGraph());
+
+		assertEquals(undirected.numLinks(), MotifCode.of(undirected).numLinks());
+		assertEquals(directed.numLinks(), MotifCode.of(directed).numLinks());
+	}
+
+	@Test
+	public void testMultipleLinks()
+	{
+		UGraph<String> graph = new MapUTGraph<String, String>();
+		UNode<String> a = graph.add("a"), b = graph.add("b");
+
+		a.connect(b);
+		a.connect(a);
+
+		MotifCode single = MotifCode.of(graph);
+		a.connect(b);
+		MotifCode multiple = MotifCode.of(graph);
+
+		assertFalse(single.equals(multiple));
+		assertEquals(graph, multiple.toUGraph());
+	}
+
+	@Test
+	public void testEquality()
+	{
+		Global.setSeed(1);
+		UGraph<String> data = RandomGraphs.random(30, 0.3);
+
+		CanonicalCache<String> cache = new CanonicalCache<String>(new Functions.NaturalComparator<String>());
+
+		for(int i = 0; i < 500; i++)
+		{
+			List<Integer> a = Functions.sample(4, data.size()), b = Functions.sample(4, data.size());
+
+			CanonicalCache.Entry<UGraph<String>> ea = cache.undirected(data, a),
+			                                     eb = cache.undirected(data, b);
+
+			assertEquals(ea.graph().equals(eb.graph()), ea.code().equals(eb.code()));
+			assertEquals(ea.graph(), ea.code().toUGraph());
+
+			// * Codes from the same cache are interned
+			if(ea.code().equals(eb.code()))
+				assertSame(ea.code(), eb.code());
+		}
+
+		UGraph<String> graph = Graphs.blank(RandomGraphs.random(5, 0.5), "x");
+		assertFalse(MotifCode.of(graph).equals(MotifCode.of(Graphs.blank(graph, "y"))));
+	}
+}
@@ -0,0 +1,75 @@
+package org.nodes.motifs;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.nodes.Global;
+import org.nodes.UGraph;
+import org.nodes.random.RandomGraphs;
+import org.nodes.random.SimpleSubgraphGenerator;
+import org.nodes.util.Generators;
+
+public class OverlapRemoverTest
+{
+	private static List<List<Integer>> sample(UGraph<String> data, int size, int n)
+	{
+		SimpleSubgraphGenerator gen = new SimpleSubgraphGenerator(data, Generators.uniform(size, size + 1));
+		
+		List<List<Integer>> occurrences = new ArrayList<List<Integer>>();
+		for(int i = 0; i < n; i++)
+			occurrences.add(gen.generate());
+		
+		return occurrences;
+	}
+
+	@Test
+	public void testExDegree()
+	{
+		Global.setSeed(1);
+		UGraph<String> data = RandomGraphs.random(200, 600);
+		OverlapRemover remover = new OverlapRemover(data);
+		
+		for(List<Integer> occurrence : sample(data, 4, 500))
+			assertEquals(MotifCompressor.exDegree(data, occurrence), remover.exDegree(occurrence));
+	}
+	
+	@Test
+	public void testRemove()
+	{
+		Global.setSeed(1);
+		final UGraph<String> data = RandomGraphs.random(200, 600);
+		OverlapRemover remover = new OverlapRemover(data);
+		
+		Map<Integer, List<List<Integer>>> occurrences = new LinkedHashMap<Integer, List<List<Integer>>>();
+		for(int size = 3; size <= 5; size++)
+			occurrences.put(size, sample(data, size, 2000));
+		
+		Map<Integer, List<List<Integer>>> result = remover.remove(occurrences, occurrences.keySet(), 3);
+		
+		for(int size : occurrences.keySet())
+		{
+			// * Reference: take the occurrences greedily by exdegree
+			List<List<Integer>> sorted = new ArrayList<List<Integer>>(occurrences.get(size));
+			Collections.sort(sorted, MotifCompressor.exDegreeComparator(data));
+			
+			Set<Integer> taken = new HashSet<Integer>();
+			List<List<Integer>> expected = new ArrayList<List<Integer>>();
+			for(List<Integer> occurrence : sorted)
+				if(Collections.disjoint(taken, occurrence))
+				{
+					expected.add(occurrence);
+					taken.addAll(occurrence);
+				}
+			
+			assertEquals(expected, result.get(size));
+		}
+	}
+}
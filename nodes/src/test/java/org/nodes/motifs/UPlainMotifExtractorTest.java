@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.junit.Test;
+import org.nodes.Global;
 import org.nodes.MapUTGraph;
 import org.nodes.Subgraph;
 import org.nodes.UGraph;
@@ -148,4 +149,23 @@ public class UPlainMotifExtractorTest
 		}
 
 	
+	@Test
+	public void testThreads()
+	{
+		Global.setSeed(1);
+		UGraph<String> data = RandomGraphs.random(300, 900);
+		
+		Global.setSeed(2);
+		UPlainMotifExtractor<String> single = new UPlainMotifExtractor<String>(data, 50000, 3, 5, 0, 1);
+		Global.setSeed(2);
+		UPlainMotifExtractor<String> multi = new UPlainMotifExtractor<String>(data, 50000, 3, 5, 0, 4);
+		
+		assertEquals(single.subgraphs(), multi.subgraphs());
+		for(UGraph<String> sub : single.subgraphs())
+		{
+			assertEquals(single.frequency(sub), multi.frequency(sub), 0.0);
+			assertEquals(single.occurrences(sub), multi.occurrences(sub));
+		}
+	}
+	
 }
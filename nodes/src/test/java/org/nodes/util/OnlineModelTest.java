@@ -4,7 +4,9 @@ import static org.junit.Assert.*;
 import static org.nodes.util.Functions.log2;
 import static org.nodes.util.Series.series;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 import org.nodes.Global;
@@ -51,5 +53,24 @@ public class OnlineModelTest
 			assertEquals(n*ent, cl, 300.0);
 		}
 	}
+	
+	@Test
+	public void testStoreFrequencies()
+	{
+		for(int rep : series(100))
+		{
+			int[] frequencies = new int[1 + Global.random().nextInt(20)];
+			List<Integer> sequence = new ArrayList<Integer>();
+			
+			for(int i : series(frequencies.length))
+			{
+				frequencies[i] = Global.random().nextInt(5);
+				for(int j : series(frequencies[i]))
+					sequence.add(i);
+			}
+			
+			assertEquals(OnlineModel.storeIntegers(sequence), OnlineModel.storeIntegers(frequencies), 1e-7);
+		}
+	}
 
 }